@@ -10,9 +10,9 @@
  */
 package faa_ocr.ADTs;
 
+import faa_ocr.image_parser.BinaryRaster;
 import faa_ocr.image_parser.PDFToImage;
-import faa_ocr.text_parser.PDFToText;
-import java.awt.image.BufferedImage;
+import faa_ocr.text_parser.DiagramText;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -32,9 +32,21 @@ public class Airport
     private String abbreviation;
     private float variation;
     private final ArrayList<Runway> runways;
-    //Not used because we didn't get to them.
     private final ArrayList<Taxiway> taxiways;
 
+    /* The airport diagram rendered once in memory and shared by the scale,
+     * runway, and taxiway detection.
+     */
+    private final BinaryRaster diagram;
+
+    //The gray pavement of the same rendering, for taxiway detection.
+    private final BinaryRaster pavement;
+
+    /* The text of the airport diagram, which is read once and shared by the
+     * coordinate code here and the text parsers.
+     */
+    private final DiagramText diagram_text;
+
     //Y-coordinate to latitude conversion factor.
     private int pixels_per_unit_lat;
 
@@ -67,31 +79,84 @@ public class Airport
      */
     private final boolean DIAGRAM_IS_ROTATED;
 
+    /* Longitude regular expression:
+     * (\\d+) matches the number of degrees, which could be any number of
+     * digits from 1 to 3.
+     * (\\d\\d) matches the number of minutes, which is always two digits.
+     * ([WE]) matches the direction, which is either West or East.
+     */
+    private static final Pattern LONGITUDE_PATTERN
+    = Pattern.compile("(\\d{1,3}) *(\\d\\d[ \\.\\d]*)' *([WE])");
+
+    /* Latitude regular expression:
+     * (\\d+) matches the number of degrees, which could be any number of
+     * digits from 1 to 3.
+     * (\\d\\d) matches the number of minutes, which is always two digits.
+     * ([NS]) matches the direction, which is either North or South.
+     */
+    private static final Pattern LATITUDE_PATTERN
+    = Pattern.compile("(\\d{1,3}) *(\\d\\d[ \\.\\d]*)' *([NS])");
+
+    //A minute measurement with a ".5" component.
+    private static final Pattern HALF_MINUTE_PATTERN
+    = Pattern.compile(".*\\.5 *'[NSWE].*");
+
+    //Spaces around a decimal point.
+    private static final Pattern DECIMAL_POINT_PATTERN
+    = Pattern.compile(" *\\. *");
+
     public Airport(String pdf_file_path, boolean rotated)
+    {
+        this(pdf_file_path, rotated, false);
+    }
+
+    /**
+     * Make an airport from its diagram PDF.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @param rotated is true if the diagram is rotated.
+     * @param fresh_text is true if the text has to be read from the PDF as
+     * it is now, and never from a .txt file left next to it.
+     */
+    public Airport(String pdf_file_path, boolean rotated, boolean fresh_text)
     {
         DIAGRAM_IS_ROTATED = rotated;
         this.runways = new ArrayList<Runway>();
         this.taxiways = new ArrayList<Taxiway>();
         this.pdf_file_path = pdf_file_path;
 
+        //Both rasters come from one rendering of the PDF, or the cache.
+        BinaryRaster[] rasters = PDFToImage.renderRasters(pdf_file_path);
+        if (rasters != null)
+        {
+            this.diagram = rasters[0];
+            this.pavement = rasters[1];
+        }
+        else
+        {
+            this.diagram = null;
+            this.pavement = null;
+        }
+        this.diagram_text = new DiagramText(pdf_file_path, fresh_text);
+
         /* Set the scales for pixel coordinates to latitude and longitude
          * coordinates as well as the necessary offsets from the upper left
          * corner of the diagram.
          */
         findPixelConversionScales();
-        String diagram_text = PDFToText.getDiagramText(pdf_file_path);
+        String formatted_text = diagram_text.getFormattedText();
 
         /* If we use half minutes, a unit of latitude and longitude is
          * twice the number of pixels that we found.
          */
-        if (usesHalfMinutes(diagram_text))
+        if (usesHalfMinutes(formatted_text))
         {
             pixels_per_unit_lat *= 2;
             pixels_per_unit_long *= 2;
         }
 
-        BASE_LATITUDE = findBaseLatitude(diagram_text);
-        BASE_LONGITUDE = findBaseLongitude(diagram_text);
+        BASE_LATITUDE = findBaseLatitude(formatted_text);
+        BASE_LONGITUDE = findBaseLongitude(formatted_text);
     }
 
     /**
@@ -104,6 +169,39 @@ public class Airport
         return pdf_file_path;
     }
 
+    /**
+     * Get the binary raster of the airport diagram, which is rendered once
+     * when the Airport is made.
+     *
+     * @return the binary raster of the airport diagram.
+     */
+    public BinaryRaster getDiagram()
+    {
+        return diagram;
+    }
+
+    /**
+     * Get the raster of the gray pavement in the airport diagram, which is
+     * made from the same rendering as the binary raster.
+     *
+     * @return the pavement raster of the airport diagram.
+     */
+    public BinaryRaster getPavement()
+    {
+        return pavement;
+    }
+
+    /**
+     * Get the text of the airport diagram, which is read the first time it
+     * is needed and then shared.
+     *
+     * @return the text of the airport diagram.
+     */
+    public DiagramText getDiagramText()
+    {
+        return diagram_text;
+    }
+
     /**
      * Get the name of the airport.
      *
@@ -284,10 +382,17 @@ public class Airport
      * @param file_path the path to the airport diagram PDF.
      * @return the number of pixels in one unit of longitude (may be a half
      * degree or a whole degree).
+     * @throws IllegalStateException if the diagram couldn't be rendered or
+     * a scale couldn't be found.
      */
     private void findPixelConversionScales()
     {
-        BufferedImage diagram = PDFToImage.makeImage(this.pdf_file_path);
+        if (diagram == null)
+        {
+            throw new IllegalStateException(
+                    "Airport diagram " + pdf_file_path + " could not be rendered."
+            );
+        }
 
         /* The left margin is 25 pixels; the right margin is 61 pixels
          */
@@ -313,8 +418,9 @@ public class Airport
                     end_width))
             {
                 //We failed to find a usable scale.
-                System.err.println("Error:  Horizontal scale not be found.");
-                System.exit(1);
+                throw new IllegalStateException(
+                        "Horizontal scale could not be found in " + pdf_file_path
+                );
             }
         }
 
@@ -331,8 +437,9 @@ public class Airport
                     end_height))
             {
                 //We failed to find a usable scale.
-                System.err.println("Error:  Vertical scale not be found.");
-                System.exit(1);
+                throw new IllegalStateException(
+                        "Vertical scale could not be found in " + pdf_file_path
+                );
             }
         }
 
@@ -341,14 +448,14 @@ public class Airport
     /**
      * Try to find the longitude scale and report the success of the attempt.
      *
-     * @param diagram is the image representation of the airport diagram.
+     * @param diagram is the binary raster of the airport diagram.
      * @param current is the point to start searching from.
      * @param diagram_width_end is the end of the diagram when approaching
      * from the left.
      * @return true if a valid scale is found before the end of the diagram
      * and false otherwise.
      */
-    private boolean findHorizontalScale(BufferedImage diagram,
+    private boolean findHorizontalScale(BinaryRaster diagram,
                                         Point current,
                                         int diagram_width_end)
     {
@@ -429,14 +536,14 @@ public class Airport
     /**
      * Try to find the latitude scale and report the success of the attempt.
      *
-     * @param diagram is the image representation of the airport diagram.
+     * @param diagram is the binary raster of the airport diagram.
      * @param current is the point to start searching from.
      * @param diagram_height_end is the end of the diagram when approaching
      * from the top.
      * @return true if a valid scale is found before the end of the diagram
      * and false otherwise.
      */
-    private boolean findVerticalScale(BufferedImage diagram,
+    private boolean findVerticalScale(BinaryRaster diagram,
                                       Point current,
                                       int diagram_height_end)
     {
@@ -525,10 +632,11 @@ public class Airport
     private boolean usesHalfMinutes(String diagram_text)
     {
         Scanner scanner = new Scanner(diagram_text);
+        Matcher half_minute_matcher = HALF_MINUTE_PATTERN.matcher("");
         while (scanner.hasNextLine())
         {
             //Look for a minute measurement with a ".5" component.
-            if (scanner.nextLine().matches(".*\\.5 *'[NSWE].*"))
+            if (half_minute_matcher.reset(scanner.nextLine()).matches())
             {
                 scanner.close();
                 return true;
@@ -607,24 +715,18 @@ public class Airport
         float minutes = -1;
         String direction = "";
 
-        /* Longitude regular expression:
-         * (\\d+) matches the number of degrees, which could be any number of
-         * digits from 1 to 3.
-         * (\\d\\d) matches the number of minutes, which is always two digits.
-         * ([WE]) matches the direction, which is either West or East.
-         */
-        Pattern long_pattern = Pattern.compile(
-                "(\\d{1,3}) *(\\d\\d[ \\.\\d]*)' *([WE])"
-        );
+        Matcher long_matcher = LONGITUDE_PATTERN.matcher("");
+        Matcher decimal_point_matcher = DECIMAL_POINT_PATTERN.matcher("");
 
         while (scanner.hasNextLine())
         {
             String next_line = scanner.nextLine();
 
             //Remove unnecessary spaces around the decimal point.
-            next_line = next_line.replaceAll(" *\\. *", ".");
+            next_line = decimal_point_matcher.reset(next_line)
+                    .replaceAll(".");
 
-            Matcher long_matcher = long_pattern.matcher(next_line);
+            long_matcher.reset(next_line);
             if (long_matcher.find())
             {
                 int new_degrees = Integer.parseInt(long_matcher.group(1));
@@ -725,24 +827,18 @@ public class Airport
         float minutes = -1;
         String direction = "";
 
-        /* Latitude regular expression:
-         * (\\d+) matches the number of degrees, which could be any number of
-         * digits from 1 to 3.
-         * (\\d\\d) matches the number of minutes, which is always two digits.
-         * ([NS]) matches the direction, which is either North or South.
-         */
-        Pattern lat_pattern = Pattern.compile(
-                "(\\d{1,3}) *(\\d\\d[ \\.\\d]*)' *([NS])"
-        );
+        Matcher lat_matcher = LATITUDE_PATTERN.matcher("");
+        Matcher decimal_point_matcher = DECIMAL_POINT_PATTERN.matcher("");
 
         while (scanner.hasNextLine())
         {
             String next_line = scanner.nextLine();
 
             //Remove unnecessary spaces around the decimal point.
-            next_line = next_line.replaceAll(" *\\. *", ".");
+            next_line = decimal_point_matcher.reset(next_line)
+                    .replaceAll(".");
 
-            Matcher lat_matcher = lat_pattern.matcher(next_line);
+            lat_matcher.reset(next_line);
             if (lat_matcher.find())
             {
                 int new_degrees = Integer.parseInt(lat_matcher.group(1));
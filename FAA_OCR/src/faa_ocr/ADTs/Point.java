@@ -1,5 +1,6 @@
 package faa_ocr.ADTs;
 
+import faa_ocr.image_parser.BinaryRaster;
 import java.awt.image.BufferedImage;
 
 /**
@@ -12,9 +13,6 @@ public class Point
 {
     double x;
     double y;
-    private final int red_max_value = 50;
-    private final int blue_max_value = 50;
-    private final int green_max_value = 50;
 
     public Point(int x, int y)
     {
@@ -71,12 +69,20 @@ public class Point
      */
     public boolean isBlack(BufferedImage diagram)
     {
-        final int pixel_color = diagram.getRGB(getX(), getY());
-        final int red = (pixel_color >> 16) & 0xff;
-        final int green = (pixel_color >> 8) & 0xff;
-        final int blue = (pixel_color) & 0xff;
+        return BinaryRaster.isBlackColor(diagram.getRGB(getX(), getY()));
+    }
 
-        return (red < red_max_value && green < green_max_value && blue < blue_max_value);
+    /**
+     * Determine whether the point provided is black or not.
+     *
+     * @param diagram
+     * is the binary raster of the picture to check.
+     * @return true if the point is black and false if it isn't or if it is
+     * outside of the picture.
+     */
+    public boolean isBlack(BinaryRaster diagram)
+    {
+        return diagram.isBlack(getX(), getY());
     }
 
     /**
@@ -101,6 +107,18 @@ public class Point
         return (point.getX() == x && point.getY() == y);
     }
 
+    /**
+     * Get a hash code that agrees with equals, so that points can be kept
+     * in hash sets and maps.
+     *
+     * @return the hash code of the point's pixel coordinates.
+     */
+    @Override
+    public int hashCode()
+    {
+        return 31 * getX() + getY();
+    }
+
     /**
      * Add two points together returning a new Point object
      *
@@ -0,0 +1,459 @@
+package faa_ocr.ADTs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Finds every point where line segments cross or touch with a sweep line,
+ * the way Bentley and Ottmann do.  A horizontal line sweeps down the
+ * diagram, stopping at the end points of the segments and at the crossings
+ * it has found so far.  The segments that the sweep line is on are kept in
+ * left to right order, and only segments that are next to each other in
+ * that order are tested against each other.  Finding the k crossings of n
+ * segments takes O((n + k) log n) time instead of testing all n^2 pairs.
+ *
+ * Positions along the sweep line come from the y coordinate, never from a
+ * slope, so vertical segments need nothing special.  Horizontal segments
+ * lie along the sweep line; they are on the sweep line from their left end
+ * to their right end and are ordered at the point the sweep is at.
+ *
+ * @author Kevin Dittmar
+ */
+public class SweepLineIntersector
+{
+    /* Coordinates this close together are the same.  The segments come from
+     * pixels, so this only hides rounding error.
+     */
+    private static final double EPSILON = 1e-7;
+
+    //The stops of the sweep line, in order, with the segments that start there.
+    private final TreeMap<double[], ArrayList<SweepSegment>> events;
+
+    //The segments on the sweep line, from left to right.
+    private final TreeSet<SweepSegment> status;
+
+    //The stop that the sweep line is at.
+    private double sweep_x;
+    private double sweep_y;
+
+    private final ArrayList<Crossing> crossings;
+
+    /**
+     * Find the crossings of a list of line segments.
+     *
+     * @param line_segments are the segments to test against each other.
+     */
+    public SweepLineIntersector(List<LineSegment> line_segments)
+    {
+        events = new TreeMap<>(new Comparator<double[]>()
+        {
+            @Override
+            public int compare(double[] first, double[] second)
+            {
+                return comparePoints(first[0], first[1], second[0], second[1]);
+            }
+        });
+        status = new TreeSet<>(new Comparator<SweepSegment>()
+        {
+            @Override
+            public int compare(SweepSegment first, SweepSegment second)
+            {
+                return compareOnSweepLine(first, second);
+            }
+        });
+        crossings = new ArrayList<>();
+
+        for (int i = 0; i < line_segments.size(); i++)
+        {
+            SweepSegment segment = new SweepSegment(line_segments.get(i), i);
+            addEvent(segment.upper_x, segment.upper_y).add(segment);
+            addEvent(segment.lower_x, segment.lower_y);
+        }
+
+        while (!events.isEmpty())
+        {
+            Map.Entry<double[], ArrayList<SweepSegment>> event =
+                    events.pollFirstEntry();
+            handleEvent(event.getKey()[0], event.getKey()[1], event.getValue());
+        }
+
+        //The sort is stable, so a pair's crossings stay in sweep order.
+        Collections.sort(crossings);
+    }
+
+    /**
+     * Get every pair of segments that cross or touch.  Each pair is given
+     * once for every point where the two meet, ordered by the index of the
+     * first segment and then of the second, like a loop over all pairs.
+     *
+     * @return the crossings that were found.
+     */
+    public ArrayList<Crossing> getCrossings()
+    {
+        return crossings;
+    }
+
+    /**
+     * Stop the sweep line at a point: report the segments that meet there,
+     * take the ones that end there off of the sweep line, and put the ones
+     * that start there or go through it back on in their order below it.
+     *
+     * @param x coordinate of the stop
+     * @param y coordinate of the stop
+     * @param upper_segments are the segments whose top end is at the stop.
+     */
+    private void handleEvent(double x, double y,
+                             ArrayList<SweepSegment> upper_segments)
+    {
+        sweep_x = x;
+        sweep_y = y;
+
+        //The segments on the sweep line that go through the stop.
+        SweepSegment low_probe = new SweepSegment(x - 2 * EPSILON);
+        SweepSegment high_probe = new SweepSegment(x + 2 * EPSILON);
+        NavigableSet<SweepSegment> through = status.subSet(
+                low_probe, true, high_probe, true
+        );
+
+        ArrayList<SweepSegment> meeting = new ArrayList<>(upper_segments);
+        ArrayList<SweepSegment> continuing = new ArrayList<>();
+        for (SweepSegment segment : through)
+        {
+            meeting.add(segment);
+            if (comparePoints(segment.lower_x, segment.lower_y, x, y) != 0)
+            {
+                continuing.add(segment);
+            }
+        }
+        reportCrossings(meeting, x, y);
+
+        /* The order of the segments through the stop changes here, so take
+         * them all off and put back the ones that go on below it.
+         */
+        through.clear();
+        for (SweepSegment segment : upper_segments)
+        {
+            //A segment that is just a point is done as soon as it starts.
+            if (comparePoints(segment.lower_x, segment.lower_y, x, y) != 0)
+            {
+                continuing.add(segment);
+            }
+        }
+        status.addAll(continuing);
+
+        //Test the segments that are newly next to each other.
+        if (continuing.isEmpty())
+        {
+            findEvent(status.lower(low_probe), status.higher(high_probe));
+        }
+        else
+        {
+            SweepSegment leftmost = status.ceiling(low_probe);
+            SweepSegment rightmost = status.floor(high_probe);
+            findEvent(status.lower(leftmost), leftmost);
+            findEvent(rightmost, status.higher(rightmost));
+        }
+    }
+
+    /**
+     * Record a crossing for every pair of segments that meet at a point.
+     *
+     * @param meeting are the segments that meet.
+     * @param x coordinate of the point
+     * @param y coordinate of the point
+     */
+    private void reportCrossings(ArrayList<SweepSegment> meeting,
+                                 double x, double y)
+    {
+        for (int i = 0; i < meeting.size(); i++)
+        {
+            for (int k = i + 1; k < meeting.size(); k++)
+            {
+                int first = meeting.get(i).index;
+                int second = meeting.get(k).index;
+                crossings.add(new Crossing(Math.min(first, second),
+                                           Math.max(first, second),
+                                           new Point(x, y)));
+            }
+        }
+    }
+
+    /**
+     * Add a stop for the point where two segments cross if the sweep line
+     * hasn't passed it yet.
+     *
+     * @param left is the segment on the left, or null if there isn't one.
+     * @param right is the segment on the right, or null if there isn't one.
+     */
+    private void findEvent(SweepSegment left, SweepSegment right)
+    {
+        if (left == null || right == null)
+        {
+            return;
+        }
+        double[] point = findCrossing(left, right);
+        if (point != null
+            && comparePoints(point[0], point[1], sweep_x, sweep_y) > 0)
+        {
+            addEvent(point[0], point[1]);
+        }
+    }
+
+    /**
+     * Get the segments that start at a stop, adding the stop if it isn't
+     * there yet.
+     *
+     * @param x coordinate of the stop
+     * @param y coordinate of the stop
+     * @return the list of segments whose top end is at the stop.
+     */
+    private ArrayList<SweepSegment> addEvent(double x, double y)
+    {
+        double[] point = {x, y};
+        ArrayList<SweepSegment> upper_segments = events.get(point);
+        if (upper_segments == null)
+        {
+            upper_segments = new ArrayList<>();
+            events.put(point, upper_segments);
+        }
+        return upper_segments;
+    }
+
+    /**
+     * Find the point where two segments cross.  Segments that lie along the
+     * same line don't have a single crossing point, and they are found at
+     * the end points where they overlap instead.
+     *
+     * @param first is one segment.
+     * @param second is the other segment.
+     * @return the x and y coordinates of the crossing, or null if the
+     * segments don't cross.
+     */
+    private static double[] findCrossing(SweepSegment first,
+                                         SweepSegment second)
+    {
+        double first_dx = first.lower_x - first.upper_x;
+        double first_dy = first.lower_y - first.upper_y;
+        double second_dx = second.lower_x - second.upper_x;
+        double second_dy = second.lower_y - second.upper_y;
+
+        double denominator = first_dx * second_dy - first_dy * second_dx;
+        if (Math.abs(denominator) < EPSILON)
+        {
+            return null;
+        }
+
+        //How far along each segment the crossing is, from 0 to 1.
+        double between_x = second.upper_x - first.upper_x;
+        double between_y = second.upper_y - first.upper_y;
+        double along_first =
+                (between_x * second_dy - between_y * second_dx) / denominator;
+        double along_second =
+                (between_x * first_dy - between_y * first_dx) / denominator;
+        if (along_first < -EPSILON || along_first > 1 + EPSILON
+            || along_second < -EPSILON || along_second > 1 + EPSILON)
+        {
+            return null;
+        }
+        return new double[] {
+            first.upper_x + along_first * first_dx,
+            first.upper_y + along_first * first_dy
+        };
+    }
+
+    /**
+     * Compare two points in the order that the sweep line reaches them:
+     * from the top of the diagram down, and from left to right along a
+     * row.
+     *
+     * @return a negative number if the first point is reached first, a
+     * positive number if the second one is, or zero if they are the same.
+     */
+    private static int comparePoints(double first_x, double first_y,
+                                     double second_x, double second_y)
+    {
+        if (Math.abs(first_y - second_y) > EPSILON)
+        {
+            return first_y < second_y ? -1 : 1;
+        }
+        if (Math.abs(first_x - second_x) > EPSILON)
+        {
+            return first_x < second_x ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Compare two segments by where they are on the sweep line.  Segments
+     * that go through the same point are ordered by where they are just
+     * below the sweep line, with horizontal segments last.
+     *
+     * @return a negative number if the first segment is to the left of the
+     * second, or a positive number if it is to the right.
+     */
+    private int compareOnSweepLine(SweepSegment first, SweepSegment second)
+    {
+        double first_x = first.xOnSweepLine();
+        double second_x = second.xOnSweepLine();
+        if (Math.abs(first_x - second_x) > EPSILON
+            || first.isProbe() || second.isProbe())
+        {
+            return Double.compare(first_x, second_x);
+        }
+        int by_direction = Double.compare(first.x_per_y, second.x_per_y);
+        if (by_direction != 0)
+        {
+            return by_direction;
+        }
+        //Overlapping segments on the same line.
+        return first.index - second.index;
+    }
+
+    /**
+     * A line segment with its ends in sweep order.
+     */
+    private class SweepSegment
+    {
+        final int index;
+        final double upper_x;
+        final double upper_y;
+        final double lower_x;
+        final double lower_y;
+
+        /* How far the segment moves right for each pixel down, or infinity
+         * if it is horizontal.
+         */
+        final double x_per_y;
+
+        SweepSegment(LineSegment line, int index)
+        {
+            this.index = index;
+            Point upper = line.first;
+            Point lower = line.second;
+            if (comparePoints(lower.x, lower.y, upper.x, upper.y) < 0)
+            {
+                upper = line.second;
+                lower = line.first;
+            }
+            upper_x = upper.x;
+            upper_y = upper.y;
+            lower_x = lower.x;
+            lower_y = lower.y;
+            x_per_y = isHorizontal()
+                      ? Double.POSITIVE_INFINITY
+                      : (lower_x - upper_x) / (lower_y - upper_y);
+        }
+
+        /**
+         * Make a probe that sits at a fixed place on the sweep line, for
+         * finding the segments that go through a stop.
+         *
+         * @param x coordinate of the probe on the sweep line
+         */
+        SweepSegment(double x)
+        {
+            index = -1;
+            upper_x = x;
+            upper_y = Double.NaN;
+            lower_x = x;
+            lower_y = Double.NaN;
+            x_per_y = 0;
+        }
+
+        boolean isProbe()
+        {
+            return index < 0;
+        }
+
+        boolean isHorizontal()
+        {
+            return Math.abs(lower_y - upper_y) <= EPSILON;
+        }
+
+        /**
+         * Get where the segment crosses the sweep line.  A horizontal
+         * segment is on the sweep line at the stop the sweep is at.
+         *
+         * @return the x coordinate of the segment on the sweep line.
+         */
+        double xOnSweepLine()
+        {
+            if (isProbe())
+            {
+                return upper_x;
+            }
+            if (isHorizontal())
+            {
+                return Math.max(upper_x, Math.min(lower_x, sweep_x));
+            }
+            return upper_x + (sweep_y - upper_y) * x_per_y;
+        }
+    }
+
+    /**
+     * Two segments that cross or touch, and the point where they meet.
+     */
+    public static class Crossing implements Comparable<Crossing>
+    {
+        private final int first;
+        private final int second;
+        private final Point point;
+
+        Crossing(int first, int second, Point point)
+        {
+            this.first = first;
+            this.second = second;
+            this.point = point;
+        }
+
+        /**
+         * Get the index of the first segment in the list of segments.
+         *
+         * @return the smaller index of the two segments.
+         */
+        public int getFirst()
+        {
+            return first;
+        }
+
+        /**
+         * Get the index of the second segment in the list of segments.
+         *
+         * @return the larger index of the two segments.
+         */
+        public int getSecond()
+        {
+            return second;
+        }
+
+        /**
+         * Get the point where the segments meet.
+         *
+         * @return the crossing point.
+         */
+        public Point getPoint()
+        {
+            return point;
+        }
+
+        @Override
+        public int compareTo(Crossing other)
+        {
+            if (first != other.first)
+            {
+                return first < other.first ? -1 : 1;
+            }
+            if (second != other.second)
+            {
+                return second < other.second ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+}
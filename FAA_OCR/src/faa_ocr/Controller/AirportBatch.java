@@ -0,0 +1,201 @@
+package faa_ocr.Controller;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes many airport diagrams at the same time on a fixed number of
+ * worker threads. A failure in one airport is recorded and reported without
+ * stopping the others. Progress is printed in the order that the airports
+ * were given, followed by a summary of the whole batch.
+ *
+ * @author Kevin Dittmar
+ */
+public class AirportBatch
+{
+    private final int workers;
+    private final ArrayList<AirportJob> jobs;
+
+    /**
+     * Make an empty batch.
+     *
+     * @param workers is the most airports to process at the same time.
+     */
+    public AirportBatch(int workers)
+    {
+        this.workers = Math.max(1, workers);
+        this.jobs = new ArrayList<>();
+    }
+
+    /**
+     * Add an airport diagram to the batch.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @param rotated is true if the diagram is a rotated landscape diagram.
+     */
+    public void addAirport(String pdf_file_path, boolean rotated)
+    {
+        jobs.add(new AirportJob(pdf_file_path, rotated));
+    }
+
+    /**
+     * Get the number of airports in the batch.
+     *
+     * @return the number of airports.
+     */
+    public int size()
+    {
+        return jobs.size();
+    }
+
+    /**
+     * Process every airport in the batch, print progress as airports finish,
+     * and print a summary at the end.
+     *
+     * @return the jobs in the order they were added, with their results.
+     */
+    public ArrayList<AirportJob> run()
+    {
+        long batch_start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(workers, Math.max(1, jobs.size()))
+        );
+        ArrayList<Future<AirportJob>> futures = new ArrayList<>();
+        try
+        {
+            for (final AirportJob job : jobs)
+            {
+                futures.add(pool.submit(new Callable<AirportJob>()
+                {
+                    @Override
+                    public AirportJob call()
+                    {
+                        new AirportController().processAirport(job);
+                        return job;
+                    }
+                }));
+            }
+
+            /* Report the airports in the order they were given, so the
+             * output reads the same no matter which worker finishes first.
+             */
+            for (int i = 0; i < futures.size(); i++)
+            {
+                AirportJob job = jobs.get(i);
+                try
+                {
+                    futures.get(i).get();
+                }
+                catch (ExecutionException ex)
+                {
+                    job.setError(ex.getCause());
+                }
+                catch (InterruptedException ex)
+                {
+                    job.setError(ex);
+                    Thread.currentThread().interrupt();
+                }
+                printProgress(i + 1, job);
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        printSummary(System.nanoTime() - batch_start);
+        return jobs;
+    }
+
+    /**
+     * Print the outcome of one airport.
+     *
+     * @param number is the position of the airport in the batch.
+     * @param job is the airport that finished.
+     */
+    private void printProgress(int number, AirportJob job)
+    {
+        String prefix = "[" + number + "/" + jobs.size() + "] ";
+        long millis = job.getElapsedNanos() / 1000000;
+        if (job.succeeded())
+        {
+            String name = job.getAirportName() == null
+                          ? job.getFilePath()
+                          : job.getAirportName().trim();
+            System.out.println(prefix + name + (job.isReused()
+                                                ? " (unchanged)"
+                                                : " (" + millis + " ms)"));
+            System.out.println("Path to XML: " + job.getXmlPath());
+            System.out.println("Path to KML: " + job.getKmlPath());
+        }
+        else
+        {
+            System.out.println(prefix + "FAILED " + job.getFilePath()
+                               + " (" + millis + " ms): "
+                               + describe(job.getError()));
+        }
+    }
+
+    /**
+     * Print the number of airports processed, the throughput, and every
+     * airport that failed.
+     *
+     * @param batch_nanos is how long the whole batch took.
+     */
+    private void printSummary(long batch_nanos)
+    {
+        int failed = 0;
+        long busy_nanos = 0;
+        for (AirportJob job : jobs)
+        {
+            busy_nanos += job.getElapsedNanos();
+            if (!job.succeeded())
+            {
+                failed++;
+            }
+        }
+        double seconds = batch_nanos / 1e9;
+
+        System.out.println();
+        System.out.println("Processed " + jobs.size() + " airports with "
+                           + workers + " workers in "
+                           + String.format("%.1f", seconds) + " s");
+        System.out.println("Succeeded: " + (jobs.size() - failed)
+                           + "  Failed: " + failed);
+        if (seconds > 0)
+        {
+            System.out.println("Throughput: "
+                               + String.format("%.2f", jobs.size() / seconds)
+                               + " airports/s, average speedup "
+                               + String.format("%.1f",
+                                               busy_nanos / (double) batch_nanos)
+                               + "x");
+        }
+        for (AirportJob job : jobs)
+        {
+            if (!job.succeeded())
+            {
+                System.out.println("  " + job.getFilePath() + ": "
+                                   + describe(job.getError()));
+            }
+        }
+    }
+
+    /**
+     * Describe an error in one line.
+     *
+     * @param error is the error to describe, which may be null.
+     * @return the error's type and message.
+     */
+    private static String describe(Throwable error)
+    {
+        if (error == null)
+        {
+            return "no output was written";
+        }
+        return error.getClass().getSimpleName() + ": " + error.getMessage();
+    }
+}
@@ -1,7 +1,9 @@
 package faa_ocr.Controller;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.zip.Deflater;
 
 import faa_ocr.ADTs.Airport;
 import faa_ocr.ADTs.DiagramRunway;
@@ -9,10 +11,16 @@ import faa_ocr.ADTs.LineSegment;
 import faa_ocr.ADTs.Node;
 import faa_ocr.ADTs.Point;
 import faa_ocr.ADTs.Runway;
+import faa_ocr.ADTs.SweepLineIntersector;
+import faa_ocr.cache.DiagramCache;
+import faa_ocr.cache.OutputManifest;
 import faa_ocr.image_parser.PDFToImage;
+import faa_ocr.image_parser.RunwayDiagramParser;
 import faa_ocr.text_parser.PDFToText;
 import faa_ocr.xml_parser.AirportToXML;
-import faa_ocr.kml_parser.XMLtoKML;
+import faa_ocr.kml_parser.AirportToKML;
+import faa_ocr.metrics.AirportMetrics;
+import faa_ocr.metrics.MetricsReport;
 
 import java.lang.Math;
 
@@ -28,25 +36,180 @@ public class AirportController
     public static void main(String[] args)
     {
         AirportController airport_controller = new AirportController();
+        ArrayList<AirportJob> jobs = new ArrayList<>();
         boolean is_rotated = false;
 
+        /* The number of airports to process at the same time.  Zero means
+         * one at a time on this thread, as before batch mode existed.
+         */
+        int workers = 0;
+
+        //Where the diagram cache is kept and how large it can get, if on.
+        File cache_directory = null;
+        long cache_megabytes = DiagramCache.DEFAULT_MAX_MEGABYTES;
+
+        //Where the metrics report is written, if metrics are on.
+        File metrics_directory = null;
+
+        /* The port and the spool directory of the daemon, and how many
+         * airports can wait in its queue.  The daemon only runs if it has
+         * a port or a spool directory.
+         */
+        int daemon_port = -1;
+        File spool_directory = null;
+        int queue_capacity = 64;
+
+        //The manifest of the outputs of earlier runs, if incremental.
+        File manifest_file = null;
+
         //Accept list of list of PDFS
         for (String arg : args)
         {
             if (arg.startsWith("-"))
             {
+                /* -cache=DIR keeps the diagram cache in a faa_ocr_cache
+                 * directory inside DIR.  DIR is a path, so it keeps its
+                 * dashes.
+                 */
+                if (arg.startsWith("-cache="))
+                {
+                    cache_directory = new File(arg.substring(7));
+                    continue;
+                }
+                /* -metrics records the time, CPU time, and allocations of
+                 * every stage and the counts of what the parsers found,
+                 * and writes a report of them next to the first PDF, or
+                 * into DIR with -metrics=DIR.
+                 */
+                if (arg.startsWith("-metrics="))
+                {
+                    metrics_directory = new File(arg.substring(9));
+                    AirportMetrics.setEnabled(true);
+                    continue;
+                }
+                /* -incremental only processes the airports whose PDFs
+                 * changed since an earlier run, and gives the others the
+                 * outputs written then.  The outputs are kept track of in
+                 * faa_ocr_manifest.tsv in the working directory, or in
+                 * FILE with -incremental=FILE.
+                 */
+                if (arg.startsWith("-incremental="))
+                {
+                    manifest_file = new File(arg.substring(13));
+                    continue;
+                }
+                /* -port=N and -spool=DIR keep running as a daemon that
+                 * takes airports from a loopback socket on port N or from
+                 * job files in DIR.  See AirportDaemon.
+                 */
+                if (arg.startsWith("-port="))
+                {
+                    daemon_port = parseNumber(arg.substring(6), 0, 65535,
+                                              "-port=N needs a port from 0 "
+                                              + "to 65535");
+                    continue;
+                }
+                if (arg.startsWith("-spool="))
+                {
+                    spool_directory = new File(arg.substring(7));
+                    continue;
+                }
                 arg = arg.replaceAll("[- ]*", "");
                 if (arg.equals("r"))
                 {
                     is_rotated = true;
                 }
+                /* -j processes the airports in parallel with one worker per
+                 * processor, and -jN uses N workers.
+                 */
+                else if (arg.matches("j\\d*"))
+                {
+                    workers = arg.length() > 1
+                              ? parseNumber(arg.substring(1), 0,
+                                            Integer.MAX_VALUE,
+                                            "-jN needs a number of workers")
+                              : Runtime.getRuntime().availableProcessors();
+                }
+                /* -t reads the text of the diagrams with PDFBox in this
+                 * process, laid out the way pdftotext lays it out, instead of
+                 * running pdftotext for every airport.
+                 */
+                else if (arg.equals("t"))
+                {
+                    PDFToText.setInProcessText(true);
+                }
+                /* -p splits the runway scan of each diagram across the
+                 * processors.
+                 */
+                else if (arg.equals("p"))
+                {
+                    RunwayDiagramParser.setParallelScan(true);
+                }
+                /* -hough finds the runways with a Hough transform instead
+                 * of the corner checks.
+                 */
+                else if (arg.equals("hough"))
+                {
+                    PDFToImage.setHoughRunways(true);
+                }
+                /* -cache keeps the rendered rasters and the text of the
+                 * diagrams in a cache, so diagrams that haven't changed
+                 * aren't rendered or read again, and -cachembN limits the
+                 * cache to N megabytes.
+                 */
+                else if (arg.equals("cache"))
+                {
+                    cache_directory = DiagramCache.DEFAULT_DIRECTORY;
+                }
+                else if (arg.matches("cachemb\\d+"))
+                {
+                    cache_megabytes = parseNumber(arg.substring(7), 1,
+                                                  Integer.MAX_VALUE,
+                                                  "-cachembN needs a size "
+                                                  + "from 1 to "
+                                                  + Integer.MAX_VALUE
+                                                  + " megabytes");
+                    if (cache_directory == null)
+                    {
+                        cache_directory = DiagramCache.DEFAULT_DIRECTORY;
+                    }
+                }
+                /* -queueN lets N airports wait for a worker of the
+                 * daemon.
+                 */
+                else if (arg.matches("queue\\d+"))
+                {
+                    queue_capacity = parseNumber(arg.substring(5), 1,
+                                                 Integer.MAX_VALUE,
+                                                 "-queueN needs room for at "
+                                                 + "least 1 airport");
+                }
+                else if (arg.equals("incremental"))
+                {
+                    manifest_file = OutputManifest.DEFAULT_FILE;
+                }
+                else if (arg.equals("metrics"))
+                {
+                    AirportMetrics.setEnabled(true);
+                }
+                /* -kmz writes KMZ files instead of KML files, and -kmzN
+                 * deflates them at level N, from 0 to 9.
+                 */
+                else if (arg.matches("kmz\\d?"))
+                {
+                    AirportToKML.setKmzOutput(
+                            true,
+                            arg.length() > 3
+                            ? Integer.parseInt(arg.substring(3))
+                            : Deflater.DEFAULT_COMPRESSION
+                    );
+                }
             }
             else if (ArgumentParser.parseArgument(arg))
             {
-                //Retrieve all information from a pdf
-                airport_controller.getInformationFromPDF(arg, is_rotated);
+                jobs.add(new AirportJob(arg, is_rotated));
 
-                //A PDF has been parsed, so reset is_rotated flag.
+                //A PDF has been found, so reset is_rotated flag.
                 is_rotated = false;
             }
             else
@@ -59,12 +222,205 @@ public class AirportController
                 is_rotated = false;
             }
         }
+
+        if (cache_directory != null)
+        {
+            DiagramCache.setCache(new DiagramCache(
+                    cache_directory, cache_megabytes * 1024 * 1024
+            ));
+        }
+
+        if (manifest_file != null)
+        {
+            try
+            {
+                OutputManifest.setManifest(new OutputManifest(manifest_file));
+            }
+            catch (IOException ex)
+            {
+                System.err.println("Error:  can't read manifest "
+                                   + manifest_file + ": " + ex.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (daemon_port >= 0 || spool_directory != null)
+        {
+            serve(jobs, Math.max(1, workers), queue_capacity, daemon_port,
+                  spool_directory);
+            compactManifest();
+            return;
+        }
+
+        if (workers > 0)
+        {
+            AirportBatch batch = new AirportBatch(workers);
+            for (AirportJob job : jobs)
+            {
+                batch.addAirport(job.getFilePath(), job.isRotated());
+            }
+            jobs = batch.run();
+        }
+        else
+        {
+            for (AirportJob job : jobs)
+            {
+                try
+                {
+                    //Retrieve all information from a pdf
+                    airport_controller.getInformationFromPDF(job);
+                }
+                catch (IllegalStateException ex)
+                {
+                    System.err.println("Error:  " + ex.getMessage());
+                    System.exit(1);
+                }
+            }
+        }
+
+        if (AirportMetrics.isEnabled() && !jobs.isEmpty())
+        {
+            if (metrics_directory == null)
+            {
+                metrics_directory = new File(jobs.get(0).getFilePath())
+                                    .getAbsoluteFile().getParentFile();
+            }
+            writeMetrics(jobs, metrics_directory);
+        }
+
+        if (OutputManifest.getManifest() != null)
+        {
+            int reused = 0;
+            for (AirportJob job : jobs)
+            {
+                if (job.isReused())
+                {
+                    reused++;
+                }
+            }
+            System.out.println("Reused the outputs of " + reused + " of "
+                               + jobs.size() + " airports");
+            compactManifest();
+        }
+    }
+
+    /**
+     * Read the number of a command line flag, stopping with an error if it
+     * isn't a number in range.
+     *
+     * @param text is the number.
+     * @param min is the smallest number allowed.
+     * @param max is the largest number allowed.
+     * @param usage is what to tell the user if the number isn't allowed.
+     * @return the number.
+     */
+    private static int parseNumber(String text, int min, int max,
+                                   String usage)
+    {
+        try
+        {
+            int number = Integer.parseInt(text);
+            if (number >= min && number <= max)
+            {
+                return number;
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            //Fall through to the usage error.
+        }
+        System.err.println("Error:  " + usage + ", not " + text);
+        System.exit(1);
+        return min;
+    }
+
+    /**
+     * Rewrite the manifest of an incremental run with one line for each
+     * airport.
+     */
+    private static void compactManifest()
+    {
+        OutputManifest manifest = OutputManifest.getManifest();
+        if (manifest == null)
+        {
+            return;
+        }
+        try
+        {
+            manifest.compact();
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Couldn't write manifest: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Run as a daemon until a client shuts it down.  The airports given on
+     * the command line are its first jobs.
+     *
+     * @param jobs are the airports given on the command line.
+     * @param workers is the most airports to process at the same time.
+     * @param queue_capacity is the most airports that can wait.
+     * @param port is the loopback port to listen on, or -1.
+     * @param spool_directory is the directory to take job files from, or
+     * null.
+     */
+    private static void serve(ArrayList<AirportJob> jobs, int workers,
+                              int queue_capacity, int port,
+                              File spool_directory)
+    {
+        AirportDaemon daemon = new AirportDaemon(workers, queue_capacity);
+        try
+        {
+            for (AirportJob job : jobs)
+            {
+                daemon.submit(job.getFilePath(), job.isRotated(), true);
+            }
+            daemon.serve(port, spool_directory);
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Error:  " + ex.getMessage());
+            daemon.shutdown();
+            System.exit(1);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the metrics report of every airport that recorded metrics.
+     *
+     * @param jobs are the processed airports.
+     * @param directory is where the report is written.
+     */
+    private static void writeMetrics(ArrayList<AirportJob> jobs, File directory)
+    {
+        MetricsReport report = new MetricsReport();
+        for (AirportJob job : jobs)
+        {
+            if (job.getMetrics() != null)
+            {
+                report.add(job.getMetrics());
+            }
+        }
+        try
+        {
+            System.out.println("Metrics: " + report.write(directory));
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Couldn't write metrics: " + ex.getMessage());
+        }
     }
 
     private PDFToText pdf_to_text;
     private PDFToImage pdf_to_image;
     private AirportToXML xml_parser;
-    private XMLtoKML kml_parser;
+    private AirportToKML kml_parser;
 
     /**
      * Control all behaviors of an airport
@@ -74,153 +430,295 @@ public class AirportController
         pdf_to_text = new PDFToText();
         pdf_to_image = new PDFToImage();
         xml_parser = new AirportToXML();
-        kml_parser = new XMLtoKML();
+        kml_parser = new AirportToKML();
     }
 
     /**
      * Create an airport and gather all information from the PDF
      *
-     * @param path
+     * @param job is the airport diagram to process.
      */
-    private void getInformationFromPDF(String path, boolean rotated)
+    private void getInformationFromPDF(AirportJob job)
     {
-        ArrayList<DiagramRunway> runways;
+        processAirport(job);
 
-        //create a new airport with Sting path to PDF
-        Airport airport = new Airport(path, rotated);
-
-        //get textual data from PDF
-        pdf_to_text.parseTextData(airport);
-
-        //get visual data from PDF
-        runways = pdf_to_image.parseVisualData(airport);
+        //print out results of transformations
+        printResults(job.getAirportName(), job.getXmlPath(), job.getKmlPath());
+        if (job.isReused())
+        {
+            System.out.println("Unchanged, so the earlier outputs were reused");
+            System.out.println();
+        }
+    }
 
-        //All all runways to airport and convert x/y to lat/long
-        addToAirport(airport, runways);
+    /**
+     * Create an airport, gather all information from the PDF, and write
+     * the XML and KML files, recording the results in the given job.
+     *
+     * @param job is the airport diagram to process.
+     */
+    void processAirport(AirportJob job)
+    {
+        long start = System.nanoTime();
 
-        //turn Airport into an XML and save path to XML
-        String path_to_xml = xml_parser.convertToXml(airport);
+        /* In an incremental run, an airport whose PDF and settings haven't
+         * changed gets the outputs that were written for it before.
+         */
+        OutputManifest manifest = OutputManifest.getManifest();
+        String key = null;
+        if (manifest != null)
+        {
+            key = manifest.getKey(job.getFilePath(),
+                                  getOutputSettings(job.isRotated()));
+            if (reuseOutputs(manifest, key, job))
+            {
+                job.setElapsedNanos(System.nanoTime() - start);
+                return;
+            }
+        }
 
-        //turn xml file into a kml file.
-        String path_to_kml = kml_parser.writeKML(new File(path_to_xml));
+        AirportMetrics metrics = AirportMetrics.start(job.getFilePath());
+        try
+        {
+            Airport airport;
+            AirportMetrics.Stage load_stage =
+                    AirportMetrics.startStage("load");
+            try
+            {
+                /* The PDF isn't in the manifest, so it is new or changed,
+                 * and a .txt file left next to it may be from before.
+                 */
+                airport = new Airport(job.getFilePath(), job.isRotated(),
+                                      manifest != null);
+            }
+            finally
+            {
+                load_stage.end();
+            }
+            processAirport(job, airport);
 
-        //print out results of transformations
-        printResults(airport, path_to_xml, path_to_kml);
+            //Only outputs that were written in full are recorded
+            if (key != null && job.succeeded()
+                && new File(job.getXmlPath()).isFile()
+                && new File(job.getKmlPath()).isFile())
+            {
+                manifest.record(key, job.getAirportName(), job.getXmlPath(),
+                                job.getKmlPath());
+            }
+        }
+        finally
+        {
+            job.setElapsedNanos(System.nanoTime() - start);
+            if (metrics != null)
+            {
+                metrics.setAirportName(job.getAirportName() == null
+                                       ? null
+                                       : job.getAirportName().trim());
+                metrics.finish();
+                job.setMetrics(metrics);
+            }
+        }
     }
 
     /**
-     * Print resulting files from XML and KML
+     * Describe everything besides the PDF that changes an airport's
+     * outputs, so outputs made another way aren't reused.  Raise the
+     * version when a change to the pipeline changes its outputs.
      *
-     * @param airport
-     * @param path_to_xml
-     * @param path_to_kml
+     * @param rotated is true if the diagram is a rotated landscape diagram.
+     * @return the settings.
      */
-    private void printResults(Airport airport, String path_to_xml, String path_to_kml)
+    private static String getOutputSettings(boolean rotated)
     {
-        System.out.println();
-        System.out.println(airport.getName());
-        System.out.println("Path to XML: " + path_to_xml);
-        System.out.println("Path to KML: " + path_to_kml);
-        System.out.println();
+        return "outputs=1;rotated=" + rotated
+               + ";hough=" + PDFToImage.isHoughRunways()
+               + ";in_process_text=" + PDFToText.isInProcessText()
+               + ";kmz=" + AirportToKML.isKmzOutput();
     }
 
     /**
-     * Find all intersections between runways and runways, runways and taxiways,
-     * taxiways and taxiways.
+     * Give an airport the outputs that were written for the same PDF
+     * before, if there are any.
      *
-     * @param airport
+     * @param manifest is the manifest of earlier outputs.
+     * @param key is the key of the airport's outputs.
+     * @param job is the airport.
+     * @return true if the airport's outputs are in place.
      */
-    private void findIntersections(ArrayList<DiagramRunway> runways)
+    private static boolean reuseOutputs(OutputManifest manifest, String key,
+                                        AirportJob job)
     {
-        int num_runways = runways.size();
-
-        /*
-         * Loop through every combination of runways and runways seeing if
-         * there is an intersection. If we find an intersection, we will add
-         * that intersection to the pair of runways.
+        OutputManifest.Entry entry = manifest.find(key);
+        if (entry == null)
+        {
+            return false;
+        }
+        String xml_path = AirportToXML.getXmlPath(job.getFilePath());
+        String kml_path = AirportToKML.getKmlPath(job.getFilePath());
+        if (!manifest.reuse(entry, xml_path, kml_path))
+        {
+            return false;
+        }
+        /* Point the entry at the new outputs, so the diagram is still
+         * reused once the older outputs are deleted.
          */
-        for (int ii = 0; ii < num_runways; ii = ii + 1)
+        if (!entry.getXmlPath().equals(xml_path)
+            || !entry.getKmlPath().equals(kml_path))
         {
-            DiagramRunway alpha = runways.get(ii);
-
-            for (int kk = ii + 1; kk < num_runways; kk = kk + 1)
-            {
-                DiagramRunway beta = runways.get(kk);
-
-                //Check to see if two runways are intersecting
-                Point intersecting_point;
-                intersecting_point = findIntersections(alpha, beta);
-                if (intersecting_point != null)
-                {
-                    //add intersecting point to both runways
-                    alpha.addIntersection(intersecting_point);
-                    beta.addIntersection(intersecting_point);
-                }
-                else
-                {
-                    //intersecting_point was not found
-                }
-            }
+            manifest.record(key, entry.getAirportName(), xml_path, kml_path);
         }
-
+        job.setResults(entry.getAirportName(), xml_path, kml_path);
+        job.setReused(true);
+        return true;
     }
 
-    private Point findIntersections(DiagramRunway one, DiagramRunway two)
+    /**
+     * Run every stage of the pipeline on an airport.
+     *
+     * @param job is where the results are recorded.
+     * @param airport is the airport made from the job's PDF.
+     */
+    private void processAirport(AirportJob job, Airport airport)
     {
+        parseAirport(airport);
 
-        Point returnPoint = null;
-        //See if two runways intersect
-        LineSegment alpha = new LineSegment(
-                one.getStartPoint(), one.getEndPoint()
-        );
-        
-        LineSegment beta = new LineSegment(
-                two.getStartPoint(), two.getEndPoint()
-        );
-
-        if (LineSegment.doBoundingBoxesIntersect(alpha.getBoundingBox(), 
-                                                 beta.getBoundingBox()))
+        //turn Airport into an XML and save path to XML
+        String path_to_xml;
+        AirportMetrics.Stage xml_stage = AirportMetrics.startStage("xml");
+        try
         {
-            float x1 = one.getStartPoint().getX();
-            float y1 = one.getStartPoint().getY();
+            path_to_xml = xml_parser.convertToXml(airport);
+        }
+        finally
+        {
+            xml_stage.end();
+        }
 
-            float x2 = one.getEndPoint().getX();
-            float y2 = one.getEndPoint().getY();
+        //write the kml file straight from the Airport
+        String path_to_kml;
+        AirportMetrics.Stage kml_stage = AirportMetrics.startStage("kml");
+        try
+        {
+            path_to_kml = kml_parser.convertToKml(airport);
+        }
+        finally
+        {
+            kml_stage.end();
+        }
 
-            float x3 = two.getStartPoint().getX();
-            float y3 = two.getStartPoint().getY();
+        job.setResults(airport.getName(), path_to_xml, path_to_kml);
+    }
 
-            float x4 = two.getEndPoint().getX();
-            float y4 = two.getEndPoint().getY();
+    /**
+     * Create an airport and gather all information from the PDF without
+     * writing any files.
+     *
+     * @param file_path is the path to the airport diagram PDF.
+     * @param rotated is true if the diagram is a rotated landscape diagram.
+     * @return the airport with its text data, runways, and taxiways.
+     */
+    public Airport parseAirport(String file_path, boolean rotated)
+    {
+        Airport airport = new Airport(file_path, rotated);
+        parseAirport(airport);
+        return airport;
+    }
 
-            float one_slope = (y2 - y1) / (x2 - x1);
-            float two_slope = (y4 - y3) / (x4 - x3);
+    /**
+     * Gather all information from an airport's PDF into the airport.
+     *
+     * @param airport is the airport made from the PDF.
+     */
+    private void parseAirport(Airport airport)
+    {
+        ArrayList<DiagramRunway> runways;
 
-            float b1 = y1 - (one_slope * x1);
-            float b2 = y3 - (two_slope * x3);
+        //get textual data from PDF
+        AirportMetrics.Stage text_parse_stage =
+                AirportMetrics.startStage("text_parse");
+        try
+        {
+            pdf_to_text.parseTextData(airport);
+        }
+        finally
+        {
+            text_parse_stage.end();
+        }
 
-            //x intersection
-            float x_value = (b1 - b2) / (two_slope - one_slope);
+        //get visual data from PDF
+        AirportMetrics.Stage visual_parse_stage =
+                AirportMetrics.startStage("visual_parse");
+        try
+        {
+            runways = pdf_to_image.parseVisualData(airport);
+        }
+        finally
+        {
+            visual_parse_stage.end();
+        }
 
-            float y_value = (one_slope * x_value) + b1;
+        //All all runways to airport and convert x/y to lat/long
+        AirportMetrics.Stage add_to_airport_stage =
+                AirportMetrics.startStage("add_to_airport");
+        try
+        {
+            addToAirport(airport, runways);
+        }
+        finally
+        {
+            add_to_airport_stage.end();
+        }
+    }
 
-            if (Math.max(x1, x2) > x_value && Math.min(x1, x2) < x_value
-                && Math.max(y1, y2) > y_value && Math.min(y1, y2) < y_value
-                && Math.max(x3, x4) > x_value && Math.min(x3, x4) < x_value
-                && Math.max(y3, y4) > y_value && Math.min(y3, y4) < y_value)
-            {
-                //System.out.println(x_value);
-                //System.out.println(y_value);
-                returnPoint = new Point((double) x_value, (double) y_value);
-            }
-            return returnPoint;
+    /**
+     * Print resulting files from XML and KML
+     *
+     * @param airport_name
+     * @param path_to_xml
+     * @param path_to_kml
+     */
+    private void printResults(String airport_name, String path_to_xml, String path_to_kml)
+    {
+        System.out.println();
+        System.out.println(airport_name);
+        System.out.println("Path to XML: " + path_to_xml);
+        System.out.println("Path to KML: " + path_to_kml);
+        System.out.println();
+    }
 
-        }
-        else
+    /**
+     * Find all intersections between runways and runways, runways and taxiways,
+     * taxiways and taxiways.
+     *
+     * The crossings come from a sweep line over the runway segments, so
+     * there is no pairwise slope math to break on vertical runways, and
+     * the work grows with the number of runways plus the number of
+     * crossings instead of with every pair of runways.
+     *
+     * @param runways are the runways found in the diagram.
+     */
+    private void findIntersections(ArrayList<DiagramRunway> runways)
+    {
+        ArrayList<LineSegment> segments = new ArrayList<>(runways.size());
+        for (DiagramRunway runway : runways)
         {
-            return returnPoint;
+            segments.add(new LineSegment(runway.getStartPoint(),
+                                         runway.getEndPoint()));
         }
 
+        /* The crossings are ordered like a loop over every pair of runways,
+         * so each runway gets its intersections in the same order as
+         * before.
+         */
+        for (SweepLineIntersector.Crossing crossing
+             : new SweepLineIntersector(segments).getCrossings())
+        {
+            //add intersecting point to both runways
+            runways.get(crossing.getFirst()).addIntersection(
+                    crossing.getPoint());
+            runways.get(crossing.getSecond()).addIntersection(
+                    crossing.getPoint());
+        }
     }
 
     /**
@@ -0,0 +1,817 @@
+package faa_ocr.Controller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one JVM running to process airport diagrams as they come in, so
+ * that the JVM start up, the loading of PDFBox, and the JIT warm up are
+ * paid once instead of once for every few airports.
+ *
+ * Airports are processed by a fixed number of workers.  At most the
+ * queue capacity can wait behind them; past that, socket clients are told
+ * the daemon is busy and the spool directory waits for room.
+ *
+ * Jobs come in over a socket on the loopback address, one command per
+ * line, each answered with one line:
+ *
+ *   SUBMIT [-r] PATH   queue a PDF, answered with OK and the job's id, or
+ *                      BUSY if the queue is full
+ *   STATUS ID          the job's state: QUEUED, RUNNING, DONE, or FAILED
+ *   WAIT ID            the job's state once it is DONE or FAILED
+ *   STATS              the number of jobs in each state, and the number
+ *                      waiting for a worker
+ *   QUIT               close the connection
+ *   SHUTDOWN           finish the queued jobs and stop the daemon
+ *
+ * Jobs also come in through a spool directory.  Every file ending in .job
+ * that appears there is a list of PDFs, one on each line and with -r in
+ * front of rotated ones, like on the command line.  Relative paths are
+ * relative to the spool directory.  The job file is renamed to .taken
+ * when it is read, and once all of its airports are done their states are
+ * written to a .status file of the same name.  Write a job file under
+ * another name and rename it, so it isn't read half written.
+ *
+ * @author Kevin Dittmar
+ */
+public class AirportDaemon
+{
+    private static final String JOB_EXTENSION = ".job";
+    private static final String TAKEN_EXTENSION = ".taken";
+    private static final String STATUS_EXTENSION = ".status";
+
+    //How many finished jobs are remembered for STATUS.
+    private static final int FINISHED_JOBS_KEPT = 1000;
+
+    private final ThreadPoolExecutor pool;
+
+    /* A permit for every worker and every place in the queue, so a job is
+     * only given to the pool once there is room for it.
+     */
+    private final Semaphore room;
+
+    private final AtomicLong next_id = new AtomicLong(1);
+
+    //Every job that is queued, running, or recently finished, by id.
+    private final LinkedHashMap<Long, Ticket> tickets;
+
+    //Each worker keeps its own controller for every job it runs.
+    private final ThreadLocal<AirportController> controllers =
+            new ThreadLocal<AirportController>()
+            {
+                @Override
+                protected AirportController initialValue()
+                {
+                    return new AirportController();
+                }
+            };
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running = true;
+    private ServerSocket server;
+    private WatchService watcher;
+
+    /**
+     * Make a daemon.  Nothing is processed until jobs are submitted.
+     *
+     * @param workers is the most airports to process at the same time.
+     * @param queue_capacity is the most airports that can wait for a
+     * worker.
+     */
+    public AirportDaemon(int workers, int queue_capacity)
+    {
+        workers = Math.max(1, workers);
+        queue_capacity = Math.max(1, queue_capacity);
+        pool = new ThreadPoolExecutor(
+                workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queue_capacity),
+                new NamedThreadFactory("airport-worker")
+        );
+        room = new Semaphore(workers + queue_capacity);
+        tickets = new LinkedHashMap<>();
+    }
+
+    /**
+     * Queue an airport diagram.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @param rotated is true if the diagram is a rotated landscape diagram.
+     * @param wait is true to wait for room in the queue, and false to give
+     * up if the queue is full.
+     * @return the job, or null if the queue was full or the daemon is
+     * stopping.
+     * @throws InterruptedException if interrupted while waiting for room.
+     */
+    public Ticket submit(String pdf_file_path, boolean rotated, boolean wait)
+            throws InterruptedException
+    {
+        return submit(pdf_file_path, rotated, wait, null);
+    }
+
+    private Ticket submit(String pdf_file_path, boolean rotated, boolean wait,
+                          SpoolFile spool_file) throws InterruptedException
+    {
+        if (!running)
+        {
+            return null;
+        }
+        if (wait)
+        {
+            room.acquire();
+        }
+        else if (!room.tryAcquire())
+        {
+            return null;
+        }
+
+        final Ticket ticket = new Ticket(
+                next_id.getAndIncrement(),
+                new AirportJob(pdf_file_path, rotated), spool_file
+        );
+        synchronized (tickets)
+        {
+            tickets.put(ticket.id, ticket);
+        }
+        try
+        {
+            pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    process(ticket);
+                }
+            });
+        }
+        catch (RejectedExecutionException ex)
+        {
+            //The daemon started stopping after the check above.
+            synchronized (tickets)
+            {
+                tickets.remove(ticket.id);
+            }
+            room.release();
+            return null;
+        }
+        return ticket;
+    }
+
+    /**
+     * Run one job on this worker and let everything waiting on it know.
+     *
+     * @param ticket is the job to run.
+     */
+    private void process(Ticket ticket)
+    {
+        ticket.state = State.RUNNING;
+        AirportJob job = ticket.job;
+        try
+        {
+            if (!new File(job.getFilePath()).isFile())
+            {
+                job.setError(new IOException("No such file"));
+            }
+            else if (!ArgumentParser.parseArgument(job.getFilePath()))
+            {
+                job.setError(new IOException("Not a valid PDF"));
+            }
+            else
+            {
+                controllers.get().processAirport(job);
+            }
+        }
+        catch (Throwable ex)
+        {
+            //One bad diagram must not take the daemon down.
+            job.setError(ex);
+        }
+        finally
+        {
+            ticket.state = job.succeeded() ? State.DONE : State.FAILED;
+            System.out.println(ticket.describe());
+            ticket.finished.countDown();
+            room.release();
+            forgetOldTickets();
+            if (ticket.spool_file != null)
+            {
+                ticket.spool_file.finished();
+            }
+        }
+    }
+
+    //Drop the oldest finished jobs past the number that are remembered.
+    private void forgetOldTickets()
+    {
+        synchronized (tickets)
+        {
+            int finished = 0;
+            for (Ticket ticket : tickets.values())
+            {
+                if (ticket.isFinished())
+                {
+                    finished++;
+                }
+            }
+            Iterator<Ticket> iterator = tickets.values().iterator();
+            while (finished > FINISHED_JOBS_KEPT && iterator.hasNext())
+            {
+                if (iterator.next().isFinished())
+                {
+                    iterator.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a job that is queued, running, or recently finished.
+     *
+     * @param id is the id of the job.
+     * @return the job, or null if there is no such job.
+     */
+    public Ticket getTicket(long id)
+    {
+        synchronized (tickets)
+        {
+            return tickets.get(id);
+        }
+    }
+
+    /**
+     * Serve jobs until a client sends SHUTDOWN.
+     *
+     * @param port is the loopback port to listen on, 0 for any free port,
+     * or -1 to not listen.
+     * @param spool_directory is the directory to watch for job files, or
+     * null to not watch one.
+     * @throws IOException if the socket or the directory can't be opened.
+     */
+    public void serve(int port, File spool_directory) throws IOException
+    {
+        if (port >= 0)
+        {
+            server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            System.out.println("Listening on " + server.getInetAddress()
+                               .getHostAddress() + ":" + server.getLocalPort());
+            startThread("airport-listener", new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    listen();
+                }
+            });
+        }
+        if (spool_directory != null)
+        {
+            final Path spool = spool_directory.toPath();
+            watcher = spool.getFileSystem().newWatchService();
+            //A job file renamed into the directory is created there too.
+            spool.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            System.out.println("Watching " + spool.toAbsolutePath());
+            startThread("airport-spool", new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    watch(spool);
+                }
+            });
+        }
+
+        try
+        {
+            stopped.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finishQueuedJobs();
+    }
+
+    /**
+     * Stop taking jobs.  The jobs that are queued are still processed.
+     */
+    public void shutdown()
+    {
+        running = false;
+        try
+        {
+            if (server != null)
+            {
+                server.close();
+            }
+            if (watcher != null)
+            {
+                watcher.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Error closing the daemon: " + ex.getMessage());
+        }
+        stopped.countDown();
+    }
+
+    private void finishQueuedJobs()
+    {
+        pool.shutdown();
+        try
+        {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                System.out.println("Waiting for " + pool.getActiveCount()
+                                   + " airports to finish");
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Daemon stopped after "
+                           + pool.getCompletedTaskCount() + " airports");
+    }
+
+    /**
+     * Accept clients until the socket is closed.  Each client gets its own
+     * thread, since WAIT can block it for as long as an airport takes.
+     */
+    private void listen()
+    {
+        while (running)
+        {
+            try
+            {
+                final Socket client = server.accept();
+                startThread("airport-client", new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        talk(client);
+                    }
+                });
+            }
+            catch (SocketException ex)
+            {
+                //The socket was closed by shutdown.
+                return;
+            }
+            catch (IOException ex)
+            {
+                System.err.println("Error accepting a client: "
+                                   + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Answer a client's commands until it quits or hangs up.
+     *
+     * @param client is the client's connection.
+     */
+    private void talk(Socket client)
+    {
+        try (Socket socket = client;
+             BufferedReader input = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter output = new PrintWriter(new OutputStreamWriter(
+                     socket.getOutputStream(), StandardCharsets.UTF_8), true))
+        {
+            String line;
+            while ((line = input.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty())
+                {
+                    continue;
+                }
+                String[] words = line.split("\\s+", 2);
+                String argument = words.length > 1 ? words[1] : "";
+                switch (words[0].toUpperCase(Locale.ROOT))
+                {
+                    case "SUBMIT":
+                        output.println(submitCommand(argument));
+                        break;
+                    case "STATUS":
+                        output.println(statusCommand(argument, false));
+                        break;
+                    case "WAIT":
+                        output.println(statusCommand(argument, true));
+                        break;
+                    case "STATS":
+                        output.println(statsCommand());
+                        break;
+                    case "QUIT":
+                        output.println("BYE");
+                        return;
+                    case "SHUTDOWN":
+                        output.println("OK shutting down");
+                        shutdown();
+                        return;
+                    default:
+                        output.println("ERROR unknown command " + words[0]);
+                        break;
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            //The client hung up.
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String submitCommand(String argument) throws InterruptedException
+    {
+        boolean rotated = false;
+        if (argument.startsWith("-r ") || argument.startsWith("-r\t"))
+        {
+            rotated = true;
+            argument = argument.substring(3).trim();
+        }
+        if (argument.isEmpty())
+        {
+            return "ERROR SUBMIT needs a PDF path";
+        }
+        if (!running)
+        {
+            return "ERROR shutting down";
+        }
+        Ticket ticket = submit(argument, rotated, false);
+        return ticket == null ? "BUSY" : "OK " + ticket.id;
+    }
+
+    private String statusCommand(String argument, boolean wait)
+            throws InterruptedException
+    {
+        Ticket ticket;
+        try
+        {
+            ticket = getTicket(Long.parseLong(argument.trim()));
+        }
+        catch (NumberFormatException ex)
+        {
+            return "ERROR bad job id " + argument;
+        }
+        if (ticket == null)
+        {
+            return "ERROR no job " + argument;
+        }
+        if (wait)
+        {
+            ticket.finished.await();
+        }
+        return ticket.describe();
+    }
+
+    private String statsCommand()
+    {
+        int[] counts = new int[State.values().length];
+        synchronized (tickets)
+        {
+            for (Ticket ticket : tickets.values())
+            {
+                counts[ticket.state.ordinal()]++;
+            }
+        }
+        StringBuilder stats = new StringBuilder("OK");
+        for (State state : State.values())
+        {
+            stats.append(' ').append(state).append('=')
+                 .append(counts[state.ordinal()]);
+        }
+        return stats.append(" waiting=").append(pool.getQueue().size())
+                    .toString();
+    }
+
+    /**
+     * Take job files from the spool directory until the watcher is closed.
+     * Job files that were there before the daemon started are taken first.
+     *
+     * @param spool is the spool directory.
+     */
+    private void watch(Path spool)
+    {
+        try
+        {
+            takeJobFiles(spool);
+            while (running)
+            {
+                WatchKey key = watcher.take();
+                //Whatever the events were, take every job file there is.
+                key.pollEvents();
+                takeJobFiles(spool);
+                if (!key.reset())
+                {
+                    System.err.println("Spool directory " + spool
+                                       + " is gone");
+                    return;
+                }
+            }
+        }
+        catch (ClosedWatchServiceException ex)
+        {
+            //The watcher was closed by shutdown.
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue the airports of every job file in the spool directory, waiting
+     * for room in the queue.
+     *
+     * @param spool is the spool directory.
+     */
+    private void takeJobFiles(Path spool) throws InterruptedException
+    {
+        ArrayList<Path> job_files = new ArrayList<>();
+        try (DirectoryStream<Path> entries =
+                Files.newDirectoryStream(spool, "*" + JOB_EXTENSION))
+        {
+            for (Path entry : entries)
+            {
+                job_files.add(entry);
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Error reading spool directory " + spool
+                               + ": " + ex.getMessage());
+            return;
+        }
+
+        for (Path job_file : job_files)
+        {
+            String name = job_file.getFileName().toString();
+            name = name.substring(0, name.length() - JOB_EXTENSION.length());
+            Path taken = job_file.resolveSibling(name + TAKEN_EXTENSION);
+            List<String> lines;
+            try
+            {
+                //Renaming first means no other daemon takes it too.
+                Files.move(job_file, taken, StandardCopyOption.ATOMIC_MOVE);
+                lines = Files.readAllLines(taken, StandardCharsets.UTF_8);
+            }
+            catch (IOException ex)
+            {
+                continue;
+            }
+
+            SpoolFile spool_file = new SpoolFile(
+                    job_file.resolveSibling(name + STATUS_EXTENSION)
+            );
+            for (String line : lines)
+            {
+                line = line.trim();
+                boolean rotated = line.startsWith("-r ");
+                if (rotated)
+                {
+                    line = line.substring(3).trim();
+                }
+                if (line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+                Path pdf = spool.resolve(line).normalize();
+                spool_file.expect();
+                spool_file.add(submit(pdf.toString(), rotated, true,
+                                      spool_file));
+            }
+            spool_file.allSubmitted();
+        }
+    }
+
+    private void startThread(String name, Runnable task)
+    {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The state of a job.
+     */
+    public enum State
+    {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * A job that was given to the daemon, with its id and state.
+     */
+    public static class Ticket
+    {
+        private final long id;
+        private final AirportJob job;
+        private final SpoolFile spool_file;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile State state = State.QUEUED;
+
+        private Ticket(long id, AirportJob job, SpoolFile spool_file)
+        {
+            this.id = id;
+            this.job = job;
+            this.spool_file = spool_file;
+        }
+
+        /**
+         * @return the id of the job.
+         */
+        public long getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return the airport, with its results once it is finished.
+         */
+        public AirportJob getJob()
+        {
+            return job;
+        }
+
+        /**
+         * @return the state of the job.
+         */
+        public State getState()
+        {
+            return state;
+        }
+
+        /**
+         * @return true if the job is done or failed.
+         */
+        public boolean isFinished()
+        {
+            return state == State.DONE || state == State.FAILED;
+        }
+
+        /**
+         * Describe the job in one line: its id, state, and PDF, and then the
+         * XML and KML files and time once it is done, or the error if it
+         * failed.
+         *
+         * @return the description.
+         */
+        public String describe()
+        {
+            String line = id + " " + state + " " + job.getFilePath();
+            long millis = job.getElapsedNanos() / 1000000;
+            if (state == State.DONE)
+            {
+                line += " " + job.getXmlPath() + " " + job.getKmlPath()
+                        + " " + millis + "ms";
+            }
+            else if (state == State.FAILED)
+            {
+                Throwable error = job.getError();
+                line += " " + (error == null
+                               ? "no output was written"
+                               : error.getClass().getSimpleName() + ": "
+                                 + error.getMessage());
+            }
+            return line;
+        }
+    }
+
+    /**
+     * The airports of one spool job file.  When the last of them finishes,
+     * their states are written to the job's status file.
+     */
+    private static class SpoolFile
+    {
+        private final Path status_file;
+        private final ArrayList<Ticket> tickets = new ArrayList<>();
+
+        //The airports that haven't finished, plus one until all are queued.
+        private final AtomicInteger unfinished = new AtomicInteger(1);
+
+        SpoolFile(Path status_file)
+        {
+            this.status_file = status_file;
+        }
+
+        /* Count an airport before it is queued, since it can finish
+         * before it is added.
+         */
+        void expect()
+        {
+            unfinished.incrementAndGet();
+        }
+
+        void add(Ticket ticket)
+        {
+            if (ticket == null)
+            {
+                //It was never queued, so it won't finish.
+                finished();
+                return;
+            }
+            synchronized (this)
+            {
+                tickets.add(ticket);
+            }
+        }
+
+        void allSubmitted()
+        {
+            finished();
+        }
+
+        void finished()
+        {
+            if (unfinished.decrementAndGet() == 0)
+            {
+                writeStatus();
+            }
+        }
+
+        private synchronized void writeStatus()
+        {
+            Path temporary = status_file.resolveSibling(
+                    status_file.getFileName() + ".tmp"
+            );
+            try
+            {
+                try (Writer output = Files.newBufferedWriter(
+                        temporary, StandardCharsets.UTF_8))
+                {
+                    for (Ticket ticket : tickets)
+                    {
+                        output.write(ticket.describe() + "\n");
+                    }
+                }
+                Files.move(temporary, status_file,
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException ex)
+            {
+                System.err.println("Error writing " + status_file + ": "
+                                   + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Names the worker threads, so they can be told apart in a profile.
+     */
+    private static class NamedThreadFactory implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        NamedThreadFactory(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable task)
+        {
+            return new Thread(task, prefix + "-" + count.getAndIncrement());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package faa_ocr.Controller;
+
+import faa_ocr.metrics.AirportMetrics;
+
+/**
+ * One airport diagram PDF to be processed, along with the results of
+ * processing it.
+ *
+ * @author Kevin Dittmar
+ */
+public class AirportJob
+{
+    private final String pdf_file_path;
+    private final boolean rotated;
+
+    private String airport_name;
+    private String xml_path;
+    private String kml_path;
+    private Throwable error;
+    private long elapsed_nanos;
+    private AirportMetrics metrics;
+    private boolean reused;
+
+    /**
+     * Make a job for the given airport diagram.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @param rotated is true if the diagram is a rotated landscape diagram.
+     */
+    public AirportJob(String pdf_file_path, boolean rotated)
+    {
+        this.pdf_file_path = pdf_file_path;
+        this.rotated = rotated;
+    }
+
+    /**
+     * Get the path to the airport diagram PDF.
+     *
+     * @return the airport diagram file path.
+     */
+    public String getFilePath()
+    {
+        return pdf_file_path;
+    }
+
+    /**
+     * Determine whether the diagram is a rotated landscape diagram.
+     *
+     * @return true if the diagram is rotated.
+     */
+    public boolean isRotated()
+    {
+        return rotated;
+    }
+
+    /**
+     * Get the name of the airport, which is only known once the text of the
+     * diagram has been parsed.
+     *
+     * @return the name of the airport, or null if it isn't known.
+     */
+    public String getAirportName()
+    {
+        return airport_name;
+    }
+
+    /**
+     * Get the path of the XML file that was written for the airport.
+     *
+     * @return the XML file path, or null if it wasn't written.
+     */
+    public String getXmlPath()
+    {
+        return xml_path;
+    }
+
+    /**
+     * Get the path of the KML file that was written for the airport.
+     *
+     * @return the KML file path, or null if it wasn't written.
+     */
+    public String getKmlPath()
+    {
+        return kml_path;
+    }
+
+    /**
+     * Get the error that stopped this airport from being processed.
+     *
+     * @return the error, or null if the airport was processed.
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * Determine whether the airport was processed without an error.
+     *
+     * @return true if the XML and KML files were written.
+     */
+    public boolean succeeded()
+    {
+        return error == null && xml_path != null && kml_path != null;
+    }
+
+    /**
+     * Get how long processing the airport took.
+     *
+     * @return the processing time in nanoseconds.
+     */
+    public long getElapsedNanos()
+    {
+        return elapsed_nanos;
+    }
+
+    /**
+     * Get the timings and counts of every stage of processing the airport.
+     *
+     * @return the airport's metrics, or null if metrics were off.
+     */
+    public AirportMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Determine whether the airport's outputs were reused from an earlier
+     * run because its PDF hadn't changed.
+     *
+     * @return true if the outputs were reused.
+     */
+    public boolean isReused()
+    {
+        return reused;
+    }
+
+    /**
+     * Record the outputs of a processed airport.
+     *
+     * @param airport_name is the name of the airport.
+     * @param xml_path is the path of the XML file written.
+     * @param kml_path is the path of the KML file written.
+     */
+    void setResults(String airport_name, String xml_path, String kml_path)
+    {
+        this.airport_name = airport_name;
+        this.xml_path = xml_path;
+        this.kml_path = kml_path;
+    }
+
+    /**
+     * Record the error that stopped the airport from being processed.
+     *
+     * @param error is what went wrong.
+     */
+    void setError(Throwable error)
+    {
+        this.error = error;
+    }
+
+    /**
+     * Record how long processing the airport took.
+     *
+     * @param elapsed_nanos is the processing time in nanoseconds.
+     */
+    void setElapsedNanos(long elapsed_nanos)
+    {
+        this.elapsed_nanos = elapsed_nanos;
+    }
+
+    /**
+     * Record the metrics of processing the airport.
+     *
+     * @param metrics are the airport's metrics.
+     */
+    void setMetrics(AirportMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Record whether the airport's outputs were reused from an earlier run.
+     *
+     * @param reused is true if the outputs were reused.
+     */
+    void setReused(boolean reused)
+    {
+        this.reused = reused;
+    }
+}
@@ -0,0 +1,456 @@
+package faa_ocr.cache;
+
+import faa_ocr.image_parser.BinaryRaster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A cache on disk of the rasters rendered from airport diagrams and the
+ * text read from them, so a diagram that hasn't changed is never rendered
+ * or read twice, even across runs.
+ *
+ * Entries are found by a SHA-256 hash of the PDF's contents together with
+ * what was made from it, like the render settings of a raster or the tool
+ * that read a text.  A changed PDF gets new entries, and the old ones are
+ * left to be evicted.  Every entry is a file in a faa_ocr_cache directory
+ * inside the directory the cache is given, named for its key.  Using an
+ * entry touches its modification time, and when the entries grow past the
+ * size limit the least recently used ones are deleted.  Only files named
+ * like entries are counted or deleted, so nothing else in the directory is
+ * ever touched.
+ *
+ * Entries are written to a temporary file and then moved into place, so
+ * several airports can use the cache at the same time.
+ *
+ * @author Kevin Dittmar
+ */
+public class DiagramCache
+{
+    //The start of every raster entry, then its format version.
+    private static final int RASTER_MAGIC = 0x46414152;
+    private static final int RASTER_VERSION = 1;
+
+    private static final String RASTER_EXTENSION = ".raster";
+    private static final String TEXT_EXTENSION = ".txt";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    //The directory the entries are kept in, inside the cache's directory.
+    public static final String SUBDIRECTORY_NAME = "faa_ocr_cache";
+
+    //The names of entry files: a SHA-256 key in hex and an extension.
+    private static final Pattern ENTRY_NAME = Pattern.compile(
+            "[0-9a-f]{64}(" + Pattern.quote(RASTER_EXTENSION) + "|"
+            + Pattern.quote(TEXT_EXTENSION) + ")"
+    );
+
+    //Where the cache is kept and how large it gets, unless told otherwise.
+    public static final File DEFAULT_DIRECTORY = new File(
+            System.getProperty("java.io.tmpdir")
+    );
+    public static final long DEFAULT_MAX_MEGABYTES = 256;
+
+    //The cache that the pipeline uses, or null if caching is off.
+    private static volatile DiagramCache shared_cache = null;
+
+    private final File directory;
+    private final long max_bytes;
+
+    /* The size of the entries in total, kept up to date as entries are
+     * stored so the directory is only listed when it may be too large.
+     */
+    private long total_bytes;
+
+    /**
+     * Make a cache that keeps its entries in a faa_ocr_cache directory
+     * inside the given directory.
+     *
+     * @param directory is where the cache is kept.  The faa_ocr_cache
+     * directory is made in it if it doesn't exist.
+     * @param max_bytes is how large the entries can get in total before the
+     * least recently used ones are deleted.
+     */
+    public DiagramCache(File directory, long max_bytes)
+    {
+        this.directory = new File(directory, SUBDIRECTORY_NAME);
+        this.max_bytes = max_bytes;
+        if (!this.directory.isDirectory() && !this.directory.mkdirs())
+        {
+            throw new IllegalArgumentException(
+                    "Can't make cache directory " + this.directory
+            );
+        }
+        total_bytes = sumEntries(listEntries());
+    }
+
+    /**
+     * Choose the cache that the pipeline uses.
+     *
+     * @param cache is the cache, or null to turn caching off.
+     */
+    public static void setCache(DiagramCache cache)
+    {
+        shared_cache = cache;
+    }
+
+    /**
+     * @return the cache that the pipeline uses, or null if caching is off.
+     */
+    public static DiagramCache getCache()
+    {
+        return shared_cache;
+    }
+
+    /**
+     * @return the faa_ocr_cache directory the entries are kept in.
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Get the key of the entry for something made from a PDF.
+     *
+     * @param pdf_file_path is the path to the PDF.
+     * @param settings describes what was made from the PDF and how, so that
+     * different things made from the same PDF have different keys.
+     * @return the key, or null if the PDF couldn't be read.
+     */
+    public String getKey(String pdf_file_path, String settings)
+    {
+        try
+        {
+            return hashFile(pdf_file_path, settings);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DiagramCache.class.getName()).log(
+                    Level.WARNING, null, ex
+            );
+            return null;
+        }
+    }
+
+    /**
+     * Hash the contents of a file together with settings.
+     *
+     * @param file_path is the path to the file.
+     * @param settings are hashed after the contents of the file.
+     * @return the SHA-256 hash in hex.
+     * @throws IOException if the file couldn't be read.
+     */
+    public static String hashFile(String file_path, String settings)
+            throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            //Every JVM has SHA-256.
+            throw new IllegalStateException(ex);
+        }
+        try (InputStream input = new FileInputStream(file_path))
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = input.read(buffer)) >= 0)
+            {
+                digest.update(buffer, 0, count);
+            }
+        }
+        digest.update((byte) 0);
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Get rasters that were stored with storeRasters.
+     *
+     * @param key is the key of the entry.
+     * @return the rasters, or null if there is no such entry.
+     */
+    public BinaryRaster[] loadRasters(String key)
+    {
+        File file = getEntryFile(key, RASTER_EXTENSION);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new InflaterInputStream(
+                        new FileInputStream(file)))))
+        {
+            if (input.readInt() != RASTER_MAGIC
+                || input.readInt() != RASTER_VERSION)
+            {
+                return null;
+            }
+            BinaryRaster[] rasters = new BinaryRaster[input.readInt()];
+            for (int i = 0; i < rasters.length; i++)
+            {
+                int width = input.readInt();
+                int height = input.readInt();
+                long[] words = new long[input.readInt()];
+                for (int k = 0; k < words.length; k++)
+                {
+                    words[k] = input.readLong();
+                }
+                rasters[i] = new BinaryRaster(width, height, words);
+            }
+            touch(file);
+            return rasters;
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            //A broken entry is just a miss, and it will be written again.
+            Logger.getLogger(DiagramCache.class.getName()).log(
+                    Level.WARNING, "Bad cache entry " + file, ex
+            );
+            return null;
+        }
+    }
+
+    /**
+     * Store rasters.  Each raster is kept as its packed bits, deflated.
+     *
+     * @param key is the key of the entry.
+     * @param rasters are the rasters to store.
+     */
+    public void storeRasters(String key, BinaryRaster... rasters)
+    {
+        File temporary = getTemporaryFile(key);
+        try
+        {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new DeflaterOutputStream(
+                            Files.newOutputStream(temporary.toPath())))))
+            {
+                output.writeInt(RASTER_MAGIC);
+                output.writeInt(RASTER_VERSION);
+                output.writeInt(rasters.length);
+                for (BinaryRaster raster : rasters)
+                {
+                    long[] words = raster.getWords();
+                    output.writeInt(raster.getWidth());
+                    output.writeInt(raster.getHeight());
+                    output.writeInt(words.length);
+                    for (long word : words)
+                    {
+                        output.writeLong(word);
+                    }
+                }
+            }
+            commit(temporary, getEntryFile(key, RASTER_EXTENSION));
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DiagramCache.class.getName()).log(
+                    Level.WARNING, null, ex
+            );
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Get text that was stored with storeText.
+     *
+     * @param key is the key of the entry.
+     * @return the text, or null if there is no such entry.
+     */
+    public String loadText(String key)
+    {
+        File file = getEntryFile(key, TEXT_EXTENSION);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        try
+        {
+            String text = new String(Files.readAllBytes(file.toPath()),
+                                     StandardCharsets.UTF_8);
+            touch(file);
+            return text;
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DiagramCache.class.getName()).log(
+                    Level.WARNING, "Bad cache entry " + file, ex
+            );
+            return null;
+        }
+    }
+
+    /**
+     * Store text.
+     *
+     * @param key is the key of the entry.
+     * @param text is the text to store.
+     */
+    public void storeText(String key, String text)
+    {
+        File temporary = getTemporaryFile(key);
+        try
+        {
+            Files.write(temporary.toPath(),
+                        text.getBytes(StandardCharsets.UTF_8));
+            commit(temporary, getEntryFile(key, TEXT_EXTENSION));
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(DiagramCache.class.getName()).log(
+                    Level.WARNING, null, ex
+            );
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Get a file in the cache directory that a tool can write its output to
+     * before it is stored, instead of writing it next to the PDF.
+     *
+     * @param key is the key of the entry the output is for.
+     * @return the temporary file, which the caller deletes.
+     */
+    public File getTemporaryFile(String key)
+    {
+        return new File(directory, key + "-" + Thread.currentThread().getId()
+                                   + TEMPORARY_EXTENSION);
+    }
+
+    private File getEntryFile(String key, String extension)
+    {
+        return new File(directory, key + extension);
+    }
+
+    /**
+     * Move a finished entry into place and make room for it.
+     *
+     * @param temporary is the file the entry was written to.
+     * @param file is the entry's file.
+     */
+    private synchronized void commit(File temporary, File file)
+            throws IOException
+    {
+        long replaced_bytes = file.length();
+        Files.move(temporary.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        total_bytes += file.length() - replaced_bytes;
+        if (total_bytes > max_bytes)
+        {
+            evict();
+        }
+    }
+
+    //Mark an entry as used now, which is what the LRU eviction goes by.
+    private static void touch(File file)
+    {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Delete the least recently used entries until the entries fit in the
+     * size limit.  The directory is listed again, since other runs may
+     * share it.
+     */
+    private void evict()
+    {
+        File[] entries = listEntries();
+        total_bytes = sumEntries(entries);
+        if (total_bytes <= max_bytes)
+        {
+            return;
+        }
+
+        final long[] last_used = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++)
+        {
+            last_used[i] = entries[i].lastModified();
+            order[i] = i;
+        }
+
+        //Oldest first
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer first, Integer second)
+            {
+                return Long.compare(last_used[first], last_used[second]);
+            }
+        });
+        for (int i = 0; i < order.length && total_bytes > max_bytes; i++)
+        {
+            File entry = entries[order[i]];
+            long length = entry.length();
+            if (entry.delete())
+            {
+                total_bytes -= length;
+            }
+        }
+    }
+
+    /**
+     * List the entries in the cache directory.  Temporary files that are
+     * still being written, and anything else that isn't named like an
+     * entry, are left out.
+     *
+     * @return the entry files.
+     */
+    private File[] listEntries()
+    {
+        File[] entries = directory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return ENTRY_NAME.matcher(name).matches();
+            }
+        });
+        return entries == null ? new File[0] : entries;
+    }
+
+    private static long sumEntries(File[] entries)
+    {
+        long bytes = 0;
+        for (File entry : entries)
+        {
+            bytes += entry.length();
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,335 @@
+package faa_ocr.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+
+/**
+ * A record of the XML and KML files written for every airport diagram, by
+ * a hash of the diagram PDF's contents, so that a new chart cycle only
+ * processes the diagrams that changed.  A diagram whose hash is in the
+ * manifest gets the files that were written for it before, hard linked to
+ * its own output paths, or copied if they can't be linked.  Linking is safe
+ * because the XML and KML writers never write into an existing file; they
+ * write an OutputFile and move it over the old one, which leaves the other
+ * links alone.
+ *
+ * The manifest is a text file with a line for every airport: the hash,
+ * the XML path, the KML path, and the airport's name, separated by tabs.
+ * Airports are added to the end of the file as they finish, so a run that
+ * stops part way keeps what it did, and a later line for the same hash
+ * replaces an earlier one.  compact rewrites the file with one line for
+ * each hash.
+ *
+ * @author Kevin Dittmar
+ */
+public class OutputManifest
+{
+    private static final String HEADER = "# faa_ocr output manifest 1";
+
+    //Where the manifest is kept, unless told otherwise.
+    public static final File DEFAULT_FILE = new File("faa_ocr_manifest.tsv");
+
+    //The manifest that the pipeline uses, or null if incremental is off.
+    private static volatile OutputManifest shared_manifest = null;
+
+    private final File file;
+    private final LinkedHashMap<String, Entry> entries;
+    private Writer journal;
+
+    /**
+     * Open a manifest, reading the entries already in it.
+     *
+     * @param file is the manifest file.  It is made if it doesn't exist.
+     * @throws IOException if the file can't be read.
+     */
+    public OutputManifest(File file) throws IOException
+    {
+        this.file = file;
+        this.entries = new LinkedHashMap<>();
+        if (file.isFile())
+        {
+            read();
+        }
+    }
+
+    /**
+     * Choose the manifest that the pipeline uses.
+     *
+     * @param manifest is the manifest, or null to turn incremental
+     * processing off.
+     */
+    public static void setManifest(OutputManifest manifest)
+    {
+        shared_manifest = manifest;
+    }
+
+    /**
+     * @return the manifest that the pipeline uses, or null if incremental
+     * processing is off.
+     */
+    public static OutputManifest getManifest()
+    {
+        return shared_manifest;
+    }
+
+    /**
+     * Get the key of an airport diagram's outputs.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @param settings describes everything besides the PDF that changes
+     * the outputs, like the detector used and whether the KML is zipped.
+     * @return the key, or null if the PDF couldn't be read.
+     */
+    public String getKey(String pdf_file_path, String settings)
+    {
+        try
+        {
+            return DiagramCache.hashFile(pdf_file_path, settings);
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Find the outputs that were written for a diagram.
+     *
+     * @param key is the key of the diagram's outputs.
+     * @return the outputs, or null if none were written or they are gone.
+     */
+    public synchronized Entry find(String key)
+    {
+        Entry entry = key == null ? null : entries.get(key);
+        if (entry == null || !new File(entry.xml_path).isFile()
+            || !new File(entry.kml_path).isFile())
+        {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Put the outputs that were written before at a diagram's own output
+     * paths.  Outputs that are already there are left alone.
+     *
+     * @param entry are the outputs that were written before.
+     * @param xml_path is where the diagram's XML goes.
+     * @param kml_path is where the diagram's KML goes.
+     * @return true if the outputs are in place.
+     */
+    public boolean reuse(Entry entry, String xml_path, String kml_path)
+    {
+        try
+        {
+            place(entry.xml_path, xml_path);
+            place(entry.kml_path, kml_path);
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Hard link an earlier output to a new path, or copy it if it can't be
+     * linked, like across file systems.
+     */
+    private static void place(String source_path, String target_path)
+            throws IOException
+    {
+        Path source = Paths.get(source_path).toAbsolutePath();
+        Path target = Paths.get(target_path).toAbsolutePath();
+        if (Files.exists(target) && Files.isSameFile(source, target))
+        {
+            return;
+        }
+        Files.deleteIfExists(target);
+        try
+        {
+            Files.createLink(target, source);
+        }
+        catch (FileAlreadyExistsException ex)
+        {
+            //Another worker placed the same output first.
+            if (!Files.isSameFile(source, target))
+            {
+                throw ex;
+            }
+        }
+        catch (IOException | UnsupportedOperationException ex)
+        {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Record the outputs written for a diagram, adding them to the end of
+     * the manifest file right away.
+     *
+     * @param key is the key of the diagram's outputs.
+     * @param airport_name is the name of the airport.
+     * @param xml_path is the path of the XML file written.
+     * @param kml_path is the path of the KML file written.
+     */
+    public synchronized void record(String key, String airport_name,
+                                    String xml_path, String kml_path)
+    {
+        Entry entry = new Entry(key, clean(airport_name),
+                                clean(new File(xml_path).getAbsolutePath()),
+                                clean(new File(kml_path).getAbsolutePath()));
+        entries.remove(key);
+        entries.put(key, entry);
+        try
+        {
+            if (journal == null)
+            {
+                boolean is_new = !file.isFile() || file.length() == 0;
+                journal = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(file, true),
+                        StandardCharsets.UTF_8));
+                if (is_new)
+                {
+                    journal.write(HEADER + "\n");
+                }
+            }
+            writeEntry(journal, entry);
+            journal.flush();
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Couldn't update manifest " + file + ": "
+                               + ex.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite the manifest file with one line for each diagram, and close
+     * it.
+     *
+     * @throws IOException if the manifest can't be written.
+     */
+    public synchronized void compact() throws IOException
+    {
+        if (journal != null)
+        {
+            journal.close();
+            journal = null;
+        }
+        File temporary = new File(file.getAbsoluteFile().getParentFile(),
+                                  file.getName() + ".tmp");
+        try (Writer output = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(temporary), StandardCharsets.UTF_8)))
+        {
+            output.write(HEADER + "\n");
+            for (Entry entry : entries.values())
+            {
+                writeEntry(output, entry);
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the number of diagrams in the manifest.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    private void read() throws IOException
+    {
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = input.readLine()) != null)
+            {
+                String[] fields = line.split("\t", -1);
+                //Skip the header, and a last line cut off by a crash.
+                if (line.startsWith("#") || fields.length != 4)
+                {
+                    continue;
+                }
+                entries.remove(fields[0]);
+                entries.put(fields[0], new Entry(fields[0], fields[3],
+                                                 fields[1], fields[2]));
+            }
+        }
+    }
+
+    private static void writeEntry(Writer output, Entry entry)
+            throws IOException
+    {
+        output.write(entry.key + "\t" + entry.xml_path + "\t"
+                     + entry.kml_path + "\t" + entry.airport_name + "\n");
+    }
+
+    //Keep tabs and line breaks out of a field.
+    private static String clean(String field)
+    {
+        return field == null ? "" : field.trim().replaceAll("[\t\r\n]", " ");
+    }
+
+    /**
+     * The outputs that were written for one airport diagram.
+     */
+    public static class Entry
+    {
+        private final String key;
+        private final String airport_name;
+        private final String xml_path;
+        private final String kml_path;
+
+        private Entry(String key, String airport_name, String xml_path,
+                      String kml_path)
+        {
+            this.key = key;
+            this.airport_name = airport_name;
+            this.xml_path = xml_path;
+            this.kml_path = kml_path;
+        }
+
+        /**
+         * @return the name of the airport.
+         */
+        public String getAirportName()
+        {
+            return airport_name;
+        }
+
+        /**
+         * @return the path of the XML file that was written.
+         */
+        public String getXmlPath()
+        {
+            return xml_path;
+        }
+
+        /**
+         * @return the path of the KML file that was written.
+         */
+        public String getKmlPath()
+        {
+            return kml_path;
+        }
+    }
+}
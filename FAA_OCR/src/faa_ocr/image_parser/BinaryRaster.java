@@ -0,0 +1,649 @@
+package faa_ocr.image_parser;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.color.ColorSpace;
+
+/**
+ * A black and white version of an airport diagram that stores one bit per
+ * pixel. The black or white decision for every pixel is made once when the
+ * raster is built, so the image parsing code can ask about the same pixel
+ * many times without going back to the BufferedImage.
+ *
+ * Each row starts on a new long so that a row can be searched a word at a
+ * time.
+ *
+ * @author Kevin Dittmar
+ */
+public class BinaryRaster
+{
+    //A color channel has to be below this value for a pixel to be black.
+    private static final int BLACK_MAX_VALUE = 50;
+
+    /* Taxiways and aprons are filled with a light gray.  A pixel is pavement
+     * if its channels are about equal and their average is in this range.
+     */
+    private static final int PAVEMENT_MIN_VALUE = 176;
+    private static final int PAVEMENT_MAX_VALUE = 232;
+    private static final int PAVEMENT_MAX_SPREAD = 16;
+
+    //The thresholds above, for telling rasters made with others apart.
+    static final String THRESHOLDS = "black<" + BLACK_MAX_VALUE
+                                     + ",pavement=" + PAVEMENT_MIN_VALUE
+                                     + "-" + PAVEMENT_MAX_VALUE
+                                     + "/" + PAVEMENT_MAX_SPREAD;
+
+    private final int width;
+    private final int height;
+    private final int words_per_row;
+    private final long[] bits;
+
+    /**
+     * Make an all white raster of the given size.
+     *
+     * @param width is the width of the raster in pixels.
+     * @param height is the height of the raster in pixels.
+     */
+    public BinaryRaster(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.words_per_row = (width + 63) >>> 6;
+        this.bits = new long[words_per_row * height];
+    }
+
+    /**
+     * Make a raster of the given size from bits that were already packed,
+     * with each row starting on a new long.
+     *
+     * @param width is the width of the raster in pixels.
+     * @param height is the height of the raster in pixels.
+     * @param bits is the packed pixel data, which is used as is.
+     */
+    public BinaryRaster(int width, int height, long[] bits)
+    {
+        this.width = width;
+        this.height = height;
+        this.words_per_row = (width + 63) >>> 6;
+        if (bits.length != words_per_row * height)
+        {
+            throw new IllegalArgumentException(
+                    "Expected " + (words_per_row * height)
+                    + " words of pixel data, but got " + bits.length
+            );
+        }
+        this.bits = bits;
+    }
+
+    /**
+     * Build the binary raster of the given airport diagram image. Black
+     * pixels in the image become set bits in the raster.
+     *
+     * @param image is the airport diagram image.
+     * @return the binary raster of the image.
+     */
+    public static BinaryRaster fromImage(BufferedImage image)
+    {
+        BinaryRaster raster = new BinaryRaster(
+                image.getWidth(), image.getHeight()
+        );
+
+        /* Read straight from the DataBuffer for the image layouts that we
+         * get from ImageIO and PDFBox, and fall back on getRGB a row at a
+         * time for anything else.
+         */
+        if (!raster.fillFromIntBuffer(image)
+            && !raster.fillFromByteBuffer(image))
+        {
+            raster.fillFromRGB(image);
+        }
+        return raster;
+    }
+
+    /**
+     * Build a raster of the pavement in the given airport diagram image.
+     * The light gray pixels that fill the taxiways and aprons become set
+     * bits in the raster.  The runways are black, so they aren't in it.
+     *
+     * @param image is the airport diagram image.
+     * @return the pavement raster of the image.
+     */
+    public static BinaryRaster pavementFromImage(BufferedImage image)
+    {
+        BinaryRaster raster = new BinaryRaster(
+                image.getWidth(), image.getHeight()
+        );
+        int[] row = new int[raster.width];
+        for (int y = 0; y < raster.height; y++)
+        {
+            image.getRGB(0, y, raster.width, 1, row, 0, raster.width);
+            for (int x = 0; x < raster.width; x++)
+            {
+                if (isPavementColor(row[x]))
+                {
+                    raster.bits[y * raster.words_per_row + (x >>> 6)]
+                    |= 1L << x;
+                }
+            }
+        }
+        return raster;
+    }
+
+    /**
+     * Determine whether a packed RGB color is the light gray of pavement.
+     *
+     * @param rgb is the color in the default RGB color model.
+     * @return true if the color is pavement and false if it isn't.
+     */
+    public static boolean isPavementColor(int rgb)
+    {
+        final int red = (rgb >> 16) & 0xff;
+        final int green = (rgb >> 8) & 0xff;
+        final int blue = rgb & 0xff;
+
+        final int brightest = Math.max(red, Math.max(green, blue));
+        final int darkest = Math.min(red, Math.min(green, blue));
+        final int average = (red + green + blue) / 3;
+        return brightest - darkest <= PAVEMENT_MAX_SPREAD
+               && average >= PAVEMENT_MIN_VALUE
+               && average <= PAVEMENT_MAX_VALUE;
+    }
+
+    /**
+     * Determine whether a packed RGB color is dark enough to count as black.
+     *
+     * @param rgb is the color in the default RGB color model.
+     * @return true if the color is black and false if it isn't.
+     */
+    public static boolean isBlackColor(int rgb)
+    {
+        final int red = (rgb >> 16) & 0xff;
+        final int green = (rgb >> 8) & 0xff;
+        final int blue = rgb & 0xff;
+
+        return red < BLACK_MAX_VALUE
+               && green < BLACK_MAX_VALUE
+               && blue < BLACK_MAX_VALUE;
+    }
+
+    /**
+     * Get the width of the raster.
+     *
+     * @return the width in pixels.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Get the height of the raster.
+     *
+     * @return the height in pixels.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Determine whether the pixel at (x, y) is black. Pixels outside of the
+     * raster are white.
+     *
+     * @param x is the x coordinate of the pixel.
+     * @param y is the y coordinate of the pixel.
+     * @return true if the pixel is black and false if it isn't.
+     */
+    public boolean isBlack(int x, int y)
+    {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+        {
+            return false;
+        }
+        return (bits[y * words_per_row + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Set the color of the pixel at (x, y). Pixels outside of the raster are
+     * ignored.
+     *
+     * @param x is the x coordinate of the pixel.
+     * @param y is the y coordinate of the pixel.
+     * @param black is true if the pixel should be black and false if it
+     * should be white.
+     */
+    public void setBlack(int x, int y, boolean black)
+    {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+        {
+            return;
+        }
+        int index = y * words_per_row + (x >>> 6);
+        if (black)
+        {
+            bits[index] |= 1L << x;
+        }
+        else
+        {
+            bits[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Make the pixels from start_x up to but not including end_x in row y
+     * black, a word at a time.
+     *
+     * @param y is the row of the pixels.
+     * @param start_x is the x coordinate of the first pixel to set.
+     * @param end_x is the x coordinate just past the last pixel to set.
+     */
+    public void fillRun(int y, int start_x, int end_x)
+    {
+        start_x = Math.max(start_x, 0);
+        end_x = Math.min(end_x, width);
+        if (y < 0 || y >= height || start_x >= end_x)
+        {
+            return;
+        }
+        int row_start = y * words_per_row;
+        int first_word = start_x >>> 6;
+        int last_word = (end_x - 1) >>> 6;
+        long first_mask = -1L << start_x;
+        long last_mask = -1L >>> (63 - ((end_x - 1) & 63));
+        if (first_word == last_word)
+        {
+            bits[row_start + first_word] |= first_mask & last_mask;
+            return;
+        }
+        bits[row_start + first_word] |= first_mask;
+        for (int word = first_word + 1; word < last_word; word++)
+        {
+            bits[row_start + word] = -1L;
+        }
+        bits[row_start + last_word] |= last_mask;
+    }
+
+    /**
+     * Find the first black pixel in row y at or to the right of x.
+     *
+     * @param x is the x coordinate to start searching from.
+     * @param y is the row to search.
+     * @return the x coordinate of the black pixel, or -1 if there are no
+     * more black pixels in the row.
+     */
+    public int nextBlackInRow(int x, int y)
+    {
+        if (y < 0 || y >= height || x >= width)
+        {
+            return -1;
+        }
+        if (x < 0)
+        {
+            x = 0;
+        }
+        int row_start = y * words_per_row;
+        int word_index = x >>> 6;
+        long word = bits[row_start + word_index] & (-1L << x);
+        while (true)
+        {
+            //Bits past the width of the raster are never set.
+            if (word != 0)
+            {
+                return (word_index << 6) + Long.numberOfTrailingZeros(word);
+            }
+            word_index++;
+            if (word_index >= words_per_row)
+            {
+                return -1;
+            }
+            word = bits[row_start + word_index];
+        }
+    }
+
+    /**
+     * Count the black pixels in the raster.
+     *
+     * @return the number of black pixels.
+     */
+    public int countBlack()
+    {
+        int count = 0;
+        for (long word : bits)
+        {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Make a copy of the raster where every pixel next to a black pixel,
+     * on a side or a corner, is black too.  Black areas that are separated
+     * by a gap of one or two white pixels touch in the copy.
+     *
+     * @return the dilated copy of the raster.
+     */
+    public BinaryRaster dilate()
+    {
+        //First spread every row one pixel to the left and right.
+        long[] spread = new long[bits.length];
+        int last_word = words_per_row - 1;
+        for (int y = 0; y < height; y++)
+        {
+            int row_start = y * words_per_row;
+            for (int word = 0; word < words_per_row; word++)
+            {
+                long current = bits[row_start + word];
+                long spread_word = current | (current << 1) | (current >>> 1);
+
+                //Carry the pixels at the edges of the neighboring words.
+                if (word > 0)
+                {
+                    spread_word |= bits[row_start + word - 1] >>> 63;
+                }
+                if (word < last_word)
+                {
+                    spread_word |= bits[row_start + word + 1] << 63;
+                }
+                spread[row_start + word] = spread_word;
+            }
+
+            //Bits past the width of the raster are never set.
+            int extra_bits = (words_per_row << 6) - width;
+            if (extra_bits > 0)
+            {
+                spread[row_start + last_word] &= -1L >>> extra_bits;
+            }
+        }
+
+        //Then spread every row into the rows above and below it.
+        long[] dilated = new long[bits.length];
+        for (int y = 0; y < height; y++)
+        {
+            int row_start = y * words_per_row;
+            for (int word = 0; word < words_per_row; word++)
+            {
+                long dilated_word = spread[row_start + word];
+                if (y > 0)
+                {
+                    dilated_word |= spread[row_start - words_per_row + word];
+                }
+                if (y < height - 1)
+                {
+                    dilated_word |= spread[row_start + words_per_row + word];
+                }
+                dilated[row_start + word] = dilated_word;
+            }
+        }
+        return new BinaryRaster(width, height, dilated);
+    }
+
+    /**
+     * Make a copy of the raster where only the black pixels whose eight
+     * neighbors are all black stay black.  Lines one or two pixels wide
+     * disappear, and wider areas lose a pixel around their edges.
+     *
+     * @return the eroded copy of the raster.
+     */
+    public BinaryRaster erode()
+    {
+        //First keep the pixels whose left and right neighbors are black.
+        long[] narrowed = new long[bits.length];
+        int last_word = words_per_row - 1;
+        for (int y = 0; y < height; y++)
+        {
+            int row_start = y * words_per_row;
+            for (int word = 0; word < words_per_row; word++)
+            {
+                long current = bits[row_start + word];
+                long left = current << 1;
+                long right = current >>> 1;
+
+                /* Carry the pixels at the edges of the neighboring words.
+                 * Pixels outside of the raster are white.
+                 */
+                if (word > 0)
+                {
+                    left |= bits[row_start + word - 1] >>> 63;
+                }
+                if (word < last_word)
+                {
+                    right |= bits[row_start + word + 1] << 63;
+                }
+                narrowed[row_start + word] = current & left & right;
+            }
+        }
+
+        //Then keep the pixels whose rows above and below kept them too.
+        long[] eroded = new long[bits.length];
+        for (int y = 1; y < height - 1; y++)
+        {
+            int row_start = y * words_per_row;
+            for (int word = 0; word < words_per_row; word++)
+            {
+                eroded[row_start + word]
+                = narrowed[row_start - words_per_row + word]
+                  & narrowed[row_start + word]
+                  & narrowed[row_start + words_per_row + word];
+            }
+        }
+        return new BinaryRaster(width, height, eroded);
+    }
+
+    /**
+     * Make a copy of the raster that keeps only the black pixels that are
+     * also black in the other raster.
+     *
+     * @param other is a raster of the same size.
+     * @return the pixels that are black in both rasters.
+     */
+    public BinaryRaster and(BinaryRaster other)
+    {
+        if (other.width != width || other.height != height)
+        {
+            throw new IllegalArgumentException(
+                    "Expected a " + width + "x" + height + " raster, but got "
+                    + other.width + "x" + other.height
+            );
+        }
+        long[] both = new long[bits.length];
+        for (int i = 0; i < bits.length; i++)
+        {
+            both[i] = bits[i] & other.bits[i];
+        }
+        return new BinaryRaster(width, height, both);
+    }
+
+    /**
+     * Make a raster with the pixels that are black in this raster, in
+     * another raster of the same size, or in both.
+     *
+     * @param other is the raster to combine with this one.
+     * @return a new raster with the pixels that are black in either one.
+     */
+    public BinaryRaster or(BinaryRaster other)
+    {
+        if (other.width != width || other.height != height)
+        {
+            throw new IllegalArgumentException(
+                    "Expected a " + width + "x" + height + " raster, but got "
+                    + other.width + "x" + other.height
+            );
+        }
+        long[] either = new long[bits.length];
+        for (int i = 0; i < bits.length; i++)
+        {
+            either[i] = bits[i] | other.bits[i];
+        }
+        return new BinaryRaster(width, height, either);
+    }
+
+    /**
+     * Get the packed pixel data. Each row starts on a new long, and bit
+     * (x mod 64) of word (x / 64) in a row is the pixel at x.
+     *
+     * @return the packed pixel data backing this raster.
+     */
+    public long[] getWords()
+    {
+        return bits;
+    }
+
+    /**
+     * Get the number of longs used for each row.
+     *
+     * @return the number of longs in a row.
+     */
+    public int getWordsPerRow()
+    {
+        return words_per_row;
+    }
+
+    /**
+     * Fill the raster from an image whose pixels are packed into ints, such
+     * as TYPE_INT_RGB.
+     *
+     * @param image is the airport diagram image.
+     * @return true if the image was read, false if it doesn't use an int
+     * DataBuffer with the default RGB masks.
+     */
+    private boolean fillFromIntBuffer(BufferedImage image)
+    {
+        Raster image_raster = image.getRaster();
+        ColorModel color_model = image.getColorModel();
+        if (!(image_raster.getDataBuffer() instanceof DataBufferInt)
+            || !(image_raster.getSampleModel()
+                 instanceof SinglePixelPackedSampleModel)
+            || !(color_model instanceof DirectColorModel)
+            || color_model.isAlphaPremultiplied()
+            || !color_model.getColorSpace().isCS_sRGB())
+        {
+            return false;
+        }
+        DirectColorModel direct = (DirectColorModel) color_model;
+        if (direct.getRedMask() != 0xff0000
+            || direct.getGreenMask() != 0xff00
+            || direct.getBlueMask() != 0xff)
+        {
+            return false;
+        }
+
+        SinglePixelPackedSampleModel sample_model
+        = (SinglePixelPackedSampleModel) image_raster.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) image_raster.getDataBuffer();
+        int[] data = buffer.getData();
+        int scanline = sample_model.getScanlineStride();
+        int offset = buffer.getOffset()
+                     - image_raster.getSampleModelTranslateY() * scanline
+                     - image_raster.getSampleModelTranslateX();
+
+        for (int y = 0; y < height; y++)
+        {
+            int row = offset + y * scanline;
+            for (int x = 0; x < width; x++)
+            {
+                if (isBlackColor(data[row + x]))
+                {
+                    bits[y * words_per_row + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fill the raster from an image whose color channels are stored as
+     * interleaved bytes, such as the TYPE_3BYTE_BGR images that ImageIO
+     * makes from JPEG files.
+     *
+     * @param image is the airport diagram image.
+     * @return true if the image was read, false if it doesn't use a byte
+     * DataBuffer with sRGB color channels.
+     */
+    private boolean fillFromByteBuffer(BufferedImage image)
+    {
+        Raster image_raster = image.getRaster();
+        ColorModel color_model = image.getColorModel();
+        if (!(image_raster.getDataBuffer() instanceof DataBufferByte)
+            || !(image_raster.getSampleModel() instanceof ComponentSampleModel)
+            || !(color_model instanceof ComponentColorModel)
+            || color_model.isAlphaPremultiplied()
+            || color_model.getColorSpace().getType() != ColorSpace.TYPE_RGB
+            || !color_model.getColorSpace().isCS_sRGB()
+            || image_raster.getDataBuffer().getNumBanks() != 1
+            || image_raster.getNumBands() < 3)
+        {
+            return false;
+        }
+        for (int bits_per_component : color_model.getComponentSize())
+        {
+            if (bits_per_component != 8)
+            {
+                return false;
+            }
+        }
+
+        ComponentSampleModel sample_model
+        = (ComponentSampleModel) image_raster.getSampleModel();
+        if (sample_model.getDataType() != DataBuffer.TYPE_BYTE)
+        {
+            return false;
+        }
+        DataBufferByte buffer = (DataBufferByte) image_raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        int pixel_stride = sample_model.getPixelStride();
+        int scanline = sample_model.getScanlineStride();
+        int[] band_offsets = sample_model.getBandOffsets();
+        int offset = buffer.getOffset()
+                     - image_raster.getSampleModelTranslateY() * scanline
+                     - image_raster.getSampleModelTranslateX() * pixel_stride;
+        int red_offset = band_offsets[0];
+        int green_offset = band_offsets[1];
+        int blue_offset = band_offsets[2];
+
+        for (int y = 0; y < height; y++)
+        {
+            int pixel = offset + y * scanline;
+            for (int x = 0; x < width; x++)
+            {
+                if ((data[pixel + red_offset] & 0xff) < BLACK_MAX_VALUE
+                    && (data[pixel + green_offset] & 0xff) < BLACK_MAX_VALUE
+                    && (data[pixel + blue_offset] & 0xff) < BLACK_MAX_VALUE)
+                {
+                    bits[y * words_per_row + (x >>> 6)] |= 1L << x;
+                }
+                pixel += pixel_stride;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fill the raster from any kind of image by converting it to the
+     * default RGB color model one row at a time.
+     *
+     * @param image is the airport diagram image.
+     */
+    private void fillFromRGB(BufferedImage image)
+    {
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++)
+        {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++)
+            {
+                if (isBlackColor(row[x]))
+                {
+                    bits[y * words_per_row + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package faa_ocr.image_parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Labels the connected groups of black pixels in a binary raster.  Two black
+ * pixels are connected if they touch on a side or a corner.
+ *
+ * The raster is read one run of black pixels at a time instead of one pixel
+ * at a time.  The first pass gives every run a label and joins it to the
+ * runs that it touches in the row above with a union-find over a plain int
+ * array.  The second pass gives every run the label of its group and adds it
+ * to that group's measurements.  Both passes take time proportional to the
+ * number of runs, so the cost depends on the size of the diagram and not on
+ * how its strokes cross.
+ *
+ * @author Kevin Dittmar
+ */
+public class ComponentLabeler
+{
+    private final BinaryRaster raster;
+
+    //The row, first x, and one-past-last x of every run, in raster order.
+    private int[] run_y;
+    private int[] run_start;
+    private int[] run_end;
+    private int run_count;
+
+    /* The union-find parent of every run.  A run is the root of its group
+     * when it is its own parent.
+     */
+    private int[] parent;
+
+    //The index in components of the group that each run belongs to.
+    private int[] run_component;
+
+    private final ArrayList<ConnectedComponent> components;
+
+    /**
+     * Label the connected components of the given raster.
+     *
+     * @param raster is the binary raster of the airport diagram.
+     */
+    public ComponentLabeler(BinaryRaster raster)
+    {
+        this.raster = raster;
+        int initial_runs = Math.max(16, raster.getHeight() * 4);
+        run_y = new int[initial_runs];
+        run_start = new int[initial_runs];
+        run_end = new int[initial_runs];
+        parent = new int[initial_runs];
+        components = new ArrayList<>();
+
+        joinRuns();
+        measureComponents();
+    }
+
+    /**
+     * Get every connected component in the raster.
+     *
+     * @return the components in the order of their first pixel, going
+     * across each row from the top of the raster.
+     */
+    public ArrayList<ConnectedComponent> getComponents()
+    {
+        return components;
+    }
+
+    /**
+     * Get the components whose bounding box diagonal is at least the given
+     * length.  Since nothing straight inside a component can be longer than
+     * its bounding box diagonal, these are the only components that can
+     * hold a line of that length.
+     *
+     * @param min_length is the length in pixels of the shortest line that
+     * is wanted.
+     * @return the components that are long enough, in label order.
+     */
+    public ArrayList<ConnectedComponent> getElongatedComponents(
+            double min_length)
+    {
+        ArrayList<ConnectedComponent> elongated = new ArrayList<>();
+        for (ConnectedComponent component : components)
+        {
+            if (component.getDiagonalLength() >= min_length)
+            {
+                elongated.add(component);
+            }
+        }
+        return elongated;
+    }
+
+    /**
+     * Make a raster the size of the labeled one that holds only the pixels
+     * of the given components.
+     *
+     * @param selected is the list of components to keep.
+     * @return a new raster with the pixels of the selected components set.
+     */
+    public BinaryRaster makeMask(List<ConnectedComponent> selected)
+    {
+        boolean[] keep = new boolean[components.size()];
+        for (ConnectedComponent component : selected)
+        {
+            keep[component.getLabel()] = true;
+        }
+
+        BinaryRaster mask = new BinaryRaster(
+                raster.getWidth(), raster.getHeight()
+        );
+        for (int run = 0; run < run_count; run++)
+        {
+            if (keep[run_component[run]])
+            {
+                mask.fillRun(run_y[run], run_start[run], run_end[run]);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * First pass: find every run of black pixels and join it to the runs in
+     * the row above that it touches.
+     */
+    private void joinRuns()
+    {
+        long[] words = raster.getWords();
+        int words_per_row = raster.getWordsPerRow();
+
+        //The runs of the row above are the ones in this range.
+        int previous_row_first = 0;
+        int previous_row_end = 0;
+
+        for (int y = 0; y < raster.getHeight(); y++)
+        {
+            int row_first = run_count;
+            int above = previous_row_first;
+            int row_start = y * words_per_row;
+
+            /* A run starts where a black pixel follows a white one and ends
+             * where a white pixel follows a black one, so the runs can be
+             * read a word at a time from the bits that differ from the bit
+             * before them.
+             */
+            long previous_bit = 0;
+            int start = -1;
+            for (int word_index = 0; word_index < words_per_row; word_index++)
+            {
+                long word = words[row_start + word_index];
+                long edges = word ^ ((word << 1) | previous_bit);
+                previous_bit = word >>> 63;
+                while (edges != 0)
+                {
+                    int x = (word_index << 6)
+                            + Long.numberOfTrailingZeros(edges);
+                    edges &= edges - 1;
+                    if (start < 0)
+                    {
+                        start = x;
+                    }
+                    else
+                    {
+                        above = joinRun(y, start, x, above, previous_row_end);
+                        start = -1;
+                    }
+                }
+            }
+
+            //A run that goes to the end of the row ends at the width.
+            if (start >= 0)
+            {
+                joinRun(y, start, raster.getWidth(), above, previous_row_end);
+            }
+
+            previous_row_first = row_first;
+            previous_row_end = run_count;
+        }
+    }
+
+    /**
+     * Record a run of black pixels and join it to the runs in the row above
+     * that it touches.
+     *
+     * @param y is the row of the run.
+     * @param start is the x coordinate of the first pixel in the run.
+     * @param end is the x coordinate just past the last pixel in the run.
+     * @param above is the first run in the row above that might touch this
+     * run.
+     * @param previous_row_end is the index just past the last run in the
+     * row above.
+     * @return the first run in the row above that might touch the next run
+     * in this row.
+     */
+    private int joinRun(int y, int start, int end, int above,
+                        int previous_row_end)
+    {
+        int run = addRun(y, start, end);
+
+        /* Skip the runs above that end before this run's diagonal neighbor
+         * on the left.  Since the runs in both rows are in order, they
+         * can't touch any later run in this row either.
+         */
+        while (above < previous_row_end && run_end[above] < start)
+        {
+            above++;
+        }
+
+        /* Join every run above that starts at or before this run's diagonal
+         * neighbor on the right.
+         */
+        int touching = above;
+        if (touching < previous_row_end && run_start[touching] <= end)
+        {
+            //The new run is a group of its own, so it can join right away.
+            parent[run] = find(touching);
+            touching++;
+        }
+        while (touching < previous_row_end && run_start[touching] <= end)
+        {
+            union(run, touching);
+            touching++;
+        }
+
+        /* The last run joined may reach past this run and touch the next
+         * run in this row too, so don't skip past it.
+         */
+        if (touching > above)
+        {
+            above = touching - 1;
+        }
+        return above;
+    }
+
+    /**
+     * Second pass: give every run the label of its group and measure the
+     * groups.  Labels are given out in the order that the groups are first
+     * seen.
+     */
+    private void measureComponents()
+    {
+        run_component = new int[run_count];
+        int[] root_component = new int[run_count];
+        Arrays.fill(root_component, -1);
+
+        for (int run = 0; run < run_count; run++)
+        {
+            int root = find(run);
+            if (root_component[root] < 0)
+            {
+                root_component[root] = components.size();
+                components.add(new ConnectedComponent(components.size()));
+            }
+            run_component[run] = root_component[root];
+            components.get(run_component[run]).addRun(
+                    run_y[run], run_start[run], run_end[run]
+            );
+        }
+    }
+
+    /**
+     * Record a run of black pixels as a group of its own.
+     *
+     * @param y is the row of the run.
+     * @param start is the x coordinate of the first pixel in the run.
+     * @param end is the x coordinate just past the last pixel in the run.
+     * @return the index of the new run.
+     */
+    private int addRun(int y, int start, int end)
+    {
+        if (run_count == parent.length)
+        {
+            int new_length = parent.length * 2;
+            run_y = Arrays.copyOf(run_y, new_length);
+            run_start = Arrays.copyOf(run_start, new_length);
+            run_end = Arrays.copyOf(run_end, new_length);
+            parent = Arrays.copyOf(parent, new_length);
+        }
+        run_y[run_count] = y;
+        run_start[run_count] = start;
+        run_end[run_count] = end;
+        parent[run_count] = run_count;
+        return run_count++;
+    }
+
+    /**
+     * Find the root of a run's group, halving the path to the root along
+     * the way so that later finds are quicker.
+     *
+     * @param run is the index of the run.
+     * @return the index of the root run of the group.
+     */
+    private int find(int run)
+    {
+        while (parent[run] != run)
+        {
+            parent[run] = parent[parent[run]];
+            run = parent[run];
+        }
+        return run;
+    }
+
+    /**
+     * Join the groups of two runs.  The root with the smaller index becomes
+     * the root of both, so a group's root is always its first run.
+     *
+     * @param first is the index of one run.
+     * @param second is the index of the other run.
+     */
+    private void union(int first, int second)
+    {
+        int first_root = find(first);
+        int second_root = find(second);
+        if (first_root < second_root)
+        {
+            parent[second_root] = first_root;
+        }
+        else if (second_root < first_root)
+        {
+            parent[first_root] = second_root;
+        }
+    }
+}
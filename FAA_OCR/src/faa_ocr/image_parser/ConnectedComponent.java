@@ -0,0 +1,115 @@
+package faa_ocr.image_parser;
+
+/**
+ * The measurements of one connected group of black pixels in an airport
+ * diagram: its bounding box and its number of pixels.
+ *
+ * @author Kevin Dittmar
+ */
+public class ConnectedComponent
+{
+    private final int label;
+    private int min_x = Integer.MAX_VALUE;
+    private int min_y = Integer.MAX_VALUE;
+    private int max_x = Integer.MIN_VALUE;
+    private int max_y = Integer.MIN_VALUE;
+    private long pixel_count;
+
+    /**
+     * Make an empty component.
+     *
+     * @param label is the number that the ComponentLabeler gave the
+     * component.
+     */
+    ConnectedComponent(int label)
+    {
+        this.label = label;
+    }
+
+    /**
+     * Add a horizontal run of black pixels to the component.
+     *
+     * @param y is the row of the run.
+     * @param start_x is the x coordinate of the first pixel in the run.
+     * @param end_x is the x coordinate just past the last pixel in the run.
+     */
+    void addRun(int y, int start_x, int end_x)
+    {
+        min_x = Math.min(min_x, start_x);
+        max_x = Math.max(max_x, end_x - 1);
+        min_y = Math.min(min_y, y);
+        max_y = Math.max(max_y, y);
+        pixel_count += end_x - start_x;
+    }
+
+    /**
+     * Get the label that the ComponentLabeler gave the component.
+     *
+     * @return the component's label.
+     */
+    public int getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Get the number of black pixels in the component.
+     *
+     * @return the pixel count.
+     */
+    public long getPixelCount()
+    {
+        return pixel_count;
+    }
+
+    /**
+     * Get the left edge of the component's bounding box.
+     *
+     * @return the smallest x coordinate of a pixel in the component.
+     */
+    public int getMinX()
+    {
+        return min_x;
+    }
+
+    /**
+     * Get the top edge of the component's bounding box.
+     *
+     * @return the smallest y coordinate of a pixel in the component.
+     */
+    public int getMinY()
+    {
+        return min_y;
+    }
+
+    /**
+     * Get the right edge of the component's bounding box.
+     *
+     * @return the largest x coordinate of a pixel in the component.
+     */
+    public int getMaxX()
+    {
+        return max_x;
+    }
+
+    /**
+     * Get the bottom edge of the component's bounding box.
+     *
+     * @return the largest y coordinate of a pixel in the component.
+     */
+    public int getMaxY()
+    {
+        return max_y;
+    }
+
+    /**
+     * Get the length of the diagonal of the component's bounding box, which
+     * is as long as any straight line inside the component can be.
+     *
+     * @return the bounding box diagonal in pixels.
+     */
+    public double getDiagonalLength()
+    {
+        return Math.hypot(max_x - min_x + 1, max_y - min_y + 1);
+    }
+}
@@ -0,0 +1,708 @@
+package faa_ocr.image_parser;
+
+import faa_ocr.ADTs.DiagramRunway;
+import faa_ocr.ADTs.Point;
+import faa_ocr.ADTs.Slope;
+import faa_ocr.metrics.AirportMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Finds runways with a probabilistic Hough transform instead of following
+ * their edges.
+ *
+ * Runways are the only thick strokes on an airport diagram, so the diagram
+ * is eroded first, which removes the text and the thin taxiway lines.  The
+ * pixels that are left vote, in a random but repeatable order, for every
+ * line through them.  When a line has enough votes, the runway along it is
+ * measured: its width from the pixels on either side of the line, and its
+ * ends from where the black pixels along its middle stop.  The runway's
+ * pixels then take back their votes so that it isn't found again.
+ *
+ * Because the runway is measured from all of its pixels, a taxiway or
+ * another runway touching a corner of it doesn't hide it the way it can
+ * with the corner checks in RunwayDiagramParser.
+ *
+ * @author Kevin Dittmar
+ */
+public class HoughRunwayDetector implements RunwayDetector
+{
+    //Min acceptance length for any runway, the same as RunwayDiagramParser
+    private static final int RUNWAY_ACCEPTANCE_LENGTH = 150;
+
+    //A runway has to be wider than the min and narrower than the max.
+    private static final int RUNWAY_WIDTH_MIN = 2;
+    private static final int RUNWAY_WIDTH_MAX = 20;
+
+    //The lines that are voted for are a half degree apart.
+    private static final int THETA_STEPS = 360;
+    private static final double[] COS_THETA = new double[THETA_STEPS];
+    private static final double[] SIN_THETA = new double[THETA_STEPS];
+
+    static
+    {
+        for (int step = 0; step < THETA_STEPS; step++)
+        {
+            double theta = Math.PI * step / THETA_STEPS;
+            COS_THETA[step] = Math.cos(theta);
+            SIN_THETA[step] = Math.sin(theta);
+        }
+    }
+
+    //The number of votes a line needs before the runway along it is measured.
+    private static final int VOTE_THRESHOLD = 40;
+
+    /* The number of white pixels in a row that can be crossed while
+     * following the middle of a runway.  Runway numbers and markings leave
+     * small white gaps.
+     */
+    private static final int MAX_GAP = 12;
+
+    /* How far to either side of a line to look for black pixels while
+     * following it.
+     */
+    private static final int LINE_HALF_WIDTH = 2;
+
+    /* How far to either side of a line to look for the rest of the runway.
+     * This is more than half of the widest runway.
+     */
+    private static final int CORRIDOR_HALF_WIDTH = 12;
+
+    //The pixels vote in the same shuffled order every time.
+    private static final long VOTE_ORDER_SEED = 20141202L;
+
+    //Erosion takes this many pixels off each side and end of a runway.
+    private static final int ERODED_EDGE = 1;
+
+    //A runway this close to horizontal or vertical is made exactly so.
+    private static final double AXIS_TOLERANCE = Math.sin(Math.toRadians(1));
+
+    private BinaryRaster diagram;
+    private BinaryRaster body;
+    private int max_rho;
+    private int rho_count;
+    private int[] accumulator;
+
+    public HoughRunwayDetector()
+    {
+        //do nothing
+    }
+
+    /**
+     * Find the paths of all runways in the binary raster of the diagram.
+     *
+     * @param diagram is the binary raster of the airport diagram to parse
+     * for runways
+     * @return the runways found in the diagram, ordered by the top of the
+     * diagram down and then from left to right by their start points
+     */
+    @Override
+    public ArrayList<DiagramRunway> parseRunways(BinaryRaster diagram)
+    {
+        this.diagram = diagram;
+        body = diagram.erode();
+        max_rho = (int) Math.ceil(
+                Math.hypot(diagram.getWidth(), diagram.getHeight())
+        );
+        rho_count = 2 * max_rho + 1;
+        accumulator = new int[THETA_STEPS * rho_count];
+
+        //Pixels that haven't been taken by a runway yet.
+        BinaryRaster remaining = new BinaryRaster(
+                diagram.getWidth(), diagram.getHeight(),
+                body.getWords().clone()
+        );
+        //Pixels whose votes are in the accumulator.
+        BinaryRaster voted = new BinaryRaster(
+                diagram.getWidth(), diagram.getHeight()
+        );
+
+        ArrayList<DiagramRunway> runways = new ArrayList<>();
+        int[] vote_order = shufflePixels(body);
+        int pixels_voted = 0;
+        int lines_measured = 0;
+        for (int pixel : vote_order)
+        {
+            int x = pixel % diagram.getWidth();
+            int y = pixel / diagram.getWidth();
+            if (!remaining.isBlack(x, y))
+            {
+                continue;
+            }
+
+            voted.setBlack(x, y, true);
+            pixels_voted++;
+            int best_step = vote(x, y, 1);
+            if (accumulator[bin(best_step, x, y)] < VOTE_THRESHOLD)
+            {
+                continue;
+            }
+
+            //The line through this pixel has enough votes, so measure it.
+            RunwayLine line = measureRunway(x, y, best_step);
+            lines_measured++;
+
+            //Take back the votes of the pixels along the line.
+            remaining.setBlack(x, y, false);
+            if (line != null)
+            {
+                takePixels(line, remaining, voted);
+                if (line.getLength() > RUNWAY_ACCEPTANCE_LENGTH
+                    && line.width > RUNWAY_WIDTH_MIN
+                    && line.width < RUNWAY_WIDTH_MAX)
+                {
+                    runways.add(line.toDiagramRunway());
+                }
+            }
+            if (voted.isBlack(x, y))
+            {
+                vote(x, y, -1);
+                voted.setBlack(x, y, false);
+            }
+        }
+
+        sortRunways(runways);
+
+        AirportMetrics.count("hough.body_pixels", vote_order.length);
+        AirportMetrics.count("hough.pixels_voted", pixels_voted);
+        AirportMetrics.count("hough.lines_measured", lines_measured);
+        AirportMetrics.count("runway.kept", runways.size());
+        return runways;
+    }
+
+    /**
+     * Put the black pixels of a raster in a shuffled order that is the same
+     * every time.
+     *
+     * @param raster is the raster whose black pixels are wanted.
+     * @return the pixels as y * width + x, shuffled.
+     */
+    private static int[] shufflePixels(BinaryRaster raster)
+    {
+        int[] pixels = new int[raster.countBlack()];
+        int count = 0;
+        for (int y = 0; y < raster.getHeight(); y++)
+        {
+            for (int x = raster.nextBlackInRow(0, y);
+                 x >= 0;
+                 x = raster.nextBlackInRow(x + 1, y))
+            {
+                pixels[count++] = y * raster.getWidth() + x;
+            }
+        }
+
+        //Fisher-Yates shuffle.
+        Random random = new Random(VOTE_ORDER_SEED);
+        for (int i = pixels.length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int temp = pixels[i];
+            pixels[i] = pixels[j];
+            pixels[j] = temp;
+        }
+        return pixels;
+    }
+
+    /**
+     * Get the accumulator index of the line at the given angle step that
+     * goes through a pixel.
+     *
+     * @param step is the angle step of the line's normal.
+     * @param x coordinate of the pixel
+     * @param y coordinate of the pixel
+     * @return the index of the line's bin in the accumulator.
+     */
+    private int bin(int step, int x, int y)
+    {
+        int rho = (int) Math.round(x * COS_THETA[step] + y * SIN_THETA[step]);
+        return step * rho_count + rho + max_rho;
+    }
+
+    /**
+     * Add or take back a pixel's votes for every line through it.
+     *
+     * @param x coordinate of the pixel
+     * @param y coordinate of the pixel
+     * @param votes is 1 to vote and -1 to take the votes back.
+     * @return the angle step of the line through the pixel with the most
+     * votes.
+     */
+    private int vote(int x, int y, int votes)
+    {
+        int best_step = 0;
+        int best_votes = Integer.MIN_VALUE;
+        for (int step = 0; step < THETA_STEPS; step++)
+        {
+            int index = bin(step, x, y);
+            accumulator[index] += votes;
+            if (accumulator[index] > best_votes)
+            {
+                best_votes = accumulator[index];
+                best_step = step;
+            }
+        }
+        return best_step;
+    }
+
+    /**
+     * Measure the runway along a line through a pixel.  The line is
+     * followed to find about where the runway is, then the runway's middle
+     * and direction are found from its pixels, and then the middle is
+     * followed to find the ends.
+     *
+     * @param x coordinate of the pixel
+     * @param y coordinate of the pixel
+     * @param step is the angle step of the line's normal.
+     * @return the middle line of the runway, or null if there isn't a
+     * stroke along the line.
+     */
+    private RunwayLine measureRunway(int x, int y, int step)
+    {
+        //The direction of the line is at a right angle to its normal.
+        RunwayLine guess = new RunwayLine(
+                x, y, -SIN_THETA[step], COS_THETA[step]
+        );
+        guess.findRoughEnds();
+
+        RunwayLine middle = guess.findMiddle();
+        if (middle == null)
+        {
+            return null;
+        }
+        middle.findEnds();
+        return middle;
+    }
+
+    /**
+     * Mark the pixels of a runway as taken and take back their votes.
+     *
+     * @param line is the middle line of the runway.
+     * @param remaining are the pixels that haven't been taken yet.
+     * @param voted are the pixels whose votes are in the accumulator.
+     */
+    private void takePixels(RunwayLine line, BinaryRaster remaining,
+                            BinaryRaster voted)
+    {
+        int half_width = (line.width + 1) / 2 + ERODED_EDGE;
+        for (double along = line.start; along <= line.end; along += 0.5)
+        {
+            for (double across = -half_width;
+                 across <= half_width;
+                 across += 0.5)
+            {
+                int x = (int) Math.round(line.pointX(along, across));
+                int y = (int) Math.round(line.pointY(along, across));
+                if (remaining.isBlack(x, y))
+                {
+                    remaining.setBlack(x, y, false);
+                    if (voted.isBlack(x, y))
+                    {
+                        vote(x, y, -1);
+                        voted.setBlack(x, y, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort runways from the top of the diagram down, and from left to right
+     * when they start on the same row, which is the order that
+     * RunwayDiagramParser finds them in.
+     *
+     * @param runways are the runways to sort.
+     */
+    private static void sortRunways(ArrayList<DiagramRunway> runways)
+    {
+        Collections.sort(runways, new Comparator<DiagramRunway>()
+        {
+            @Override
+            public int compare(DiagramRunway first, DiagramRunway second)
+            {
+                Point first_start = first.getStartPoint();
+                Point second_start = second.getStartPoint();
+                if (first_start.getY() != second_start.getY())
+                {
+                    return first_start.getY() < second_start.getY() ? -1 : 1;
+                }
+                if (first_start.getX() != second_start.getX())
+                {
+                    return first_start.getX() < second_start.getX() ? -1 : 1;
+                }
+                return 0;
+            }
+        });
+    }
+
+    /**
+     * A line through the eroded diagram, given by a point on it and its
+     * direction.  Points along the line are measured from the given point,
+     * and points across it are measured to the right of the direction.
+     */
+    private class RunwayLine
+    {
+        final double origin_x;
+        final double origin_y;
+        final double direction_x;
+        final double direction_y;
+
+        //The ends of the runway, as distances along the line.
+        double start;
+        double end;
+
+        //The width of the runway in pixels.
+        int width;
+
+        RunwayLine(double origin_x, double origin_y,
+                   double direction_x, double direction_y)
+        {
+            this.origin_x = origin_x;
+            this.origin_y = origin_y;
+            this.direction_x = direction_x;
+            this.direction_y = direction_y;
+        }
+
+        double pointX(double along, double across)
+        {
+            return origin_x + along * direction_x - across * direction_y;
+        }
+
+        double pointY(double along, double across)
+        {
+            return origin_y + along * direction_y + across * direction_x;
+        }
+
+        double getLength()
+        {
+            return end - start;
+        }
+
+        /**
+         * Determine whether there are black pixels in the eroded diagram
+         * near a point along the line.
+         *
+         * @param along is the distance along the line.
+         * @param half_width is how far to either side of the line to look.
+         * @return true if a pixel close to the line at that point is black.
+         */
+        boolean isBlackNear(double along, int half_width)
+        {
+            for (int across = -half_width; across <= half_width; across++)
+            {
+                if (body.isBlack((int) Math.round(pointX(along, across)),
+                                 (int) Math.round(pointY(along, across))))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Follow the line in both directions from its origin until there is
+         * a gap that is too long to be a marking.  This is only close to the
+         * ends of the runway, since the line may be near the edge of the
+         * runway instead of in the middle, and it may not point exactly
+         * along the runway.
+         */
+        void findRoughEnds()
+        {
+            start = -followLine(-1, LINE_HALF_WIDTH);
+            end = followLine(1, LINE_HALF_WIDTH);
+        }
+
+        /**
+         * Determine whether both edges of the runway are black in the
+         * diagram at a point along the middle line.  The edges stay black
+         * where the runway numbers leave white in the middle.
+         *
+         * @param along is the distance along the line.
+         * @return true if there is a black pixel within a pixel of each edge.
+         */
+        boolean areEdgesBlack(double along)
+        {
+            double edge = width / 2.0;
+            return isEdgeBlack(along, -edge) && isEdgeBlack(along, edge);
+        }
+
+        private boolean isEdgeBlack(double along, double edge)
+        {
+            for (int offset = -1; offset <= 1; offset++)
+            {
+                if (diagram.isBlack(
+                        (int) Math.round(pointX(along, edge + offset)),
+                        (int) Math.round(pointY(along, edge + offset))))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Follow the middle of the runway in both directions from its origin
+         * until the runway ends.  Black pixels anywhere across the eroded
+         * runway count, and so do black edges, so runway numbers don't end
+         * the runway early.  The erosion took a pixel off of each end, so it
+         * is added back.
+         */
+        void findEnds()
+        {
+            int half_width = Math.max(1, (width - 1) / 2 - ERODED_EDGE);
+            start = -followRunway(-1, half_width) - ERODED_EDGE;
+            end = followRunway(1, half_width) + ERODED_EDGE;
+        }
+
+        /**
+         * Follow the middle of the runway from its origin in one direction.
+         *
+         * @param sign is 1 to follow the direction and -1 to go backward.
+         * @param half_width is how far to either side of the middle to look
+         * for black pixels in the eroded diagram.
+         * @return how far the last black pixel is from the origin.
+         */
+        private int followRunway(int sign, int half_width)
+        {
+            int last_black = 0;
+            int gap = 0;
+            for (int along = 1; gap <= MAX_GAP; along++)
+            {
+                if (isBlackNear(sign * along, half_width))
+                {
+                    last_black = along;
+                    gap = 0;
+                }
+                else if (areEdgesBlack(sign * along))
+                {
+                    //Inside the numbers, so don't move the end yet.
+                    gap = 0;
+                }
+                else
+                {
+                    gap++;
+                }
+            }
+            return last_black;
+        }
+
+        /**
+         * Follow the line from its origin in one direction.
+         *
+         * @param sign is 1 to follow the direction and -1 to go backward.
+         * @param half_width is how far to either side of the line to look
+         * for black pixels.
+         * @return how far the last black pixel is from the origin.
+         */
+        private int followLine(int sign, int half_width)
+        {
+            int last_black = 0;
+            int gap = 0;
+            for (int along = 1; gap <= MAX_GAP; along++)
+            {
+                if (isBlackNear(sign * along, half_width))
+                {
+                    last_black = along;
+                    gap = 0;
+                }
+                else
+                {
+                    gap++;
+                }
+            }
+            return last_black;
+        }
+
+        /**
+         * Find the middle line of the runway that this line runs along by
+         * looking at the pixels on either side of it.  The runway is the
+         * band of pixels next to the line that stays close to as full as the
+         * fullest part of the band.
+         *
+         * @return the middle line of the runway, with its width set, or null
+         * if there are no pixels near the line.
+         */
+        RunwayLine findMiddle()
+        {
+            //Count the black pixels at each distance from the line.
+            int[] counts = new int[2 * CORRIDOR_HALF_WIDTH + 1];
+            for (double along = start; along <= end; along++)
+            {
+                for (int across = -CORRIDOR_HALF_WIDTH;
+                     across <= CORRIDOR_HALF_WIDTH;
+                     across++)
+                {
+                    if (body.isBlack((int) Math.round(pointX(along, across)),
+                                     (int) Math.round(pointY(along, across))))
+                    {
+                        counts[across + CORRIDOR_HALF_WIDTH]++;
+                    }
+                }
+            }
+
+            //Start at the fullest distance close to the line.
+            int peak = CORRIDOR_HALF_WIDTH;
+            for (int across = -LINE_HALF_WIDTH;
+                 across <= LINE_HALF_WIDTH;
+                 across++)
+            {
+                if (counts[across + CORRIDOR_HALF_WIDTH] > counts[peak])
+                {
+                    peak = across + CORRIDOR_HALF_WIDTH;
+                }
+            }
+            if (counts[peak] == 0)
+            {
+                return null;
+            }
+
+            //Grow the band while the distances are at least a quarter full.
+            int floor = counts[peak] / 4;
+            int low = peak;
+            int high = peak;
+            while (low > 0 && counts[low - 1] > floor)
+            {
+                low--;
+            }
+            while (high < counts.length - 1 && counts[high + 1] > floor)
+            {
+                high++;
+            }
+
+            /* Fit the middle line to the pixels in the band.  The direction
+             * is the major axis of the pixels.
+             */
+            long pixel_count = 0;
+            double sum_x = 0;
+            double sum_y = 0;
+            double sum_xx = 0;
+            double sum_yy = 0;
+            double sum_xy = 0;
+            for (double along = start; along <= end; along++)
+            {
+                for (int across = low - CORRIDOR_HALF_WIDTH;
+                     across <= high - CORRIDOR_HALF_WIDTH;
+                     across++)
+                {
+                    int x = (int) Math.round(pointX(along, across));
+                    int y = (int) Math.round(pointY(along, across));
+                    if (body.isBlack(x, y))
+                    {
+                        pixel_count++;
+                        sum_x += x;
+                        sum_y += y;
+                        sum_xx += (double) x * x;
+                        sum_yy += (double) y * y;
+                        sum_xy += (double) x * y;
+                    }
+                }
+            }
+            double mean_x = sum_x / pixel_count;
+            double mean_y = sum_y / pixel_count;
+            double variance_x = sum_xx / pixel_count - mean_x * mean_x;
+            double variance_y = sum_yy / pixel_count - mean_y * mean_y;
+            double covariance = sum_xy / pixel_count - mean_x * mean_y;
+            double angle = 0.5 * Math.atan2(2 * covariance,
+                                            variance_x - variance_y);
+            double middle_x = Math.cos(angle);
+            double middle_y = Math.sin(angle);
+
+            /* Runways that are within a degree of horizontal or vertical
+             * are taken to be exactly horizontal or vertical, the way
+             * RunwayDiagramParser follows them.
+             */
+            if (Math.abs(middle_y) < AXIS_TOLERANCE)
+            {
+                middle_x = 1;
+                middle_y = 0;
+            }
+            else if (Math.abs(middle_x) < AXIS_TOLERANCE)
+            {
+                middle_x = 0;
+                middle_y = 1;
+            }
+
+            RunwayLine middle = new RunwayLine(
+                    mean_x, mean_y, middle_x, middle_y
+            );
+            middle.width = high - low + 1 + 2 * ERODED_EDGE;
+            return middle;
+        }
+
+        /**
+         * Make the DiagramRunway for this line, starting from the end that
+         * is higher up in the diagram.
+         *
+         * @return the runway.
+         */
+        DiagramRunway toDiagramRunway()
+        {
+            Point first = new Point((int) Math.round(pointX(start, 0)),
+                                    (int) Math.round(pointY(start, 0)));
+            Point second = new Point((int) Math.round(pointX(end, 0)),
+                                     (int) Math.round(pointY(end, 0)));
+            if (second.getY() < first.getY()
+                || (second.getY() == first.getY()
+                    && second.getX() < first.getX()))
+            {
+                Point temp = first;
+                first = second;
+                second = temp;
+            }
+
+            double length = Math.hypot(second.getX() - first.getX(),
+                                       second.getY() - first.getY());
+            return new DiagramRunway(first, second, makeSlope(), length);
+        }
+
+        /**
+         * Make the slope across the runway the way RunwayDiagramParser
+         * does: small whole numbers with y pointing down the diagram, and no
+         * slope for runways that are horizontal or vertical.
+         *
+         * @return the slope across the runway.
+         */
+        private Slope makeSlope()
+        {
+            if (direction_x == 0 || direction_y == 0)
+            {
+                return new Slope(0, 0);
+            }
+
+            //The slope across the runway, pointing down the diagram.
+            double across_x = -direction_y;
+            double across_y = direction_x;
+            if (across_y < 0)
+            {
+                across_x = -across_x;
+                across_y = -across_y;
+            }
+            double scale = 10 / Math.max(Math.abs(across_x), across_y);
+            int slope_x = (int) Math.round(across_x * scale);
+            int slope_y = (int) Math.round(across_y * scale);
+            int divisor = gcd(Math.abs(slope_x), slope_y);
+            if (divisor > 1)
+            {
+                slope_x /= divisor;
+                slope_y /= divisor;
+            }
+            return new Slope(slope_y, slope_x);
+        }
+    }
+
+    /**
+     * Return the greatest common divisor of two ints
+     */
+    private static int gcd(int a, int b)
+    {
+        if (b == 0)
+        {
+            return a;
+        }
+        else
+        {
+            return gcd(b, a % b);
+        }
+    }
+}
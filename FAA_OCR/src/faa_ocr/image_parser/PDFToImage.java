@@ -2,18 +2,20 @@ package faa_ocr.image_parser;
 
 import faa_ocr.ADTs.Airport;
 import faa_ocr.ADTs.DiagramRunway;
+import faa_ocr.cache.DiagramCache;
+import faa_ocr.metrics.AirportMetrics;
+import faa_ocr.metrics.FlightEvents;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.util.PDFImageWriter;
+import org.apache.pdfbox.pdmodel.PDPage;
 
 /**
  * This classes main purpose is to make an image from a PDF file path and to
@@ -24,61 +26,157 @@ import org.apache.pdfbox.util.PDFImageWriter;
  */
 public class PDFToImage
 {
+    /* The resolution in DPI that diagrams are rendered at.  This is the
+     * resolution that PDFImageWriter falls back on when there is no screen,
+     * which is what the image parsing measurements were made at.
+     */
+    private static final int DIAGRAM_RESOLUTION = 96;
+
+    /* Everything that decides what the rasters of a diagram look like, so
+     * cached rasters aren't used after any of it changes.
+     */
+    private static final String RENDER_SETTINGS =
+            "rasters=diagram,pavement;dpi=" + DIAGRAM_RESOLUTION
+            + ";" + BinaryRaster.THRESHOLDS;
+    /* True if runways are found with the Hough transform instead of the
+     * corner checks of RunwayDiagramParser.
+     */
+    private static volatile boolean hough_runways = false;
+
+    /**
+     * Choose which detector finds the runways in the diagrams.
+     *
+     * @param hough is true to use HoughRunwayDetector and false to use
+     * RunwayDiagramParser.
+     */
+    public static void setHoughRunways(boolean hough)
+    {
+        hough_runways = hough;
+    }
+
+    /**
+     * @return true if runways are found with the Hough transform.
+     */
+    public static boolean isHoughRunways()
+    {
+        return hough_runways;
+    }
 
     /**
-     * Creates the BufferedImage of the airport diagram to be used by parsing
-     * methods.
+     * Render the first page of the airport diagram PDF straight to a
+     * BufferedImage without writing an image file.
      *
      * @param file_path is the path to the airport diagram PDF.
-     * @return the BufferedImage representation of the airport diagram PDF.
+     * @return the BufferedImage representation of the airport diagram PDF,
+     * or null if the PDF could not be rendered.
      */
-    public static BufferedImage makeImage(String file_path)
+    public static BufferedImage renderImage(String file_path)
     {
-        /*Information about getting an image from a PDF in PDFBox from:
-         *http://pdfbox.apache.org/docs/1.8.3/javadocs/org/apache/pdfbox/util/\
-         *PDFImageWriter.html
-         */
-        BufferedImage diagram_image = null;
-        File image_file = new File(file_path.replaceAll("\\.pdf|\\.PDF", "1\\.jpg"));
-        try
+        PDDocument doc = null;
+        try (FlightEvents.Span event =
+                FlightEvents.start(FlightEvents.RENDER, file_path))
         {
-            if (!image_file.exists())
+            doc = PDDocument.load(new File(file_path));
+            List<?> pages = doc.getDocumentCatalog().getAllPages();
+            if (pages.isEmpty())
             {
-                File diagram_file = new File(file_path);
-                String image_path_prefix = file_path.replaceAll("\\.pdf|\\.PDF", "");
-                if (diagram_file.exists())
-                {
-                    //Turn the PDF into a JPEG image.
-                    PDDocument doc = PDDocument.load(diagram_file);
-                    PDFImageWriter pdf_image_writer = new PDFImageWriter();
-                    /*Write an image version of the document in JPEG format
-                     *that includes just the first page with the prefix given
-                     *by image_path_prefix.
-                     */
-                    pdf_image_writer.writeImage(doc,
-                                                "jpg",
-                                                "",
-                                                1,
-                                                1,
-                                                image_path_prefix);
-                    doc.close();
-                    /*Set up the new image file.  PDFBox appends the page
-                     *number, which is 1, and the prefix doesn't include the
-                     *extension.
-                     */
-                    image_file = new File(image_path_prefix + "1.jpg");
-                }
+                System.err.println("File " + file_path + " has no pages.");
+                return null;
             }
-            diagram_image = ImageIO.read(image_file);
+            PDPage page = (PDPage) pages.get(0);
+            BufferedImage image = page.convertToImage(
+                    BufferedImage.TYPE_INT_RGB, DIAGRAM_RESOLUTION
+            );
+            event.setCount((long) image.getWidth() * image.getHeight());
+            return image;
         }
         catch (IOException ex)
         {
             Logger.getLogger(PDFToImage.class.getName()).log(
                     Level.SEVERE, null, ex
             );
+            return null;
+        }
+        finally
+        {
+            closeDocument(doc);
+        }
+    }
+
+    /**
+     * Get the binary raster and the pavement raster of an airport diagram.
+     * They come from the diagram cache if it is on and has them, and
+     * otherwise from one rendering of the PDF, which is then cached.
+     *
+     * @param file_path is the path to the airport diagram PDF.
+     * @return the binary raster and then the pavement raster, or null if
+     * the PDF could not be rendered.
+     */
+    public static BinaryRaster[] renderRasters(String file_path)
+    {
+        DiagramCache cache = DiagramCache.getCache();
+        String key = null;
+        if (cache != null)
+        {
+            key = cache.getKey(file_path, RENDER_SETTINGS);
+            BinaryRaster[] rasters = key == null ? null
+                                     : cache.loadRasters(key);
+            if (rasters != null && rasters.length == 2)
+            {
+                AirportMetrics.count("cache.raster_hits", 1);
+                return rasters;
+            }
         }
 
-        return diagram_image;
+        BinaryRaster[] rasters;
+        AirportMetrics.Stage render_stage =
+                AirportMetrics.startStage("render");
+        try
+        {
+            BufferedImage diagram_image = renderImage(file_path);
+            if (diagram_image == null)
+            {
+                return null;
+            }
+            rasters = new BinaryRaster[] {
+                BinaryRaster.fromImage(diagram_image),
+                BinaryRaster.pavementFromImage(diagram_image)
+            };
+            AirportMetrics.count("render.pixels",
+                                 (long) diagram_image.getWidth()
+                                 * diagram_image.getHeight());
+        }
+        finally
+        {
+            render_stage.end();
+        }
+        if (key != null)
+        {
+            cache.storeRasters(key, rasters);
+        }
+        return rasters;
+    }
+
+    /**
+     * Close a PDF document, logging any problem instead of throwing it.
+     *
+     * @param doc is the document to close, which may be null.
+     */
+    private static void closeDocument(PDDocument doc)
+    {
+        if (doc != null)
+        {
+            try
+            {
+                doc.close();
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(PDFToImage.class.getName()).log(
+                        Level.WARNING, null, ex
+                );
+            }
+        }
     }
 
     /**
@@ -90,13 +188,40 @@ public class PDFToImage
     {
         ArrayList<DiagramRunway> runways;
 
-        BufferedImage airport_image = PDFToImage.makeImage(airport.getFilePath());
+        //The Airport rendered its diagram once when it was made.
+        BinaryRaster airport_diagram = airport.getDiagram();
 
         //get runway data from image
-        runways = new RunwayDiagramParser().parseRunways(airport_image);
+        RunwayDetector detector = hough_runways
+                                  ? new HoughRunwayDetector()
+                                  : new RunwayDiagramParser();
+        //The runway events are tagged with the airport being scanned.
+        String previous_airport = FlightEvents.setAirport(
+                airport.getFilePath()
+        );
+        AirportMetrics.Stage runway_detect_stage =
+                AirportMetrics.startStage("runway_detect");
+        try
+        {
+            runways = detector.parseRunways(airport_diagram);
+        }
+        finally
+        {
+            runway_detect_stage.end();
+            FlightEvents.setAirport(previous_airport);
+        }
 
         //get taxiway date from image
-        new TaxiwayDiagramParser().parseTaxiways(airport_image, airport);
+        AirportMetrics.Stage taxiway_detect_stage =
+                AirportMetrics.startStage("taxiway_detect");
+        try
+        {
+            new TaxiwayDiagramParser().parseTaxiways(airport, runways);
+        }
+        finally
+        {
+            taxiway_detect_stage.end();
+        }
 
         return runways;
     }
@@ -0,0 +1,159 @@
+package faa_ocr.image_parser;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index of points in a diagram.  The diagram is split into square
+ * cells and every point is kept in a list for its cell, so finding the
+ * points near a spot only looks at the few cells around it instead of at
+ * every point.
+ *
+ * The lists are plain int arrays: the head of each cell's list is in
+ * cell_head and each point's successor is in next_point, the same way
+ * ComponentLabeler keeps its runs.
+ *
+ * @author Kevin Dittmar
+ */
+class PointGrid
+{
+    private final int cell_size;
+    private final int columns;
+    private final int rows;
+
+    //The first point in each cell, or -1 if the cell is empty.
+    private final int[] cell_head;
+
+    //The coordinates and value of every point, and the next point in its cell.
+    private int[] point_x;
+    private int[] point_y;
+    private int[] point_value;
+    private int[] next_point;
+    private int point_count;
+
+    /**
+     * Make an empty index over a diagram.
+     *
+     * @param width of the diagram in pixels
+     * @param height of the diagram in pixels
+     * @param cell_size is the width and height of a cell in pixels.  Queries
+     * for points closer than this only look at the cells next to the spot.
+     */
+    PointGrid(int width, int height, int cell_size)
+    {
+        this.cell_size = cell_size;
+        columns = Math.max(1, (width + cell_size - 1) / cell_size);
+        rows = Math.max(1, (height + cell_size - 1) / cell_size);
+        cell_head = new int[columns * rows];
+        Arrays.fill(cell_head, -1);
+
+        point_x = new int[16];
+        point_y = new int[16];
+        point_value = new int[16];
+        next_point = new int[16];
+    }
+
+    /**
+     * Add a point to the index.
+     *
+     * @param x coordinate of the point
+     * @param y coordinate of the point
+     * @param value is the number to give back when the point is found, like
+     * the index of the runway that it belongs to.
+     */
+    void add(int x, int y, int value)
+    {
+        if (point_count == point_x.length)
+        {
+            int new_length = point_x.length * 2;
+            point_x = Arrays.copyOf(point_x, new_length);
+            point_y = Arrays.copyOf(point_y, new_length);
+            point_value = Arrays.copyOf(point_value, new_length);
+            next_point = Arrays.copyOf(next_point, new_length);
+        }
+        int cell = cellOf(x, y);
+        point_x[point_count] = x;
+        point_y[point_count] = y;
+        point_value[point_count] = value;
+        next_point[point_count] = cell_head[cell];
+        cell_head[cell] = point_count;
+        point_count++;
+    }
+
+    /**
+     * Find a point that is less than a distance away from a spot along both
+     * x and y.
+     *
+     * @param x coordinate of the spot
+     * @param y coordinate of the spot
+     * @param distance is how close a point has to be.  It can't be more
+     * than the cell size.
+     * @return the value of a point that close, or -1 if there isn't one.
+     */
+    int findNear(int x, int y, int distance)
+    {
+        int column = columnOf(x);
+        int row = rowOf(y);
+
+        //A point that close can only be in this cell or the ones around it.
+        for (int cell_row = Math.max(0, row - 1);
+             cell_row <= Math.min(rows - 1, row + 1);
+             cell_row++)
+        {
+            for (int cell_column = Math.max(0, column - 1);
+                 cell_column <= Math.min(columns - 1, column + 1);
+                 cell_column++)
+            {
+                for (int point = cell_head[cell_row * columns + cell_column];
+                     point >= 0;
+                     point = next_point[point])
+                {
+                    if (Math.abs(point_x[point] - x) < distance
+                        && Math.abs(point_y[point] - y) < distance)
+                    {
+                        return point_value[point];
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find a point at exactly the given spot.
+     *
+     * @param x coordinate of the spot
+     * @param y coordinate of the spot
+     * @return the value of a point there, or -1 if there isn't one.
+     */
+    int findAt(int x, int y)
+    {
+        for (int point = cell_head[cellOf(x, y)];
+             point >= 0;
+             point = next_point[point])
+        {
+            if (point_x[point] == x && point_y[point] == y)
+            {
+                return point_value[point];
+            }
+        }
+        return -1;
+    }
+
+    /* Points off the diagram go in the nearest cell on its border, so they
+     * can still be found.
+     */
+    private int columnOf(int x)
+    {
+        return Math.max(0, Math.min(columns - 1, x / cell_size));
+    }
+
+    private int rowOf(int y)
+    {
+        return Math.max(0, Math.min(rows - 1, y / cell_size));
+    }
+
+    private int cellOf(int x, int y)
+    {
+        return rowOf(y) * columns + columnOf(x);
+    }
+}
@@ -0,0 +1,23 @@
+package faa_ocr.image_parser;
+
+import faa_ocr.ADTs.DiagramRunway;
+import java.util.ArrayList;
+
+/**
+ * A way of finding the runways in the binary raster of an airport diagram.
+ * The runways are given as the line segments down the middle of the
+ * runways, from the end nearest the top of the diagram to the other end.
+ *
+ * @author Kevin Dittmar
+ */
+public interface RunwayDetector
+{
+    /**
+     * Find the paths of all runways in the binary raster of the diagram.
+     *
+     * @param diagram is the binary raster of the airport diagram to parse
+     * for runways
+     * @return the runways found in the diagram
+     */
+    ArrayList<DiagramRunway> parseRunways(BinaryRaster diagram);
+}
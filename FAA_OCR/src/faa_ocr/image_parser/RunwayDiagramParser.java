@@ -0,0 +1,1017 @@
+package faa_ocr.image_parser;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import faa_ocr.ADTs.DiagramRunway;
+import faa_ocr.ADTs.Point;
+import faa_ocr.ADTs.Slope;
+import faa_ocr.metrics.AirportMetrics;
+import faa_ocr.metrics.FlightEvents;
+
+/**
+ * Finds runways by looking for the upper corner of each runway and
+ * following its edges and its length one pixel at a time.
+ *
+ * @author Joe Kvedaras
+ * @author Kevin Dittmar
+ */
+public class RunwayDiagramParser implements RunwayDetector
+{
+    //Min acceptance length for any runway
+    private final int runway_acceptance_length = 150;
+    //min and max width of any runway
+    private final int runway_width_min = 2;
+    private final int runway_width_max = 20;
+    //min and max right counter for a runway to be vertical
+    private final int runway_rightcounter_min = 3;
+    private final int runway_rightcounter_max = 10;
+    //min difference between starting points of runways
+    private final int runway_start_difference = 4;
+    //slope correction
+    private final int slope_correction = 2;
+
+    //The number of rows that one fork-join task scans in a parallel scan.
+    private static final int BAND_HEIGHT = 32;
+
+    /* True if the diagram should be scanned in bands on the fork-join pool
+     * instead of row by row on the calling thread.
+     */
+    private static volatile boolean parallel_scan = false;
+
+    /* The pool for parallel scans.  It is shared by every parser, so batch
+     * mode doesn't make a pool per airport.
+     */
+    private static final ForkJoinPool SCAN_POOL = new ForkJoinPool();
+
+    /* The diagram and its runway candidates are set at the start of
+     * parseRunways() and only read after that, so the bands of a parallel
+     * scan can share them.
+     */
+    private BinaryRaster diagram;
+
+    /* The pixels of the connected components that are long enough to hold
+     * a runway.  Only these pixels are tried as runway corners.
+     */
+    private BinaryRaster candidates;
+
+    //The number of runway corners the last scan found among the candidates.
+    private int runway_start_count;
+
+    public RunwayDiagramParser()
+    {
+        //do nothing
+    }
+
+    /**
+     * Choose whether diagrams are scanned in parallel bands or row by row.
+     * Both give the same runways in the same order.
+     *
+     * @param parallel is true to split the scan across the processors.
+     */
+    public static void setParallelScan(boolean parallel)
+    {
+        parallel_scan = parallel;
+    }
+
+    /**
+     * Find the paths of all runways in the diagram.
+     *
+     * @param diagram	is the airport diagram image to parse for runways
+     * @return the runways found in the diagram
+     */
+    public ArrayList<DiagramRunway> parseRunways(BufferedImage diagram)
+    {
+        return parseRunways(BinaryRaster.fromImage(diagram));
+    }
+
+    /**
+     * Find the paths of all runways in the binary raster of the diagram.
+     *
+     * @param diagram is the binary raster of the airport diagram to parse
+     * for runways
+     * @return the runways found in the diagram
+     */
+    @Override
+    public ArrayList<DiagramRunway> parseRunways(BinaryRaster diagram)
+    {
+        try (FlightEvents.Span event = FlightEvents.start(FlightEvents.RUNWAYS))
+        {
+            ArrayList<DiagramRunway> runways = scanRunways(diagram);
+            event.setCount(runway_start_count);
+            //Counting the candidate pixels takes a pass over the raster.
+            if (AirportMetrics.isRecording())
+            {
+                AirportMetrics.count("runway.candidate_pixels",
+                                     candidates.countBlack());
+            }
+            return runways;
+        }
+    }
+
+    /**
+     * Find the runway candidates of a diagram, scan them for runway
+     * corners, and follow and clean up the runways.
+     *
+     * @param diagram is the binary raster of the airport diagram.
+     * @return the runways found in the diagram
+     */
+    private ArrayList<DiagramRunway> scanRunways(BinaryRaster diagram)
+    {
+        this.diagram = diagram;
+        this.candidates = findRunwayCandidates(diagram);
+
+        ArrayList<RunwayStart> runway_starts;
+        if (parallel_scan)
+        {
+            runway_starts = SCAN_POOL.invoke(
+                    new BandScan(0, diagram.getHeight())
+            );
+        }
+        else
+        {
+            runway_starts = traverseImage(0, diagram.getHeight());
+        }
+
+        runway_start_count = runway_starts.size();
+        ArrayList<DiagramRunway> runways = followRunways(runway_starts);
+        int runways_found = runways.size();
+
+        //Clean up runways we received from the diagram to remove bad data
+        cleanUpRunways(runways);
+
+        if (AirportMetrics.isRecording())
+        {
+            AirportMetrics.count("runway.starts", runway_start_count);
+            AirportMetrics.count("runway.found", runways_found);
+            AirportMetrics.count("runway.kept", runways.size());
+        }
+        return runways;
+    }
+
+    /**
+     * Label the connected components of the diagram and keep the ones that
+     * could hold a runway.  Text, arrows, and the other small marks on the
+     * diagram are dropped, so the corner checks aren't run on them.
+     *
+     * The runway numbers and markings cut runways into pieces, and the
+     * traversals step over those small gaps, so the components are found in
+     * a dilated copy of the diagram where pieces a pixel or two apart touch.
+     *
+     * @param diagram is the binary raster of the airport diagram
+     * @return a raster with only the black pixels of the diagram that are
+     * in components long enough to be runways
+     */
+    private BinaryRaster findRunwayCandidates(BinaryRaster diagram)
+    {
+        ComponentLabeler labeler = new ComponentLabeler(diagram.dilate());
+        BinaryRaster elongated = labeler.makeMask(
+                labeler.getElongatedComponents(runway_acceptance_length)
+        );
+        return elongated.and(diagram);
+    }
+
+    /**
+     * Traverse image looking for black pixels. Once a black pixel is found
+     * recursively
+     * find edges of that black square.  Only the pixels of the runway
+     * candidates are tried, but the edges are followed in the whole diagram.
+     *
+     * Nothing is shared between rows except the diagram, which is only
+     * read, so any band of rows can be traversed on its own.
+     *
+     * @param first_row is the first row to traverse
+     * @param end_row is the row just past the last row to traverse
+     * @return the possible runway starts in the rows, in the order that
+     * they were found
+     */
+    private ArrayList<RunwayStart> traverseImage(int first_row, int end_row)
+    {
+        ArrayList<RunwayStart> runway_starts = new ArrayList<>();
+        for (int y = first_row; y < end_row; y++)
+        {
+            //Skip straight to the next candidate pixel in the row.
+            for (int x = candidates.nextBlackInRow(0, y);
+                 x >= 0;
+                 x = candidates.nextBlackInRow(x + 1, y))
+            {
+                //see if the pixel is a runway
+                if (checkPixel(x, y) && checkForCorner(x, y))
+                {
+                    RunwayStart runway_start = findSlope(x, y);
+                    if (runway_start != null)
+                    {
+                        runway_starts.add(runway_start);
+                    }
+                }
+                else
+                {
+                    //skip pixel
+                }
+            }
+        }
+        return runway_starts;
+    }
+
+    /**
+     * Traverse the runway from every possible start in the order that the
+     * starts were found, and keep the runways that are long enough.  A start
+     * that is too close to a runway that was already kept is skipped.  Since
+     * this goes in the same order as the traversal of the image, it gives
+     * the same runways no matter how the image was split up.
+     *
+     * The start points of the kept runways are in a grid with cells as big
+     * as the closest two starts can be, so each check only looks at the
+     * starts in the nine cells around the new one.
+     *
+     * @param runway_starts are the possible runway starts, in row order.
+     * @return the runways that were found
+     */
+    private ArrayList<DiagramRunway> followRunways(
+            ArrayList<RunwayStart> runway_starts)
+    {
+        ArrayList<DiagramRunway> runways = new ArrayList<>();
+        PointGrid start_points = new PointGrid(diagram.getWidth(),
+                                               diagram.getHeight(),
+                                               runway_start_difference);
+        for (RunwayStart runway_start : runway_starts)
+        {
+            if (!checkPixelInRunways(start_points,
+                                     runway_start.midpoint_x,
+                                     runway_start.midpoint_y)
+                && addToRunways(runways, runway_start))
+            {
+                start_points.add(runway_start.midpoint_x,
+                                 runway_start.midpoint_y,
+                                 runways.size() - 1);
+            }
+        }
+        return runways;
+    }
+
+    //clear out duplicate runways
+    //if 2 runways have same end point take longest runway!
+    /**
+     * Clear out any duplicated or close runways.  If two runways have the
+     * same start point or end point, the shorter one is removed.
+     *
+     * The runways are looked at from the longest down, and one is kept if
+     * no longer runway that was kept shares its start or end point.  The
+     * kept start and end points are in grids, so the whole clean up is the
+     * sort plus a constant amount of work for each runway.  The runways
+     * that are kept stay in the order that they were found.
+     *
+     * @param runways are the runways found in the diagram
+     */
+    private void cleanUpRunways(final ArrayList<DiagramRunway> runways)
+    {
+        /* Longest first.  Of two runways with the same length, the one that
+         * was found later is kept.
+         */
+        Integer[] order = new Integer[runways.size()];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer first, Integer second)
+            {
+                int by_length = Double.compare(
+                        runways.get(second).getLength(),
+                        runways.get(first).getLength()
+                );
+                return by_length != 0 ? by_length : second - first;
+            }
+        });
+
+        PointGrid start_points = new PointGrid(diagram.getWidth(),
+                                               diagram.getHeight(),
+                                               runway_start_difference);
+        PointGrid end_points = new PointGrid(diagram.getWidth(),
+                                             diagram.getHeight(),
+                                             runway_start_difference);
+        boolean[] keep = new boolean[runways.size()];
+        for (int index : order)
+        {
+            Point start = runways.get(index).getStartPoint();
+            Point end = runways.get(index).getEndPoint();
+            if (start_points.findAt(start.getX(), start.getY()) < 0
+                && end_points.findAt(end.getX(), end.getY()) < 0)
+            {
+                keep[index] = true;
+                start_points.add(start.getX(), start.getY(), index);
+                end_points.add(end.getX(), end.getY(), index);
+            }
+        }
+
+        //Remove the duplicates in one pass instead of one at a time.
+        int kept = 0;
+        for (int i = 0; i < keep.length; i++)
+        {
+            if (keep[i])
+            {
+                runways.set(kept++, runways.get(i));
+            }
+        }
+        runways.subList(kept, runways.size()).clear();
+    }
+
+    /**
+     * Pack a pixel's coordinates into a single long so that traversal
+     * methods can return a pixel without making a Point.
+     *
+     * @param x coordinate of the pixel
+     * @param y coordinate of the pixel
+     * @return the packed coordinates
+     */
+    private static long pack(int x, int y)
+    {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Get the x coordinate of packed coordinates.
+     *
+     * @param pixel is the packed coordinates
+     * @return x coordinate of the pixel
+     */
+    private static int unpackX(long pixel)
+    {
+        return (int) (pixel >> 32);
+    }
+
+    /**
+     * Get the y coordinate of packed coordinates.
+     *
+     * @param pixel is the packed coordinates
+     * @return y coordinate of the pixel
+     */
+    private static int unpackY(long pixel)
+    {
+        return (int) pixel;
+    }
+
+    /**
+     * Determine whether the pixel at (x, y) is black.
+     *
+     * @param x coordinate of the pixel
+     * @param y coordinate of the pixel
+     * @return true if the pixel is black
+     */
+    private boolean isBlack(int x, int y)
+    {
+        return diagram.isBlack(x, y);
+    }
+
+    /**
+     * See if the start point of a runway is within a range of another
+     * start point of a runway we already have.
+     *
+     * @param start_points are the start points of the runways found so far
+     * @param x coordinate of the point
+     * @param y coordinate of the point
+     * @return true if the point is too close to a previous runway
+     * or false if it is not
+     */
+    private boolean checkPixelInRunways(PointGrid start_points, int x, int y)
+    {
+        return start_points.findNear(x, y, runway_start_difference) >= 0;
+    }
+
+    /**
+     * Check the pixels to the above-right, above, above-left, and left
+     * to the parameter pixel and return True if they are not black
+     *
+     * @param x coordinate of the starting pixel
+     * @param y coordinate of the starting pixel
+     * @return true if none the pixels checked are black
+     * false if there is a black pixel
+     */
+    private boolean checkPixel(int x, int y)
+    {
+
+        //Point(0,0) is the top left corner of the document so the pixels
+        //above a certain point have a smaller y coordinate
+        if (isBlack(x - 1, y))
+        {
+            //left is black
+            return false;
+        }
+        else if (isBlack(x - 1, y - 1))
+        {
+            /* top left is black.  Double check the pixels to the right of
+             * and above the top left pixel, then make sure the pixels right,
+             * bottom, and bottom right are black and bottom left is not.
+             */
+            return !isBlack(x, y - 1) && !isBlack(x - 1, y - 2)
+                   && isBlack(x + 1, y) && isBlack(x, y + 1)
+                   && isBlack(x + 1, y + 1) && !isBlack(x - 1, y + 1);
+        }
+        else if (isBlack(x, y - 1))
+        {
+            /* top is black.  Double check the pixels to the right of and
+             * above the top pixel, then make sure right and bottom right
+             * are black.
+             */
+            return !isBlack(x + 1, y - 1) && isBlack(x + 1, y)
+                   && isBlack(x + 1, y + 1) && !isBlack(x, y - 2);
+        }
+        else if (isBlack(x + 1, y - 1))
+        {
+            //To handle the one condition on DWR with the horizontal runway not being taken
+            return !isBlack(x + 3, y - 2) && isBlack(x + 2, y - 2);
+        }
+        else
+        {
+            //no black pixels were found
+            return true;
+        }
+    }
+
+    /**
+     * Check the pixels to the right, bottom-right, bottom, bottom-left
+     * of the parameter point. 3 pixels must be black to traverse the
+     * two outermost. If less than 3 surrounding pixels are black, do nothing.
+     *
+     * @param x coordinate of the pixel
+     * @param y coordinate of the pixel
+     * @return true if the pixel is the corner of a possible runway
+     */
+    private boolean checkForCorner(int x, int y)
+    {
+        //Check to see if pixels around the initial point are black
+        boolean bottom_left_black = isBlack(x - 1, y + 1);
+        boolean bottom_black = isBlack(x, y + 1);
+        boolean bottom_right_black = isBlack(x + 1, y + 1);
+        boolean right_black = isBlack(x + 1, y);
+
+        //The surrounding pixels must be black so we know it is a runway
+            /* check r+br+b, bl+b+br, r+br+b+bl, and br + b */
+        return (bottom_right_black && bottom_black && bottom_left_black)
+               || (right_black && bottom_right_black && bottom_black)
+               || (right_black && bottom_right_black && bottom_black && bottom_left_black
+                   || (bottom_right_black && bottom_black));
+    }
+
+    /**
+     * Starting from the corner of the runway, follow the left side of
+     * the rectangular runway and the right side of the rectangular
+     * runway until the end of the short side is found.
+     *
+     * @param initial_x is the x coordinate of the starting point at the
+     * corner of the runway. This point will either be the upper right corner
+     * or the upper left corner of the runway depending on the runway's
+     * orientation.
+     * @param initial_y is the y coordinate of the starting point.
+     * @return the start of the runway at the middle of the short side, or
+     * null if the short side isn't the width of a runway.
+     */
+    private RunwayStart findSlope(int initial_x, int initial_y)
+    {
+        /* Initialize the left point and right point.  We will traverse
+         * a black pixel path going left from the left point and going
+         * right from the right point.  We will stop when we can no longer
+         * find a black pixel in one of the paths.  This path represents
+         * the width of the runway because the width is always shorter than
+         * the length.
+         */
+        long left_point = traverseLeft(initial_x, initial_y);
+        long right_point = traverseRight(initial_x, initial_y);
+
+        /* There is no point for the end of the width of the runway yet.
+         * The best starting point for the endpoint is the initial point.
+         */
+        long end_of_width = pack(initial_x, initial_y);
+
+        boolean width_found = false;
+
+        //right counter is used to count the traversals to the right.
+        //If we reach between 3-5 right traversals then start going down,
+        //that runway must be vertical.
+        int right_counter = 0;
+
+        //Until the width is found, keep traversing.
+        while (!width_found)
+        {
+            /* The next point on the left traversal path may be the end
+             * of the width of the runway.
+             */
+            end_of_width = traverseLeft(unpackX(left_point), unpackY(left_point));
+            if (left_point == end_of_width)
+            {
+                width_found = true;
+                break;
+            }
+            else
+            {
+                left_point = end_of_width;
+            }
+
+
+            /* The next point on the right traversal path may be the end
+             * of the width of the runway.
+             */
+            end_of_width = traverseRight(unpackX(right_point), unpackY(right_point));
+            if (right_point == end_of_width)
+            {
+                width_found = true;
+                break;
+            }
+            else
+            {
+                int end_x = unpackX(end_of_width);
+                int end_y = unpackY(end_of_width);
+                int right_x = unpackX(right_point);
+                int right_y = unpackY(right_point);
+                /*
+                 * We check to see if pixel returned from end_of_width is to the right of the right_point,
+                 * If it is, increase right counter because the runway may be a vertical runway.
+                 */
+                if (end_x - right_x == 1 && end_y == right_y)
+                {
+                    right_counter++;
+                    right_point = end_of_width;
+                }
+                else
+                {
+                    /*
+                     * Since we did not go right, we need to see how many times we have gone to the right before
+                     * changing direction. If it is between 3 and 10, we can safely assume the runway is vertical
+                     */
+                    if (right_counter > runway_rightcounter_min && right_counter < runway_rightcounter_max
+                        && end_y - right_y == 1)
+                    {
+                        width_found = true;
+                        end_of_width = right_point;
+                        break;
+                    }
+                    else
+                    {
+                        //reset right counter because the runway is not vertical
+                        right_counter = 0;
+                        right_point = end_of_width;
+                    }
+                }
+                //right_point = end_of_width;
+            }
+
+        }
+
+        int end_x = unpackX(end_of_width);
+        int end_y = unpackY(end_of_width);
+
+        /* The width of the runway is now a line segment from the
+         * Point intial_point to the Point end_of_width.  The
+         * slope of the length of the runway is the negative
+         * reciprocal of the slope of the width of the runway
+         * since the length and width are perpendicular.  Hence, the
+         * x component of the slope that we want is the difference between
+         * the y components that we have, and the y component is the
+         * difference between the x components that we have.
+         */
+        int slope_x = end_x - initial_x;
+        int slope_y = end_y - initial_y;
+        Slope slope = new Slope(slope_y, slope_x);
+        slope.invertSlope();
+
+        //The width of the runway will be used to check if a runway is valid
+        int width_of_runway = (int) findLength(initial_x, initial_y, end_x, end_y) + 1;
+
+        //Same rounding as Point.findMidpoint
+        int midpoint_x = (int) Math.floor((initial_x + end_x) / 2.0);
+        int midpoint_y = (int) Math.floor((initial_y + end_y) / 2.0);
+
+        /* Whether the start is too close to another runway is checked
+         * later, once the runways before it in the diagram are known.
+         */
+        if (width_of_runway > runway_width_min && width_of_runway < runway_width_max)
+        {
+            return new RunwayStart(midpoint_x, midpoint_y, slope, width_of_runway);
+        }
+        else
+        {
+            //runway was not wide enough
+            return null;
+        }
+
+    }
+
+    /**
+     * Find the end point of the runway and add the runway we find
+     * to the list of possible runways for this diagram
+     *
+     * @param runways are the runways found so far
+     * @param runway_start is the start of the runway
+     * @return true if the runway was long enough to be added
+     */
+    private boolean addToRunways(ArrayList<DiagramRunway> runways,
+                                 RunwayStart runway_start)
+    {
+        int midpoint_x = runway_start.midpoint_x;
+        int midpoint_y = runway_start.midpoint_y;
+        Slope slope = runway_start.slope;
+        long end_point = traverseSlope(midpoint_x, midpoint_y, slope,
+                                       runway_start.width_of_runway);
+        int end_x = unpackX(end_point);
+        int end_y = unpackY(end_point);
+
+        double runwayLength = findLength(midpoint_x,
+                                         midpoint_y,
+                                         end_x,
+                                         end_y);
+
+        if (runwayLength > runway_acceptance_length)
+        {
+            //Only the end points of accepted runways become Points.
+            runways.add(new DiagramRunway(new Point(midpoint_x, midpoint_y),
+                                          new Point(end_x, end_y),
+                                          slope,
+                                          runwayLength));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find the length in pixels of two x,y coordinates
+     *
+     * @param x coordinate for the first point
+     * @param y coordinate for the first point
+     * @param x coordinate for the second point
+     * @param y coordinate for the second point
+     */
+    private double findLength(int x1, int y1, int x2, int y2)
+    {
+        return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+    }
+
+    /**
+     * Get the location of the left-most adjacent black point or the
+     * location of the parameter point if all of the pixels to the left
+     * are white.
+     *
+     * @param x coordinate of the point
+     * @param y coordinate of the point
+     * @return the packed left-most point that is black or the given point
+     * if none of the three pixels tested are black.
+     */
+    private long traverseLeft(int x, int y)
+    {
+        /*
+         * Need to check the right and bottom right pixel to make sure we are still on the runway.
+         * In some situations, we can follow random black pixels to no mans land
+         */
+        if (isBlack(x + 1, y) || isBlack(x + 1, y + 1))
+        {
+            if (isBlack(x - 1, y))
+            {
+                //left
+                return pack(x - 1, y);
+            }
+            else if (isBlack(x, y + 1))
+            {
+                //bottom
+                return pack(x, y + 1);
+            }
+            else if (isBlack(x - 1, y + 1))
+            {
+                //bottom left
+                return pack(x - 1, y + 1);
+            }
+
+            //If no adjacent points were black, return the given point.
+            else
+            {
+                return pack(x, y);
+            }
+        }
+        else
+        {
+            return pack(x, y);
+        }
+
+    }
+
+    /**
+     * Get the location of the right-most adjacent black point or the
+     * location of the parameter point if all of the pixels to the right
+     * are white.
+     *
+     * @param x coordinate of the point
+     * @param y coordinate of the point
+     * @return the packed right-most point that is black or the given point
+     * if none of the three pixels tested are black.
+     */
+    private long traverseRight(int x, int y)
+    {
+        /*
+         * Need to check the left and bottom left pixel to make sure we are still on the runway.
+         * In some situations, we can follow random black pixels to no mans land
+         */
+        if (isBlack(x - 1, y) || isBlack(x - 1, y + 1) || isBlack(x + 1, y))
+        {
+            if (isBlack(x + 1, y))
+            {
+                //right
+                return pack(x + 1, y);
+            }
+            else if (isBlack(x, y + 1))
+            {
+                //bottom
+                return pack(x, y + 1);
+            }
+            else if (isBlack(x + 1, y + 1))
+            {
+                //bottom right
+                return pack(x + 1, y + 1);
+            }
+
+            //If no adjacent points were black, return the given point.
+            else
+            {
+                return pack(x, y);
+            }
+        }
+        else
+        {
+            return pack(x, y);
+        }
+
+    }
+
+    /**
+     * Return the greatest common divisor of two longs
+     */
+    private static int gcd(int a, int b)
+    {
+        if (b == 0)
+        {
+            return a;
+        }
+        else
+        {
+            return gcd(b, a % b);
+        }
+    }
+
+    /**
+     * Traverse the slope at the rate of the slope. Stop when
+     * you reach the last black point.
+     *
+     * @param initial_x
+     * @param initial_y
+     * @param slope
+     * @return packed last black point
+     */
+    private long traverseSlope(int initial_x, int initial_y, Slope slope, int width_of_runway)
+    {
+        int slopeX = slope.getX();
+        int slopeY = slope.getY();
+        int curr_x = initial_x;
+        int curr_y = initial_y;
+
+        //Find the slope of the width of the runway
+        slope.invertSlope();
+        int slope_width_X = slope.getX();
+        int slope_width_Y = slope.getY();
+        //simplify slope with gcd. Slope is too big otherwise
+        int gcd = gcd(slope_width_X, slope_width_Y);
+        if (gcd > 0)
+        {
+            slope_width_X = slope_width_X / gcd;
+            slope_width_Y = slope_width_Y / gcd;
+        }
+        else //We have to simplify the slope in every situation because it will be to big otherwise.
+        {
+            //easiest way to accomplish this is to make both numbers even so we can simplify by 2 no matter what
+            if (slope_width_X % 2 != 0)
+            {
+                slope_width_X++;
+            }
+            if (slope_width_Y % 2 != 0)
+            {
+                slope_width_Y++;
+            }
+            slope_width_X = slope_width_X / 2;
+            slope_width_Y = slope_width_Y / 2;
+        }
+
+        /*
+         * Runways may be vertical, horizontal, or on some sort of a slant. a vertical runway has a slope of 
+         * y / 0, so we have to check for that condition and handle it appropiatly. A horizontal runway will have
+         * a slope of 0/0 so we have to check for that condition and handle it. Other wise If the slope of the 
+         * runway is positive, we need to set the left_wing and right_wing normally.
+         * If the slope is negative, we need to flip them so they work correctly
+         */
+        int left_wing_x;
+        int left_wing_y;
+        int right_wing_x;
+        int right_wing_y;
+        //The runway is horizontal and will not have a slope.
+        if (Integer.signum(slopeX) == 0 && Integer.signum(slopeY) == 0)
+        {
+            int wing = width_of_runway / 2;
+
+            while (true)
+            {
+                int next_x = curr_x + 1;
+                int next_y = curr_y;
+
+                if (isBlack(next_x, next_y))
+                {
+                    curr_x = next_x;
+                }
+                //check the wings of the next point
+                else if (isBlack(next_x, next_y + wing) || isBlack(next_x, next_y - wing))
+                {
+                    curr_x = next_x;
+                }
+                //Check 2 pixels ahead of the current point to make sure we are at the end of the runway
+                else if (isBlack(next_x + 1, next_y))
+                {
+                    curr_x = next_x + 1;
+                }
+                //The next point is still not black so we must be at the end of the runway
+                else
+                {
+                    return pack(curr_x, curr_y);
+                }
+            }
+        }
+        //The slope of the runway is undefined so we know it is vertical
+        else if (Integer.signum(slopeX) == 0 && Integer.signum(slopeY) != 0)
+        {
+            int wing = width_of_runway / 2;
+
+            while (true)
+            {
+                int next_x = curr_x;
+                int next_y = curr_y + 1;
+
+                if (isBlack(next_x, next_y))
+                {
+                    curr_y = next_y;
+                }
+                //check the wings of the next point
+                else if (isBlack(next_x + wing, next_y) || isBlack(next_x - wing, next_y))
+                {
+                    curr_y = next_y;
+                }
+                //Check 2 pixels ahead of the current point to make sure we are at the end of the runway
+                else if (isBlack(next_x, next_y + 1))
+                {
+                    curr_y = next_y + 1;
+                }
+                //The next point is still not black so we must be at the end of the runway
+                else
+                {
+                    return pack(curr_x, curr_y);
+                }
+            }
+        }
+        else if (Integer.signum(slopeX) == 1)
+        {
+            left_wing_x = slope_width_X;
+            left_wing_y = slope_width_Y;
+            right_wing_x = -slope_width_X;
+            right_wing_y = -slope_width_Y;
+        }
+        //The slope of X must be negative so flip right_wing and left_wing
+        else
+        {
+            right_wing_x = slope_width_X;
+            right_wing_y = slope_width_Y;
+            left_wing_x = -slope_width_X;
+            left_wing_y = -slope_width_Y;
+        }
+
+        boolean lastBlack = false;
+        while (lastBlack == false)
+        {
+            //To get the next point, add the slope to the current point.
+            int next_x = curr_x + slopeX;
+            int next_y = curr_y + slopeY;
+
+            //check the wings of the next point
+            boolean left_wing_black = isBlack(next_x + left_wing_x, next_y + left_wing_y);
+            boolean right_wing_black = isBlack(next_x + right_wing_x, next_y + right_wing_y);
+
+            if (left_wing_black && right_wing_black)
+            //Both wings are black so we are still in the middle of the runway.
+            //continue forward
+            {
+                curr_x = next_x;
+                curr_y = next_y;
+            }
+            else if (left_wing_black && !right_wing_black)
+            //Left wing is black and the right wing is not.
+            //Correct ourselves to the left so we stay in the middle of the runway
+            {
+                curr_x = next_x - slope_correction;
+                curr_y = next_y;
+            }
+            else if (!left_wing_black && right_wing_black)
+            //right wing is black and the left wing is not.
+            //Correct ourselves to the right so we stay in the middle of the runway
+            {
+                curr_x = next_x + slope_correction;
+                curr_y = next_y;
+            }
+            else if (isBlack(next_x, next_y))
+            {
+                //Even though the wings are not black, the next pixel is black so we can
+                //continue to traverse the runway
+                curr_x = next_x;
+                curr_y = next_y;
+            }
+            else
+            {
+                /*
+                 * The next_point is not black and the wings are not black. We are either
+                 * at the end of the runway, off the runway, or in white text. Look
+                 * around at the surrounding pixels to decide what we should do.
+                 */
+                //Lets check to see if the next pixel ahead of next_point && next pixel ahead of curr pixel is black,
+                //if they both are true, keep traversing
+                if (isBlack(curr_x, curr_y + 1) && isBlack(next_x, next_y + 1))
+                {
+                    curr_x = next_x;
+                    curr_y = next_y;
+                }
+                else
+                {
+                    lastBlack = true;
+
+                }
+
+            }
+
+        }
+        return pack(curr_x, curr_y);
+    }
+
+    /**
+     * The middle of the short side of a possible runway, found while
+     * traversing the image, and the slope and width needed to follow the
+     * runway from there.
+     */
+    private static class RunwayStart
+    {
+        final int midpoint_x;
+        final int midpoint_y;
+        final Slope slope;
+        final int width_of_runway;
+
+        RunwayStart(int midpoint_x, int midpoint_y, Slope slope,
+                    int width_of_runway)
+        {
+            this.midpoint_x = midpoint_x;
+            this.midpoint_y = midpoint_y;
+            this.slope = slope;
+            this.width_of_runway = width_of_runway;
+        }
+    }
+
+    /**
+     * Traverse a band of rows of the image on the fork-join pool.  Bands
+     * that are too tall are split in half, and the runway starts of the two
+     * halves are put back together top half first, so they come out in the
+     * same order as a traversal of the whole image.
+     */
+    private class BandScan extends RecursiveTask<ArrayList<RunwayStart>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int first_row;
+        private final int end_row;
+
+        BandScan(int first_row, int end_row)
+        {
+            this.first_row = first_row;
+            this.end_row = end_row;
+        }
+
+        @Override
+        protected ArrayList<RunwayStart> compute()
+        {
+            if (end_row - first_row <= BAND_HEIGHT)
+            {
+                return traverseImage(first_row, end_row);
+            }
+            int middle_row = (first_row + end_row) >>> 1;
+            BandScan top = new BandScan(first_row, middle_row);
+            BandScan bottom = new BandScan(middle_row, end_row);
+            top.fork();
+            ArrayList<RunwayStart> runway_starts = bottom.compute();
+            runway_starts.addAll(0, top.join());
+            return runway_starts;
+        }
+    }
+
+}
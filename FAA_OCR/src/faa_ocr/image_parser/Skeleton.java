@@ -0,0 +1,826 @@
+package faa_ocr.image_parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The one pixel wide center lines of the black regions of a raster, traced
+ * into polylines.
+ *
+ * The regions are thinned with the Zhang-Suen method, which peels the
+ * border pixels off of every region until only the center line is left
+ * without breaking any region apart.  Only pixels on the border can be
+ * peeled, so each pass looks at the pixels that were on the border or
+ * next to a peeled pixel instead of at the whole raster.
+ *
+ * The pixels of the center lines that don't have exactly two neighbors are
+ * the ends and the junctions.  Touching junction pixels are one junction,
+ * and the polylines are traced along the other pixels from one end or
+ * junction to the next.  Every polyline that meets at a junction starts or
+ * ends at the same point, the middle of the junction.
+ *
+ * @author Kevin Dittmar
+ */
+public class Skeleton
+{
+    //A side branch shorter than this, in pixels, is a bump in the border.
+    private static final int MIN_BRANCH_LENGTH = 8;
+
+    //How far, in pixels, a traced polyline can be from its simplified one.
+    private static final double SIMPLIFY_TOLERANCE = 1.5;
+
+    //The neighbors of a pixel, clockwise from the top: P2 through P9.
+    private static final int[] NEIGHBOR_X = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] NEIGHBOR_Y = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    /* The pixels with a white border one pixel wide around them, so that
+     * the neighbors of any pixel can be read without a bounds check.
+     */
+    private final int padded_width;
+    private final byte[] pixels;
+    private final int[] neighbor_offset;
+
+    //The junction or end that each center line pixel belongs to, or -1.
+    private int[] node_of;
+    private final ArrayList<int[]> node_pixels;
+    private final ArrayList<SkeletonPath> paths;
+
+    /**
+     * Thin the black regions of a raster and trace their center lines.
+     *
+     * @param raster is the raster whose black regions are thinned.
+     */
+    public Skeleton(BinaryRaster raster)
+    {
+        padded_width = raster.getWidth() + 2;
+        pixels = new byte[padded_width * (raster.getHeight() + 2)];
+        neighbor_offset = new int[8];
+        for (int i = 0; i < 8; i++)
+        {
+            neighbor_offset[i] = NEIGHBOR_Y[i] * padded_width + NEIGHBOR_X[i];
+        }
+        for (int y = 0; y < raster.getHeight(); y++)
+        {
+            for (int x = raster.nextBlackInRow(0, y);
+                 x >= 0;
+                 x = raster.nextBlackInRow(x + 1, y))
+            {
+                pixels[index(x, y)] = 1;
+            }
+        }
+        node_pixels = new ArrayList<>();
+        paths = new ArrayList<>();
+
+        thin();
+        findNodes();
+        tracePaths();
+        pruneBranches();
+        for (SkeletonPath path : paths)
+        {
+            path.simplify();
+        }
+    }
+
+    /**
+     * Get the polylines along the center lines of the regions.
+     *
+     * @return the traced polylines.
+     */
+    public ArrayList<SkeletonPath> getPaths()
+    {
+        return paths;
+    }
+
+    private int index(int x, int y)
+    {
+        return (y + 1) * padded_width + x + 1;
+    }
+
+    private int pixelX(int index)
+    {
+        return index % padded_width - 1;
+    }
+
+    private int pixelY(int index)
+    {
+        return index / padded_width - 1;
+    }
+
+    /**
+     * Peel the border pixels off of the regions until nothing more can be
+     * peeled.  Each pass has two halves, one that peels from the bottom and
+     * right and one that peels from the top and left, so the center line
+     * ends up in the middle.
+     */
+    private void thin()
+    {
+        //The pixels that might be peeled, starting with the border pixels.
+        int[] candidates = new int[64];
+        int candidate_count = 0;
+        for (int i = 0; i < pixels.length; i++)
+        {
+            if (pixels[i] != 0 && isBorder(i))
+            {
+                if (candidate_count == candidates.length)
+                {
+                    candidates = Arrays.copyOf(candidates,
+                                               candidates.length * 2);
+                }
+                candidates[candidate_count++] = i;
+            }
+        }
+
+        //The pass that last put each pixel in the candidates.
+        int[] queued = new int[pixels.length];
+        int[] peeled = new int[candidate_count];
+        int pass = 1;
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int half = 0; half < 2; half++)
+            {
+                //Decide every pixel first, then peel them all at once.
+                int peeled_count = 0;
+                if (peeled.length < candidate_count)
+                {
+                    peeled = new int[candidate_count];
+                }
+                for (int i = 0; i < candidate_count; i++)
+                {
+                    if (canPeel(candidates[i], half))
+                    {
+                        peeled[peeled_count++] = candidates[i];
+                    }
+                }
+                if (peeled_count == 0)
+                {
+                    continue;
+                }
+                changed = true;
+                for (int i = 0; i < peeled_count; i++)
+                {
+                    pixels[peeled[i]] = 0;
+                }
+
+                /* The pixels left to look at are the candidates that
+                 * weren't peeled and the black pixels next to a peeled one,
+                 * which are on the border now.
+                 */
+                pass++;
+                int kept = 0;
+                for (int i = 0; i < candidate_count; i++)
+                {
+                    int pixel = candidates[i];
+                    if (pixels[pixel] != 0 && queued[pixel] != pass)
+                    {
+                        queued[pixel] = pass;
+                        candidates[kept++] = pixel;
+                    }
+                }
+                for (int i = 0; i < peeled_count; i++)
+                {
+                    for (int offset : neighbor_offset)
+                    {
+                        int pixel = peeled[i] + offset;
+                        if (pixels[pixel] != 0 && queued[pixel] != pass)
+                        {
+                            queued[pixel] = pass;
+                            if (kept == candidates.length)
+                            {
+                                candidates = Arrays.copyOf(
+                                        candidates, candidates.length * 2
+                                );
+                            }
+                            candidates[kept++] = pixel;
+                        }
+                    }
+                }
+                candidate_count = kept;
+            }
+        }
+    }
+
+    /**
+     * Determine whether a black pixel has a white pixel above, below, left,
+     * or right of it.
+     *
+     * @param pixel is the index of the pixel.
+     * @return true if the pixel is on the border of its region.
+     */
+    private boolean isBorder(int pixel)
+    {
+        return pixels[pixel - padded_width] == 0
+               || pixels[pixel + padded_width] == 0
+               || pixels[pixel - 1] == 0
+               || pixels[pixel + 1] == 0;
+    }
+
+    /**
+     * Determine whether a pixel can be peeled in one half of a thinning
+     * pass.  It can if it has between two and six black neighbors, going
+     * around it only goes from white to black once so that peeling it
+     * doesn't split the region, and it is on the side of the region that
+     * the half peels from.
+     *
+     * @param pixel is the index of the pixel.
+     * @param half is 0 to peel from the bottom and right and 1 to peel from
+     * the top and left.
+     * @return true if the pixel should be peeled.
+     */
+    private boolean canPeel(int pixel, int half)
+    {
+        if (pixels[pixel] == 0)
+        {
+            return false;
+        }
+        int black_count = 0;
+        int white_to_black = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            int here = pixels[pixel + neighbor_offset[i]];
+            int next = pixels[pixel + neighbor_offset[(i + 1) % 8]];
+            black_count += here;
+            if (here == 0 && next != 0)
+            {
+                white_to_black++;
+            }
+        }
+        if (black_count < 2 || black_count > 6 || white_to_black != 1)
+        {
+            return false;
+        }
+
+        int north = pixels[pixel + neighbor_offset[0]];
+        int east = pixels[pixel + neighbor_offset[2]];
+        int south = pixels[pixel + neighbor_offset[4]];
+        int west = pixels[pixel + neighbor_offset[6]];
+        if (half == 0)
+        {
+            return north * east * south == 0 && east * south * west == 0;
+        }
+        return north * east * west == 0 && north * south * west == 0;
+    }
+
+    /**
+     * Count the black neighbors of a center line pixel.
+     *
+     * @param pixel is the index of the pixel.
+     * @return the number of black pixels around it.
+     */
+    private int countNeighbors(int pixel)
+    {
+        int count = 0;
+        for (int offset : neighbor_offset)
+        {
+            count += pixels[pixel + offset];
+        }
+        return count;
+    }
+
+    /**
+     * Group the center line pixels that don't have exactly two neighbors
+     * into ends and junctions.  Pixels like that which touch each other are
+     * one junction.
+     */
+    private void findNodes()
+    {
+        node_of = new int[pixels.length];
+        Arrays.fill(node_of, -1);
+        int[] stack = new int[16];
+        for (int i = 0; i < pixels.length; i++)
+        {
+            if (pixels[i] == 0 || node_of[i] >= 0 || countNeighbors(i) == 2)
+            {
+                continue;
+            }
+
+            //Flood the touching junction pixels with the same node.
+            int node = node_pixels.size();
+            int[] members = new int[4];
+            int member_count = 0;
+            int stack_size = 0;
+            stack[stack_size++] = i;
+            node_of[i] = node;
+            while (stack_size > 0)
+            {
+                int pixel = stack[--stack_size];
+                if (member_count == members.length)
+                {
+                    members = Arrays.copyOf(members, members.length * 2);
+                }
+                members[member_count++] = pixel;
+                for (int offset : neighbor_offset)
+                {
+                    int neighbor = pixel + offset;
+                    if (pixels[neighbor] != 0 && node_of[neighbor] < 0
+                        && countNeighbors(neighbor) != 2)
+                    {
+                        node_of[neighbor] = node;
+                        if (stack_size == stack.length)
+                        {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[stack_size++] = neighbor;
+                    }
+                }
+            }
+            node_pixels.add(Arrays.copyOf(members, member_count));
+        }
+    }
+
+    /**
+     * Get the middle of a junction or end.
+     *
+     * @param node is the index of the node.
+     * @return the x and y coordinates of the pixel closest to the mean of
+     * the node's pixels.
+     */
+    private int[] nodeCenter(int node)
+    {
+        int[] members = node_pixels.get(node);
+        long sum_x = 0;
+        long sum_y = 0;
+        for (int pixel : members)
+        {
+            sum_x += pixelX(pixel);
+            sum_y += pixelY(pixel);
+        }
+        return new int[] {
+            (int) Math.round((double) sum_x / members.length),
+            (int) Math.round((double) sum_y / members.length)
+        };
+    }
+
+    /**
+     * Trace the center lines from node to node, and then trace the loops
+     * that don't have any nodes on them.
+     */
+    private void tracePaths()
+    {
+        boolean[] visited = new boolean[pixels.length];
+        for (int node = 0; node < node_pixels.size(); node++)
+        {
+            for (int pixel : node_pixels.get(node))
+            {
+                for (int offset : neighbor_offset)
+                {
+                    int next = pixel + offset;
+                    if (pixels[next] != 0 && node_of[next] < 0
+                        && !visited[next])
+                    {
+                        traceFrom(node, pixel, next, visited);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < pixels.length; i++)
+        {
+            if (pixels[i] != 0 && node_of[i] < 0 && !visited[i])
+            {
+                traceLoop(i, visited);
+            }
+        }
+    }
+
+    /**
+     * Trace a center line from a node until it reaches another node.
+     *
+     * @param start_node is the node the line starts at.
+     * @param start_pixel is the pixel of the node that the line leaves from.
+     * @param first is the first pixel of the line after the node.
+     * @param visited marks the line pixels that were already traced.
+     */
+    private void traceFrom(int start_node, int start_pixel, int first,
+                           boolean[] visited)
+    {
+        SkeletonPath path = new SkeletonPath(start_node);
+        int[] start = nodeCenter(start_node);
+        path.add(start[0], start[1]);
+
+        int previous = start_pixel;
+        int current = first;
+        int end_node = -1;
+        while (true)
+        {
+            visited[current] = true;
+            path.add(pixelX(current), pixelY(current));
+
+            //A line pixel has two neighbors, and one is where we came from.
+            int next = -1;
+            for (int offset : neighbor_offset)
+            {
+                int neighbor = current + offset;
+                if (neighbor != previous && pixels[neighbor] != 0
+                    && (node_of[neighbor] >= 0 || !visited[neighbor]))
+                {
+                    next = neighbor;
+                    if (node_of[neighbor] >= 0)
+                    {
+                        break;
+                    }
+                }
+            }
+            if (next < 0)
+            {
+                break;
+            }
+            if (node_of[next] >= 0)
+            {
+                end_node = node_of[next];
+                break;
+            }
+            previous = current;
+            current = next;
+        }
+
+        if (end_node >= 0)
+        {
+            int[] end = nodeCenter(end_node);
+            path.add(end[0], end[1]);
+        }
+        path.end_node = end_node;
+        paths.add(path);
+    }
+
+    /**
+     * Trace a loop of center line pixels that has no ends or junctions.
+     *
+     * @param first is a pixel on the loop.
+     * @param visited marks the line pixels that were already traced.
+     */
+    private void traceLoop(int first, boolean[] visited)
+    {
+        SkeletonPath path = new SkeletonPath(-1);
+        int previous = -1;
+        int current = first;
+        while (current >= 0)
+        {
+            visited[current] = true;
+            path.add(pixelX(current), pixelY(current));
+            int next = -1;
+            for (int offset : neighbor_offset)
+            {
+                int neighbor = current + offset;
+                if (neighbor != previous && pixels[neighbor] != 0
+                    && !visited[neighbor])
+                {
+                    next = neighbor;
+                    break;
+                }
+            }
+            previous = current;
+            current = next;
+        }
+
+        //Close the loop.
+        path.add(pixelX(first), pixelY(first));
+        paths.add(path);
+    }
+
+    /**
+     * Remove the short side branches that thinning leaves where the border
+     * of a region has a bump, and join the two lines left at a junction
+     * whose branch was removed back into one line.
+     */
+    private void pruneBranches()
+    {
+        int[] path_count = new int[node_pixels.size()];
+        for (SkeletonPath path : paths)
+        {
+            countEnds(path, path_count, 1);
+        }
+
+        //A branch goes from a junction to an end that nothing else reaches.
+        ArrayList<SkeletonPath> kept = new ArrayList<>(paths.size());
+        for (SkeletonPath path : paths)
+        {
+            boolean start_is_tip = path.start_node >= 0
+                                   && path_count[path.start_node] == 1;
+            boolean end_is_tip = path.end_node < 0
+                                 || path_count[path.end_node] == 1;
+            boolean is_short = path.getLength() < MIN_BRANCH_LENGTH;
+            boolean is_branch = start_is_tip != end_is_tip && is_short;
+
+            //A tiny loop from a junction back to itself is part of the junction.
+            boolean is_knot = path.start_node == path.end_node && is_short;
+            if (is_branch || is_knot)
+            {
+                countEnds(path, path_count, -1);
+            }
+            else
+            {
+                kept.add(path);
+            }
+        }
+        paths.clear();
+        paths.addAll(kept);
+
+        joinPaths(path_count);
+        for (SkeletonPath path : paths)
+        {
+            path.start_is_free = path.start_node < 0
+                                 || path_count[path.start_node] == 1;
+            path.end_is_free = path.end_node < 0
+                               || path_count[path.end_node] == 1;
+        }
+    }
+
+    /**
+     * Add to the number of paths that end at each of a path's nodes.
+     *
+     * @param path is the path whose nodes are counted.
+     * @param path_count is the number of paths at each node.
+     * @param change is 1 to count the path and -1 to take it back.
+     */
+    private static void countEnds(SkeletonPath path, int[] path_count,
+                                  int change)
+    {
+        if (path.start_node >= 0)
+        {
+            path_count[path.start_node] += change;
+        }
+        if (path.end_node >= 0)
+        {
+            path_count[path.end_node] += change;
+        }
+    }
+
+    /**
+     * Join the paths that meet at a node where no other path meets, since
+     * that node is only a bend in one line.
+     *
+     * @param path_count is the number of paths at each node.
+     */
+    private void joinPaths(int[] path_count)
+    {
+        //The paths at each node that only two paths meet at.
+        SkeletonPath[] first_at = new SkeletonPath[path_count.length];
+        SkeletonPath[] second_at = new SkeletonPath[path_count.length];
+        for (SkeletonPath path : paths)
+        {
+            addAtNode(path, path.start_node, path_count, first_at, second_at);
+            addAtNode(path, path.end_node, path_count, first_at, second_at);
+        }
+
+        for (int node = 0; node < path_count.length; node++)
+        {
+            SkeletonPath first = first_at[node];
+            SkeletonPath second = second_at[node];
+            if (first == null || second == null || first == second)
+            {
+                continue;
+            }
+
+            //Turn the paths so that the first ends and the second starts here.
+            if (first.end_node != node)
+            {
+                first.reverse();
+            }
+            if (second.start_node != node)
+            {
+                second.reverse();
+            }
+            first.append(second);
+            paths.remove(second);
+
+            //The node at the far end of the second path now has the first.
+            int far_node = first.end_node;
+            if (far_node >= 0)
+            {
+                if (first_at[far_node] == second)
+                {
+                    first_at[far_node] = first;
+                }
+                if (second_at[far_node] == second)
+                {
+                    second_at[far_node] = first;
+                }
+            }
+        }
+    }
+
+    private static void addAtNode(SkeletonPath path, int node,
+                                  int[] path_count,
+                                  SkeletonPath[] first_at,
+                                  SkeletonPath[] second_at)
+    {
+        if (node < 0 || path_count[node] != 2)
+        {
+            return;
+        }
+        if (first_at[node] == null)
+        {
+            first_at[node] = path;
+        }
+        else
+        {
+            second_at[node] = path;
+        }
+    }
+
+    /**
+     * A polyline along a center line.  Its points are pixel coordinates,
+     * and its ends are at the middles of the nodes it connects.
+     */
+    public static class SkeletonPath
+    {
+        private int[] x = new int[8];
+        private int[] y = new int[8];
+        private int point_count;
+
+        //The nodes at the ends of the path, or -1 for a loop.
+        int start_node;
+        int end_node = -1;
+
+        //True if nothing else meets the path at that end.
+        boolean start_is_free;
+        boolean end_is_free;
+
+        SkeletonPath(int start_node)
+        {
+            this.start_node = start_node;
+        }
+
+        void add(int point_x, int point_y)
+        {
+            //Skip a point that repeats the last one.
+            if (point_count > 0 && x[point_count - 1] == point_x
+                && y[point_count - 1] == point_y)
+            {
+                return;
+            }
+            if (point_count == x.length)
+            {
+                x = Arrays.copyOf(x, point_count * 2);
+                y = Arrays.copyOf(y, point_count * 2);
+            }
+            x[point_count] = point_x;
+            y[point_count] = point_y;
+            point_count++;
+        }
+
+        void append(SkeletonPath other)
+        {
+            for (int i = 0; i < other.point_count; i++)
+            {
+                add(other.x[i], other.y[i]);
+            }
+            end_node = other.end_node;
+        }
+
+        void reverse()
+        {
+            for (int i = 0, k = point_count - 1; i < k; i++, k--)
+            {
+                int temp_x = x[i];
+                x[i] = x[k];
+                x[k] = temp_x;
+                int temp_y = y[i];
+                y[i] = y[k];
+                y[k] = temp_y;
+            }
+            int temp_node = start_node;
+            start_node = end_node;
+            end_node = temp_node;
+        }
+
+        /**
+         * Drop the points that are close to the line between the points
+         * around them, with the Douglas-Peucker method.
+         */
+        void simplify()
+        {
+            if (point_count < 3)
+            {
+                return;
+            }
+            boolean[] keep = new boolean[point_count];
+            keep[0] = true;
+            keep[point_count - 1] = true;
+            int[] stack = new int[2 * point_count];
+            int stack_size = 0;
+            stack[stack_size++] = 0;
+            stack[stack_size++] = point_count - 1;
+            while (stack_size > 0)
+            {
+                int last = stack[--stack_size];
+                int first = stack[--stack_size];
+                int farthest = -1;
+                double farthest_distance = SIMPLIFY_TOLERANCE;
+                for (int i = first + 1; i < last; i++)
+                {
+                    double distance = distanceToLine(i, first, last);
+                    if (distance > farthest_distance)
+                    {
+                        farthest = i;
+                        farthest_distance = distance;
+                    }
+                }
+                if (farthest >= 0)
+                {
+                    keep[farthest] = true;
+                    stack[stack_size++] = first;
+                    stack[stack_size++] = farthest;
+                    stack[stack_size++] = farthest;
+                    stack[stack_size++] = last;
+                }
+            }
+
+            int kept = 0;
+            for (int i = 0; i < point_count; i++)
+            {
+                if (keep[i])
+                {
+                    x[kept] = x[i];
+                    y[kept] = y[i];
+                    kept++;
+                }
+            }
+            point_count = kept;
+        }
+
+        private double distanceToLine(int point, int first, int last)
+        {
+            double dx = x[last] - x[first];
+            double dy = y[last] - y[first];
+            double length = Math.hypot(dx, dy);
+            if (length == 0)
+            {
+                return Math.hypot(x[point] - x[first], y[point] - y[first]);
+            }
+            return Math.abs(dy * (x[point] - x[first])
+                            - dx * (y[point] - y[first])) / length;
+        }
+
+        /**
+         * Get the number of points in the path.
+         *
+         * @return the point count.
+         */
+        public int getPointCount()
+        {
+            return point_count;
+        }
+
+        /**
+         * Get the x coordinate of a point of the path.
+         *
+         * @param index is the index of the point.
+         * @return the x coordinate in pixels.
+         */
+        public int getX(int index)
+        {
+            return x[index];
+        }
+
+        /**
+         * Get the y coordinate of a point of the path.
+         *
+         * @param index is the index of the point.
+         * @return the y coordinate in pixels.
+         */
+        public int getY(int index)
+        {
+            return y[index];
+        }
+
+        /**
+         * Determine whether the path starts at a free end instead of at a
+         * junction with other paths.
+         *
+         * @return true if no other path meets this one at its start.
+         */
+        public boolean startIsFree()
+        {
+            return start_is_free;
+        }
+
+        /**
+         * Determine whether the path ends at a free end instead of at a
+         * junction with other paths.
+         *
+         * @return true if no other path meets this one at its end.
+         */
+        public boolean endIsFree()
+        {
+            return end_is_free;
+        }
+
+        /**
+         * Get the length of the path along its points.
+         *
+         * @return the length in pixels.
+         */
+        public double getLength()
+        {
+            double length = 0;
+            for (int i = 1; i < point_count; i++)
+            {
+                length += Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+            }
+            return length;
+        }
+    }
+}
@@ -1,31 +1,382 @@
 package faa_ocr.image_parser;
 
-import java.awt.image.BufferedImage;
-
 import faa_ocr.ADTs.Airport;
+import faa_ocr.ADTs.DiagramRunway;
+import faa_ocr.ADTs.LineSegment;
+import faa_ocr.ADTs.Node;
+import faa_ocr.ADTs.Point;
+import faa_ocr.ADTs.SweepLineIntersector;
+import faa_ocr.ADTs.Taxiway;
+import faa_ocr.metrics.AirportMetrics;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 /**
+ * Finds the taxiways of an airport diagram as polylines along the middle of
+ * the gray pavement.
  *
- * @author joe kvedaras
+ * The pavement is taken from the same rendering as the binary raster.  The
+ * runways are cut out of it, so every taxiway stops at the runways it
+ * crosses, and the pavement is thinned to its center lines.  The center
+ * lines are traced into polylines that meet at the junctions of the
+ * taxiway network, and a taxiway that runs into a runway is carried on to
+ * the runway's center line.  A sweep line over the taxiways and runways
+ * then gives the points where they meet, which become the intersection
+ * nodes of both.
  *
+ * @author joe kvedaras
+ * @author Kevin Dittmar
  */
 public class TaxiwayDiagramParser
 {
+    /* How far to either side of a runway's center line the pavement is cut
+     * out.  This is more than half of the widest runway, so the shoulders
+     * go too.
+     */
+    private static final int RUNWAY_MASK_HALF_WIDTH = 8;
+
+    /* A taxiway end this close to a runway's center line ran into the
+     * runway.
+     */
+    private static final int RUNWAY_SNAP_DISTANCE = RUNWAY_MASK_HALF_WIDTH + 4;
+
+    //Pieces of pavement smaller than this, in pixels, are specks.
+    private static final int MIN_PAVEMENT_PIXELS = 60;
+
+    //A taxiway with a free end has to be at least this long, in pixels.
+    private static final int MIN_TAXIWAY_LENGTH = 20;
+
     public TaxiwayDiagramParser()
     {
-
+        //do nothing
     }
 
     /**
      * Find the paths of all taxiways in the diagram and adds their paths
-     * to the Airport object specified.
+     * to the Airport object specified.  The points where taxiways meet
+     * runways are also added to the runways.
      *
-     * @param diagram	is the airport diagram image to parse for runways
      * @param airport	the airport to which taxiway path data should be added
+     * @param runways	are the runways found in the diagram
+     */
+    public void parseTaxiways(Airport airport,
+                              ArrayList<DiagramRunway> runways)
+    {
+        BinaryRaster pavement = airport.getPavement();
+        if (pavement == null)
+        {
+            return;
+        }
+
+        BinaryRaster taxiway_area = findTaxiwayArea(
+                airport.getDiagram(), pavement, runways
+        );
+        ArrayList<ArrayList<Point>> polylines = tracePolylines(
+                taxiway_area, runways
+        );
+        ArrayList<LinkedHashSet<Point>> intersections = findIntersections(
+                polylines, runways
+        );
+
+        if (AirportMetrics.isRecording())
+        {
+            AirportMetrics.count("taxiway.pavement_pixels",
+                                 pavement.countBlack());
+            AirportMetrics.count("taxiway.area_pixels",
+                                 taxiway_area.countBlack());
+            AirportMetrics.count("taxiway.found", polylines.size());
+            for (LinkedHashSet<Point> points : intersections)
+            {
+                AirportMetrics.count("taxiway.intersections", points.size());
+            }
+        }
+
+        for (int i = 0; i < polylines.size(); i++)
+        {
+            Taxiway taxiway = new Taxiway("Taxiway " + (i + 1));
+            for (Point point : polylines.get(i))
+            {
+                taxiway.addPathNode(toNode(airport, point));
+            }
+            for (Point point : intersections.get(i))
+            {
+                taxiway.addIntNode(toNode(airport, point));
+            }
+            airport.addTaxiway(taxiway);
+        }
+    }
+
+    /**
+     * Get the pavement that taxiways run along.  The runway numbers and the
+     * taxiway letters are black, so black pixels right next to the pavement
+     * are counted as pavement to fill the holes they would leave.  The
+     * runways are cut out, and so are the specks of gray that are left
+     * around the edges of black lines and text.
+     *
+     * @param diagram is the binary raster of the airport diagram.
+     * @param pavement is the raster of the gray pavement in the diagram.
+     * @param runways are the runways found in the diagram.
+     * @return the raster of the taxiway pavement.
+     */
+    private BinaryRaster findTaxiwayArea(BinaryRaster diagram,
+                                         BinaryRaster pavement,
+                                         ArrayList<DiagramRunway> runways)
+    {
+        BinaryRaster area = pavement.or(
+                diagram.and(pavement.dilate().dilate())
+        );
+        for (DiagramRunway runway : runways)
+        {
+            cutOutRunway(area, runway);
+        }
+
+        ComponentLabeler labeler = new ComponentLabeler(area);
+        ArrayList<ConnectedComponent> pieces = new ArrayList<>();
+        for (ConnectedComponent component : labeler.getComponents())
+        {
+            if (component.getPixelCount() >= MIN_PAVEMENT_PIXELS)
+            {
+                pieces.add(component);
+            }
+        }
+        return labeler.makeMask(pieces);
+    }
+
+    /**
+     * Clear the pixels within RUNWAY_MASK_HALF_WIDTH of a runway's center
+     * line, including past its ends.
+     *
+     * @param area is the raster to cut the runway out of.
+     * @param runway is the runway to cut out.
+     */
+    private void cutOutRunway(BinaryRaster area, DiagramRunway runway)
+    {
+        double start_x = runway.getStartPoint().getX();
+        double start_y = runway.getStartPoint().getY();
+        double length = Math.hypot(runway.getEndPoint().getX() - start_x,
+                                   runway.getEndPoint().getY() - start_y);
+        if (length == 0)
+        {
+            return;
+        }
+        double along_x = (runway.getEndPoint().getX() - start_x) / length;
+        double along_y = (runway.getEndPoint().getY() - start_y) / length;
+
+        for (double along = -RUNWAY_MASK_HALF_WIDTH;
+             along <= length + RUNWAY_MASK_HALF_WIDTH;
+             along += 0.5)
+        {
+            for (double across = -RUNWAY_MASK_HALF_WIDTH;
+                 across <= RUNWAY_MASK_HALF_WIDTH;
+                 across += 0.5)
+            {
+                int x = (int) Math.round(
+                        start_x + along * along_x - across * along_y
+                );
+                int y = (int) Math.round(
+                        start_y + along * along_y + across * along_x
+                );
+                area.setBlack(x, y, false);
+            }
+        }
+    }
+
+    /**
+     * Thin the taxiway pavement to its center lines and turn them into
+     * polylines.  Short pieces with a free end are dropped, and a free end
+     * next to a runway is carried on to the runway's center line.
+     *
+     * @param taxiway_area is the raster of the taxiway pavement.
+     * @param runways are the runways found in the diagram.
+     * @return the points of each taxiway, in pixels.
+     */
+    private ArrayList<ArrayList<Point>> tracePolylines(
+            BinaryRaster taxiway_area, ArrayList<DiagramRunway> runways)
+    {
+        ArrayList<ArrayList<Point>> polylines = new ArrayList<>();
+        ArrayList<Skeleton.SkeletonPath> paths =
+                new Skeleton(taxiway_area).getPaths();
+        AirportMetrics.count("taxiway.skeleton_paths", paths.size());
+        for (Skeleton.SkeletonPath path : paths)
+        {
+            boolean has_free_end = path.startIsFree() || path.endIsFree();
+            if (path.getPointCount() < 2
+                || (has_free_end && path.getLength() < MIN_TAXIWAY_LENGTH))
+            {
+                continue;
+            }
+
+            ArrayList<Point> polyline = new ArrayList<>();
+            int last = path.getPointCount() - 1;
+            if (path.startIsFree())
+            {
+                addRunwayEnd(polyline, path.getX(0), path.getY(0), runways);
+            }
+            for (int i = 0; i <= last; i++)
+            {
+                polyline.add(new Point(path.getX(i), path.getY(i)));
+            }
+            if (path.endIsFree())
+            {
+                addRunwayEnd(polyline, path.getX(last), path.getY(last),
+                             runways);
+            }
+            polylines.add(polyline);
+        }
+        return polylines;
+    }
+
+    /**
+     * Add the point on the nearest runway's center line to a polyline if
+     * the given free end of the polyline is close enough to that runway.
+     *
+     * @param polyline is the polyline to add the point to.
+     * @param x coordinate of the free end
+     * @param y coordinate of the free end
+     * @param runways are the runways found in the diagram.
+     */
+    private void addRunwayEnd(ArrayList<Point> polyline, int x, int y,
+                              ArrayList<DiagramRunway> runways)
+    {
+        Point nearest = null;
+        double nearest_distance = RUNWAY_SNAP_DISTANCE;
+        for (DiagramRunway runway : runways)
+        {
+            Point point = nearestPointOnRunway(runway, x, y);
+            double distance = Math.hypot(point.getX() - x, point.getY() - y);
+            if (distance <= nearest_distance)
+            {
+                nearest = point;
+                nearest_distance = distance;
+            }
+        }
+        if (nearest != null)
+        {
+            polyline.add(nearest);
+        }
+    }
+
+    /**
+     * Get the point on a runway's center line closest to a pixel.
+     *
+     * @param runway is the runway.
+     * @param x coordinate of the pixel
+     * @param y coordinate of the pixel
+     * @return the closest point on the center line, rounded to a pixel.
+     */
+    private static Point nearestPointOnRunway(DiagramRunway runway,
+                                              int x, int y)
+    {
+        double start_x = runway.getStartPoint().getX();
+        double start_y = runway.getStartPoint().getY();
+        double dx = runway.getEndPoint().getX() - start_x;
+        double dy = runway.getEndPoint().getY() - start_y;
+        double length_squared = dx * dx + dy * dy;
+        double along = 0;
+        if (length_squared > 0)
+        {
+            along = ((x - start_x) * dx + (y - start_y) * dy) / length_squared;
+            along = Math.max(0, Math.min(1, along));
+        }
+        return new Point((int) Math.round(start_x + along * dx),
+                         (int) Math.round(start_y + along * dy));
+    }
+
+    /**
+     * Find the points where the taxiways meet each other and the runways.
+     * The taxiway intersections are returned, and the runway ones are added
+     * to the runways.
+     *
+     * @param polylines are the points of each taxiway.
+     * @param runways are the runways found in the diagram.
+     * @return the intersections of each taxiway, in the order they were
+     * found.
      */
-    public void parseTaxiways(BufferedImage diagram, Airport airport)
+    private ArrayList<LinkedHashSet<Point>> findIntersections(
+            ArrayList<ArrayList<Point>> polylines,
+            ArrayList<DiagramRunway> runways)
     {
+        /* The segments of every taxiway and then every runway.  A segment's
+         * owner is its taxiway's index, or -1 - its runway's index.
+         */
+        ArrayList<LineSegment> segments = new ArrayList<>();
+        ArrayList<Integer> owners = new ArrayList<>();
+        for (int i = 0; i < polylines.size(); i++)
+        {
+            ArrayList<Point> polyline = polylines.get(i);
+            for (int k = 1; k < polyline.size(); k++)
+            {
+                segments.add(new LineSegment(polyline.get(k - 1),
+                                             polyline.get(k)));
+                owners.add(i);
+            }
+        }
+        for (int i = 0; i < runways.size(); i++)
+        {
+            segments.add(new LineSegment(runways.get(i).getStartPoint(),
+                                         runways.get(i).getEndPoint()));
+            owners.add(-1 - i);
+        }
+
+        ArrayList<LinkedHashSet<Point>> intersections = new ArrayList<>();
+        for (int i = 0; i < polylines.size(); i++)
+        {
+            intersections.add(new LinkedHashSet<Point>());
+        }
+        ArrayList<LinkedHashSet<Point>> runway_intersections =
+                new ArrayList<>();
+        for (int i = 0; i < runways.size(); i++)
+        {
+            runway_intersections.add(new LinkedHashSet<Point>());
+        }
 
+        for (SweepLineIntersector.Crossing crossing
+             : new SweepLineIntersector(segments).getCrossings())
+        {
+            int first = owners.get(crossing.getFirst());
+            int second = owners.get(crossing.getSecond());
+
+            /* Segments of the same taxiway meet at its bends, and the
+             * runway crossings are found by AirportController.
+             */
+            if (first == second || (first < 0 && second < 0))
+            {
+                continue;
+            }
+            Point point = crossing.getPoint();
+            for (int owner : new int[] {first, second})
+            {
+                if (owner >= 0)
+                {
+                    intersections.get(owner).add(point);
+                }
+                else
+                {
+                    runway_intersections.get(-1 - owner).add(point);
+                }
+            }
+        }
+
+        for (int i = 0; i < runways.size(); i++)
+        {
+            for (Point point : runway_intersections.get(i))
+            {
+                runways.get(i).addIntersection(point);
+            }
+        }
+        return intersections;
     }
 
+    /**
+     * Turn a point on the diagram into a latitude and longitude node.
+     *
+     * @param airport is the airport whose diagram the point is on.
+     * @param point is the point in pixels.
+     * @return the node at the point's latitude and longitude.
+     */
+    private static Node toNode(Airport airport, Point point)
+    {
+        return new Node(airport.longitudeConversion(point),
+                        airport.latitudeConversion(point));
+    }
 }
@@ -0,0 +1,255 @@
+package faa_ocr.kml_parser;
+
+import faa_ocr.ADTs.Airport;
+import faa_ocr.ADTs.Node;
+import faa_ocr.ADTs.Runway;
+import faa_ocr.ADTs.Taxiway;
+import faa_ocr.metrics.FlightEvents;
+import faa_ocr.xml_parser.OutputFile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This class is part of a Software Engineering course project,
+ * assigned by Adrian Rusu of the Computer Science department at
+ * Rowan University, and introduced to him by the Federal Aviation
+ * Administration.
+ * Our team consists of Kevin Dittmar, Joseph Kvedaras, Jeffrey Koellner,
+ * James O'Donnell, Gregory Richards, and Scott Ritchie.
+ *
+ * The AirportToKML class writes the KML representation of an Airport
+ * straight from the Airport object, so the XML file doesn't have to be read
+ * back in and parsed just to change its format.  Its markup comes from
+ * KMLWriter, like that of XMLtoKML, which is still used for converting XML
+ * files that were saved earlier, so both make the same KML.
+ *
+ * The KML can also be written as KMZ, which is the KML zipped up as
+ * doc.kml.  It is deflated as it is written, so the whole KML never has to
+ * be held anywhere before it is compressed.
+ *
+ * @author Kevin Dittmar
+ */
+public class AirportToKML
+{
+    //The name of the KML document inside a KMZ file
+    public static final String KMZ_ENTRY_NAME = "doc.kml";
+
+    //True if KMZ files are written instead of KML files
+    private static volatile boolean kmz_output = false;
+
+    /* The compression level of KMZ files, from 0 to 9, or
+     * Deflater.DEFAULT_COMPRESSION.
+     */
+    private static volatile int kmz_level = Deflater.DEFAULT_COMPRESSION;
+
+    public AirportToKML()
+    {
+        //constructor
+    }
+
+    /**
+     * Choose whether KMZ files are written instead of KML files, by this
+     * class and by the streaming methods of XMLtoKML.
+     *
+     * @param kmz is true to write KMZ files.
+     * @param compression_level is the level to deflate KMZ files with, from
+     * 0 (stored) to 9 (smallest), or Deflater.DEFAULT_COMPRESSION.
+     */
+    public static void setKmzOutput(boolean kmz, int compression_level)
+    {
+        if ((compression_level < Deflater.NO_COMPRESSION
+             || compression_level > Deflater.BEST_COMPRESSION)
+            && compression_level != Deflater.DEFAULT_COMPRESSION)
+        {
+            throw new IllegalArgumentException(
+                    "Invalid KMZ compression level: " + compression_level
+            );
+        }
+        kmz_level = compression_level;
+        kmz_output = kmz;
+    }
+
+    /**
+     * @return true if KMZ files are written instead of KML files.
+     */
+    public static boolean isKmzOutput()
+    {
+        return kmz_output;
+    }
+
+    /**
+     * Start a KMZ file on a stream.  The KML written to the returned stream
+     * is deflated as it goes, and closing the returned stream finishes the
+     * KMZ file and closes the given stream.
+     *
+     * @param stream is where the KMZ file is written.
+     * @return the stream to write the KML document to.
+     * @throws IOException if the stream can't be written to.
+     */
+    public static ZipOutputStream openKmz(OutputStream stream)
+            throws IOException
+    {
+        ZipOutputStream zip = new ZipOutputStream(stream);
+        zip.setLevel(kmz_level);
+        zip.putNextEntry(new ZipEntry(KMZ_ENTRY_NAME));
+        return zip;
+    }
+
+    /**
+     * Write the KML representation of an airport to a file with the same
+     * name as the airport's PDF and a .kml extension, or a .kmz extension
+     * if KMZ output is on.
+     *
+     * @param airport is the airport to write.
+     * @return String path of KML file, or null if it couldn't be written
+     */
+    public String convertToKml(Airport airport)
+    {
+        String kml_path = getKmlPath(airport.getFilePath());
+
+        //The KML file is only replaced once the new one is complete
+        try (OutputFile kml_file = new OutputFile(new File(kml_path)))
+        {
+            OutputStream stream = kml_file.getStream();
+            if (kmz_output)
+            {
+                stream = openKmz(stream);
+            }
+            writeKML(airport, stream);
+            stream.close();
+            kml_file.commit();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+        return kml_path;
+    }
+
+    /**
+     * Get the path of the file that convertToKml writes for a PDF.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @return the path of the .kml file, or the .kmz file if KMZ output is
+     * on.
+     */
+    public static String getKmlPath(String pdf_file_path)
+    {
+        File file = new File(pdf_file_path);
+        String extension = kmz_output ? ".kmz" : ".kml";
+        return file.getAbsolutePath().replaceAll("(?i)\\.pdf$", extension);
+    }
+
+    /**
+     * Write the KML representation of an airport to a stream.  The stream is
+     * flushed but not closed.
+     *
+     * @param airport is the airport to write.
+     * @param stream is the stream to write the UTF-8 encoded KML to.
+     * @throws IOException if the stream can't be written to.
+     */
+    public void writeKML(Airport airport, OutputStream stream)
+            throws IOException
+    {
+        Writer output = new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8)
+        );
+        writeKML(airport, output);
+        output.flush();
+    }
+
+    /**
+     * Write the KML representation of an airport.
+     *
+     * @param airport is the airport to write.
+     * @param output is where the KML is written.  It isn't flushed or closed.
+     * @throws IOException if the output can't be written to.
+     */
+    public void writeKML(Airport airport, Writer output) throws IOException
+    {
+        try (FlightEvents.Span event = FlightEvents.start(
+                FlightEvents.KML, airport.getFilePath()))
+        {
+            KMLWriter kml = new KMLWriter(output);
+            kml.writeHeader(airport.getName(), airport.getLocation(),
+                            String.valueOf(airport.getVariation()));
+            for (int i = 0; i < airport.numRunways(); i++)
+            {
+                writeRunway(airport.getRunway(i), kml);
+            }
+            for (int i = 0; i < airport.numTaxiways(); i++)
+            {
+                writeTaxiway(airport.getTaxiway(i), kml);
+            }
+            kml.writeFooter();
+            event.setCount(airport.numRunways() + airport.numTaxiways());
+        }
+    }
+
+    /**
+     * Writes a runway as a placemark.  Its line goes from its first node
+     * through its intersections to its second node, and then on to its
+     * displaced threshold if it has one.
+     *
+     * @param runway is the runway to write.
+     * @param kml is where the KML is written.
+     */
+    private void writeRunway(Runway runway, KMLWriter kml) throws IOException
+    {
+        kml.startPlacemark(runway.getName(), "runway",
+                           String.valueOf(runway.getHeading()),
+                           String.valueOf(runway.getElevation()));
+        if (runway.getNumPathNodes() > 0)
+        {
+            writePoint(runway.getPathNode(0), kml);
+        }
+        for (int i = 0; i < runway.getNumIntNodes(); i++)
+        {
+            writePoint(runway.getIntNode(i), kml);
+        }
+        if (runway.getNumPathNodes() > 1)
+        {
+            writePoint(runway.getPathNode(1), kml);
+        }
+        if (runway.hasThreshold())
+        {
+            writePoint(runway.getThreshold(), kml);
+        }
+        kml.endPlacemark();
+    }
+
+    /**
+     * Writes a taxiway as a placemark.  Its nodes are its whole path, and
+     * its intersections are already on that path, so only the nodes are
+     * written.
+     *
+     * @param taxiway is the taxiway to write.
+     * @param kml is where the KML is written.
+     */
+    private void writeTaxiway(Taxiway taxiway, KMLWriter kml)
+            throws IOException
+    {
+        kml.startPlacemark(taxiway.getName(), "taxiway", null, null);
+        for (int i = 0; i < taxiway.getNumPathNodes(); i++)
+        {
+            writePoint(taxiway.getPathNode(i), kml);
+        }
+        kml.endPlacemark();
+    }
+
+    private void writePoint(Node node, KMLWriter kml) throws IOException
+    {
+        kml.writePoint(String.valueOf(node.getLong()),
+                       String.valueOf(node.getLat()));
+    }
+}
@@ -0,0 +1,164 @@
+package faa_ocr.kml_parser;
+
+import faa_ocr.xml_parser.AirportToXML;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the markup of an airport's KML document.  AirportToKML writes an
+ * Airport with it, and XMLtoKML writes the airports it reads from XML with
+ * it, whether it reads them into a Document or as a stream, so all of them
+ * make the same KML.
+ *
+ * A document is the header, then a placemark for every path, each started
+ * with startPlacemark, given its points with writePoint, and finished with
+ * endPlacemark, and then the footer.  All text is escaped for XML.
+ *
+ * @author Kevin Dittmar
+ */
+public class KMLWriter implements Closeable
+{
+    private final Writer output;
+
+    /**
+     * Write KML to a Writer.
+     *
+     * @param output is where the KML is written.
+     */
+    public KMLWriter(Writer output)
+    {
+        this.output = output;
+    }
+
+    /**
+     * Writes the start of the document, with the airport's name, location,
+     * and variation, and the line styles of runways and taxiways.
+     *
+     * @param name is the name of the airport.
+     * @param location is the location of the airport.
+     * @param variation is the magnetic variation of the airport.
+     * @throws IOException if the output can't be written to.
+     */
+    public void writeHeader(String name, String location, String variation)
+            throws IOException
+    {
+        output.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                     + "\n<kml xmlns=\"http://www.opengis.net/kml/2.2\">"
+                     + "\n  <Document>"
+                     + "\n\t<name>");
+        AirportToXML.writeEscaped(output, name);
+        output.write("</name>"
+                     + "\n\t<description>"
+                     + "\n\t Location: ");
+        AirportToXML.writeEscaped(output, location);
+        output.write("\n\t Variation: ");
+        AirportToXML.writeEscaped(output, variation);
+        output.write("\n\t</description>");
+
+        output.write("\n\t<Style id=\"runway\">" //Style of Runway path
+                     + "\n\t  <LineStyle>"
+                     + "\n\t\t<color>501400FF</color>" //Red Line
+                     + "\n\t\t<width>10</width>"
+                     + "\n\t  </LineStyle>"
+                     + "\n\t</Style>"
+                     + "\n\t<Style id=\"taxiway\">" //Style of Taxiway Path
+                     + "\n\t  <LineStyle>"
+                     + "\n\t\t<color>50000000</color>" //Black line
+                     + "\n\t\t<width>8</width>"
+                     + "\n\t  </LineStyle>"
+                     + "\n\t</Style>");
+    }
+
+    /**
+     * Writes the start of a path's placemark, up to the start of its
+     * coordinates.  Runways have their heading and elevation in the
+     * description and the runway line style, and every other path has the
+     * taxiway line style.
+     *
+     * @param name is the name of the path.
+     * @param type is the path type, runway or taxiway.
+     * @param heading is the heading of a runway, or null.
+     * @param elevation is the elevation of a runway, or null.
+     * @throws IOException if the output can't be written to.
+     */
+    public void startPlacemark(String name, String type, String heading,
+                               String elevation) throws IOException
+    {
+        output.write("\n\t<Placemark>" + "\n\t  <name>");
+        AirportToXML.writeEscaped(output, name);
+        output.write("</name>"
+                     + "\n\t  <description>"
+                     + "\n\t   Path type: ");
+        AirportToXML.writeEscaped(output, type);
+
+        if (type.equals("runway"))
+        {
+            output.write("\n\t   Heading: ");
+            AirportToXML.writeEscaped(output, heading);
+            output.write("\n\t   Elevation: ");
+            AirportToXML.writeEscaped(output, elevation);
+            output.write("\n\t  </description>"
+                         + "\n\t  <styleUrl>#runway</styleUrl>");
+        }
+        else
+        {
+            output.write("\n\t  </description>"
+                         + "\n\t  <styleUrl>#taxiway</styleUrl>");
+        }
+
+        output.write("\n\t  <LineString>"
+                     + "\n\t\t<tessellate>1</tessellate>"
+                     + "\n\t\t<coordinates>");
+    }
+
+    /**
+     * Writes a point as one line of the placemark's coordinates.
+     *
+     * @param longitude is the longitude of the point.
+     * @param latitude is the latitude of the point.
+     * @throws IOException if the output can't be written to.
+     */
+    public void writePoint(String longitude, String latitude)
+            throws IOException
+    {
+        output.write("\n\t\t ");
+        AirportToXML.writeEscaped(output, longitude);
+        output.write(",");
+        AirportToXML.writeEscaped(output, latitude);
+        output.write(",0");
+    }
+
+    /**
+     * Writes the end of a placemark.
+     *
+     * @throws IOException if the output can't be written to.
+     */
+    public void endPlacemark() throws IOException
+    {
+        output.write("\n\t\t</coordinates>" + "\n\t  </LineString>"
+                     + "\n\t</Placemark>");
+    }
+
+    /**
+     * Writes the end of the document.
+     *
+     * @throws IOException if the output can't be written to.
+     */
+    public void writeFooter() throws IOException
+    {
+        output.write("\n  </Document>" + "\n</kml>");
+    }
+
+    /**
+     * Close the Writer the KML is written to.
+     *
+     * @throws IOException if the Writer can't be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        output.close();
+    }
+}
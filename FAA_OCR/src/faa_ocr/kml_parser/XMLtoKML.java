@@ -6,12 +6,29 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Element;
 
 import java.io.File;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import faa_ocr.xml_parser.OutputFile;
 
 /**
  * This class is part of a Software Engineering course project,
@@ -25,6 +42,11 @@ import javax.xml.parsers.DocumentBuilderFactory;
  * go through an XML representation of an airport diagram in order to
  * convert its contents to KML format.
  *
+ * For converting many XML files, or one stream of many airports, the
+ * streaming methods read the XML with an XMLStreamReader instead and write
+ * each path as soon as it is read, so only one path is held in memory at a
+ * time.
+ *
  * @author Scott Ritchie
  * @author James O'Donnell
  */
@@ -45,9 +67,11 @@ public class XMLtoKML
      */
     public String writeKML(File xml_file)
     {
-        String kml_string = "";
-        String kml_path = "";
-        try
+        // Define KML file path String
+        String kml_path = xml_file.getPath().replace(".xml", ".kml");
+
+        //The KML file is only replaced once the new one is complete
+        try (OutputFile kml_file = new OutputFile(new File(kml_path)))
         {
             DocumentBuilderFactory dbFactory = DocumentBuilderFactory
                     .newInstance();
@@ -55,110 +79,58 @@ public class XMLtoKML
             Document xml_doc = dBuilder.parse(xml_file);
             // Normalize the document
             xml_doc.getDocumentElement().normalize();
-            //Add header to main string
-            kml_string += getHeader(xml_doc);
-            //Add line styles to main string
-            kml_string += getLineStyle();
+
+            KMLWriter kml = new KMLWriter(new BufferedWriter(
+                    new OutputStreamWriter(kml_file.getStream(),
+                                           StandardCharsets.UTF_8)
+            ));
+            //Write header and line styles
+            writeHeader(xml_doc, kml);
             //List of pathways
             NodeList path_list = xml_doc.getElementsByTagName("path");
-            //Add body to main string
-            kml_string += getBody(path_list, xml_doc);
+            //Write body
+            writeBody(path_list, kml);
+            kml.close();
+            kml_file.commit();
         }
         catch (Exception e)
         {
             e.printStackTrace();
         }
-
-        try
-        {
-            // Define KML file path String
-            kml_path = xml_file.getPath().replace(".xml", ".kml");
-            File kml_file = new File(kml_path);
-
-            //Create and write kml_string to file
-            kml_file.createNewFile();
-
-            BufferedWriter output = new BufferedWriter(
-                    new FileWriter(kml_file)
-            );
-
-            output.write(kml_string);
-            output.close();
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
-        }
         return kml_path;
     }
 
     /**
-     * Adds airport information including name, location,
-     * and variation to the string.
+     * Writes airport information including name, location,
+     * and variation, and the line styles.
      *
      * @param xml_doc to extract XML tag info
-     * @return String representation of the KML file's header info
+     * @param kml where the KML is written
      */
-    private String getHeader(Document xml_doc)
+    private void writeHeader(Document xml_doc, KMLWriter kml)
+            throws IOException
     {
-        String header_string = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
-        header_string += "\n<kml xmlns=\"http://www.opengis.net/kml/2.2\">"
-                         + "\n  <Document>"
-                         + "\n\t<name>" //Airport name
-                         + xml_doc.getElementsByTagName("name")
-                                  .item(0)
-                                  .getTextContent()
-                         + "</name>"
-                         + "\n\t<description>" //Other info
-                         + "\n\t Location: "
-                         + xml_doc.getElementsByTagName("location")
-                                  .item(0)
-                                  .getTextContent()
-                         + "\n\t Variation: "
-                         + xml_doc.getElementsByTagName("variation")
-                                  .item(0)
-                                  .getTextContent()
-                         + "\n\t</description>";
-        return header_string;
+        kml.writeHeader(xml_doc.getElementsByTagName("name")
+                               .item(0)
+                               .getTextContent(),
+                        xml_doc.getElementsByTagName("location")
+                               .item(0)
+                               .getTextContent(),
+                        xml_doc.getElementsByTagName("variation")
+                               .item(0)
+                               .getTextContent());
     }
 
     /**
-     * Stores all line style information to a string
-     *
-     * @return String representation of the KML file's line styles
-     */
-    private String getLineStyle()
-    {
-        //Local LineStyle string to be added to kml_string
-        String line_style = "";
-        line_style += "\n\t<Style id=\"runway\">" //Style of Runway path
-                      + "\n\t  <LineStyle>"
-                      + "\n\t\t<color>501400FF</color>" //Red Line
-                      + "\n\t\t<width>10</width>"
-                      + "\n\t  </LineStyle>"
-                      + "\n\t</Style>"
-                      + "\n\t<Style id=\"taxiway\">" //Style of Taxiway Path
-                      + "\n\t  <LineStyle>"
-                      + "\n\t\t<color>50000000</color>" //Black line
-                      + "\n\t\t<width>8</width>"
-                      + "\n\t  </LineStyle>"
-                      + "\n\t</Style>";
-        return line_style;
-    }
-
-    /**
-     * Stores all airport path information to a string
+     * Writes all airport path information, and the end of the KML file.
      *
      * @param path_list to extract XML path info
-     * @param xml_doc
-     * @return String representation of the KML file's body
+     * @param kml where the KML is written
      */
-    private String getBody(NodeList path_list, Document xml_doc)
+    private void writeBody(NodeList path_list, KMLWriter kml)
+            throws IOException
     {
-        //Local Body string to be added to kml_string
-        String body_string = "";
-
-        //Loop through each path and add all it's information to the string
+        //Loop through each path and write all its information
         for (int path = 0; path < path_list.getLength(); path++)
         {
             Node node = path_list.item(path);
@@ -172,74 +144,52 @@ public class XMLtoKML
                 String type = element.getElementsByTagName("path_type").item(0)
                         .getTextContent();
 
-                //Begin adding path to string
-                body_string += "\n\t<Placemark>" // Runway name, heading,
-                               // elevation
-                               + "\n\t  <name>"
-                               + element.getElementsByTagName("path_name")
-                                        .item(0)
-                                        .getTextContent()
-                               + "</name>"
-                               + "\n\t  <description>"
-                               + "\n\t   Path type: "
-                               + type;
-
-                //Determine whether the path has heading/elevation info
-                // and add the correct LineStyle Url
+                //Only runways have heading/elevation info
+                String heading = null;
+                String elevation = null;
                 if (type.equals("runway"))
                 {
-                    body_string += "\n\t   Heading: "
-                                   + element.getElementsByTagName("heading")
-                                            .item(0)
-                                            .getTextContent()
-                                   + "\n\t   Elevation: "
-                                   + element.getElementsByTagName("elevation")
-                                            .item(0)
-                                            .getTextContent()
-                                   + "\n\t  </description>"
-                                   + "\n\t  <styleUrl>#runway</styleUrl>";
-                }
-                else
-                {
-                    body_string += "\n\t  </description>"
-                                   + "\n\t  <styleUrl>#taxiway</styleUrl>";
+                    heading = element.getElementsByTagName("heading")
+                                     .item(0)
+                                     .getTextContent();
+                    elevation = element.getElementsByTagName("elevation")
+                                       .item(0)
+                                       .getTextContent();
                 }
 
-                //Add coordinates of path to a LingString
-                body_string += "\n\t  <LineString>"
-                               + "\n\t\t<tessellate>1</tessellate>"
-                               + "\n\t\t<coordinates>"
-                               //Obtain all coordinates
-                               + getCoords(element)
-                               + "\n\t\t</coordinates>" + "\n\t  </LineString>"
-                               + "\n\t</Placemark>";
+                kml.startPlacemark(element.getElementsByTagName("path_name")
+                                          .item(0)
+                                          .getTextContent(),
+                                   type, heading, elevation);
+                //Write all coordinates
+                writeCoords(element, type, kml);
+                kml.endPlacemark();
             }
         }
-        //Finish KML file String
-        body_string += "\n  </Document>" + "\n</kml>";
-        return body_string;
+        //Finish KML file
+        kml.writeFooter();
     }
 
     /**
-     * Gets all the coordinates in a given path.
+     * Writes all the coordinates in a given path.
      * Treats Nodes, Intersections, and Displaced Thresholds as normal points.
      *
-     * @param element
-     * @return String of coordinates
+     * @param element the <path> element
+     * @param type of the path
+     * @param kml where the KML is written
      */
-    private String getCoords(Element element)
+    private void writeCoords(Element element, String type, KMLWriter kml)
+            throws IOException
     {
         //Create list of <coordinates> tags
         NodeList coord_list = element.getElementsByTagName("coordinates");
-        //String to append and add to kml_string
-        String coord_string = "";
 
         //Loop through every <coordinates> tag.
         //Each one corresponds to a different <path> tag.
         for (int coord = 0; coord < coord_list.getLength(); coord++)
         {
-            //Make the first <coordinates> tag a Node
-            Node coord_node = coord_list.item(0);
+            //Make the <coordinates> tag a Node
+            Node coord_node = coord_list.item(coord);
 
             //Check if the Node is an element
             if (coord_node.getNodeType() == Node.ELEMENT_NODE)
@@ -258,91 +208,609 @@ public class XMLtoKML
                 NodeList thresholds = 
                     coord_element.getElementsByTagName("threshold");
 
-                /* Now, add the first <node>'s coordinates to the list of
-                 * coordinates, and then put any <itersection> Nodes found
-                 * in between the first and end <node>s.
+                /* A taxiway's <node>s are its whole path, and its
+                 * <intersection>s are already on that path, so only the
+                 * <node>s go in its list of coordinates.
+                 */
+                if (type.equals("taxiway"))
+                {
+                    writePoints(node_list, 0, node_list.getLength(), kml);
+                    continue;
+                }
+
+                /* Now, write the first <node>'s coordinates, then any
+                 * <itersection> Nodes found in between the first and end
+                 * <node>s, then the end <node>, then any displaced
+                 * thresholds.
                  */
-                Node node = node_list.item(0);
-                //Check that the Node is an Element
-                if (node.getNodeType() == Node.ELEMENT_NODE)
+                writePoints(node_list, 0, 1, kml);
+                writePoints(intersections, 0, intersections.getLength(), kml);
+                writePoints(node_list, 1, 2, kml);
+                writePoints(thresholds, 0, thresholds.getLength(), kml);
+            }
+        }
+    }
+
+    /**
+     * Writes the coordinates of some of the points in a list.
+     *
+     * @param points the <node>, <intersection>, or <threshold> elements
+     * @param start index of the first point to write
+     * @param end index just past the last point to write
+     * @param kml where the KML is written
+     */
+    private void writePoints(NodeList points, int start, int end,
+                             KMLWriter kml) throws IOException
+    {
+        for (int i = start; i < Math.min(end, points.getLength()); i++)
+        {
+            Node point = points.item(i);
+
+            //Check that the Node is an Element
+            if (point.getNodeType() == Node.ELEMENT_NODE)
+            {
+                //Convert to Element
+                Element point_element = (Element) point;
+                kml.writePoint(point_element.getElementsByTagName("longitude")
+                                            .item(0)
+                                            .getTextContent(),
+                               point_element.getElementsByTagName("latitude")
+                                            .item(0)
+                                            .getTextContent());
+            }
+        }
+    }
+
+    /**
+     * Converts an XML file to KML the same way as writeKML(File), but
+     * reads the XML as a stream instead of building a Document, so each
+     * <path> is written as a Placemark as soon as it has been read.  A file
+     * holding several airport XML documents one after another is also
+     * accepted; the airports after the first are written next to the file,
+     * named after the airports.  If AirportToKML.setKmzOutput has turned on
+     * KMZ output, KMZ files are written instead.
+     *
+     * @param xml_file Airport diagram in XML format
+     * @return String paths of KML files
+     */
+    public ArrayList<String> writeKMLStreaming(File xml_file)
+    {
+        ArrayList<String> kml_paths = new ArrayList<>();
+        File kml_file = new File(xml_file.getPath().replace(".xml",
+                                                             getExtension()));
+        try (InputStream input = new FileInputStream(xml_file))
+        {
+            kml_paths = convertStream(input, kml_file,
+                                      kml_file.getAbsoluteFile().getParentFile());
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        return kml_paths;
+    }
+
+    /**
+     * Converts every .xml file in a directory to KML with
+     * writeKMLStreaming(File), in order of file name.
+     *
+     * @param directory holding the XML files
+     * @return String paths of KML files
+     */
+    public ArrayList<String> convertDirectory(File directory)
+    {
+        ArrayList<String> kml_paths = new ArrayList<>();
+        File[] xml_files = directory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.endsWith(".xml");
+            }
+        });
+        if (xml_files == null)
+        {
+            return kml_paths;
+        }
+        Arrays.sort(xml_files);
+        for (File xml_file : xml_files)
+        {
+            kml_paths.addAll(writeKMLStreaming(xml_file));
+        }
+        return kml_paths;
+    }
+
+    /**
+     * Converts a stream of airport XML documents, one after another, to
+     * KML files in one pass.  Each KML file is named after its airport.
+     *
+     * @param input stream of UTF-8 airport XML documents
+     * @param output_directory where the KML files are written
+     * @return String paths of KML files
+     */
+    public ArrayList<String> convertStream(InputStream input,
+                                           File output_directory)
+    {
+        return convertStream(input, null, output_directory);
+    }
+
+    /**
+     * Converts a stream of airport XML documents to KML files.
+     *
+     * @param input stream of UTF-8 airport XML documents
+     * @param first_kml_file where the first airport is written, or null to
+     * name it after the airport like the rest
+     * @param output_directory where the KML files of the other airports
+     * are written
+     * @return String paths of KML files
+     */
+    private ArrayList<String> convertStream(InputStream input,
+                                            File first_kml_file,
+                                            File output_directory)
+    {
+        ArrayList<String> kml_paths = new ArrayList<>();
+        XMLStreamReader reader = null;
+        try
+        {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(
+                    XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false
+            );
+            reader = factory.createXMLStreamReader(new DocumentJoiner(
+                    new BufferedReader(new InputStreamReader(
+                            input, StandardCharsets.UTF_8))
+            ));
+
+            //The documents are children of the root that DocumentJoiner adds
+            reader.nextTag();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+            {
+                if (!reader.getLocalName().equals("airport"))
+                {
+                    skipElement(reader);
+                    continue;
+                }
+                File kml_file = kml_paths.isEmpty() ? first_kml_file : null;
+                kml_paths.add(convertAirport(reader, kml_file,
+                                             output_directory, kml_paths));
+            }
+        }
+        catch (XMLStreamException | IOException e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (XMLStreamException e)
                 {
-                    //Convert to Element
-                    Element node_element = (Element) node;
-                    //Add coordinates to String
-                    coord_string += "\n\t\t "
-                                + node_element.getElementsByTagName("longitude")
-                                              .item(0)
-                                              .getTextContent() + ","
-                                + node_element.getElementsByTagName("latitude")
-                                              .item(0)
-                                              .getTextContent() + ",0";
+                    e.printStackTrace();
                 }
+            }
+        }
+        return kml_paths;
+    }
 
-                //Check if intersections exist in path, and add it to list
-                for (int node_i=0; node_i<intersections.getLength(); node_i++)
+    /**
+     * Reads one <airport> element and writes it to a KML file.  The
+     * name, location, and variation come before the first <path>, so the
+     * file is opened and its header written when the first <path> or the
+     * end of the airport is reached.  The file replaces any older one only
+     * once it is complete.
+     *
+     * @param reader positioned at the start of an <airport>
+     * @param kml_file where the KML is written, or null to name the file
+     * after the airport in output_directory
+     * @param output_directory where a KML file named after the airport goes
+     * @param kml_paths of the KML files already written from the stream
+     * @return String path of KML file
+     */
+    private String convertAirport(XMLStreamReader reader, File kml_file,
+                                  File output_directory,
+                                  ArrayList<String> kml_paths)
+            throws XMLStreamException, IOException
+    {
+        String name = "";
+        String location = "";
+        String variation = "";
+        OutputFile output = null;
+        KMLWriter kml = null;
+        try
+        {
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+            {
+                String tag = reader.getLocalName();
+                if (kml == null && tag.equals("path"))
                 {
-                    //Obtain an "intersection" Node from its NodeList
-                    Node inter = intersections.item(node_i);
+                    kml_file = getKMLFile(kml_file, output_directory, name,
+                                          kml_paths);
+                    output = new OutputFile(kml_file);
+                    kml = openKML(output, name, location, variation);
+                }
 
-                    //Check that the Node is an Element
-                    if (inter.getNodeType() == Node.ELEMENT_NODE)
+                if (tag.equals("name"))
+                {
+                    name = reader.getElementText();
+                }
+                else if (tag.equals("location"))
+                {
+                    location = reader.getElementText();
+                }
+                else if (tag.equals("variation"))
+                {
+                    variation = reader.getElementText();
+                }
+                else if (tag.equals("path"))
+                {
+                    writePlacemark(reader, kml);
+                }
+                else
+                {
+                    skipElement(reader);
+                }
+            }
+
+            //An airport with no paths still gets a file
+            if (kml == null)
+            {
+                kml_file = getKMLFile(kml_file, output_directory, name,
+                                      kml_paths);
+                output = new OutputFile(kml_file);
+                kml = openKML(output, name, location, variation);
+            }
+            //Finish KML file
+            kml.writeFooter();
+            kml.close();
+            output.commit();
+        }
+        finally
+        {
+            if (output != null)
+            {
+                output.close();
+            }
+        }
+        return kml_file.getPath();
+    }
+
+    /**
+     * Gets the file to write an airport's KML to.  A file that is already
+     * there is overwritten, but two airports with the same name in one
+     * stream get numbered files.
+     *
+     * @param kml_file the file to use, or null to name one after the airport
+     * @param output_directory where a KML file named after the airport goes
+     * @param name of the airport
+     * @param kml_paths of the KML files already written from the stream
+     * @return the KML file
+     */
+    private File getKMLFile(File kml_file, File output_directory, String name,
+                            ArrayList<String> kml_paths)
+    {
+        if (kml_file != null)
+        {
+            return kml_file;
+        }
+        String file_name = name.trim().replaceAll("[^A-Za-z0-9]+", "_");
+        if (file_name.isEmpty())
+        {
+            file_name = "airport";
+        }
+
+        File file = new File(output_directory, file_name + getExtension());
+        for (int i = 2; kml_paths.contains(file.getPath()); i++)
+        {
+            file = new File(output_directory,
+                            file_name + "_" + i + getExtension());
+        }
+        return file;
+    }
+
+    /**
+     * @return the extension of the files written by the streaming methods.
+     */
+    private String getExtension()
+    {
+        return AirportToKML.isKmzOutput() ? ".kmz" : ".kml";
+    }
+
+    /**
+     * Starts a KML file and writes its header and line styles.  The file
+     * is a KMZ file if KMZ output is on.
+     *
+     * @param kml_file the file to write
+     * @param name of the airport
+     * @param location of the airport
+     * @param variation of the airport
+     * @return KMLWriter for the rest of the KML file
+     */
+    private KMLWriter openKML(OutputFile kml_file, String name,
+                              String location, String variation)
+            throws IOException
+    {
+        OutputStream stream = kml_file.getStream();
+        if (AirportToKML.isKmzOutput())
+        {
+            stream = AirportToKML.openKmz(stream);
+        }
+        KMLWriter kml = new KMLWriter(new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8)));
+        kml.writeHeader(name, location, variation);
+        return kml;
+    }
+
+    /**
+     * Reads one <path> element and writes it as a Placemark, with its
+     * coordinates in the same order as writeCoords(Element).
+     *
+     * @param reader positioned at the start of a <path>
+     * @param kml where the Placemark is written
+     */
+    private void writePlacemark(XMLStreamReader reader, KMLWriter kml)
+            throws XMLStreamException, IOException
+    {
+        String type = "";
+        String path_name = "";
+        String heading = "";
+        String elevation = "";
+        ArrayList<String[]> nodes = new ArrayList<>();
+        ArrayList<String[]> intersections = new ArrayList<>();
+        ArrayList<String[]> thresholds = new ArrayList<>();
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            String tag = reader.getLocalName();
+            if (tag.equals("path_type"))
+            {
+                type = reader.getElementText();
+            }
+            else if (tag.equals("path_name"))
+            {
+                path_name = reader.getElementText();
+            }
+            else if (tag.equals("heading"))
+            {
+                heading = reader.getElementText();
+            }
+            else if (tag.equals("elevation"))
+            {
+                elevation = reader.getElementText();
+            }
+            else if (tag.equals("coordinates"))
+            {
+                //Sort the points in <coordinates> by their kind
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                {
+                    String point_tag = reader.getLocalName();
+                    String[] point = readPoint(reader);
+                    if (point_tag.equals("node"))
+                    {
+                        nodes.add(point);
+                    }
+                    else if (point_tag.equals("intersection"))
+                    {
+                        intersections.add(point);
+                    }
+                    else if (point_tag.equals("threshold"))
                     {
-                        //Convert to Element
-                        Element node_element = (Element) inter;
-
-                        //Add coordinates to String
-                        coord_string += "\n\t\t "
-                                    + node_element.getElementsByTagName("longitude")
-                                                  .item(0)
-                                                  .getTextContent() + ","
-                                    + node_element.getElementsByTagName("latitude")
-                                                  .item(0)
-                                                  .getTextContent() + ",0";
+                        thresholds.add(point);
                     }
                 }
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+
+        kml.startPlacemark(path_name, type, heading, elevation);
+
+        ArrayList<String[]> points = new ArrayList<>();
+        if (type.equals("runway"))
+        {
+            /* The first <node>, then the <intersection>s, then the end
+             * <node>, then any displaced thresholds.
+             */
+            points.addAll(nodes.subList(0, Math.min(1, nodes.size())));
+            points.addAll(intersections);
+            points.addAll(nodes.subList(Math.min(1, nodes.size()),
+                                        Math.min(2, nodes.size())));
+            points.addAll(thresholds);
+        }
+        else
+        {
+            //A taxiway's <node>s are its whole path
+            points.addAll(nodes);
+        }
+
+        for (String[] point : points)
+        {
+            kml.writePoint(point[0], point[1]);
+        }
+        kml.endPlacemark();
+    }
 
-                //Get the end <node> Node and add it to the kml's
-                //list of coordinates
-                node = node_list.item(1);
-                //Check that the Node is an Element
-                if (node.getNodeType() == Node.ELEMENT_NODE)
+    /**
+     * Reads a <node>, <intersection>, or <threshold> element.
+     *
+     * @param reader positioned at the start of the element
+     * @return the point's longitude and latitude
+     */
+    private String[] readPoint(XMLStreamReader reader)
+            throws XMLStreamException
+    {
+        String longitude = "";
+        String latitude = "";
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            String tag = reader.getLocalName();
+            if (tag.equals("longitude"))
+            {
+                longitude = reader.getElementText();
+            }
+            else if (tag.equals("latitude"))
+            {
+                latitude = reader.getElementText();
+            }
+            else
+            {
+                skipElement(reader);
+            }
+        }
+        return new String[] {longitude, latitude};
+    }
+
+    /**
+     * Skips past the end of the element the reader is at the start of.
+     *
+     * @param reader positioned at the start of an element
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Joins XML documents that come one after another into one document
+     * that a single XMLStreamReader can read, by dropping their XML
+     * declarations and putting them all inside an <airports> root.
+     */
+    private static class DocumentJoiner extends Reader
+    {
+        private static final String ROOT_START = "<airports>";
+        private static final String ROOT_END = "</airports>";
+        private static final String DECLARATION_START = "<?xml";
+
+        private final PushbackReader input;
+
+        //Characters read ahead to tell whether "<" starts a declaration
+        private final char[] peek = new char[DECLARATION_START.length()];
+
+        //The root tag that is being handed out, and how far along it is
+        private String pending = ROOT_START;
+        private int pending_index = 0;
+        private boolean ended = false;
+
+        DocumentJoiner(Reader input)
+        {
+            this.input = new PushbackReader(input, DECLARATION_START.length());
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length)
+                throws IOException
+        {
+            int count = 0;
+            while (count < length)
+            {
+                int c = read();
+                if (c < 0)
+                {
+                    break;
+                }
+                buffer[offset + count] = (char) c;
+                count++;
+                //Hand out what there is instead of waiting on more input
+                if (c == '>' && !input.ready())
+                {
+                    break;
+                }
+            }
+            return count == 0 && length > 0 ? -1 : count;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            while (true)
+            {
+                if (pending_index < pending.length())
                 {
-                    //Convert to Element
-                    Element node_element = (Element) node;
-                    //Add coordinates to String
-                    coord_string += "\n\t\t "
-                                + node_element.getElementsByTagName("longitude")
-                                              .item(0)
-                                              .getTextContent() + ","
-                                + node_element.getElementsByTagName("latitude")
-                                              .item(0)
-                                              .getTextContent() + ",0";
+                    return pending.charAt(pending_index++);
                 }
 
-                //Check if displaced thresholds exist in path
-                //and add to list of coordinates
-                for (int node_i = 0; node_i < thresholds.getLength(); node_i++)
+                int c = input.read();
+                if (c < 0)
+                {
+                    if (ended)
+                    {
+                        return -1;
+                    }
+                    ended = true;
+                    pending = ROOT_END;
+                    pending_index = 0;
+                    continue;
+                }
+                if (c != '<')
                 {
-                    //Obtain a "threshold" Node from its NodeList
-                    Node thresh = thresholds.item(node_i);
+                    return c;
+                }
 
-                    //Check that the Node is an Element
-                    if (thresh.getNodeType() == Node.ELEMENT_NODE)
+                /* Read far enough to tell whether this is an XML
+                 * declaration, which is "<?xml" and then white space.
+                 */
+                int count = 0;
+                while (count < peek.length)
+                {
+                    int next = input.read();
+                    if (next < 0)
                     {
-                        //Convert to Element
-                        Element node_element = (Element) thresh;
-                        //Add coordinates to String
-                        coord_string += "\n\t\t "
-                                    + node_element.getElementsByTagName("longitude")
-                                                  .item(0)
-                                                  .getTextContent() + ","
-                                    + node_element.getElementsByTagName("latitude")
-                                                  .item(0)
-                                                  .getTextContent() + ",0";
+                        break;
                     }
+                    peek[count++] = (char) next;
+                }
+                if (count == peek.length
+                    && ("<" + new String(peek, 0, count - 1))
+                       .equals(DECLARATION_START)
+                    && Character.isWhitespace(peek[count - 1]))
+                {
+                    skipDeclaration();
+                    continue;
+                }
+
+                //Not a declaration, so the characters are read again
+                input.unread(peek, 0, count);
+                return c;
+            }
+        }
+
+        //Skips to just past the "?>" that ends a declaration
+        private void skipDeclaration() throws IOException
+        {
+            int previous = 0;
+            int c;
+            while ((c = input.read()) >= 0)
+            {
+                if (previous == '?' && c == '>')
+                {
+                    return;
                 }
+                previous = c;
             }
         }
-        return coord_string;
+
+        @Override
+        public void close() throws IOException
+        {
+            input.close();
+        }
     }
 }
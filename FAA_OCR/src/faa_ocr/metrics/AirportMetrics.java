@@ -0,0 +1,342 @@
+package faa_ocr.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * The timings and counts of every stage of processing one airport.
+ *
+ * While an airport is being processed its metrics are bound to the thread
+ * doing the work, so any stage of the pipeline can time itself with
+ * startStage or add to a counter with count without the metrics being
+ * passed down to it.  When metrics are off, or the thread isn't processing
+ * an airport, those calls do nothing.
+ *
+ * A stage records its wall time, the CPU time of the thread, and the bytes
+ * the thread allocated.  Stages can be inside other stages, like rendering
+ * inside loading, and a stage that runs more than once adds up.  Work done
+ * on other threads, like the parallel runway scan, only shows up in the
+ * wall time.
+ *
+ * @author Kevin Dittmar
+ */
+public class AirportMetrics
+{
+    //True if airports record their metrics.
+    private static volatile boolean enabled = false;
+
+    //The metrics of the airport each thread is processing.
+    private static final ThreadLocal<AirportMetrics> CURRENT =
+            new ThreadLocal<>();
+
+    private static final ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED;
+    private static final boolean ALLOCATION_SUPPORTED;
+    static
+    {
+        boolean cpu_time = THREADS.isCurrentThreadCpuTimeSupported();
+        boolean allocation = THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS)
+                   .isThreadAllocatedMemorySupported();
+        try
+        {
+            if (cpu_time && !THREADS.isThreadCpuTimeEnabled())
+            {
+                THREADS.setThreadCpuTimeEnabled(true);
+            }
+            if (allocation && !((com.sun.management.ThreadMXBean) THREADS)
+                               .isThreadAllocatedMemoryEnabled())
+            {
+                ((com.sun.management.ThreadMXBean) THREADS)
+                        .setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        catch (UnsupportedOperationException | SecurityException ex)
+        {
+            cpu_time = false;
+            allocation = false;
+        }
+        CPU_TIME_SUPPORTED = cpu_time;
+        ALLOCATION_SUPPORTED = allocation;
+    }
+
+    //Returned by startStage when nothing is being recorded.
+    private static final Stage NO_STAGE = new Stage(null, null);
+
+    private final String pdf_file_path;
+    private String airport_name;
+
+    /* The wall time, CPU time, and allocated bytes of every stage, in the
+     * order the stages started.  -1 means the JVM can't measure it.
+     */
+    private final LinkedHashMap<String, long[]> stages;
+    private final LinkedHashMap<String, long[]> counters;
+
+    /**
+     * Make empty metrics for an airport.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     */
+    public AirportMetrics(String pdf_file_path)
+    {
+        this.pdf_file_path = pdf_file_path;
+        this.stages = new LinkedHashMap<>();
+        this.counters = new LinkedHashMap<>();
+    }
+
+    /**
+     * Choose whether airports record their metrics.
+     *
+     * @param record is true to record metrics.
+     */
+    public static void setEnabled(boolean record)
+    {
+        enabled = record;
+    }
+
+    /**
+     * @return true if airports record their metrics.
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Start recording the metrics of an airport on this thread.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @return the airport's metrics, which are recorded until finish is
+     * called, or null if metrics are off.
+     */
+    public static AirportMetrics start(String pdf_file_path)
+    {
+        if (!enabled)
+        {
+            return null;
+        }
+        AirportMetrics metrics = new AirportMetrics(pdf_file_path);
+        CURRENT.set(metrics);
+        return metrics;
+    }
+
+    /**
+     * Stop recording this airport's metrics on this thread.
+     */
+    public void finish()
+    {
+        if (CURRENT.get() == this)
+        {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Determine whether this thread is recording the metrics of an airport,
+     * so that counts that take work to find are only found when they are
+     * wanted.
+     *
+     * @return true if metrics are being recorded.
+     */
+    public static boolean isRecording()
+    {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Start timing a stage of the airport this thread is processing.  End
+     * the stage when it is done, best in a finally block.
+     *
+     * @param name is the name of the stage.
+     * @return the running stage.
+     */
+    public static Stage startStage(String name)
+    {
+        AirportMetrics metrics = CURRENT.get();
+        if (metrics == null)
+        {
+            return NO_STAGE;
+        }
+        return new Stage(metrics, name);
+    }
+
+    /**
+     * Add to a counter of the airport this thread is processing.
+     *
+     * @param name is the name of the counter.
+     * @param amount is how much to add.
+     */
+    public static void count(String name, long amount)
+    {
+        AirportMetrics metrics = CURRENT.get();
+        if (metrics == null)
+        {
+            return;
+        }
+        long[] counter = metrics.counters.get(name);
+        if (counter == null)
+        {
+            counter = new long[1];
+            metrics.counters.put(name, counter);
+        }
+        counter[0] += amount;
+    }
+
+    /**
+     * @return the path to the airport diagram PDF.
+     */
+    public String getFilePath()
+    {
+        return pdf_file_path;
+    }
+
+    /**
+     * @return the name of the airport, or null if it isn't known.
+     */
+    public String getAirportName()
+    {
+        return airport_name;
+    }
+
+    /**
+     * @param airport_name is the name of the airport.
+     */
+    public void setAirportName(String airport_name)
+    {
+        this.airport_name = airport_name;
+    }
+
+    /**
+     * @return the names of the stages, in the order they started.
+     */
+    public ArrayList<String> getStageNames()
+    {
+        return new ArrayList<>(stages.keySet());
+    }
+
+    /**
+     * @param stage is the name of a stage.
+     * @return the wall time of the stage in nanoseconds.
+     */
+    public long getWallNanos(String stage)
+    {
+        return stages.get(stage)[0];
+    }
+
+    /**
+     * @param stage is the name of a stage.
+     * @return the CPU time of the stage in nanoseconds, or -1 if the JVM
+     * can't measure it.
+     */
+    public long getCpuNanos(String stage)
+    {
+        return stages.get(stage)[1];
+    }
+
+    /**
+     * @param stage is the name of a stage.
+     * @return the bytes allocated during the stage, or -1 if the JVM can't
+     * measure it.
+     */
+    public long getAllocatedBytes(String stage)
+    {
+        return stages.get(stage)[2];
+    }
+
+    /**
+     * @return the names of the counters, in the order they were first
+     * counted.
+     */
+    public ArrayList<String> getCounterNames()
+    {
+        return new ArrayList<>(counters.keySet());
+    }
+
+    /**
+     * @param name is the name of a counter.
+     * @return the value of the counter.
+     */
+    public long getCounter(String name)
+    {
+        return counters.get(name)[0];
+    }
+
+    private static long cpuNanos()
+    {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long allocatedBytes()
+    {
+        if (!ALLOCATION_SUPPORTED)
+        {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS)
+               .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * A stage that is being timed.
+     */
+    public static class Stage
+    {
+        private final AirportMetrics metrics;
+        private final String name;
+        private final long start_wall;
+        private final long start_cpu;
+        private final long start_allocated;
+
+        private Stage(AirportMetrics metrics, String name)
+        {
+            this.metrics = metrics;
+            this.name = name;
+            if (metrics == null)
+            {
+                start_wall = 0;
+                start_cpu = 0;
+                start_allocated = 0;
+                return;
+            }
+            //Make the stage's entry now so stages are in the order started.
+            if (!metrics.stages.containsKey(name))
+            {
+                metrics.stages.put(name, new long[] {
+                    0, CPU_TIME_SUPPORTED ? 0 : -1,
+                    ALLOCATION_SUPPORTED ? 0 : -1
+                });
+            }
+            start_allocated = allocatedBytes();
+            start_cpu = cpuNanos();
+            start_wall = System.nanoTime();
+        }
+
+        /**
+         * Stop timing the stage and add its times to the airport's metrics.
+         */
+        public void end()
+        {
+            if (metrics == null)
+            {
+                return;
+            }
+            long wall = System.nanoTime() - start_wall;
+            long cpu = cpuNanos() - start_cpu;
+            long allocated = allocatedBytes() - start_allocated;
+
+            long[] totals = metrics.stages.get(name);
+            totals[0] += wall;
+            if (CPU_TIME_SUPPORTED)
+            {
+                totals[1] += cpu;
+            }
+            if (ALLOCATION_SUPPORTED)
+            {
+                totals[2] += allocated;
+            }
+        }
+    }
+}
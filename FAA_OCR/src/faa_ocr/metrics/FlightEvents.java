@@ -0,0 +1,407 @@
+package faa_ocr.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Java Flight Recorder events for the stages of the pipeline, so that a
+ * recording of a batch shows which airport each hotspot was working on.
+ * Every event has the airport it is for and a count of what the stage
+ * worked through, like the runway candidates of the runway scan.
+ *
+ * The project builds for Java 7, which has no jdk.jfr, so the events are
+ * made at runtime through jdk.jfr.EventFactory by reflection.  On a JVM
+ * without JFR nothing happens at all.  On a JVM with JFR, a listener keeps
+ * track of whether a recording is running, and until one is, starting an
+ * event is one volatile read that returns a span that does nothing.  The
+ * event types aren't even registered until the first recording starts.
+ *
+ * The events are in the "FAA OCR" category, named faa_ocr.RenderDiagram,
+ * faa_ocr.ParseRunways, faa_ocr.ParseText, faa_ocr.WriteXml, and
+ * faa_ocr.WriteKml.
+ *
+ * @author Kevin Dittmar
+ */
+public class FlightEvents
+{
+    private static final String CATEGORY = "FAA OCR";
+
+    //Rendering a diagram PDF, counting the pixels of the image.
+    public static final EventType RENDER = new EventType(
+            "faa_ocr.RenderDiagram", "Render Diagram", "Pixels"
+    );
+
+    /* Finding the runways in a diagram, counting the runway candidates:
+     * the corners that were followed to look for a runway.
+     */
+    public static final EventType RUNWAYS = new EventType(
+            "faa_ocr.ParseRunways", "Parse Runways", "Runway Candidates"
+    );
+
+    //Parsing the text of a diagram, counting the runways it names.
+    public static final EventType TEXT = new EventType(
+            "faa_ocr.ParseText", "Parse Text", "Runways"
+    );
+
+    //Writing an airport's XML, counting the runways and taxiways written.
+    public static final EventType XML = new EventType(
+            "faa_ocr.WriteXml", "Write XML", "Paths"
+    );
+
+    //Writing an airport's KML, counting the runways and taxiways written.
+    public static final EventType KML = new EventType(
+            "faa_ocr.WriteKml", "Write KML", "Paths"
+    );
+
+    //Returned by start when no recording wants the event.
+    private static final Span NO_SPAN = new Span(null, null);
+
+    //The airport each thread is working on, for stages that aren't told.
+    private static final ThreadLocal<String> AIRPORT = new ThreadLocal<>();
+
+    //True while a flight recording is running.
+    private static volatile boolean recording = false;
+
+    //The jdk.jfr methods, or null if this JVM has no JFR.
+    private static final Jfr JFR = Jfr.load();
+
+    /**
+     * Set the airport this thread is working on, which is put on the
+     * events of stages that aren't given the airport.
+     *
+     * @param airport is the path to the airport diagram PDF, or null.
+     * @return the airport the thread was working on before.
+     */
+    public static String setAirport(String airport)
+    {
+        String previous = AIRPORT.get();
+        if (airport == null)
+        {
+            AIRPORT.remove();
+        }
+        else
+        {
+            AIRPORT.set(airport);
+        }
+        return previous;
+    }
+
+    /**
+     * Start an event for the airport this thread is working on.
+     *
+     * @param type is the type of event.
+     * @return the running event, which is committed when it is closed.
+     */
+    public static Span start(EventType type)
+    {
+        return start(type, AIRPORT.get());
+    }
+
+    /**
+     * Start an event.
+     *
+     * @param type is the type of event.
+     * @param airport is the path to the airport diagram PDF.
+     * @return the running event, which is committed when it is closed.
+     */
+    public static Span start(EventType type, String airport)
+    {
+        if (!recording || JFR == null)
+        {
+            return NO_SPAN;
+        }
+        return type.start(airport);
+    }
+
+    /**
+     * Turn the events off after JFR did something unexpected, so the
+     * pipeline isn't slowed down by failing over and over.  They come back
+     * on when a recording starts or stops.
+     */
+    private static void disable(Throwable cause)
+    {
+        recording = false;
+        Logger.getLogger(FlightEvents.class.getName()).log(
+                Level.WARNING, "Flight recorder events are off", cause
+        );
+    }
+
+    /**
+     * A type of event.
+     */
+    public static class EventType
+    {
+        private final String name;
+        private final String label;
+        private final String count_label;
+
+        //Made when the first recording wants an event of this type.
+        private Object factory;
+
+        private EventType(String name, String label, String count_label)
+        {
+            this.name = name;
+            this.label = label;
+            this.count_label = count_label;
+        }
+
+        /**
+         * Make and begin an event of this type, if the recording wants it.
+         *
+         * @param airport is the path to the airport diagram PDF.
+         * @return the running event.
+         */
+        private Span start(String airport)
+        {
+            try
+            {
+                Object event = JFR.new_event.invoke(getFactory());
+                if (!(Boolean) JFR.is_enabled.invoke(event))
+                {
+                    return NO_SPAN;
+                }
+                JFR.begin.invoke(event);
+                return new Span(event, airport);
+            }
+            catch (ReflectiveOperationException | RuntimeException ex)
+            {
+                disable(ex);
+                return NO_SPAN;
+            }
+        }
+
+        private synchronized Object getFactory()
+                throws ReflectiveOperationException
+        {
+            if (factory == null)
+            {
+                factory = JFR.createFactory(this);
+            }
+            return factory;
+        }
+    }
+
+    /**
+     * An event that is running.  Closing it ends the event and commits it.
+     */
+    public static class Span implements AutoCloseable
+    {
+        private final Object event;
+        private final String airport;
+        private long count;
+
+        private Span(Object event, String airport)
+        {
+            this.event = event;
+            this.airport = airport;
+        }
+
+        /**
+         * Determine whether the event will be recorded, so that counts
+         * that take work to find are only found when they are wanted.
+         *
+         * @return true if the event will be recorded.
+         */
+        public boolean isRecorded()
+        {
+            return event != null;
+        }
+
+        /**
+         * Set the count of what the stage worked through.
+         *
+         * @param count is the count.
+         */
+        public void setCount(long count)
+        {
+            this.count = count;
+        }
+
+        /**
+         * End the event and commit it to the recording.
+         */
+        @Override
+        public void close()
+        {
+            if (event == null)
+            {
+                return;
+            }
+            try
+            {
+                JFR.end.invoke(event);
+                JFR.set.invoke(event, 0, airport);
+                JFR.set.invoke(event, 1, count);
+                JFR.commit.invoke(event);
+            }
+            catch (ReflectiveOperationException | RuntimeException ex)
+            {
+                disable(ex);
+            }
+        }
+    }
+
+    /**
+     * The parts of jdk.jfr that the events use, found by reflection.
+     */
+    private static class Jfr implements InvocationHandler
+    {
+        private final Class<?> flight_recorder;
+        private final Class<?> annotation_element;
+        private final Class<?> value_descriptor;
+        private final Class<?> event_factory;
+        private final Method new_event;
+        private final Method begin;
+        private final Method end;
+        private final Method set;
+        private final Method commit;
+        private final Method is_enabled;
+
+        private Jfr() throws ReflectiveOperationException
+        {
+            flight_recorder = Class.forName("jdk.jfr.FlightRecorder");
+            annotation_element = Class.forName("jdk.jfr.AnnotationElement");
+            value_descriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            event_factory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            new_event = event_factory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+            is_enabled = event.getMethod("isEnabled");
+        }
+
+        /**
+         * Find JFR and start listening for recordings.
+         *
+         * @return the JFR methods, or null if this JVM has no JFR.
+         */
+        private static Jfr load()
+        {
+            try
+            {
+                Jfr jfr = new Jfr();
+                Class<?> listener = Class.forName(
+                        "jdk.jfr.FlightRecorderListener"
+                );
+                jfr.flight_recorder.getMethod("addListener", listener).invoke(
+                        null, Proxy.newProxyInstance(
+                                listener.getClassLoader(),
+                                new Class<?>[] {listener}, jfr
+                        )
+                );
+                //A recording may have started with the JVM.
+                if ((Boolean) jfr.flight_recorder.getMethod("isInitialized")
+                                                 .invoke(null))
+                {
+                    jfr.checkRecording();
+                }
+                return jfr;
+            }
+            catch (ReflectiveOperationException | LinkageError
+                   | RuntimeException ex)
+            {
+                //No JFR, so the events stay off.
+                return null;
+            }
+        }
+
+        /**
+         * Handle a call to the FlightRecorderListener.  It is only called
+         * once JFR is in use, so asking JFR for its recordings then doesn't
+         * start it up.
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "recorderInitialized":
+                case "recordingStateChanged":
+                    checkRecording();
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return FlightEvents.class.getName() + " listener";
+                default:
+                    return null;
+            }
+        }
+
+        //Find out whether any recording is running.
+        private void checkRecording()
+        {
+            try
+            {
+                Object recorder = flight_recorder.getMethod(
+                        "getFlightRecorder"
+                ).invoke(null);
+                boolean running = false;
+                for (Object recording : (List<?>) flight_recorder.getMethod(
+                        "getRecordings").invoke(recorder))
+                {
+                    Object state = recording.getClass().getMethod("getState")
+                                            .invoke(recording);
+                    running |= "RUNNING".equals(state.toString());
+                }
+                recording = running;
+            }
+            catch (ReflectiveOperationException | RuntimeException ex)
+            {
+                disable(ex instanceof InvocationTargetException
+                        ? ex.getCause() : ex);
+            }
+        }
+
+        /**
+         * Register an event type with JFR.
+         *
+         * @param type is the event type.
+         * @return its jdk.jfr.EventFactory.
+         */
+        private Object createFactory(EventType type)
+                throws ReflectiveOperationException
+        {
+            List<Object> annotations = Arrays.asList(
+                    annotation("jdk.jfr.Name", type.name),
+                    annotation("jdk.jfr.Label", type.label),
+                    annotation("jdk.jfr.Category", new String[] {CATEGORY})
+            );
+            List<Object> fields = new ArrayList<>();
+            fields.add(field(String.class, "airport", "Airport"));
+            fields.add(field(long.class, "count", type.count_label));
+            return event_factory.getMethod("create", List.class, List.class)
+                                .invoke(null, annotations, fields);
+        }
+
+        private Object annotation(String annotation_class, Object value)
+                throws ReflectiveOperationException
+        {
+            return annotation_element.getConstructor(Class.class, Object.class)
+                                     .newInstance(Class.forName(annotation_class),
+                                                  value);
+        }
+
+        private Object field(Class<?> field_type, String name, String label)
+                throws ReflectiveOperationException
+        {
+            return value_descriptor.getConstructor(
+                    Class.class, String.class, List.class
+            ).newInstance(field_type, name, Collections.singletonList(
+                    annotation("jdk.jfr.Label", label)
+            ));
+        }
+    }
+}
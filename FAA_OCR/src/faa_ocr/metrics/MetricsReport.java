@@ -0,0 +1,413 @@
+package faa_ocr.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * The metrics of a batch of airports.  Each airport's stages and counters
+ * are listed, and every stage is summed up over the batch with the
+ * minimum, mean, median, 90th percentile, and maximum of its wall time,
+ * CPU time, and allocations, plus a histogram of its wall times.
+ *
+ * The report is written as JSON for tools and as CSV, with one row per
+ * airport and measurement, for spreadsheets.
+ *
+ * @author Kevin Dittmar
+ */
+public class MetricsReport
+{
+    //The names of the report files.
+    public static final String JSON_FILE_NAME = "pipeline_metrics.json";
+    public static final String CSV_FILE_NAME = "pipeline_metrics.csv";
+
+    //The upper bounds of the wall time histogram buckets, in milliseconds.
+    private static final long[] HISTOGRAM_BOUNDS_MS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000
+    };
+
+    private final ArrayList<AirportMetrics> airports;
+
+    /**
+     * Make an empty report.
+     */
+    public MetricsReport()
+    {
+        airports = new ArrayList<>();
+    }
+
+    /**
+     * Add the metrics of an airport to the report.
+     *
+     * @param metrics are the airport's metrics.
+     */
+    public void add(AirportMetrics metrics)
+    {
+        airports.add(metrics);
+    }
+
+    /**
+     * Write the JSON and CSV reports to a directory.
+     *
+     * @param directory is where the reports are written.  It is made if it
+     * doesn't exist.
+     * @return the path of the JSON report.
+     * @throws IOException if the directory can't be made or a report can't
+     * be written.
+     */
+    public String write(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Can't make metrics directory " + directory);
+        }
+        File json_file = new File(directory, JSON_FILE_NAME);
+        try (Writer output = open(json_file))
+        {
+            writeJson(output);
+        }
+        try (Writer output = open(new File(directory, CSV_FILE_NAME)))
+        {
+            writeCsv(output);
+        }
+        return json_file.getPath();
+    }
+
+    private static Writer open(File file) throws IOException
+    {
+        return new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the report as JSON.
+     *
+     * @param output is where the JSON is written.
+     * @throws IOException if the output can't be written to.
+     */
+    public void writeJson(Writer output) throws IOException
+    {
+        output.write("{\n  \"airports\": [");
+        for (int i = 0; i < airports.size(); i++)
+        {
+            AirportMetrics metrics = airports.get(i);
+            output.write(i == 0 ? "\n" : ",\n");
+            output.write("    {\n      \"file\": "
+                         + quote(metrics.getFilePath())
+                         + ",\n      \"name\": "
+                         + quote(metrics.getAirportName())
+                         + ",\n      \"stages\": {");
+            ArrayList<String> stages = metrics.getStageNames();
+            for (int k = 0; k < stages.size(); k++)
+            {
+                String stage = stages.get(k);
+                output.write((k == 0 ? "\n" : ",\n") + "        "
+                             + quote(stage) + ": {\"wall_ns\": "
+                             + metrics.getWallNanos(stage)
+                             + ", \"cpu_ns\": "
+                             + orNull(metrics.getCpuNanos(stage))
+                             + ", \"allocated_bytes\": "
+                             + orNull(metrics.getAllocatedBytes(stage))
+                             + "}");
+            }
+            output.write("\n      },\n      \"counters\": {");
+            ArrayList<String> counters = metrics.getCounterNames();
+            for (int k = 0; k < counters.size(); k++)
+            {
+                String counter = counters.get(k);
+                output.write((k == 0 ? "\n" : ",\n") + "        "
+                             + quote(counter) + ": "
+                             + metrics.getCounter(counter));
+            }
+            output.write("\n      }\n    }");
+        }
+
+        output.write("\n  ],\n  \"stages\": {");
+        LinkedHashMap<String, ArrayList<long[]>> stages = collectStages();
+        int k = 0;
+        for (String stage : stages.keySet())
+        {
+            ArrayList<long[]> samples = stages.get(stage);
+            long[] wall = column(samples, 0);
+            output.write((k++ == 0 ? "\n" : ",\n") + "    " + quote(stage)
+                         + ": {\n      \"count\": " + samples.size()
+                         + ",\n      \"wall_ms\": " + summary(wall, 1e6)
+                         + ",\n      \"cpu_ms\": "
+                         + summary(column(samples, 1), 1e6)
+                         + ",\n      \"allocated_mb\": "
+                         + summary(column(samples, 2), 1024.0 * 1024.0)
+                         + ",\n      \"wall_ms_histogram\": "
+                         + histogram(wall) + "\n    }");
+        }
+
+        output.write("\n  },\n  \"counters\": {");
+        LinkedHashMap<String, ArrayList<Long>> counters = collectCounters();
+        k = 0;
+        for (String counter : counters.keySet())
+        {
+            long total = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long value : counters.get(counter))
+            {
+                total += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            output.write((k++ == 0 ? "\n" : ",\n") + "    " + quote(counter)
+                         + ": {\"count\": " + counters.get(counter).size()
+                         + ", \"total\": " + total + ", \"min\": " + min
+                         + ", \"max\": " + max + "}");
+        }
+        output.write("\n  }\n}\n");
+    }
+
+    /**
+     * Write the report as CSV, with a row for every measurement of every
+     * airport.
+     *
+     * @param output is where the CSV is written.
+     * @throws IOException if the output can't be written to.
+     */
+    public void writeCsv(Writer output) throws IOException
+    {
+        output.write("file,airport,measurement,name,value\n");
+        for (AirportMetrics metrics : airports)
+        {
+            String prefix = csvField(metrics.getFilePath()) + ","
+                            + csvField(metrics.getAirportName()) + ",";
+            for (String stage : metrics.getStageNames())
+            {
+                String name = "," + csvField(stage) + ",";
+                output.write(prefix + "wall_ns" + name
+                             + metrics.getWallNanos(stage) + "\n");
+                if (metrics.getCpuNanos(stage) >= 0)
+                {
+                    output.write(prefix + "cpu_ns" + name
+                                 + metrics.getCpuNanos(stage) + "\n");
+                }
+                if (metrics.getAllocatedBytes(stage) >= 0)
+                {
+                    output.write(prefix + "allocated_bytes" + name
+                                 + metrics.getAllocatedBytes(stage) + "\n");
+                }
+            }
+            for (String counter : metrics.getCounterNames())
+            {
+                output.write(prefix + "counter," + csvField(counter) + ","
+                             + metrics.getCounter(counter) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Gather the wall time, CPU time, and allocations of every stage from
+     * every airport.
+     *
+     * @return the measurements of each stage, in the order the stages were
+     * first seen.
+     */
+    private LinkedHashMap<String, ArrayList<long[]>> collectStages()
+    {
+        LinkedHashMap<String, ArrayList<long[]>> stages =
+                new LinkedHashMap<>();
+        for (AirportMetrics metrics : airports)
+        {
+            for (String stage : metrics.getStageNames())
+            {
+                if (!stages.containsKey(stage))
+                {
+                    stages.put(stage, new ArrayList<long[]>());
+                }
+                stages.get(stage).add(new long[] {
+                    metrics.getWallNanos(stage),
+                    metrics.getCpuNanos(stage),
+                    metrics.getAllocatedBytes(stage)
+                });
+            }
+        }
+        return stages;
+    }
+
+    /**
+     * Gather the value of every counter from every airport.
+     *
+     * @return the values of each counter, in the order the counters were
+     * first seen.
+     */
+    private LinkedHashMap<String, ArrayList<Long>> collectCounters()
+    {
+        LinkedHashMap<String, ArrayList<Long>> counters =
+                new LinkedHashMap<>();
+        for (AirportMetrics metrics : airports)
+        {
+            for (String counter : metrics.getCounterNames())
+            {
+                if (!counters.containsKey(counter))
+                {
+                    counters.put(counter, new ArrayList<Long>());
+                }
+                counters.get(counter).add(metrics.getCounter(counter));
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Get one measurement of every sample, leaving out the ones the JVM
+     * couldn't measure.
+     *
+     * @param samples are the measurements of a stage.
+     * @param index is which measurement to get.
+     * @return the measurements, sorted.
+     */
+    private static long[] column(ArrayList<long[]> samples, int index)
+    {
+        long[] values = new long[samples.size()];
+        int count = 0;
+        for (long[] sample : samples)
+        {
+            if (sample[index] >= 0)
+            {
+                values[count++] = sample[index];
+            }
+        }
+        values = Arrays.copyOf(values, count);
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Sum up sorted values as JSON.
+     *
+     * @param values are the values, sorted.
+     * @param unit is how many of the values' unit make one reported unit.
+     * @return the JSON object, or null if there are no values.
+     */
+    private static String summary(long[] values, double unit)
+    {
+        if (values.length == 0)
+        {
+            return "null";
+        }
+        double total = 0;
+        for (long value : values)
+        {
+            total += value;
+        }
+        return String.format(
+                Locale.ROOT,
+                "{\"min\": %.3f, \"mean\": %.3f, \"p50\": %.3f, "
+                + "\"p90\": %.3f, \"max\": %.3f}",
+                values[0] / unit, total / values.length / unit,
+                percentile(values, 50) / unit, percentile(values, 90) / unit,
+                values[values.length - 1] / unit
+        );
+    }
+
+    //The nearest-rank percentile of sorted values.
+    private static long percentile(long[] values, int percent)
+    {
+        int rank = (int) Math.ceil(percent / 100.0 * values.length);
+        return values[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Count wall times into the histogram buckets as JSON.  Each bucket is
+     * named for its upper bound in milliseconds, and "more" holds the rest.
+     *
+     * @param wall_nanos are the wall times in nanoseconds.
+     * @return the JSON object.
+     */
+    private static String histogram(long[] wall_nanos)
+    {
+        int[] buckets = new int[HISTOGRAM_BOUNDS_MS.length + 1];
+        for (long nanos : wall_nanos)
+        {
+            int bucket = 0;
+            while (bucket < HISTOGRAM_BOUNDS_MS.length
+                   && nanos > HISTOGRAM_BOUNDS_MS[bucket] * 1000000L)
+            {
+                bucket++;
+            }
+            buckets[bucket]++;
+        }
+
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < buckets.length; i++)
+        {
+            String bound = i < HISTOGRAM_BOUNDS_MS.length
+                           ? "le_" + HISTOGRAM_BOUNDS_MS[i]
+                           : "more";
+            json.append(i == 0 ? "" : ", ").append(quote(bound))
+                .append(": ").append(buckets[i]);
+        }
+        return json.append("}").toString();
+    }
+
+    private static String orNull(long value)
+    {
+        return value < 0 ? "null" : Long.toString(value);
+    }
+
+    /**
+     * Quote a string for JSON.
+     *
+     * @param text is the string, which may be null.
+     * @return the JSON string, or null.
+     */
+    private static String quote(String text)
+    {
+        if (text == null)
+        {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(text.length() + 2);
+        json.append('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Quote a CSV field if it needs it.
+     *
+     * @param text is the field, which may be null.
+     * @return the CSV field.
+     */
+    private static String csvField(String text)
+    {
+        if (text == null)
+        {
+            return "";
+        }
+        text = text.trim();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n"))
+        {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
@@ -0,0 +1,167 @@
+package faa_ocr.testing;
+
+import faa_ocr.cache.DiagramCache;
+import faa_ocr.image_parser.BinaryRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Check that the DiagramCache gives back the rasters and text stored in it,
+ * and that eviction deletes the least recently used entries and nothing
+ * else, in a directory made for the check.
+ *
+ * @author Kevin Dittmar
+ */
+public class DiagramCacheTest
+{
+    //The size of each text entry, and the limit that fits two of them.
+    private static final int ENTRY_BYTES = 1000;
+    private static final long MAX_BYTES = 2500;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException
+    {
+        File directory = Files.createTempDirectory("diagram_cache_test")
+                              .toFile();
+        try
+        {
+            File pdf = new File(directory, "diagram.pdf");
+            Files.write(pdf.toPath(), "not really a PDF".getBytes(
+                    StandardCharsets.UTF_8));
+
+            //Files the cache doesn't own, next to and inside its directory.
+            File beside = new File(directory, "notes.txt");
+            Files.write(beside.toPath(), new byte[10 * ENTRY_BYTES]);
+            DiagramCache cache = new DiagramCache(directory, MAX_BYTES);
+            File inside = new File(cache.getDirectory(), "notes.txt");
+            Files.write(inside.toPath(), new byte[10 * ENTRY_BYTES]);
+
+            checkKeys(cache, pdf.getPath());
+            checkText(cache, pdf.getPath());
+            checkRasters(cache, pdf.getPath());
+            checkEviction(cache, pdf.getPath());
+            check("files that aren't entries are kept",
+                  beside.isFile() && inside.isFile());
+            check("the entries are in their own directory",
+                  cache.getDirectory().getName().equals(
+                          DiagramCache.SUBDIRECTORY_NAME));
+        }
+        finally
+        {
+            deleteAll(directory);
+        }
+
+        System.out.println(failures == 0
+                           ? "All cache checks pass."
+                           : failures + " cache checks fail.");
+        if (failures > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Keys depend on the PDF and on the settings.
+     */
+    private static void checkKeys(DiagramCache cache, String pdf_path)
+    {
+        String key = cache.getKey(pdf_path, "settings=1");
+        check("the same PDF and settings get the same key",
+              key != null && key.equals(cache.getKey(pdf_path, "settings=1")));
+        check("other settings get another key",
+              key != null && !key.equals(cache.getKey(pdf_path, "settings=2")));
+    }
+
+    /**
+     * Text comes back the way it was stored.
+     */
+    private static void checkText(DiagramCache cache, String pdf_path)
+    {
+        String key = cache.getKey(pdf_path, "text=check");
+        String text = "RWY 9-27\n ELEV\n 75 ° \r\n";
+        check("text that was never stored is a miss",
+              cache.loadText(key) == null);
+        cache.storeText(key, text);
+        check("text comes back the same", text.equals(cache.loadText(key)));
+    }
+
+    /**
+     * Rasters come back with the same size and pixels.
+     */
+    private static void checkRasters(DiagramCache cache, String pdf_path)
+    {
+        String key = cache.getKey(pdf_path, "raster=check");
+        BinaryRaster first = new BinaryRaster(70, 5);
+        first.fillRun(2, 3, 68);
+        first.setBlack(0, 4, true);
+        BinaryRaster second = new BinaryRaster(1, 1);
+        cache.storeRasters(key, first, second);
+
+        BinaryRaster[] loaded = cache.loadRasters(key);
+        check("rasters come back the same",
+              loaded != null && loaded.length == 2
+              && isSame(first, loaded[0]) && isSame(second, loaded[1]));
+    }
+
+    /**
+     * Storing a third entry past the limit deletes the least recently used
+     * one, which is the first entry unless it was used since.
+     */
+    private static void checkEviction(DiagramCache cache, String pdf_path)
+    {
+        String text = new String(new char[ENTRY_BYTES]).replace('\0', 'x');
+        String[] keys = new String[3];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = cache.getKey(pdf_path, "eviction=" + i);
+            cache.storeText(keys[i], text);
+            //Entries used one, two and three hours ago, from oldest first.
+            new File(cache.getDirectory(), keys[i] + ".txt").setLastModified(
+                    now - (3 - i) * 3600000L);
+            if (i == 1)
+            {
+                //Using the first entry makes the second one the oldest.
+                cache.loadText(keys[0]);
+            }
+        }
+        check("the least recently used entry is evicted",
+              cache.loadText(keys[1]) == null);
+        check("the other entries are kept",
+              text.equals(cache.loadText(keys[0]))
+              && text.equals(cache.loadText(keys[2])));
+    }
+
+    private static boolean isSame(BinaryRaster expected, BinaryRaster actual)
+    {
+        return expected.getWidth() == actual.getWidth()
+               && expected.getHeight() == actual.getHeight()
+               && Arrays.equals(expected.getWords(), actual.getWords());
+    }
+
+    private static void check(String name, boolean passed)
+    {
+        if (!passed)
+        {
+            failures++;
+        }
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+    }
+
+    private static void deleteAll(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
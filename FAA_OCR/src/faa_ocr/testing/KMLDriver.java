@@ -15,10 +15,41 @@ import java.io.*;
 public class KMLDriver
 {
 
+    /**
+     * With no arguments, converts the sample ATL XML file.  Otherwise each
+     * argument is converted with the streaming reader: a directory of XML
+     * files, an XML file, or - for airport XML documents one after another
+     * on standard input, written to the current directory.
+     *
+     * @param args directories, files, or -
+     */
     public static void main(String[] args)
     {
         XMLtoKML kmlMaker = new XMLtoKML();
-        File f = new File("FAA_OCR\\ATL_Airport.xml");
-        kmlMaker.writeKML(f);
+        if (args.length == 0)
+        {
+            File f = new File("FAA_OCR\\ATL_Airport.xml");
+            kmlMaker.writeKML(f);
+            return;
+        }
+
+        for (String arg : args)
+        {
+            File f = new File(arg);
+            if (arg.equals("-"))
+            {
+                System.out.println(
+                        kmlMaker.convertStream(System.in, new File("."))
+                );
+            }
+            else if (f.isDirectory())
+            {
+                System.out.println(kmlMaker.convertDirectory(f));
+            }
+            else
+            {
+                System.out.println(kmlMaker.writeKMLStreaming(f));
+            }
+        }
     }
 }
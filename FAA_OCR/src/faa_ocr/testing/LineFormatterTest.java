@@ -0,0 +1,128 @@
+package faa_ocr.testing;
+
+import faa_ocr.text_parser.LineFormatter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * Check that the LineFormatter gives exactly the same output as the chain of
+ * String.replaceAll() calls that it replaced, for the text of every airport
+ * diagram in res.
+ *
+ * @author Kevin Dittmar
+ */
+public class LineFormatterTest
+{
+    private static final String[] TEXT_FILES =
+    {
+        "res/ACY/00669AD.txt",
+        "res/ATL/00026AD.txt",
+        "res/DFW/06039AD.txt",
+        "res/PHX/00322AD.txt"
+    };
+
+    public static void main(String[] args) throws FileNotFoundException
+    {
+        LineFormatter formatter = new LineFormatter();
+        int failures = 0;
+        for (String text_file : TEXT_FILES)
+        {
+            String diagram_text = readDiagramText(text_file);
+            String expected = getLegacyFormattedString(diagram_text);
+            String actual = formatter.getFormattedString(diagram_text);
+            if (expected.equals(actual))
+            {
+                System.out.println("PASS " + text_file);
+            }
+            else
+            {
+                failures++;
+                System.out.println("FAIL " + text_file + " differs at "
+                                   + firstDifference(expected, actual));
+            }
+        }
+        System.out.println(failures == 0
+                           ? "All airports match."
+                           : failures + " airports don't match.");
+        if (failures > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read a pdftotext file the way PDFToText does, ending every line with
+     * "\n ".
+     *
+     * @param text_file is the path of the pdftotext output.
+     * @return the text that PDFToText gives to the LineFormatter.
+     * @throws FileNotFoundException if the file doesn't exist.
+     */
+    private static String readDiagramText(String text_file)
+            throws FileNotFoundException
+    {
+        Scanner scanner = new Scanner(new File(text_file));
+        StringBuilder diagram_text = new StringBuilder();
+        while (scanner.hasNextLine())
+        {
+            diagram_text.append(scanner.nextLine()).append("\n ");
+        }
+        scanner.close();
+        return diagram_text.toString();
+    }
+
+    /**
+     * The LineFormatter as it was before its patterns were precompiled.
+     *
+     * @param raw_data is the String of text to be formatted.
+     * @return the formatted String.
+     */
+    private static String getLegacyFormattedString(String raw_data)
+    {
+        String formatted_data = raw_data.replaceAll("\\)", ")\n");
+        formatted_data = formatted_data.replaceAll(" +", " ");
+        formatted_data = formatted_data.replaceAll(
+                "([\\d\\.]{1,2})\r*\n", "$1"
+        );
+        formatted_data = formatted_data.replaceAll(
+                "\r*\n(.*)(E *L *E *V *)(.*)(E *L *E *V *)(.*)\r*\n",
+                "$1\n$2\n$3\n$4\n$5\n"
+        );
+        formatted_data = formatted_data.replaceAll(
+                "(\\d\\d\\d\\.\\d)( ELEV)",
+                "$1\n$2\n"
+        );
+        formatted_data = formatted_data.replaceAll("(E *L *E *V) ", "$1\n");
+        formatted_data = formatted_data.replaceAll(" (\\d+) ", "\n $1 ");
+        formatted_data = formatted_data.replaceAll(
+                "(\\d\\d\\d\\.\\d) (\\d\\d\\d\\.\\d)",
+                "$1\n$2\n"
+        );
+        formatted_data = formatted_data.replaceAll(
+                " ([4-9]\\d{2}) ",
+                "\n $1 \n"
+        );
+        return formatted_data;
+    }
+
+    /**
+     * Find the first character where two Strings differ.
+     *
+     * @param expected is the expected String.
+     * @param actual is the actual String.
+     * @return the index of the first difference.
+     */
+    private static int firstDifference(String expected, String actual)
+    {
+        int length = Math.min(expected.length(), actual.length());
+        for (int i = 0; i < length; i++)
+        {
+            if (expected.charAt(i) != actual.charAt(i))
+            {
+                return i;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,142 @@
+package faa_ocr.testing;
+
+import faa_ocr.cache.OutputManifest;
+import faa_ocr.xml_parser.OutputFile;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Check that an OutputManifest reads back what it recorded, before and
+ * after it is compacted, and that reused outputs stay apart from the ones
+ * they were linked to when either is written again.  Everything is done in
+ * a directory made for the check.
+ *
+ * @author Kevin Dittmar
+ */
+public class OutputManifestTest
+{
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException
+    {
+        File directory = Files.createTempDirectory("output_manifest_test")
+                              .toFile();
+        try
+        {
+            File manifest_file = new File(directory, "manifest.tsv");
+            File pdf = write(new File(directory, "diagram.pdf"), "PDF");
+            File old_xml = write(new File(directory, "old.xml"), "old xml");
+            File old_kml = write(new File(directory, "old.kml"), "old kml");
+            File xml = write(new File(directory, "cycle1.xml"), "xml");
+            File kml = write(new File(directory, "cycle1.kml"), "kml");
+
+            OutputManifest manifest = new OutputManifest(manifest_file);
+            String key = manifest.getKey(pdf.getPath(), "settings");
+            manifest.record(key, "OLD", old_xml.getPath(), old_kml.getPath());
+            manifest.record(key, "Test\tAirport\n", xml.getPath(),
+                            kml.getPath());
+            manifest.record("other", "Other", xml.getPath(),
+                            new File(directory, "missing.kml").getPath());
+
+            //A line cut off by a crash is skipped.
+            try (FileOutputStream output =
+                    new FileOutputStream(manifest_file, true))
+            {
+                output.write("cut off\t".getBytes(StandardCharsets.UTF_8));
+            }
+
+            checkEntries("the manifest is read back",
+                         new OutputManifest(manifest_file), key, xml, kml);
+            manifest.compact();
+            checkEntries("the compacted manifest is read back",
+                         new OutputManifest(manifest_file), key, xml, kml);
+
+            checkReuse(manifest, key, directory);
+        }
+        finally
+        {
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+            directory.delete();
+        }
+
+        System.out.println(failures == 0
+                           ? "All manifest checks pass."
+                           : failures + " manifest checks fail.");
+        if (failures > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Check the entries of a manifest read from its file.  The later line
+     * for the key replaces the earlier one, and the entry whose KML is
+     * missing isn't found.
+     */
+    private static void checkEntries(String name, OutputManifest manifest,
+                                     String key, File xml, File kml)
+    {
+        OutputManifest.Entry entry = manifest.find(key);
+        check(name, manifest.size() == 2 && entry != null
+                    && entry.getAirportName().equals("Test Airport")
+                    && entry.getXmlPath().equals(xml.getAbsolutePath())
+                    && entry.getKmlPath().equals(kml.getAbsolutePath()));
+        check(name + " without the missing outputs",
+              manifest.find("other") == null && manifest.find(null) == null);
+    }
+
+    /**
+     * Reuse the outputs at new paths, then write one of the new outputs
+     * again, which must leave the outputs it was linked to alone.
+     */
+    private static void checkReuse(OutputManifest manifest, String key,
+                                   File directory) throws IOException
+    {
+        OutputManifest.Entry entry = manifest.find(key);
+        File xml = new File(directory, "cycle2.xml");
+        File kml = new File(directory, "cycle2.kml");
+        check("the outputs are reused",
+              manifest.reuse(entry, xml.getPath(), kml.getPath())
+              && read(xml).equals("xml") && read(kml).equals("kml"));
+        check("the reused outputs are linked to the old ones",
+              Files.isSameFile(xml.toPath(),
+                               new File(entry.getXmlPath()).toPath()));
+
+        try (OutputFile output = new OutputFile(xml))
+        {
+            output.getStream().write(
+                    "new xml".getBytes(StandardCharsets.UTF_8));
+            output.commit();
+        }
+        check("writing a reused output leaves the old one alone",
+              read(xml).equals("new xml")
+              && read(new File(entry.getXmlPath())).equals("xml"));
+    }
+
+    private static File write(File file, String text) throws IOException
+    {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()),
+                          StandardCharsets.UTF_8);
+    }
+
+    private static void check(String name, boolean passed)
+    {
+        if (!passed)
+        {
+            failures++;
+        }
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+    }
+}
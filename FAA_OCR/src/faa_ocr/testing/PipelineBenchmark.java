@@ -0,0 +1,464 @@
+package faa_ocr.testing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import faa_ocr.ADTs.Airport;
+import faa_ocr.ADTs.Point;
+import faa_ocr.Controller.AirportController;
+import faa_ocr.image_parser.BinaryRaster;
+import faa_ocr.image_parser.RunwayDiagramParser;
+import faa_ocr.kml_parser.AirportToKML;
+import faa_ocr.kml_parser.XMLtoKML;
+import faa_ocr.text_parser.DiagramText;
+import faa_ocr.text_parser.LineFormatter;
+import faa_ocr.text_parser.RunwayDataParser;
+import faa_ocr.xml_parser.AirportToXML;
+
+/**
+ * Benchmarks the image, text, and output stages of the pipeline on the
+ * diagrams in res/.  Run it from the FAA_OCR directory.
+ *
+ * Every benchmark is run on every diagram the way JMH runs them in average
+ * time mode: warmup iterations that aren't counted, then measurement
+ * iterations that each call the benchmark for a fixed time.  The average
+ * time per call and its standard deviation over the measurement iterations
+ * are printed, and can be saved to a CSV file and compared with a CSV file
+ * saved before a change.
+ *
+ * Arguments:
+ *   -wi N         warmup iterations (default 5)
+ *   -i N          measurement iterations (default 10)
+ *   -r MS         milliseconds per iteration (default 500)
+ *   -csv FILE     save the results to FILE
+ *   -baseline F   compare the results with the ones saved in F
+ *   REGEX         only run benchmarks whose names contain a match
+ *
+ * The diagrams are copied to a temporary directory first, because
+ * AirportToXML and XMLtoKML write their files next to their input.
+ *
+ * @author Kevin Dittmar
+ */
+public class PipelineBenchmark
+{
+    //The diagram PDFs in res/ and whether each one is rotated.
+    private static final String[] DIAGRAMS = {
+        "res/ACY/00669AD.PDF",
+        "res/ATL/00026AD.PDF",
+        "res/DFW/06039AD.PDF",
+        "res/PHX/00322AD.pdf"
+    };
+    private static final boolean[] ROTATED = {true, false, true, true};
+
+    private static int warmup_iterations = 5;
+    private static int measurement_iterations = 10;
+    private static long iteration_nanos = 500000000L;
+
+    /* Every result is folded into this, so the JIT can't throw away the
+     * work that made it.
+     */
+    private static volatile int sink;
+
+    /**
+     * One airport diagram and everything the benchmarks need from it, made
+     * before anything is timed.
+     */
+    private static class Fixture
+    {
+        String name;
+        String pdf_path;
+        boolean rotated;
+        Airport airport;
+        BinaryRaster raster;
+        Point[] points;
+        DiagramText diagram_text;
+        String joined_text;
+        String xml_path;
+
+        //Where RunwayDataParser puts its runways, made again every iteration
+        Airport runway_sink;
+    }
+
+    /**
+     * A benchmark of one method.
+     */
+    private static abstract class Benchmark
+    {
+        final String name;
+
+        Benchmark(String name)
+        {
+            this.name = name;
+        }
+
+        //Called before every iteration, outside of the timing.
+        void setUpIteration(Fixture fixture)
+        {
+            //nothing by default
+        }
+
+        //The call that is timed.
+        abstract Object run(Fixture fixture) throws Exception;
+    }
+
+    private static final AirportToXML XML_WRITER = new AirportToXML();
+    private static final XMLtoKML KML_CONVERTER = new XMLtoKML();
+    private static final AirportToKML KML_WRITER = new AirportToKML();
+
+    private static final Benchmark[] BENCHMARKS = {
+        new Benchmark("Point.isBlack")
+        {
+            @Override
+            Object run(Fixture fixture)
+            {
+                int black = 0;
+                for (Point point : fixture.points)
+                {
+                    if (point.isBlack(fixture.raster))
+                    {
+                        black++;
+                    }
+                }
+                return black;
+            }
+        },
+        new Benchmark("RunwayDiagramParser.parseRunways")
+        {
+            @Override
+            Object run(Fixture fixture)
+            {
+                return new RunwayDiagramParser().parseRunways(fixture.raster);
+            }
+        },
+        new Benchmark("LineFormatter.getFormattedString")
+        {
+            @Override
+            Object run(Fixture fixture)
+            {
+                return new LineFormatter().getFormattedString(
+                        fixture.joined_text
+                );
+            }
+        },
+        new Benchmark("RunwayDataParser.parseRunwayData")
+        {
+            @Override
+            void setUpIteration(Fixture fixture)
+            {
+                //Otherwise the runways of every call pile up in one Airport.
+                fixture.runway_sink = new Airport(fixture.pdf_path,
+                                                  fixture.rotated);
+            }
+
+            @Override
+            Object run(Fixture fixture)
+            {
+                new RunwayDataParser().parseRunwayData(fixture.diagram_text,
+                                                       fixture.runway_sink);
+                return fixture.runway_sink;
+            }
+        },
+        new Benchmark("AirportToXML.convertToXml")
+        {
+            @Override
+            Object run(Fixture fixture)
+            {
+                return XML_WRITER.convertToXml(fixture.airport);
+            }
+        },
+        new Benchmark("XMLtoKML.writeKML")
+        {
+            @Override
+            Object run(Fixture fixture)
+            {
+                return KML_CONVERTER.writeKML(new File(fixture.xml_path));
+            }
+        },
+        new Benchmark("AirportToKML.convertToKml")
+        {
+            @Override
+            Object run(Fixture fixture)
+            {
+                return KML_WRITER.convertToKml(fixture.airport);
+            }
+        }
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        String csv_path = null;
+        String baseline_path = null;
+        Pattern filter = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-wi":
+                    warmup_iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    measurement_iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    iteration_nanos = Long.parseLong(args[++i]) * 1000000L;
+                    break;
+                case "-csv":
+                    csv_path = args[++i];
+                    break;
+                case "-baseline":
+                    baseline_path = args[++i];
+                    break;
+                default:
+                    filter = Pattern.compile(args[i]);
+            }
+        }
+
+        HashMap<String, double[]> baseline = baseline_path == null
+                                             ? null
+                                             : readResults(baseline_path);
+        File work_directory = Files.createTempDirectory(
+                "faa_ocr_benchmark"
+        ).toFile();
+        ArrayList<Fixture> fixtures = makeFixtures(work_directory);
+        ArrayList<String> results = new ArrayList<>();
+
+        System.out.printf("%-34s %-4s %14s %12s%s%n", "Benchmark", "", "us/op",
+                          "sd", baseline == null ? "" : "     change");
+        for (Benchmark benchmark : BENCHMARKS)
+        {
+            if (filter != null && !filter.matcher(benchmark.name).find())
+            {
+                continue;
+            }
+            for (Fixture fixture : fixtures)
+            {
+                double[] result = measure(benchmark, fixture);
+                String key = benchmark.name + "," + fixture.name;
+                String change = "";
+                if (baseline != null && baseline.containsKey(key))
+                {
+                    double before = baseline.get(key)[0];
+                    change = String.format(Locale.ROOT, "%+10.1f%%",
+                                           100 * (result[0] - before) / before);
+                }
+                System.out.printf(Locale.ROOT, "%-34s %-4s %14.3f %12.3f %s%n",
+                                  benchmark.name, fixture.name, result[0],
+                                  result[1], change);
+                results.add(String.format(Locale.ROOT, "%s,%.3f,%.3f",
+                                          key, result[0], result[1]));
+            }
+        }
+
+        if (csv_path != null)
+        {
+            try (PrintWriter csv = new PrintWriter(csv_path, "UTF-8"))
+            {
+                csv.println("benchmark,airport,us_per_op,sd");
+                for (String result : results)
+                {
+                    csv.println(result);
+                }
+            }
+        }
+        deleteTree(work_directory);
+    }
+
+    //Delete a directory and everything in it.
+    private static void deleteTree(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Run the warmup and measurement iterations of a benchmark on a diagram.
+     *
+     * @param benchmark is the benchmark to run.
+     * @param fixture is the diagram to run it on.
+     * @return the average time per call in microseconds and its standard
+     * deviation over the measurement iterations.
+     */
+    private static double[] measure(Benchmark benchmark, Fixture fixture)
+            throws Exception
+    {
+        for (int i = 0; i < warmup_iterations; i++)
+        {
+            runIteration(benchmark, fixture);
+        }
+
+        double[] micros_per_call = new double[measurement_iterations];
+        double sum = 0;
+        for (int i = 0; i < measurement_iterations; i++)
+        {
+            micros_per_call[i] = runIteration(benchmark, fixture);
+            sum += micros_per_call[i];
+        }
+        double mean = sum / measurement_iterations;
+        double squares = 0;
+        for (double micros : micros_per_call)
+        {
+            squares += (micros - mean) * (micros - mean);
+        }
+        double sd = measurement_iterations > 1
+                    ? Math.sqrt(squares / (measurement_iterations - 1))
+                    : 0;
+        return new double[] {mean, sd};
+    }
+
+    /**
+     * Call a benchmark over and over until the iteration time is up.
+     *
+     * @param benchmark is the benchmark to run.
+     * @param fixture is the diagram to run it on.
+     * @return the average time per call in microseconds.
+     */
+    private static double runIteration(Benchmark benchmark, Fixture fixture)
+            throws Exception
+    {
+        benchmark.setUpIteration(fixture);
+        long calls = 0;
+        long start_time = System.nanoTime();
+        long elapsed;
+        do
+        {
+            Object result = benchmark.run(fixture);
+            sink += System.identityHashCode(result);
+            calls++;
+            elapsed = System.nanoTime() - start_time;
+        }
+        while (elapsed < iteration_nanos);
+        return elapsed / 1000.0 / calls;
+    }
+
+    /**
+     * Copy the diagrams to a temporary directory and make everything the
+     * benchmarks need from them.
+     *
+     * @param work_directory is the directory to copy the diagrams to.
+     * @return a fixture for every diagram.
+     */
+    private static ArrayList<Fixture> makeFixtures(File work_directory)
+            throws IOException
+    {
+        AirportController controller = new AirportController();
+
+        ArrayList<Fixture> fixtures = new ArrayList<>();
+        for (int i = 0; i < DIAGRAMS.length; i++)
+        {
+            File pdf = new File(DIAGRAMS[i]);
+            Fixture fixture = new Fixture();
+            fixture.name = pdf.getParentFile().getName();
+            fixture.rotated = ROTATED[i];
+
+            //Bring the pdftotext output along so the text is the same.
+            File directory = new File(work_directory, fixture.name);
+            directory.mkdirs();
+            File copy = new File(directory, pdf.getName());
+            Files.copy(pdf.toPath(), copy.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            File text = new File(pdf.getPath().replaceAll("\\.pdf|\\.PDF",
+                                                          ".txt"));
+            if (text.exists())
+            {
+                Files.copy(text.toPath(),
+                           new File(directory, text.getName()).toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            fixture.pdf_path = copy.getPath();
+
+            fixture.airport = controller.parseAirport(fixture.pdf_path,
+                                                      fixture.rotated);
+            fixture.raster = fixture.airport.getDiagram();
+            fixture.points = new Point[fixture.raster.getWidth()
+                                       * fixture.raster.getHeight()];
+            int k = 0;
+            for (int y = 0; y < fixture.raster.getHeight(); y++)
+            {
+                for (int x = 0; x < fixture.raster.getWidth(); x++)
+                {
+                    fixture.points[k++] = new Point(x, y);
+                }
+            }
+
+            //Read every form of the text now so none of it is timed.
+            fixture.diagram_text = fixture.airport.getDiagramText();
+            fixture.diagram_text.getFormattedText();
+            fixture.diagram_text.getPDFBoxText();
+            fixture.joined_text = joinLines(
+                    fixture.diagram_text.getRawText()
+            );
+
+            fixture.xml_path = XML_WRITER.convertToXml(fixture.airport);
+            fixtures.add(fixture);
+            System.out.println("Loaded " + fixture.name);
+        }
+        return fixtures;
+    }
+
+    /**
+     * End every line of the text with "\n ", which is how PDFToText joins
+     * the text before the LineFormatter gets it.
+     *
+     * @param raw_text is the text to join.
+     * @return the joined text.
+     */
+    private static String joinLines(String raw_text)
+    {
+        StringBuilder joined_text = new StringBuilder();
+        if (raw_text != null)
+        {
+            for (String line : raw_text.split("\r\n|\n|\r"))
+            {
+                joined_text.append(line).append("\n ");
+            }
+        }
+        return joined_text.toString();
+    }
+
+    /**
+     * Read results saved with -csv.
+     *
+     * @param csv_path is the CSV file.
+     * @return the average and standard deviation of every benchmark, by
+     * "benchmark,airport".
+     */
+    private static HashMap<String, double[]> readResults(String csv_path)
+            throws IOException
+    {
+        HashMap<String, double[]> results = new HashMap<>();
+        try (BufferedReader csv = Files.newBufferedReader(
+                new File(csv_path).toPath(), StandardCharsets.UTF_8))
+        {
+            //Skip the header
+            String line = csv.readLine();
+            while ((line = csv.readLine()) != null)
+            {
+                String[] fields = line.split(",");
+                if (fields.length == 4)
+                {
+                    results.put(fields[0] + "," + fields[1], new double[] {
+                        Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3])
+                    });
+                }
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,84 @@
+package faa_ocr.testing;
+
+import faa_ocr.ADTs.Airport;
+import faa_ocr.text_parser.PDFToText;
+
+/**
+ * Check that the text read in process gives the same airports as the text
+ * pdftotext wrote for the airport diagrams in res, which is the text next to
+ * each PDF when pdftotext isn't installed.  The name, location, variation,
+ * scales and runways of each airport have to match.
+ *
+ * @author Kevin Dittmar
+ */
+public class ReadingOrderTextStripperTest
+{
+    //Each diagram, and whether it is rotated, as in the TextParserTest.
+    private static final String[] DIAGRAMS =
+    {
+        "res/ACY/00669AD.PDF", "res/ATL/00026AD.PDF",
+        "res/DFW/06039AD.PDF", "res/PHX/00322AD.pdf"
+    };
+    private static final boolean[] ROTATED = {true, false, true, true};
+
+    private static int failures = 0;
+
+    public static void main(String[] args)
+    {
+        boolean in_process = PDFToText.isInProcessText();
+        try
+        {
+            for (int i = 0; i < DIAGRAMS.length; i++)
+            {
+                String expected = readAirport(DIAGRAMS[i], ROTATED[i], false);
+                String found = readAirport(DIAGRAMS[i], ROTATED[i], true);
+                check(DIAGRAMS[i] + " reads the same as with pdftotext",
+                      expected.equals(found));
+                if (!expected.equals(found))
+                {
+                    System.out.println("Expected:\n" + expected
+                                       + "Found:\n" + found);
+                }
+            }
+        }
+        finally
+        {
+            PDFToText.setInProcessText(in_process);
+        }
+
+        System.out.println(failures == 0
+                           ? "All diagrams read the same."
+                           : failures + " diagrams don't read the same.");
+        if (failures > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parse the text of an airport diagram.
+     *
+     * @param diagram_path is the path to the airport diagram PDF.
+     * @param rotated is true if the diagram is rotated.
+     * @param in_process is true to read the text in process, and false to
+     * read it with pdftotext.
+     * @return the airport that was parsed, as a String.
+     */
+    private static String readAirport(String diagram_path, boolean rotated,
+                                      boolean in_process)
+    {
+        PDFToText.setInProcessText(in_process);
+        Airport airport = new Airport(diagram_path, rotated);
+        new PDFToText().parseTextData(airport);
+        return airport.toString();
+    }
+
+    private static void check(String name, boolean passed)
+    {
+        if (!passed)
+        {
+            failures++;
+        }
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+    }
+}
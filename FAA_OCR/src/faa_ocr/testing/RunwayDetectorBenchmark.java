@@ -0,0 +1,146 @@
+package faa_ocr.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import javax.imageio.ImageIO;
+
+import faa_ocr.ADTs.DiagramRunway;
+import faa_ocr.ADTs.Point;
+import faa_ocr.image_parser.BinaryRaster;
+import faa_ocr.image_parser.HoughRunwayDetector;
+import faa_ocr.image_parser.RunwayDetector;
+import faa_ocr.image_parser.RunwayDiagramParser;
+
+/**
+ * Times RunwayDiagramParser and HoughRunwayDetector on the diagrams in res/
+ * and checks how many of the same runways they find.  Run it from the
+ * FAA_OCR directory.
+ *
+ * @author Kevin Dittmar
+ */
+public class RunwayDetectorBenchmark
+{
+    private static final String[] DIAGRAMS = {
+        "res/ACY/00669AD1.jpg",
+        "res/ATL/00026AD1.jpg",
+        "res/DFW/06039AD1.jpg",
+        "res/PHX/00322AD1.jpg"
+    };
+
+    //Runs of every detector on every diagram before anything is timed.
+    private static final int WARMUP_RUNS = 5;
+    private static final int TIMED_RUNS = 20;
+
+    //Runway ends this close together, in pixels, are the same end.
+    private static final double END_TOLERANCE = 10;
+
+    public static void main(String[] args) throws IOException
+    {
+        BinaryRaster[] rasters = new BinaryRaster[DIAGRAMS.length];
+        for (int i = 0; i < DIAGRAMS.length; i++)
+        {
+            rasters[i] = BinaryRaster.fromImage(
+                    ImageIO.read(new File(DIAGRAMS[i]))
+            );
+        }
+
+        for (int run = 0; run < WARMUP_RUNS; run++)
+        {
+            for (BinaryRaster raster : rasters)
+            {
+                new RunwayDiagramParser().parseRunways(raster);
+                new HoughRunwayDetector().parseRunways(raster);
+            }
+        }
+
+        for (int i = 0; i < DIAGRAMS.length; i++)
+        {
+            System.out.println(DIAGRAMS[i]);
+            ArrayList<DiagramRunway> corner_runways =
+                    timeDetector("corners", new RunwayDiagramParser(),
+                                 rasters[i]);
+            ArrayList<DiagramRunway> hough_runways =
+                    timeDetector("hough", new HoughRunwayDetector(),
+                                 rasters[i]);
+
+            int matches = 0;
+            for (DiagramRunway hough_runway : hough_runways)
+            {
+                for (DiagramRunway corner_runway : corner_runways)
+                {
+                    if (isSameRunway(hough_runway, corner_runway))
+                    {
+                        matches++;
+                        break;
+                    }
+                }
+            }
+            System.out.println(
+                    "  " + matches + " of " + corner_runways.size()
+                    + " runways found by both, " + hough_runways.size()
+                    + " found by hough"
+            );
+        }
+    }
+
+    /**
+     * Run a detector on a diagram enough times to time it, and print the
+     * average time and the runways it found.
+     *
+     * @param name is the name of the detector to print.
+     * @param detector is the detector to time.
+     * @param raster is the diagram to find runways in.
+     * @return the runways the detector found.
+     */
+    private static ArrayList<DiagramRunway> timeDetector(
+            String name, RunwayDetector detector, BinaryRaster raster)
+    {
+        ArrayList<DiagramRunway> runways = null;
+        long start_time = System.nanoTime();
+        for (int run = 0; run < TIMED_RUNS; run++)
+        {
+            runways = detector.parseRunways(raster);
+        }
+        double millis = (System.nanoTime() - start_time) / 1e6 / TIMED_RUNS;
+        System.out.printf("  %-8s %8.2f ms%n", name, millis);
+        for (DiagramRunway runway : runways)
+        {
+            System.out.println(
+                    "    " + formatPoint(runway.getStartPoint()) + " to "
+                    + formatPoint(runway.getEndPoint())
+            );
+        }
+        return runways;
+    }
+
+    private static String formatPoint(Point point)
+    {
+        return "(" + point.getX() + ", " + point.getY() + ")";
+    }
+
+    /**
+     * Determine whether two runways have both of their ends in about the
+     * same places.
+     *
+     * @param first is one runway.
+     * @param second is the other runway.
+     * @return true if the start points are close and the end points are
+     * close.
+     */
+    private static boolean isSameRunway(DiagramRunway first,
+                                        DiagramRunway second)
+    {
+        return distance(first.getStartPoint(), second.getStartPoint())
+               <= END_TOLERANCE
+               && distance(first.getEndPoint(), second.getEndPoint())
+                  <= END_TOLERANCE;
+    }
+
+    private static double distance(Point first, Point second)
+    {
+        return Math.hypot(first.getX() - second.getX(),
+                          first.getY() - second.getY());
+    }
+}
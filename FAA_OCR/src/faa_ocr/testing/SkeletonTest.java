@@ -0,0 +1,170 @@
+package faa_ocr.testing;
+
+import faa_ocr.image_parser.BinaryRaster;
+import faa_ocr.image_parser.Skeleton;
+import java.util.ArrayList;
+
+/**
+ * Check the Skeleton on small drawn rasters whose center lines are known: an
+ * empty raster, a straight bar, and a cross of two bars.
+ *
+ * @author Kevin Dittmar
+ */
+public class SkeletonTest
+{
+    //How far, in pixels, a traced point can be from where it belongs.
+    private static final int TOLERANCE = 2;
+
+    public static void main(String[] args)
+    {
+        int failures = 0;
+        failures += check("empty raster", checkEmpty());
+        failures += check("straight bar", checkBar());
+        failures += check("cross", checkCross());
+        System.out.println(failures == 0
+                           ? "All skeletons match."
+                           : failures + " skeletons don't match.");
+        if (failures > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Print the result of one check.
+     *
+     * @param name is the name of the raster that was checked.
+     * @param problem is what was wrong, or null if nothing was.
+     * @return 1 if the check failed, or 0 if it passed.
+     */
+    private static int check(String name, String problem)
+    {
+        if (problem == null)
+        {
+            System.out.println("PASS " + name);
+            return 0;
+        }
+        System.out.println("FAIL " + name + ": " + problem);
+        return 1;
+    }
+
+    /**
+     * A raster without any black pixels has no center lines.
+     *
+     * @return what was wrong, or null if nothing was.
+     */
+    private static String checkEmpty()
+    {
+        int path_count =
+                new Skeleton(new BinaryRaster(20, 20)).getPaths().size();
+        return path_count == 0 ? null : path_count + " paths";
+    }
+
+    /**
+     * A horizontal bar 9 pixels thick is one straight path with two free
+     * ends, along the middle of the bar.
+     *
+     * @return what was wrong, or null if nothing was.
+     */
+    private static String checkBar()
+    {
+        BinaryRaster raster = new BinaryRaster(120, 40);
+        fillBox(raster, 10, 15, 110, 23);
+        ArrayList<Skeleton.SkeletonPath> paths =
+                new Skeleton(raster).getPaths();
+        if (paths.size() != 1)
+        {
+            return paths.size() + " paths";
+        }
+        Skeleton.SkeletonPath path = paths.get(0);
+        if (path.getPointCount() != 2)
+        {
+            return path.getPointCount() + " points";
+        }
+        if (!path.startIsFree() || !path.endIsFree())
+        {
+            return "an end isn't free";
+        }
+        if (!isNear(path.getY(0), 19) || !isNear(path.getY(1), 19))
+        {
+            return "the path isn't along the middle of the bar";
+        }
+        if (path.getLength() < 80)
+        {
+            return "the path is only " + path.getLength() + " long";
+        }
+        return null;
+    }
+
+    /**
+     * A cross of two bars 9 pixels thick is four straight paths, each from
+     * a free end to the junction in the middle of the cross.
+     *
+     * @return what was wrong, or null if nothing was.
+     */
+    private static String checkCross()
+    {
+        BinaryRaster raster = new BinaryRaster(120, 120);
+        fillBox(raster, 10, 56, 110, 64);
+        fillBox(raster, 56, 10, 64, 110);
+        ArrayList<Skeleton.SkeletonPath> paths =
+                new Skeleton(raster).getPaths();
+        if (paths.size() != 4)
+        {
+            return paths.size() + " paths";
+        }
+        for (Skeleton.SkeletonPath path : paths)
+        {
+            int last = path.getPointCount() - 1;
+            if (last != 1)
+            {
+                return path.getPointCount() + " points in a path";
+            }
+            if (path.startIsFree() == path.endIsFree())
+            {
+                return "a path doesn't go from a free end to the junction";
+            }
+            int junction = path.startIsFree() ? last : 0;
+            int free_end = path.startIsFree() ? 0 : last;
+            if (!isNear(path.getX(junction), 60)
+                || !isNear(path.getY(junction), 60))
+            {
+                return "a junction is at (" + path.getX(junction) + ", "
+                       + path.getY(junction) + ")";
+            }
+            if (!isNear(path.getX(free_end), 60)
+                && !isNear(path.getY(free_end), 60))
+            {
+                return "a free end isn't on a bar";
+            }
+            if (path.getLength() < 40)
+            {
+                return "a path is only " + path.getLength() + " long";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Make a box of a raster black.
+     *
+     * @param raster is the raster to draw on.
+     * @param left is the left side of the box.
+     * @param top is the top of the box.
+     * @param right is the right side of the box, which isn't filled.
+     * @param bottom is the bottom of the box, which is filled.
+     */
+    private static void fillBox(BinaryRaster raster, int left, int top,
+                                int right, int bottom)
+    {
+        for (int y = top; y <= bottom; y++)
+        {
+            raster.fillRun(y, left, right);
+        }
+    }
+
+    private static boolean isNear(int actual, int expected)
+    {
+        return Math.abs(actual - expected) <= TOLERANCE;
+    }
+}
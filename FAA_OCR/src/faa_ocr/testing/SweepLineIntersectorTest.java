@@ -0,0 +1,134 @@
+package faa_ocr.testing;
+
+import faa_ocr.ADTs.LineSegment;
+import faa_ocr.ADTs.Point;
+import faa_ocr.ADTs.SweepLineIntersector;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Check that the SweepLineIntersector finds exactly the pairs of segments
+ * that a test of every pair finds, for random sets of segments on a small
+ * grid.  The grid is small so that many segments are vertical, horizontal,
+ * zero length, share end points or lie along each other.
+ *
+ * @author Kevin Dittmar
+ */
+public class SweepLineIntersectorTest
+{
+    private static final int SETS = 3000;
+    private static final int GRID = 12;
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(14);
+        int failures = 0;
+        for (int set = 0; set < SETS; set++)
+        {
+            ArrayList<int[]> coordinates = new ArrayList<>();
+            ArrayList<LineSegment> segments = new ArrayList<>();
+            int count = 1 + random.nextInt(12);
+            for (int i = 0; i < count; i++)
+            {
+                int[] segment =
+                {
+                    random.nextInt(GRID), random.nextInt(GRID),
+                    random.nextInt(GRID), random.nextInt(GRID)
+                };
+                coordinates.add(segment);
+                segments.add(new LineSegment(
+                        new Point(segment[0], segment[1]),
+                        new Point(segment[2], segment[3])
+                ));
+            }
+
+            TreeSet<String> expected = new TreeSet<>();
+            for (int i = 0; i < count; i++)
+            {
+                for (int k = i + 1; k < count; k++)
+                {
+                    if (doSegmentsMeet(coordinates.get(i),
+                                       coordinates.get(k)))
+                    {
+                        expected.add(i + "-" + k);
+                    }
+                }
+            }
+
+            TreeSet<String> actual = new TreeSet<>();
+            boolean in_order = true;
+            SweepLineIntersector.Crossing previous = null;
+            for (SweepLineIntersector.Crossing crossing
+                 : new SweepLineIntersector(segments).getCrossings())
+            {
+                actual.add(crossing.getFirst() + "-" + crossing.getSecond());
+                if (previous != null && previous.compareTo(crossing) > 0)
+                {
+                    in_order = false;
+                }
+                previous = crossing;
+            }
+
+            if (!expected.equals(actual) || !in_order)
+            {
+                failures++;
+                System.out.println("FAIL set " + set + ": expected "
+                                   + expected + ", found " + actual
+                                   + (in_order ? "" : " out of order"));
+            }
+        }
+        System.out.println(failures == 0
+                           ? "All " + SETS + " sets match."
+                           : failures + " sets don't match.");
+        if (failures > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Test whether two segments cross or touch, with exact integer math.
+     *
+     * @param one is the first segment, as x1, y1, x2, y2.
+     * @param two is the second segment, as x1, y1, x2, y2.
+     * @return true if the segments have a point in common.
+     */
+    private static boolean doSegmentsMeet(int[] one, int[] two)
+    {
+        long d1 = orientation(two[0], two[1], two[2], two[3], one[0], one[1]);
+        long d2 = orientation(two[0], two[1], two[2], two[3], one[2], one[3]);
+        long d3 = orientation(one[0], one[1], one[2], one[3], two[0], two[1]);
+        long d4 = orientation(one[0], one[1], one[2], one[3], two[2], two[3]);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0))
+            && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0)))
+        {
+            return true;
+        }
+        return (d1 == 0 && isInBox(two, one[0], one[1]))
+               || (d2 == 0 && isInBox(two, one[2], one[3]))
+               || (d3 == 0 && isInBox(one, two[0], two[1]))
+               || (d4 == 0 && isInBox(one, two[2], two[3]));
+    }
+
+    /**
+     * @return which side of the line from (x1, y1) to (x2, y2) the point
+     * (x, y) is on, or 0 if it is on the line.
+     */
+    private static long orientation(long x1, long y1, long x2, long y2,
+                                    long x, long y)
+    {
+        return (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+    }
+
+    /**
+     * @return true if the point is in the bounding box of the segment.
+     */
+    private static boolean isInBox(int[] segment, int x, int y)
+    {
+        return Math.min(segment[0], segment[2]) <= x
+               && x <= Math.max(segment[0], segment[2])
+               && Math.min(segment[1], segment[3]) <= y
+               && y <= Math.max(segment[1], segment[3]);
+    }
+}
@@ -2,6 +2,8 @@ package faa_ocr.text_parser;
 
 import faa_ocr.ADTs.*;
 import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * The AirportDataParser extracts airport-specific information from the
@@ -15,22 +17,26 @@ public class AirportDataParser extends DataParser
      * followed by a string of digits, a decimal point, another string of
      * digits, and N,S,W, or E, which stand for the direction of the variation.
      */
-    private final String VARIATION_PATTERN = "VAR (\\d+\\.\\d+ [NSWE])";
+    private static final Pattern VARIATION_PATTERN
+    = Pattern.compile("VAR (\\d+\\.\\d+ [NSWE])");
 
     /* The pattern for the airport abbreviation, which is three characters in
      * parentheses after the string "INTL"
      */
-    private final String ABBREVIATION_PATTERN = ".*INTL *\\((...)\\)";
+    private static final Pattern ABBREVIATION_PATTERN
+    = Pattern.compile(".*INTL *\\((...)\\)");
 
     /* The pattern for the name, which comes before the abbreviation code
      * and always includes INTL.
      */
-    private final String NAME_PATTERN = "(.*INTL *)\\(...\\)";
+    private static final Pattern NAME_PATTERN
+    = Pattern.compile("(.*INTL *)\\(...\\)");
 
     /*The pattern for the location is "city, state", where city and state are
      *all capital letters.
      */
-    private final String LOCATION_PATTERN = "([A-Z ]+, [A-Z ]+)";
+    private static final Pattern LOCATION_PATTERN
+    = Pattern.compile("([A-Z ]+, [A-Z ]+)");
 
     /**
      * No initialization is necessary for the constructor.
@@ -43,19 +49,24 @@ public class AirportDataParser extends DataParser
     /**
      * Parse the airport-specific data from the airport diagram.
      *
-     * @param formatted_string is the String representation of the airport
-     * diagram to be analyzed.
+     * @param diagram_text is the text of the airport diagram to be analyzed.
      * @param airport is the Airport that will be given the extracted
      * information.
      */
-    public void parseAirportData(String formatted_string, Airport airport)
+    public void parseAirportData(DiagramText diagram_text, Airport airport)
     {
-        Scanner scanner = new Scanner(formatted_string);
+        Scanner scanner = new Scanner(diagram_text.getFormattedText());
         boolean found_variation = false;
         boolean found_abbrev = false;
         boolean found_location = false;
         boolean found_name = false;
 
+        //One matcher per pattern is reset for every line.
+        Matcher variation_matcher = VARIATION_PATTERN.matcher("");
+        Matcher abbrev_matcher = ABBREVIATION_PATTERN.matcher("");
+        Matcher location_matcher = LOCATION_PATTERN.matcher("");
+        Matcher name_matcher = NAME_PATTERN.matcher("");
+
         /*Continue while there are more lines to scan and more information is
          *needed.
          */
@@ -68,7 +79,7 @@ public class AirportDataParser extends DataParser
             //Look for the variation if we haven't found it.
             if (!found_variation)
             {
-                String var = searchForItem(VARIATION_PATTERN, next_line);
+                String var = searchForItem(variation_matcher, next_line);
                 if (!var.equals(""))
                 {
                     found_variation = true;
@@ -88,7 +99,7 @@ public class AirportDataParser extends DataParser
             //Look for the abbreviation if we haven't found it.
             if (!found_abbrev)
             {
-                String abbrev = searchForItem(ABBREVIATION_PATTERN, next_line);
+                String abbrev = searchForItem(abbrev_matcher, next_line);
                 if (!abbrev.equals(""))
                 {
                     found_abbrev = true;
@@ -99,7 +110,7 @@ public class AirportDataParser extends DataParser
             //Look for the location if we haven't found it.
             if (!found_location)
             {
-                String loc = searchForItem(LOCATION_PATTERN, next_line);
+                String loc = searchForItem(location_matcher, next_line);
                 if (!loc.equals(""))
                 {
                     found_location = true;
@@ -110,7 +121,7 @@ public class AirportDataParser extends DataParser
             //Look for the name of the airport if we haven't found it.
             if (!found_name)
             {
-                String name = searchForItem(NAME_PATTERN, next_line);
+                String name = searchForItem(name_matcher, next_line);
                 if (!name.equals(""))
                 {
                     found_name = true;
@@ -6,7 +6,6 @@
 package faa_ocr.text_parser;
 
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The purpose of the DataParser class is combine similar functionality in
@@ -17,24 +16,21 @@ import java.util.regex.Pattern;
 public abstract class DataParser
 {
     /**
-     * Take a String pattern and test the text given to see if it
-     * matches the given pattern.
+     * Test the text given to see if it matches the given matcher's pattern.
+     * The matcher is reset to the text first, so one matcher can be used for
+     * every line of a diagram instead of making a new one for each line.
      *
-     * @param pattern the String representation of a regular expression
-     * pattern.
+     * @param matcher the matcher for the regular expression pattern.  It
+     * should not be shared between threads.
      * @param text the String text to match against the pattern.
      * @return the String result that matches, or the empty string if there
      * is no match.
-     * Pre: The searchForItem method assumes that there will be exactly
-     * 1 capturing group in the regular expression pattern.
+     * Pre: The matcher's pattern has exactly 1 capturing group.
      */
-    protected String searchForItem(String pattern, String text)
+    protected String searchForItem(Matcher matcher, String text)
     {
-        //Compile the pattern given.
-        Pattern matcher_pattern = Pattern.compile(pattern);
-
-        //Set up the matcher for the pattern.
-        Matcher matcher = matcher_pattern.matcher(text);
+        //Point the matcher at the new text.
+        matcher.reset(text);
 
         //If we found something that matches the pattern...
         if (matcher.find())
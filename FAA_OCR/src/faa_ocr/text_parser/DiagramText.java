@@ -0,0 +1,127 @@
+package faa_ocr.text_parser;
+
+import faa_ocr.metrics.AirportMetrics;
+
+/**
+ * The text of one airport diagram in the forms that the parsers need. The
+ * raw text is read when the bundle is made, and each other form is made the
+ * first time it is asked for and then kept, so the diagram is only read
+ * once no matter how many parsers look at it.
+ *
+ * @author Kevin Dittmar
+ */
+public class DiagramText
+{
+    private final String pdf_file_path;
+
+    private final String raw_text;
+
+    private String formatted_text;
+    private boolean formatted_text_made;
+
+    private String pdfbox_text;
+    private boolean pdfbox_text_read;
+
+    /**
+     * Make the text bundle for the given airport diagram, reading its raw
+     * text.  pdftotext runs once here, for every parser that uses the
+     * bundle.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @throws IllegalStateException if the text can't be read.
+     */
+    public DiagramText(String pdf_file_path)
+    {
+        this(pdf_file_path, false);
+    }
+
+    /**
+     * Make the text bundle for the given airport diagram, reading its raw
+     * text.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @param fresh_text is true if the text has to be read from the PDF as
+     * it is now, and never from a .txt file left next to it.
+     * @throws IllegalStateException if the text can't be read.
+     */
+    public DiagramText(String pdf_file_path, boolean fresh_text)
+    {
+        this.pdf_file_path = pdf_file_path;
+        AirportMetrics.Stage text_extract_stage =
+                AirportMetrics.startStage("text_extract");
+        try
+        {
+            raw_text = PDFToText.getRawText(pdf_file_path, fresh_text);
+        }
+        finally
+        {
+            text_extract_stage.end();
+        }
+        if (raw_text != null)
+        {
+            AirportMetrics.count("text.raw_chars", raw_text.length());
+        }
+    }
+
+    /**
+     * Get the path to the airport diagram PDF that the text comes from.
+     *
+     * @return the airport diagram file path.
+     */
+    public String getFilePath()
+    {
+        return pdf_file_path;
+    }
+
+    /**
+     * Get the text of the diagram as pdftotext lays it out, before any
+     * formatting.
+     *
+     * @return the raw text, or null if the diagram couldn't be read.
+     */
+    public String getRawText()
+    {
+        return raw_text;
+    }
+
+    /**
+     * Get the text of the diagram after the LineFormatter has cleaned it up
+     * for the regular expressions in the parsers.
+     *
+     * @return the formatted text.
+     */
+    public String getFormattedText()
+    {
+        if (!formatted_text_made)
+        {
+            formatted_text = PDFToText.formatDiagramText(getRawText());
+            formatted_text_made = true;
+        }
+        return formatted_text;
+    }
+
+    /**
+     * Get the formatted text of the diagram as PDFBox reads it, which keeps
+     * the ° characters that pdftotext drops.
+     *
+     * @return the PDFBox text, or null if the diagram couldn't be read.
+     */
+    public String getPDFBoxText()
+    {
+        if (!pdfbox_text_read)
+        {
+            AirportMetrics.Stage pdfbox_text_stage =
+                    AirportMetrics.startStage("pdfbox_text");
+            try
+            {
+                pdfbox_text = PDFToText.getTextPDFBox(pdf_file_path);
+            }
+            finally
+            {
+                pdfbox_text_stage.end();
+            }
+            pdfbox_text_read = true;
+        }
+        return pdfbox_text;
+    }
+}
@@ -1,13 +1,55 @@
 package faa_ocr.text_parser;
 
+import java.util.regex.Pattern;
+
 /**
  * LineFormatter removes extra characters that may interfere with regular
  * expression matching in other TextParser modules.
  *
+ * The patterns are compiled once when the class is loaded instead of every
+ * time a String is formatted.  Each pattern is applied in the same order as
+ * the String.replaceAll() calls that they replace, so the output is the
+ * same.
+ *
  * @author Kevin Dittmar
  */
 public class LineFormatter
 {
+    /* Add a newline after each end-parenthesis to make parsing
+     * parenthesized data easier.
+     */
+    private static final Pattern END_PARENTHESIS = Pattern.compile("\\)");
+
+    //Replace multiple spaces with one space.
+    private static final Pattern MULTIPLE_SPACES = Pattern.compile(" +");
+
+    //Condense short lines of numbers to make finding headings easier.
+    private static final Pattern SHORT_NUMBER_LINE
+    = Pattern.compile("([\\d\\.]{1,2})\r*\n");
+
+    //Two ELEVs on one line.
+    private static final Pattern TWO_ELEVS = Pattern.compile(
+            "\r*\n(.*)(E *L *E *V *)(.*)(E *L *E *V *)(.*)\r*\n"
+    );
+
+    /* Special Atlanta correction.  There's an angle before an ELEV
+     * marker.  MOVE THEM.
+     */
+    private static final Pattern HEADING_BEFORE_ELEV
+    = Pattern.compile("(\\d\\d\\d\\.\\d)( ELEV)");
+
+    private static final Pattern ELEV_AND_SPACE
+    = Pattern.compile("(E *L *E *V) ");
+
+    private static final Pattern SPACED_NUMBER = Pattern.compile(" (\\d+) ");
+
+    //Separate multiple headings on one line
+    private static final Pattern TWO_HEADINGS
+    = Pattern.compile("(\\d\\d\\d\\.\\d) (\\d\\d\\d\\.\\d)");
+
+    private static final Pattern THREE_DIGIT_NUMBER
+    = Pattern.compile(" ([4-9]\\d{2}) ");
+
     /**
      * No intialization is needed for the line formatter.
      */
@@ -23,50 +65,26 @@ public class LineFormatter
      * @param raw_data is the String of text to be formatted.
      * @return the formatted String.
      */
-    String getFormattedString(String raw_data)
+    public String getFormattedString(String raw_data)
     {
-        //Remove all Windows-style and Unix-style newlines
-        //String formatted_data = raw_data.replaceAll("[\r]\n", "");
-
-        /* Add a newline after each end-parenthesis to make parsing
-         * parenthesized data easier.
-         */
-        String formatted_data = raw_data.replaceAll("\\)", ")\n");
-
-        //Replace multiple spaces with one space.
-        formatted_data = formatted_data.replaceAll(" +", " ");
-
-        //Condense short lines of numbers to make finding headings easier.
-        formatted_data = formatted_data.replaceAll("([\\d\\.]{1,2})\r*\n", "$1");
-
-        //Two ELEVs on one line.
-        formatted_data = formatted_data.replaceAll(
-                "\r*\n(.*)(E *L *E *V *)(.*)(E *L *E *V *)(.*)\r*\n",
-                "$1\n$2\n$3\n$4\n$5\n"
-        );
-
-        /* Special Atlanta correction.  There's an angle before an ELEV
-         * marker.  MOVE THEM.
-         */
-        formatted_data = formatted_data.replaceAll(
-                "(\\d\\d\\d\\.\\d)( ELEV)",
-                "$1\n$2\n"
-        );
-
-        formatted_data = formatted_data.replaceAll("(E *L *E *V) ", "$1\n");
-
-        formatted_data = formatted_data.replaceAll(" (\\d+) ", "\n $1 ");
-
-        //Separate multiple headings on one line
-        formatted_data = formatted_data.replaceAll(
-                "(\\d\\d\\d\\.\\d) (\\d\\d\\d\\.\\d)",
-                "$1\n$2\n"
-        );
-
-        formatted_data = formatted_data.replaceAll(
-                " ([4-9]\\d{2}) ",
-                "\n $1 \n"
-        );
+        String formatted_data = END_PARENTHESIS.matcher(raw_data)
+                .replaceAll(")\n");
+        formatted_data = MULTIPLE_SPACES.matcher(formatted_data)
+                .replaceAll(" ");
+        formatted_data = SHORT_NUMBER_LINE.matcher(formatted_data)
+                .replaceAll("$1");
+        formatted_data = TWO_ELEVS.matcher(formatted_data)
+                .replaceAll("$1\n$2\n$3\n$4\n$5\n");
+        formatted_data = HEADING_BEFORE_ELEV.matcher(formatted_data)
+                .replaceAll("$1\n$2\n");
+        formatted_data = ELEV_AND_SPACE.matcher(formatted_data)
+                .replaceAll("$1\n");
+        formatted_data = SPACED_NUMBER.matcher(formatted_data)
+                .replaceAll("\n $1 ");
+        formatted_data = TWO_HEADINGS.matcher(formatted_data)
+                .replaceAll("$1\n$2\n");
+        formatted_data = THREE_DIGIT_NUMBER.matcher(formatted_data)
+                .replaceAll("\n $1 \n");
         return formatted_data;
     }
 }
@@ -1,11 +1,14 @@
 package faa_ocr.text_parser;
 
 import faa_ocr.ADTs.*;
+import faa_ocr.cache.DiagramCache;
+import faa_ocr.metrics.FlightEvents;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Scanner;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.pdfbox.pdfparser.PDFParser;
@@ -20,6 +23,20 @@ import org.apache.pdfbox.util.PDFTextStripper;
  */
 public class PDFToText
 {
+    /* When true, the text of airport diagrams is read with PDFBox in this
+     * process instead of by running pdftotext and reading the .txt file it
+     * writes.
+     */
+    private static volatile boolean in_process_text = false;
+
+    /* What each kind of text in the diagram cache was read with.  The text
+     * is cached before it is formatted, so changes to the formatting don't
+     * leave stale text in the cache.
+     */
+    private static final String PDFTOTEXT_SETTINGS = "text=pdftotext";
+    private static final String IN_PROCESS_SETTINGS = "text=reading-order";
+    private static final String PDFBOX_SETTINGS = "text=pdfbox-unsorted";
+
     /**
      * No initialization is necessary for the constructor of PDFToText.
      */
@@ -37,23 +54,25 @@ public class PDFToText
      */
     public void parseTextData(Airport airport)
     {
-        //Get the airport diagram PDF file's path
-        String diagram_path = airport.getFilePath();
-
-        //Make a text representation of the airport diagram.
-        makeTextFile(diagram_path);
+        /* The Airport already holds the text of its diagram, which is read
+         * once and shared by every parser.
+         */
+        DiagramText diagram_text = airport.getDiagramText();
 
         AirportDataParser airport_parser = new AirportDataParser();
         RunwayDataParser runway_parser = new RunwayDataParser();
 
-        //Format the diagram text for use in the parsers.
-        String diagram_text = getDiagramText(diagram_path);
+        try (FlightEvents.Span event = FlightEvents.start(
+                FlightEvents.TEXT, airport.getFilePath()))
+        {
+            //Parse the diagram for airport-specific information.
+            airport_parser.parseAirportData(diagram_text, airport);
 
-        //Parse the diagram for airport-specific information.
-        airport_parser.parseAirportData(diagram_text, airport);
+            //Parse the diagram for runway information.
+            runway_parser.parseRunwayData(diagram_text, airport);
 
-        //Parse the diagram for runway information.
-        runway_parser.parseRunwayData(diagram_text, airport);
+            event.setCount(airport.numRunways());
+        }
     }
 
     /**
@@ -66,70 +85,381 @@ public class PDFToText
      * Turns a PDF airport diagram into a text representation that can be
      * analyzed.
      *
-     * @param file_path is the file path of the PDF airport diagram that is to
-     * be turned into a text file.
+     * @param file_path is the file path of the PDF airport diagram.
+     * @param text_file is the file to write the text to.
+     * @return true if pdftotext wrote the text file, false if it couldn't be
+     * started or failed.
      */
-    private static void makeTextFile(String file_path)
+    private static boolean makeTextFile(String file_path, File text_file)
     {
         try
         {
             //Parse the PDF and turn its text into a plain text .txt file.
-            Process pdftotext = Runtime.getRuntime().exec(
-                    "pdftotext " + file_path
+            Process pdftotext = Runtime.getRuntime().exec(new String[] {
+                "pdftotext", file_path, text_file.getPath()
+            });
+            return waitFor(pdftotext, text_file);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(PDFToText.class.getName()).log(
+                    Level.SEVERE, null, ex
             );
+            return false;
+        }
+    }
 
+    /**
+     * Wait for pdftotext to finish, and check that it wrote its text file.
+     *
+     * @param pdftotext is the running pdftotext process.
+     * @param text_file is the file pdftotext writes.
+     * @return true if pdftotext succeeded and the text file isn't empty,
+     * false if it failed or the wait was interrupted.
+     */
+    private static boolean waitFor(Process pdftotext, File text_file)
+    {
+        try
+        {
             //Wait for pdftotext to terminate.
-            pdftotext.waitFor();
+            if (pdftotext.waitFor() != 0)
+            {
+                Logger.getLogger(PDFToText.class.getName()).log(
+                        Level.WARNING, "pdftotext failed with exit code {0}",
+                        pdftotext.exitValue()
+                );
+                return false;
+            }
+            return text_file.length() > 0;
         }
-        /*Handles IOException for "pdftotext arg" not existing and the
-         *InterruptedException in case there is a problem due to waitFor();
-         */
-        catch (IOException | InterruptedException ex)
+        //In case there is a problem due to waitFor();
+        catch (InterruptedException ex)
         {
             Logger.getLogger(PDFToText.class.getName()).log(
                     Level.SEVERE, null, ex
             );
+            return false;
         }
     }
 
     /**
-     * Get the raw text of the airport diagram PDF whose file path is
-     * diagram_pdf_path.
+     * Choose whether the text of airport diagrams is read with PDFBox in
+     * this process or by running pdftotext.
+     *
+     * @param in_process is true to read the text with PDFBox, and false to
+     * run pdftotext.
+     */
+    public static void setInProcessText(boolean in_process)
+    {
+        in_process_text = in_process;
+    }
+
+    /**
+     * @return true if the text is read with PDFBox in this process.
+     */
+    public static boolean isInProcessText()
+    {
+        return in_process_text;
+    }
+
+    /**
+     * Get the text of the airport diagram PDF laid out the way pdftotext
+     * lays it out, before any formatting. The text comes from pdftotext, or
+     * from PDFBox if in-process text is turned on.
      *
      * @param diagram_pdf_path is the path to the airport diagram PDF.
-     * @return String representation of diagram
+     * pdftotext is run every time, so the text always comes from the PDF as
+     * it is now.  It writes the .txt file next to the PDF, or in the cache
+     * directory if the diagram cache is on, in which case the text comes
+     * from the cache when it is there and is cached when it isn't.  The
+     * .txt file left next to the PDF by an earlier run is only used if
+     * pdftotext can't run, since it may be from an older version of the PDF,
+     * and its text is never cached.
+     * @param fresh_text is true if the text has to come from the PDF as it
+     * is now, like when the PDF changed since the last run, so the .txt file
+     * left next to it is never used.
+     *
+     * @return the raw text of the airport diagram, or null if it couldn't be
+     * read.
+     * @throws IllegalStateException if pdftotext couldn't read the diagram
+     * and there is no .txt file next to it, or fresh text is needed.
      */
-    public static String getDiagramText(String diagram_pdf_path)
+    static String getRawText(String diagram_pdf_path, boolean fresh_text)
     {
+        String settings = in_process_text ? IN_PROCESS_SETTINGS
+                                          : PDFTOTEXT_SETTINGS;
+        DiagramCache cache = DiagramCache.getCache();
+        String key = null;
+        if (cache != null)
+        {
+            key = cache.getKey(diagram_pdf_path, settings);
+            String cached_text = key == null ? null : cache.loadText(key);
+            if (cached_text != null)
+            {
+                return cached_text;
+            }
+        }
+
+        if (in_process_text)
+        {
+            String raw_text = getTextInProcess(diagram_pdf_path);
+            if (key != null && raw_text != null)
+            {
+                cache.storeText(key, raw_text);
+            }
+            return raw_text;
+        }
+
         File diagram_file = new File(getTextPath(diagram_pdf_path));
-        //If the file hasn't been created, create it.
+        File text_file = key != null ? cache.getTemporaryFile(key)
+                                     : getTemporaryFile(diagram_file);
+        if (text_file != null)
+        {
+            try
+            {
+                if (makeTextFile(diagram_pdf_path, text_file))
+                {
+                    String raw_text = readTextFile(text_file);
+                    if (key != null && raw_text != null)
+                    {
+                        cache.storeText(key, raw_text);
+                    }
+                    else if (key == null)
+                    {
+                        //Keep the .txt file next to the PDF up to date.
+                        replaceTextFile(text_file, diagram_file);
+                    }
+                    return raw_text;
+                }
+            }
+            finally
+            {
+                text_file.delete();
+            }
+        }
+
+        if (fresh_text)
+        {
+            throw new IllegalStateException(
+                    "pdftotext couldn't read " + diagram_pdf_path
+                    + ", and " + diagram_file.getPath() + " may be from an "
+                    + "older version of the PDF"
+            );
+        }
         if (!diagram_file.exists())
         {
-            makeTextFile(diagram_pdf_path);
-            diagram_file = new File(getTextPath(diagram_pdf_path));
+            /* PDFBox lays the text out differently, and the parsers misread
+             * some of it, so it isn't quietly used instead.
+             */
+            throw new IllegalStateException(
+                    "pdftotext couldn't read " + diagram_pdf_path
+                    + ", and there is no " + diagram_file.getPath()
+            );
         }
-        Scanner scanner;
-        String diagram_text = "";
+        Logger.getLogger(PDFToText.class.getName()).log(
+                Level.WARNING,
+                "pdftotext couldn''t read {0}, so its text comes from {1}, "
+                + "which may be from an older version of the PDF",
+                new Object[] {diagram_pdf_path, diagram_file.getPath()}
+        );
+        return readTextFile(diagram_file);
+    }
+
+    /**
+     * Make a temporary file next to the .txt file of a diagram for
+     * pdftotext to write to, so a failed run doesn't leave half a .txt file.
+     *
+     * @param diagram_file is the .txt file of the diagram.
+     * @return the temporary file, or null if it can't be made.
+     */
+    private static File getTemporaryFile(File diagram_file)
+    {
         try
         {
-            scanner = new Scanner(diagram_file);
-            while (scanner.hasNextLine())
-            {
-                diagram_text += scanner.nextLine() + "\n ";
-            }
-            scanner.close();
+            return File.createTempFile(
+                    "." + diagram_file.getName() + ".", ".tmp",
+                    diagram_file.getAbsoluteFile().getParentFile()
+            );
         }
-        catch (FileNotFoundException ex)
+        catch (IOException ex)
+        {
+            Logger.getLogger(PDFToText.class.getName()).log(
+                    Level.WARNING, null, ex
+            );
+            return null;
+        }
+    }
+
+    /**
+     * Move the text pdftotext just wrote over the .txt file next to the PDF.
+     *
+     * @param text_file is the file pdftotext wrote.
+     * @param diagram_file is the .txt file of the diagram.
+     */
+    private static void replaceTextFile(File text_file, File diagram_file)
+    {
+        try
+        {
+            Files.move(text_file.toPath(), diagram_file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(PDFToText.class.getName()).log(
+                    Level.WARNING, null, ex
+            );
+        }
+    }
+
+    /**
+     * Read a text file written by pdftotext.
+     *
+     * @param text_file is the text file.
+     * @return the text, or null if the file couldn't be read.
+     */
+    private static String readTextFile(File text_file)
+    {
+        try
+        {
+            /* Read the whole file in one go.  pdftotext writes the file in
+             * the platform's encoding, which is also what Scanner used to
+             * read it.
+             */
+            byte[] bytes = Files.readAllBytes(text_file.toPath());
+            return new String(bytes, Charset.defaultCharset());
+        }
+        catch (IOException ex)
         {
             Logger.getLogger(PDFToText.class.getName()).log(
                     Level.SEVERE, null, ex
             );
+            return null;
+        }
+    }
+
+    /**
+     * PDFBox is licensed under the Apache Software Foundation License 2.0.
+     * The license is in the project root directory named "apache_license.txt"
+     * Get the text of the airport diagram PDF with PDFBox, laid out in the
+     * reading order that pdftotext uses, without running pdftotext or
+     * writing a text file.
+     *
+     * @param diagram_pdf_path is the path to the airport diagram PDF.
+     * @return the raw text of the airport diagram, or null if it couldn't be
+     * read.
+     */
+    static String getTextInProcess(String diagram_pdf_path)
+    {
+        PDDocument document = null;
+        try
+        {
+            document = PDDocument.load(new File(diagram_pdf_path));
+            return new ReadingOrderTextStripper().getText(document);
+        }
+        catch (IOException ex)
+        {
+            Logger.getLogger(PDFToText.class.getName()).log(
+                    Level.SEVERE, null, ex
+            );
+            return null;
+        }
+        finally
+        {
+            if (document != null)
+            {
+                try
+                {
+                    document.close();
+                }
+                catch (IOException ex)
+                {
+                    Logger.getLogger(PDFToText.class.getName()).log(
+                            Level.WARNING, null, ex
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the raw text of the airport diagram PDF whose file path is
+     * diagram_pdf_path.
+     *
+     * @param diagram_pdf_path is the path to the airport diagram PDF.
+     * @return String representation of diagram
+     */
+    public static String getDiagramText(String diagram_pdf_path)
+    {
+        return formatDiagramText(getRawText(diagram_pdf_path, false));
+    }
+
+    /**
+     * Format the raw text of an airport diagram for use in the parsers.
+     *
+     * @param raw_text is the raw text of the airport diagram, which may be
+     * null if it couldn't be read.
+     * @return the formatted text of the airport diagram.
+     */
+    static String formatDiagramText(String raw_text)
+    {
+        String diagram_text = "";
+        if (raw_text != null)
+        {
+            diagram_text = joinLines(raw_text);
         }
 
         LineFormatter lf = new LineFormatter();
         return lf.getFormattedString(diagram_text);
     }
 
+    /**
+     * End every line of the text with "\n " in one pass, no matter which
+     * line separator it used. This gives the same result as reading each
+     * line with Scanner.nextLine() and adding "\n " to it, without copying
+     * the text once per line.
+     *
+     * @param raw_text is the text to join.
+     * @return the text with every line ending in "\n ".
+     */
+    private static String joinLines(String raw_text)
+    {
+        int length = raw_text.length();
+
+        //Most lines are much longer than the one extra space added to them.
+        StringBuilder joined_text = new StringBuilder(length + length / 8 + 2);
+        boolean line_open = false;
+        for (int i = 0; i < length; i++)
+        {
+            char next_char = raw_text.charAt(i);
+            //These are the line separators that Scanner.nextLine() knows.
+            if (next_char == '\n' || next_char == '\r'
+                || next_char == '\u2028' || next_char == '\u2029'
+                || next_char == '\u0085')
+            {
+                //Windows-style newlines are a single line separator.
+                if (next_char == '\r' && i + 1 < length
+                    && raw_text.charAt(i + 1) == '\n')
+                {
+                    i++;
+                }
+                joined_text.append("\n ");
+                line_open = false;
+            }
+            else
+            {
+                joined_text.append(next_char);
+                line_open = true;
+            }
+        }
+
+        //The last line may not have a line separator after it.
+        if (line_open)
+        {
+            joined_text.append("\n ");
+        }
+        return joined_text.toString();
+    }
+
     /**
      * Get the airport diagram's text file's path based on the airport
      * diagram's PDF file's path.
@@ -166,6 +496,19 @@ public class PDFToText
             System.err.println("File " + file_name + " does not exist.");
             return null;
         }
+
+        //Use the text from the diagram cache if it has it.
+        DiagramCache cache = DiagramCache.getCache();
+        String key = null;
+        if (cache != null)
+        {
+            key = cache.getKey(file_name, PDFBOX_SETTINGS);
+            String cached_text = key == null ? null : cache.loadText(key);
+            if (cached_text != null)
+            {
+                return new LineFormatter().getFormattedString(cached_text);
+            }
+        }
         try
         {
             //Make a new parser from the airport diagram file.
@@ -188,6 +531,10 @@ public class PDFToText
                             parser.getDocument()
                     )
             );
+            if (key != null)
+            {
+                cache.storeText(key, parsed_text);
+            }
         }
         catch (IOException e)
         {
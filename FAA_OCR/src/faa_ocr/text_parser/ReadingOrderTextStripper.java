@@ -0,0 +1,1352 @@
+package faa_ocr.text_parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.PDFTextStripper;
+import org.apache.pdfbox.util.TextPosition;
+
+/**
+ * PDFBox is licensed under the Apache Software Foundation License 2.0.
+ * The license is in the project root directory named "apache_license.txt"
+ *
+ * A PDFTextStripper that lays out the text of an airport diagram in the
+ * same reading order as pdftotext, so that the TextParser reads the same
+ * lines from it. PDFBox's own ordering either scatters rotated labels
+ * across many lines or, when sorting by position, fails with a comparator
+ * that isn't consistent.
+ *
+ * The page is laid out the way pdftotext 3.04 does it. The characters of
+ * each text direction are split into blocks at the widest whitespace gaps,
+ * across or along the lines, until each block is a single line. Blocks
+ * that are lines stacked on each other are columns. The blocks of the
+ * rotated text are then placed among the columns of the page by where
+ * they start. Each column is written as paragraphs, one paragraph per
+ * line, with a blank line after the column.
+ *
+ * @author Kevin Dittmar
+ */
+class ReadingOrderTextStripper extends PDFTextStripper
+{
+    /* Whitespace is measured in bins that are this fraction of the smallest
+     * font size in a block, but never smaller than MIN_SPLIT_PRECISION.
+     */
+    private static final double SPLIT_PRECISION = 0.05;
+    private static final double MIN_SPLIT_PRECISION = 0.01;
+
+    /* This fraction of each character's height is left out of the profile
+     * at its descent, so that descenders don't fill the gaps between lines.
+     */
+    private static final double DESCENT_ADJUST = 0.35;
+
+    /* A gap splits a block if it is at most this many font sizes narrower
+     * than the widest gap, and wider than MIN_GAP bins.
+     */
+    private static final double GAP_SLACK = 0.2;
+    private static final double MIN_GAP = 0.99;
+
+    /* A block is split into columns only if the gap between them is wider
+     * than COLUMN_GAP_START font sizes less COLUMN_GAP_PER_LINE for each line
+     * of the block, but at least MIN_COLUMN_GAP font sizes, and if every
+     * column is wider than MIN_COLUMN_WIDTH font sizes.
+     */
+    private static final double COLUMN_GAP_START = 3;
+    private static final double COLUMN_GAP_PER_LINE = 0.5;
+    private static final double MIN_COLUMN_GAP = 0.8;
+    private static final double MIN_COLUMN_WIDTH = 2;
+
+    /* Characters this many times the average font size of a block are
+     * large, such as drop caps, and are kept apart from the rest.
+     */
+    private static final double LARGE_CHARACTER = 1.5;
+
+    /* The gaps between the characters of a line are all the same if they
+     * are within UNIFORM_SPACING font sizes of each other. Otherwise gaps
+     * wider than WORD_SPACING font sizes past the narrowest one are spaces.
+     */
+    private static final double UNIFORM_SPACING = 0.07;
+    private static final double WORD_SPACING = 0.1;
+
+    /* A line starts a new paragraph if it is indented PARAGRAPH_INDENT font
+     * sizes, if its font size differs by more than PARAGRAPH_FONT_DELTA, or
+     * if it is further than PARAGRAPH_SPACING times the average spacing of
+     * the column below the line before it.
+     */
+    private static final double PARAGRAPH_INDENT = 0.5;
+    private static final double PARAGRAPH_FONT_DELTA = 1;
+    private static final double PARAGRAPH_SPACING = 1.2;
+
+    //Font sizes that differ by more than this start a new word.
+    private static final double FONT_SIZE_DELTA = 0.01;
+
+    //The ascent and descent of fonts that don't give their own.
+    private static final double DEFAULT_ASCENT = 0.95;
+    private static final double DEFAULT_DESCENT = -0.35;
+
+    /* pdftotext leaves out characters that don't move the pen, such as the
+     * ° signs drawn over the numbers after them, and spaces, which it finds
+     * from the gaps instead.
+     */
+    private static final String NO_BREAK_SPACE = "\u00a0";
+
+    private static final String RIGHT_QUOTE = "’";
+
+    //How a block is split, and what it holds.
+    private static final int LEAF = 0;
+    private static final int VERTICAL_SPLIT = 1;
+    private static final int HORIZONTAL_SPLIT = 2;
+    private static final int LINE = 0;
+    private static final int COLUMN = 1;
+    private static final int MULTIPLE_COLUMNS = 2;
+
+    private final ArrayList<TextChar> chars;
+    private double crop_x;
+    private double crop_top;
+    private double page_width;
+    private double page_height;
+
+    /**
+     * Make a stripper for the pages of an airport diagram.
+     *
+     * @throws IOException if PDFBox can't load its text settings.
+     */
+    ReadingOrderTextStripper() throws IOException
+    {
+        super();
+        chars = new ArrayList<>();
+    }
+
+    /**
+     * Measure the crop box of the next page, which positions are taken from.
+     *
+     * @param page is the page that is about to be read.
+     * @throws IOException if the page can't be started.
+     */
+    @Override
+    protected void startPage(PDPage page) throws IOException
+    {
+        super.startPage(page);
+        PDRectangle crop_box = page.findCropBox();
+        crop_x = crop_box.getLowerLeftX();
+        crop_top = crop_box.getUpperRightY();
+        page_width = crop_box.getWidth();
+        page_height = crop_box.getHeight();
+        chars.clear();
+    }
+
+    /**
+     * Add a character to the current page, with the box that pdftotext
+     * would give it.
+     *
+     * @param text is the character and its position on the page.
+     */
+    @Override
+    protected void processTextPosition(TextPosition text)
+    {
+        String characters = text.getCharacter();
+        Matrix matrix = text.getTextPos();
+        double m00 = matrix.getValue(0, 0);
+        double m01 = matrix.getValue(0, 1);
+        double m10 = matrix.getValue(1, 0);
+        double m11 = matrix.getValue(1, 1);
+        double x = matrix.getValue(2, 0) - crop_x;
+        double y = crop_top - matrix.getValue(2, 1);
+
+        //How far the character moves the pen, in text space.
+        double advance;
+        float[] widths = text.getIndividualWidths();
+        if (Math.abs(m00) > 0.001 && widths != null && widths.length > 0)
+        {
+            advance = Math.abs(widths[0] / m00);
+        }
+        else if (Math.abs(m01) > 0.001)
+        {
+            advance = Math.abs(text.getWidthDirAdj() / m01);
+        }
+        else
+        {
+            advance = 0;
+        }
+        double width = advance * m00;
+        double height = -advance * m01;
+        if (x + width < 0 || x > page_width
+            || y + height < 0 || y > page_height)
+        {
+            return;
+        }
+        if (characters.trim().isEmpty() || characters.equals(NO_BREAK_SPACE)
+            || advance == 0)
+        {
+            return;
+        }
+
+        //The nearest quarter turn of the baseline, clockwise on the page.
+        int rot;
+        if (Math.abs(m00 * m11) > Math.abs(m01 * m10))
+        {
+            rot = (m00 > 0 || m11 > 0) ? 0 : 2;
+        }
+        else
+        {
+            rot = (m10 > 0) ? 1 : 3;
+        }
+        double font_size = Math.hypot(m10, m11);
+        double ascent = DEFAULT_ASCENT;
+        double descent = DEFAULT_DESCENT;
+        PDFontDescriptor descriptor = text.getFont().getFontDescriptor();
+        if (descriptor != null)
+        {
+            double font_ascent = Math.abs(descriptor.getAscent() / 1000.0);
+            if (font_ascent != 0 && font_ascent < 3)
+            {
+                ascent = font_ascent;
+            }
+            double font_descent = -Math.abs(descriptor.getDescent() / 1000.0);
+            if (font_descent != 0 && font_descent > -3)
+            {
+                descent = font_descent;
+            }
+        }
+        ascent *= font_size;
+        descent *= font_size;
+
+        //Ligatures are split into evenly spaced characters.
+        int count = characters.length();
+        width /= count;
+        height /= count;
+        for (int i = 0; i < count; i++)
+        {
+            String character = characters.substring(i, i + 1);
+            if (character.equals(RIGHT_QUOTE))
+            {
+                //The patterns for latitude and longitude expect a plain quote.
+                character = "'";
+            }
+            double start_x = x + i * width;
+            double start_y = y + i * height;
+            TextChar text_char = new TextChar(character, rot, text.getFont(),
+                                              font_size);
+            switch (rot)
+            {
+                case 0:
+                    text_char.setBox(start_x, start_y - ascent,
+                                     start_x + width, start_y - descent);
+                    break;
+                case 1:
+                    text_char.setBox(start_x + descent, start_y,
+                                     start_x + ascent, start_y + height);
+                    break;
+                case 2:
+                    text_char.setBox(start_x + width, start_y + descent,
+                                     start_x, start_y + ascent);
+                    break;
+                default:
+                    text_char.setBox(start_x - ascent, start_y + height,
+                                     start_x - descent, start_y);
+                    break;
+            }
+            chars.add(text_char);
+        }
+    }
+
+    /**
+     * Write the text of the finished page and start the next one.
+     *
+     * @throws IOException if the output can't be written.
+     */
+    @Override
+    protected void writePage() throws IOException
+    {
+        StringBuilder page_text = new StringBuilder();
+        if (!chars.isEmpty())
+        {
+            rotateChars();
+            ArrayList<Block> columns = new ArrayList<>();
+            findColumns(splitChars(), columns);
+            for (Block column : columns)
+            {
+                for (ArrayList<Line> paragraph : buildParagraphs(column))
+                {
+                    /* Lines of a paragraph are joined with a space, or
+                     * without the hyphen that a word was broken with.
+                     */
+                    for (int i = 0; i < paragraph.size(); i++)
+                    {
+                        String line = paragraph.get(i).text;
+                        if (i + 1 < paragraph.size())
+                        {
+                            if (line.endsWith("-"))
+                            {
+                                line = line.substring(0, line.length() - 1);
+                            }
+                            else
+                            {
+                                line += " ";
+                            }
+                        }
+                        page_text.append(line);
+                    }
+                    page_text.append('\n');
+                }
+
+                /* pdftotext puts a blank line after each column, and the
+                 * LineFormatter relies on that to keep short numbers from
+                 * being joined to the next column.
+                 */
+                page_text.append('\n');
+            }
+        }
+
+        //pdftotext ends every page with a form feed.
+        page_text.append('\f');
+        getOutput().write(page_text.toString());
+        chars.clear();
+    }
+
+    /**
+     * Turn the page so that most of the characters read from left to right,
+     * which makes that direction the one the page is laid out in.
+     */
+    private void rotateChars()
+    {
+        int[] counts = new int[4];
+        for (TextChar text_char : chars)
+        {
+            counts[text_char.rot]++;
+        }
+        int page_rot = 0;
+        for (int rot = 1; rot < 4; rot++)
+        {
+            if (counts[rot] > counts[page_rot])
+            {
+                page_rot = rot;
+            }
+        }
+        if (page_rot == 0)
+        {
+            return;
+        }
+
+        for (TextChar text_char : chars)
+        {
+            double x_min = text_char.x_min;
+            double y_min = text_char.y_min;
+            double x_max = text_char.x_max;
+            double y_max = text_char.y_max;
+            switch (page_rot)
+            {
+                case 1:
+                    text_char.setBox(y_min, page_width - x_max,
+                                     y_max, page_width - x_min);
+                    break;
+                case 2:
+                    text_char.setBox(page_width - x_max, page_height - y_max,
+                                     page_width - x_min, page_height - y_min);
+                    break;
+                default:
+                    text_char.setBox(page_height - y_max, x_min,
+                                     page_height - y_min, x_max);
+                    break;
+            }
+            text_char.rot = (text_char.rot + 4 - page_rot) & 3;
+        }
+        if (page_rot != 2)
+        {
+            double width = page_width;
+            page_width = page_height;
+            page_height = width;
+        }
+    }
+
+    /**
+     * Split the characters of each direction into blocks, and place the
+     * columns of the rotated text among the columns of the page.
+     *
+     * @return the blocks of the whole page.
+     */
+    private Block splitChars()
+    {
+        Block[] trees = new Block[4];
+        for (int rot = 0; rot < 4; rot++)
+        {
+            ArrayList<TextChar> rot_chars = new ArrayList<>();
+            for (TextChar text_char : chars)
+            {
+                if (text_char.rot == rot)
+                {
+                    rot_chars.add(text_char);
+                }
+            }
+            if (!rot_chars.isEmpty())
+            {
+                trees[rot] = split(rot_chars, rot);
+            }
+        }
+
+        /* The page was turned so that most characters have no rotation, so
+         * the first tree is there for any page with characters on it.
+         */
+        Block page = trees[0];
+        if (page.tag != MULTIPLE_COLUMNS)
+        {
+            page = new Block(HORIZONTAL_SPLIT, 0);
+            page.add(trees[0]);
+            page.tag = MULTIPLE_COLUMNS;
+        }
+        for (int rot = 1; rot < 4; rot++)
+        {
+            if (trees[rot] != null)
+            {
+                insertIntoTree(trees[rot], page);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Place each column of a rotated tree among the columns of the page.
+     *
+     * @param block is the rotated block to place.
+     * @param page is the blocks of the page.
+     */
+    private static void insertIntoTree(Block block, Block page)
+    {
+        if (block.tag == MULTIPLE_COLUMNS)
+        {
+            for (Block child : block.children)
+            {
+                insertIntoTree(child, page);
+            }
+        }
+        else
+        {
+            insertColumnIntoTree(block, page);
+        }
+    }
+
+    /**
+     * Place a rotated column in the deepest block of columns that holds it,
+     * before the first column whose middle is past the column's start.
+     *
+     * @param column is the rotated column to place.
+     * @param tree is the blocks to place it among.
+     */
+    private static void insertColumnIntoTree(Block column, Block tree)
+    {
+        for (Block child : tree.children)
+        {
+            if (child.tag == MULTIPLE_COLUMNS
+                && column.x_min >= child.x_min && column.y_min >= child.y_min
+                && column.x_max <= child.x_max && column.y_max <= child.y_max)
+            {
+                insertColumnIntoTree(column, child);
+                return;
+            }
+        }
+        int index = 0;
+        while (index < tree.children.size())
+        {
+            Block child = tree.children.get(index);
+            if (tree.type == VERTICAL_SPLIT
+                ? child.x_min + child.x_max >= 2 * column.x_min
+                : child.y_min + child.y_max >= 2 * column.y_min)
+            {
+                break;
+            }
+            index++;
+        }
+        tree.children.add(index, column);
+    }
+
+    /**
+     * Split characters that all have the same rotation into a tree of
+     * blocks, at the widest whitespace gaps between them.
+     *
+     * @param block_chars is the characters to split.
+     * @param rot is their rotation.
+     * @return the tree of blocks.
+     */
+    private static Block split(ArrayList<TextChar> block_chars, int rot)
+    {
+        double x_min = 0;
+        double y_min = 0;
+        double x_max = 0;
+        double y_max = 0;
+        double min_font_size = 0;
+        double average_font_size = 0;
+        for (int i = 0; i < block_chars.size(); i++)
+        {
+            TextChar text_char = block_chars.get(i);
+            if (i == 0 || text_char.x_min < x_min)
+            {
+                x_min = text_char.x_min;
+            }
+            if (i == 0 || text_char.y_min < y_min)
+            {
+                y_min = text_char.y_min;
+            }
+            if (i == 0 || text_char.x_max > x_max)
+            {
+                x_max = text_char.x_max;
+            }
+            if (i == 0 || text_char.y_max > y_max)
+            {
+                y_max = text_char.y_max;
+            }
+            if (i == 0 || text_char.font_size < min_font_size)
+            {
+                min_font_size = text_char.font_size;
+            }
+            average_font_size += text_char.font_size;
+        }
+        average_font_size /= block_chars.size();
+
+        /* Count the characters over each bin across the page and down the
+         * page. Bins no character covers are whitespace.
+         */
+        double precision = Math.max(SPLIT_PRECISION * min_font_size,
+                                    MIN_SPLIT_PRECISION);
+        int x_first = bin(x_min, precision) - 1;
+        int y_first = bin(y_min, precision) - 1;
+        int[] across = new int[bin(x_max, precision) + 2 - x_first];
+        int[] down = new int[bin(y_max, precision) + 2 - y_first];
+        for (TextChar text_char : block_chars)
+        {
+            double char_x_min = text_char.x_min;
+            double char_y_min = text_char.y_min;
+            double char_x_max = text_char.x_max;
+            double char_y_max = text_char.y_max;
+            switch (rot)
+            {
+                case 1:
+                    char_x_min += DESCENT_ADJUST * (char_x_max - char_x_min);
+                    break;
+                case 2:
+                    char_y_min += DESCENT_ADJUST * (char_y_max - char_y_min);
+                    break;
+                case 3:
+                    char_x_max -= DESCENT_ADJUST * (char_x_max - char_x_min);
+                    break;
+                default:
+                    char_y_max -= DESCENT_ADJUST * (char_y_max - char_y_min);
+                    break;
+            }
+            for (int x = bin(char_x_min, precision);
+                 x <= bin(char_x_max, precision); x++)
+            {
+                across[x - x_first]++;
+            }
+            for (int y = bin(char_y_min, precision);
+                 y <= bin(char_y_max, precision); y++)
+            {
+                down[y - y_first]++;
+            }
+        }
+
+        int widest_x_gap = widestGap(across);
+        int widest_y_gap = widestGap(down);
+        double x_gap = Math.max(MIN_GAP, widest_x_gap
+                                - GAP_SLACK * average_font_size / precision);
+        double y_gap = Math.max(MIN_GAP, widest_y_gap
+                                - GAP_SLACK * average_font_size / precision);
+        ArrayList<int[]> x_gaps = findGaps(across, x_gap);
+        ArrayList<int[]> y_gaps = findGaps(down, y_gap);
+
+        //Lines stack down the page, or across it for sideways text.
+        double line_count = ((rot & 1) == 0 ? y_max - y_min : x_max - x_min)
+                            / average_font_size;
+        double column_gap = Math.max(
+                COLUMN_GAP_START - COLUMN_GAP_PER_LINE * line_count,
+                MIN_COLUMN_GAP) * average_font_size / precision;
+        double min_column_width = MIN_COLUMN_WIDTH * average_font_size
+                                  / precision;
+        double large_font_size = LARGE_CHARACTER * average_font_size;
+        int large_count = 0;
+        for (TextChar text_char : block_chars)
+        {
+            if (text_char.font_size > large_font_size)
+            {
+                large_count++;
+            }
+        }
+
+        /* Split into columns where the gap between them is wide enough, or
+         * else into lines. If there are no lines left to split, split at the
+         * narrower gaps along the line, which still leaves a single line.
+         */
+        boolean sideways = (rot & 1) != 0;
+        ArrayList<int[]> column_gaps = sideways ? y_gaps : x_gaps;
+        ArrayList<int[]> line_gaps = sideways ? x_gaps : y_gaps;
+        int[] column_profile = sideways ? down : across;
+        int widest_column_gap = sideways ? widest_y_gap : widest_x_gap;
+        int widest_line_gap = sideways ? widest_x_gap : widest_y_gap;
+        ArrayList<int[]> gaps;
+        boolean split_columns;
+        boolean small_split = false;
+        if (!column_gaps.isEmpty() && widest_column_gap > widest_line_gap
+            && widest_column_gap > column_gap
+            && narrowestChunk(column_profile, column_gaps) > min_column_width)
+        {
+            gaps = column_gaps;
+            split_columns = true;
+        }
+        else if (!line_gaps.isEmpty())
+        {
+            gaps = line_gaps;
+            split_columns = false;
+        }
+        else if (large_count == 0 && !column_gaps.isEmpty())
+        {
+            gaps = column_gaps;
+            split_columns = true;
+            small_split = true;
+        }
+        else if (large_count > 0)
+        {
+            ArrayList<TextChar> large_chars = new ArrayList<>();
+            ArrayList<TextChar> other_chars = new ArrayList<>();
+            for (TextChar text_char : block_chars)
+            {
+                if (text_char.font_size > large_font_size)
+                {
+                    large_chars.add(text_char);
+                }
+                else
+                {
+                    other_chars.add(text_char);
+                }
+            }
+            return insertLargeChars(large_chars, split(other_chars, rot));
+        }
+        else
+        {
+            return makeLeaf(block_chars, rot);
+        }
+
+        boolean vertical = split_columns != sideways;
+        Block block = new Block(vertical ? VERTICAL_SPLIT : HORIZONTAL_SPLIT,
+                                rot);
+        block.small_split = small_split;
+        int first = vertical ? x_first : y_first;
+        double start = (first + firstFilled(vertical ? across : down) - 0.5)
+                       * precision;
+        for (int i = 0; i <= gaps.size(); i++)
+        {
+            double end = i < gaps.size()
+                         ? (first + gaps.get(i)[0] + 1.5) * precision
+                         : (vertical ? x_max : y_max) + 1;
+            ArrayList<TextChar> part = vertical
+                    ? getChars(block_chars, start, y_min - 1, end, y_max + 1)
+                    : getChars(block_chars, x_min - 1, start, x_max + 1, end);
+            if (i < gaps.size())
+            {
+                start = (first + gaps.get(i)[1] + 0.5) * precision;
+            }
+            if (part.isEmpty())
+            {
+                continue;
+            }
+            if (part.size() == block_chars.size())
+            {
+                return makeLeaf(block_chars, rot);
+            }
+            block.add(split(part, rot));
+        }
+        block.setTag();
+        return block;
+    }
+
+    /**
+     * @return the bin that a coordinate falls in.
+     */
+    private static int bin(double coordinate, double precision)
+    {
+        return (int) Math.floor(coordinate / precision);
+    }
+
+    /**
+     * @return the index of the first bin that a character covers, or the
+     * last bin if none is covered.
+     */
+    private static int firstFilled(int[] profile)
+    {
+        int index = 0;
+        while (index < profile.length - 1 && profile[index] == 0)
+        {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Find the gaps between the characters over a profile that are wider
+     * than the given number of bins.
+     *
+     * @param profile is the number of characters over each bin.
+     * @param min_size is the number of bins a gap must be wider than.
+     * @return each gap as the last covered bin before it and the last empty
+     * bin of the gap.
+     */
+    private static ArrayList<int[]> findGaps(int[] profile, double min_size)
+    {
+        ArrayList<int[]> gaps = new ArrayList<>();
+        int start = firstFilled(profile);
+        for (int i = start; i < profile.length - 1; i++)
+        {
+            if (profile[i] != 0 && profile[i + 1] == 0)
+            {
+                start = i;
+            }
+            else if (profile[i] == 0 && profile[i + 1] != 0
+                     && i - start > min_size)
+            {
+                gaps.add(new int[] {start, i});
+            }
+        }
+        return gaps;
+    }
+
+    /**
+     * @return the number of bins in the widest gap over a profile, or 0 if
+     * there are no gaps.
+     */
+    private static int widestGap(int[] profile)
+    {
+        int widest = 0;
+        for (int[] gap : findGaps(profile, 0))
+        {
+            widest = Math.max(widest, gap[1] - gap[0]);
+        }
+        return widest;
+    }
+
+    /**
+     * @return the number of bins from the start of the text over a profile,
+     * or the end of a gap, to the start of the next gap, at the narrowest.
+     */
+    private static int narrowestChunk(int[] profile, ArrayList<int[]> gaps)
+    {
+        int narrowest = profile.length - 1;
+        int previous = firstFilled(profile) - 1;
+        for (int[] gap : gaps)
+        {
+            narrowest = Math.min(narrowest, gap[0] - previous);
+            previous = gap[1];
+        }
+        return narrowest;
+    }
+
+    /**
+     * @return the characters whose centers are inside the given box.
+     */
+    private static ArrayList<TextChar> getChars(
+            ArrayList<TextChar> block_chars, double x_min, double y_min,
+            double x_max, double y_max)
+    {
+        ArrayList<TextChar> inside = new ArrayList<>();
+        for (TextChar text_char : block_chars)
+        {
+            double x = 0.5 * (text_char.x_min + text_char.x_max);
+            double y = 0.5 * (text_char.y_min + text_char.y_max);
+            if (x > x_min && x < x_max && y > y_min && y < y_max)
+            {
+                inside.add(text_char);
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * @return a block that holds the given characters as a single line.
+     */
+    private static Block makeLeaf(ArrayList<TextChar> block_chars, int rot)
+    {
+        Block leaf = new Block(LEAF, rot);
+        for (TextChar text_char : block_chars)
+        {
+            leaf.add(text_char);
+        }
+        leaf.setTag();
+        return leaf;
+    }
+
+    /**
+     * Put the large characters of a block in front of the rest of it.
+     *
+     * @param large_chars is the large characters.
+     * @param block is the rest of the block.
+     * @return the block with the large characters first.
+     */
+    private static Block insertLargeChars(ArrayList<TextChar> large_chars,
+                                          Block block)
+    {
+        Block joined = new Block((block.rot & 1) != 0
+                                 ? VERTICAL_SPLIT : HORIZONTAL_SPLIT,
+                                 block.rot);
+        joined.add(makeLeaf(large_chars, block.rot));
+        joined.add(block);
+        joined.setTag();
+        return joined;
+    }
+
+    /**
+     * Collect the lines and columns of a tree, in reading order.
+     *
+     * @param block is the tree to collect from.
+     * @param columns is the list to add them to.
+     */
+    private static void findColumns(Block block, ArrayList<Block> columns)
+    {
+        if (block.tag == MULTIPLE_COLUMNS)
+        {
+            for (Block child : block.children)
+            {
+                findColumns(child, columns);
+            }
+        }
+        else
+        {
+            columns.add(block);
+        }
+    }
+
+    /**
+     * Break the lines of a column into paragraphs.
+     *
+     * @param column is the column to break up.
+     * @return the paragraphs, each as its lines.
+     */
+    private static ArrayList<ArrayList<Line>> buildParagraphs(Block column)
+    {
+        ArrayList<Line> lines = new ArrayList<>();
+        buildLines(column, lines);
+        double average_spacing = 0;
+        int spacing_count = 0;
+        for (int i = 1; i < lines.size(); i++)
+        {
+            double spacing = lines.get(i - 1).spacingTo(lines.get(i));
+            if (spacing > 0)
+            {
+                average_spacing += spacing;
+                spacing_count++;
+            }
+        }
+        if (spacing_count > 0)
+        {
+            average_spacing /= spacing_count;
+        }
+        double max_spacing = PARAGRAPH_SPACING * average_spacing;
+
+        ArrayList<ArrayList<Line>> paragraphs = new ArrayList<>();
+        int i = 0;
+        while (i < lines.size())
+        {
+            ArrayList<Line> paragraph = new ArrayList<>();
+            paragraphs.add(paragraph);
+            Line first = lines.get(i);
+            paragraph.add(first);
+            i++;
+            if (i == lines.size())
+            {
+                break;
+            }
+            Line second = lines.get(i);
+            double first_indent = first.indentIn(column);
+            double indent = second.indentIn(column);
+            double font_size = first.font_size;
+            double spacing = first.spacingTo(second);
+            if (indent - first_indent > PARAGRAPH_INDENT * font_size
+                && isSameSize(font_size, second.font_size)
+                && spacing <= max_spacing)
+            {
+                //A paragraph with a hanging indent.
+                paragraph.add(second);
+                for (i++; i < lines.size(); i++)
+                {
+                    Line line = lines.get(i);
+                    if (indent - line.indentIn(column)
+                        > PARAGRAPH_INDENT * font_size
+                        || !isSameSize(font_size, line.font_size)
+                        || lines.get(i - 1).spacingTo(line) > max_spacing)
+                    {
+                        break;
+                    }
+                    paragraph.add(line);
+                }
+            }
+            else if (font_size > LARGE_CHARACTER * second.font_size
+                     && indent - first_indent
+                        > PARAGRAPH_INDENT * second.font_size
+                     && spacing < 0)
+            {
+                //A drop cap with indented lines beside it.
+                paragraph.add(second);
+                font_size = second.font_size;
+                for (i++; i < lines.size(); i++)
+                {
+                    Line line = lines.get(i);
+                    if (line.indentIn(column) - first_indent
+                        <= PARAGRAPH_INDENT * font_size
+                        || lines.get(i - 1).spacingTo(line) > max_spacing)
+                    {
+                        break;
+                    }
+                    paragraph.add(line);
+                }
+                i = addPlainLines(lines, i, column, paragraph, first_indent,
+                                  font_size, max_spacing);
+            }
+            else if (isSameSize(font_size, second.font_size)
+                     && spacing <= max_spacing)
+            {
+                paragraph.add(second);
+                i = addPlainLines(lines, i + 1, column, paragraph, indent,
+                                  font_size, max_spacing);
+            }
+        }
+        return paragraphs;
+    }
+
+    /**
+     * Add lines to a paragraph until one is indented, changes font size or
+     * is too far below the line before it.
+     *
+     * @param lines is the lines of the column.
+     * @param start is the index of the first line to add.
+     * @param column is the column the lines are in.
+     * @param paragraph is the paragraph to add to.
+     * @param indent is the indent of the paragraph.
+     * @param font_size is the font size of the paragraph.
+     * @param max_spacing is the widest spacing within a paragraph.
+     * @return the index of the first line that wasn't added.
+     */
+    private static int addPlainLines(ArrayList<Line> lines, int start,
+                                     Block column, ArrayList<Line> paragraph,
+                                     double indent, double font_size,
+                                     double max_spacing)
+    {
+        int i;
+        for (i = start; i < lines.size(); i++)
+        {
+            Line line = lines.get(i);
+            if (line.indentIn(column) - indent > PARAGRAPH_INDENT * font_size
+                || !isSameSize(font_size, line.font_size)
+                || lines.get(i - 1).spacingTo(line) > max_spacing)
+            {
+                break;
+            }
+            paragraph.add(line);
+        }
+        return i;
+    }
+
+    private static boolean isSameSize(double font_size, double other_size)
+    {
+        return Math.abs(font_size - other_size) <= PARAGRAPH_FONT_DELTA;
+    }
+
+    /**
+     * Collect the lines of a column in reading order.
+     *
+     * @param block is the column or part of one.
+     * @param lines is the list to add the lines to.
+     */
+    private static void buildLines(Block block, ArrayList<Line> lines)
+    {
+        if (block.tag == LINE)
+        {
+            //Lines that are upside down or turned right stack the other way.
+            Line line = buildLine(block);
+            if (block.rot == 1 || block.rot == 2)
+            {
+                lines.add(0, line);
+            }
+            else
+            {
+                lines.add(line);
+            }
+        }
+        else
+        {
+            for (Block child : block.children)
+            {
+                buildLines(child, lines);
+            }
+        }
+    }
+
+    /**
+     * Join the characters of a line into words.
+     *
+     * @param block is the block that holds the line.
+     * @return the line.
+     */
+    private static Line buildLine(Block block)
+    {
+        ArrayList<TextChar> line_chars = new ArrayList<>();
+        block.collectChars(line_chars);
+        final boolean sideways = (block.rot & 1) != 0;
+        Collections.sort(line_chars, new Comparator<TextChar>()
+        {
+            @Override
+            public int compare(TextChar first, TextChar second)
+            {
+                return sideways ? Double.compare(first.y_min, second.y_min)
+                                : Double.compare(first.x_min, second.x_min);
+            }
+        });
+
+        /* Measure the gaps between the characters to find how wide a
+         * space is.
+         */
+        double average_font_size = 0;
+        double min_gap = 0;
+        double max_gap = 0;
+        for (int i = 0; i < line_chars.size(); i++)
+        {
+            average_font_size += line_chars.get(i).font_size;
+            if (i > 0)
+            {
+                double gap = gap(line_chars.get(i - 1), line_chars.get(i),
+                                 sideways);
+                if (i == 1 || gap < min_gap)
+                {
+                    min_gap = gap;
+                }
+                max_gap = Math.max(max_gap, gap);
+            }
+        }
+        average_font_size /= line_chars.size();
+        min_gap = Math.max(min_gap, 0);
+        double space;
+        if (max_gap - min_gap < UNIFORM_SPACING * average_font_size)
+        {
+            space = max_gap + 1;
+        }
+        else if (max_gap - min_gap > WORD_SPACING * average_font_size)
+        {
+            space = min_gap + WORD_SPACING * average_font_size;
+        }
+        else
+        {
+            space = 0.5 * (min_gap + max_gap);
+        }
+
+        /* Upside down lines are read from the other end, with the space
+         * that followed each word now in front of it.
+         */
+        boolean reversed = (block.rot & 2) != 0;
+        ArrayList<String> words = new ArrayList<>();
+        ArrayList<Boolean> spaces = new ArrayList<>();
+        double line_font_size = 0;
+        boolean space_before = false;
+        int start = 0;
+        while (start < line_chars.size())
+        {
+            int end = start + 1;
+            boolean space_after = false;
+            while (end < line_chars.size())
+            {
+                TextChar previous = line_chars.get(end - 1);
+                TextChar next = line_chars.get(end);
+                if (gap(previous, next, sideways) > space)
+                {
+                    space_after = true;
+                    break;
+                }
+                if (previous.font != next.font
+                    || Math.abs(previous.font_size - next.font_size)
+                       > FONT_SIZE_DELTA)
+                {
+                    break;
+                }
+                end++;
+            }
+            StringBuilder word = new StringBuilder();
+            for (int i = start; i < end; i++)
+            {
+                word.append(line_chars.get(i).text);
+            }
+            if (reversed)
+            {
+                words.add(0, word.reverse().toString());
+                spaces.add(0, space_before);
+            }
+            else
+            {
+                words.add(word.toString());
+                spaces.add(space_after);
+            }
+            line_font_size = Math.max(line_font_size,
+                                      line_chars.get(start).font_size);
+            space_before = space_after;
+            start = end;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words.size(); i++)
+        {
+            text.append(words.get(i));
+            if (spaces.get(i) && i + 1 < words.size())
+            {
+                text.append(' ');
+            }
+        }
+        return new Line(text.toString(), block, line_font_size);
+    }
+
+    /**
+     * @return the whitespace between two characters along their line.
+     */
+    private static double gap(TextChar previous, TextChar next,
+                              boolean sideways)
+    {
+        return sideways ? next.y_min - previous.y_max
+                        : next.x_min - previous.x_max;
+    }
+
+    /**
+     * A character with the box that it takes up on the page, from its
+     * ascent to its descent and from the pen position before it to the
+     * one after it.
+     */
+    private static class TextChar
+    {
+        private final String text;
+        private final PDFont font;
+        private final double font_size;
+        private int rot;
+        private double x_min;
+        private double y_min;
+        private double x_max;
+        private double y_max;
+
+        /**
+         * Make a character without a box.
+         *
+         * @param text is the character.
+         * @param rot is the quarter turns of its baseline.
+         * @param font is its font.
+         * @param font_size is its size on the page.
+         */
+        TextChar(String text, int rot, PDFont font, double font_size)
+        {
+            this.text = text;
+            this.rot = rot;
+            this.font = font;
+            this.font_size = font_size;
+        }
+
+        void setBox(double x_min, double y_min, double x_max, double y_max)
+        {
+            this.x_min = x_min;
+            this.y_min = y_min;
+            this.x_max = x_max;
+            this.y_max = y_max;
+        }
+    }
+
+    /**
+     * Characters of the same rotation that are either a single line, or
+     * split into blocks across or down the page.
+     */
+    private static class Block
+    {
+        private final int type;
+        private final int rot;
+        private final ArrayList<TextChar> chars;
+        private final ArrayList<Block> children;
+        private int tag;
+        private boolean small_split;
+        private boolean empty;
+        private double x_min;
+        private double y_min;
+        private double x_max;
+        private double y_max;
+
+        /**
+         * Make an empty block.
+         *
+         * @param type is LEAF, or how the block is split.
+         * @param rot is the rotation of the characters in it.
+         */
+        Block(int type, int rot)
+        {
+            this.type = type;
+            this.rot = rot;
+            this.chars = new ArrayList<>();
+            this.children = new ArrayList<>();
+            this.empty = true;
+        }
+
+        /**
+         * Add a character to a leaf.
+         *
+         * @param text_char is the character to add.
+         */
+        void add(TextChar text_char)
+        {
+            chars.add(text_char);
+            grow(text_char.x_min, text_char.y_min,
+                 text_char.x_max, text_char.y_max);
+        }
+
+        /**
+         * Add a block after the ones this block is split into.
+         *
+         * @param child is the block to add.
+         */
+        void add(Block child)
+        {
+            children.add(child);
+            grow(child.x_min, child.y_min, child.x_max, child.y_max);
+        }
+
+        private void grow(double add_x_min, double add_y_min,
+                          double add_x_max, double add_y_max)
+        {
+            if (empty)
+            {
+                x_min = add_x_min;
+                y_min = add_y_min;
+                x_max = add_x_max;
+                y_max = add_y_max;
+                empty = false;
+            }
+            else
+            {
+                x_min = Math.min(x_min, add_x_min);
+                y_min = Math.min(y_min, add_y_min);
+                x_max = Math.max(x_max, add_x_max);
+                y_max = Math.max(y_max, add_y_max);
+            }
+        }
+
+        /**
+         * Find whether the block is a line, a column of lines, or several
+         * columns, from how it is split and what it is split into.
+         */
+        void setTag()
+        {
+            if (type == LEAF)
+            {
+                tag = LINE;
+                return;
+            }
+            boolean across_lines = type == ((rot & 1) != 0
+                                            ? VERTICAL_SPLIT
+                                            : HORIZONTAL_SPLIT);
+            if (across_lines)
+            {
+                tag = COLUMN;
+                for (Block child : children)
+                {
+                    if (child.tag == MULTIPLE_COLUMNS)
+                    {
+                        tag = MULTIPLE_COLUMNS;
+                    }
+                }
+            }
+            else if (small_split)
+            {
+                tag = LINE;
+                for (Block child : children)
+                {
+                    if (child.tag != LINE)
+                    {
+                        tag = MULTIPLE_COLUMNS;
+                    }
+                }
+            }
+            else
+            {
+                tag = MULTIPLE_COLUMNS;
+            }
+        }
+
+        /**
+         * Add the characters of the block to a list.
+         *
+         * @param list is the list to add them to.
+         */
+        void collectChars(ArrayList<TextChar> list)
+        {
+            list.addAll(chars);
+            for (Block child : children)
+            {
+                child.collectChars(list);
+            }
+        }
+    }
+
+    /**
+     * The text of a line, with the box of the block that it came from.
+     */
+    private static class Line
+    {
+        private final String text;
+        private final Block block;
+        private final double font_size;
+
+        /**
+         * Make a line.
+         *
+         * @param text is the words of the line.
+         * @param block is the block that holds the line.
+         * @param font_size is the largest font size of its words.
+         */
+        Line(String text, Block block, double font_size)
+        {
+            this.text = text;
+            this.block = block;
+            this.font_size = font_size;
+        }
+
+        /**
+         * @return how far the line starts from the start of the column.
+         */
+        double indentIn(Block column)
+        {
+            switch (block.rot)
+            {
+                case 1:
+                    return block.y_min - column.y_min;
+                case 2:
+                    return column.x_max - block.x_max;
+                case 3:
+                    return column.y_max - block.y_max;
+                default:
+                    return block.x_min - column.x_min;
+            }
+        }
+
+        /**
+         * Find the spacing between this line and the next one. Upside down
+         * and turned left lines are measured the way pdftotext measures
+         * them, which isn't the whitespace between them.
+         *
+         * @param next is the line after this one.
+         * @return the spacing.
+         */
+        double spacingTo(Line next)
+        {
+            switch (block.rot)
+            {
+                case 1:
+                    return block.x_min - next.block.x_max;
+                case 2:
+                    return block.y_min - next.block.y_min;
+                case 3:
+                    return next.block.x_min - next.block.x_max;
+                default:
+                    return next.block.y_min - block.y_max;
+            }
+        }
+    }
+}
@@ -1,12 +1,8 @@
 package faa_ocr.text_parser;
 
 import faa_ocr.ADTs.*;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Scanner;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,17 +21,55 @@ public class RunwayDataParser extends DataParser
      * before or after the elevation, and there shouldn't be a period after
      * the elevation.
      */
-    private final String ELEV_PATTERN = "[^\\d]*([1-9]\\d{0,3})[^.\\d]*";
+    private static final Pattern ELEV_PATTERN
+    = Pattern.compile("[^\\d]*([1-9]\\d{0,3})[^.\\d]*");
 
     /* Headings always follow the pattern of a four significant digit number
      * with accuracy to the tenths place.
      */
-    private final String HEADING_PATTERN = "(\\d\\d\\d\\.\\d)";
+    private static final String HEADING = "(\\d\\d\\d\\.\\d)";
+    private static final Pattern HEADING_PATTERN = Pattern.compile(HEADING);
+
+    /* In the PDFBox text, headings are followed by a '°' character, which
+     * is the best way to tell them apart from other numbers.
+     */
+    private static final Pattern DEGREE_HEADING_PATTERN
+    = Pattern.compile(HEADING + "°");
+
+    /* pdftotext drops the '°' characters, so this is used if PDFBox didn't
+     * find any headings.
+     */
+    private static final Pattern PLAIN_HEADING_PATTERN
+    = Pattern.compile(HEADING + "[^\\d]*");
 
     /* Runways always follow the pattern of one or two digits and an optional
      * letter.
      */
-    private final String RUNWAY_PATTERN = ".(\\d{1,2}[LCR]*)";
+    private static final Pattern RUNWAY_PATTERN
+    = Pattern.compile(".(\\d{1,2}[LCR]*)");
+
+    /* This pattern looks for runway_number pairs.  They usually come in
+     * single pairs, but sometimes they come in a comma delimited list of
+     * pairs.  The first capturing group will be the list that is wanted, so
+     * searchForItem() still works.
+     */
+    private static final Pattern RUNWAY_PAIRS_PATTERN
+    = Pattern.compile("R *W *Y *(( *\\d\\d[RCL]*-\\d\\d[RCL]*,*)*)");
+
+    //The field elevation is labeled "FIELD ELEV".
+    private static final Pattern FIELD_ELEV_PATTERN
+    = Pattern.compile(".*FIELD *ELEV.*");
+
+    //Runway elevations are labeled "ELEV", which may be spread out.
+    private static final Pattern ELEV_LABEL_PATTERN
+    = Pattern.compile(".*E.*L.*E.*V.*");
+
+    //A one-digit runway_number with an optional letter.
+    private static final Pattern ONE_DIGIT_RUNWAY_PATTERN
+    = Pattern.compile("\\d[LRC]*");
+
+    private static final Pattern SPACES = Pattern.compile(" ");
+    private static final Pattern NON_DIGITS = Pattern.compile("[^\\d]*");
 
     /**
      * No initialization is necessary for the constructor.
@@ -51,21 +85,20 @@ public class RunwayDataParser extends DataParser
      * Airport's
      * Path List.
      *
-     * @param formatted_string is the formatted representation of the textual
-     * data of the Airport's airport diagram.
+     * @param diagram_text is the text of the Airport's airport diagram.
      * @param airport is the Airport that will receive the parsed runway_number
      * data
      * as Runways, which will be added to the Airport's Path List.
      */
-    public void parseRunwayData(String formatted_string, Airport airport)
+    public void parseRunwayData(DiagramText diagram_text, Airport airport)
     {
 
         ArrayList<String> valid_runways = makeListOfRunways(
-                PDFToText.getTextPath(airport.getFilePath())
+                diagram_text.getRawText()
         );
 
         ArrayList<String> valid_headings = makeListOfProperHeadings(
-                airport.getFilePath()
+                diagram_text
         );
 
         ArrayList<String> runways = new ArrayList<>();
@@ -74,7 +107,7 @@ public class RunwayDataParser extends DataParser
 
         ArrayList<Integer> elevations = new ArrayList<>();
 
-        Scanner scanner = new Scanner(formatted_string);
+        Scanner scanner = new Scanner(diagram_text.getFormattedText());
 
         /* Keep track of how many "ELEV"s were found, which indicate
          * a runway_number elevation.
@@ -82,13 +115,22 @@ public class RunwayDataParser extends DataParser
         int elev_counter = 0;
         int field_elev_index = -1;
 
+        /* Each pattern gets one matcher that is reset for every line, rather
+         * than a new matcher per line.
+         */
+        Matcher runway_matcher = RUNWAY_PATTERN.matcher("");
+        Matcher heading_matcher = HEADING_PATTERN.matcher("");
+        Matcher field_elev_matcher = FIELD_ELEV_PATTERN.matcher("");
+        Matcher elev_label_matcher = ELEV_LABEL_PATTERN.matcher("");
+        Matcher elev_matcher = ELEV_PATTERN.matcher("");
+
         while (scanner.hasNextLine())
         {
             String current_line = scanner.nextLine();
 
             //Check this line for runways.
             ArrayList<String> runways_found;
-            runways_found = searchForRunways(current_line);
+            runways_found = searchForRunways(runway_matcher, current_line);
 
             for (String runway : runways_found)
             {
@@ -104,7 +146,7 @@ public class RunwayDataParser extends DataParser
              *the headings start as Strings that have a defined format, and
              *Doubles are hard to compare accurately.
              */
-            String heading = searchForItem(HEADING_PATTERN, current_line);
+            String heading = searchForItem(heading_matcher, current_line);
             if (valid_headings.contains(heading))
             {
                 headings.add(Float.parseFloat(heading));
@@ -115,17 +157,17 @@ public class RunwayDataParser extends DataParser
              * it will occupy needs to be saved so it can possibly be
              * removed later.
              */
-            if (current_line.matches(".*FIELD *ELEV.*"))
+            if (field_elev_matcher.reset(current_line).matches())
             {
                 field_elev_index = elevations.size();
             }
             //Increment the elevation counter if "ELEV" is found in the line.
-            if (current_line.matches(".*E.*L.*E.*V.*"))
+            if (elev_label_matcher.reset(current_line).matches())
             {
                 elev_counter++;
             }
 
-            String elevation = searchForItem(ELEV_PATTERN, current_line);
+            String elevation = searchForItem(elev_matcher, current_line);
             if (!elevation.equals("") && elev_counter > 0)
             {
                 int elev = Integer.parseInt(elevation);
@@ -170,8 +212,10 @@ public class RunwayDataParser extends DataParser
         }
         scanner.close();
 
-        //We have too many elevations.  Drop the field elevation.
-        if (elevations.size() > runways.size())
+        /* We have too many elevations.  Drop the field elevation, if "FIELD"
+         * and "ELEV" were found on the same line.
+         */
+        if (elevations.size() > runways.size() && field_elev_index >= 0)
         {
             elevations.remove(field_elev_index);
         }
@@ -185,84 +229,73 @@ public class RunwayDataParser extends DataParser
      * on the runway_number list that is included somewhere in every airport
      * diagram.
      *
-     * @param file_name is the path to the airport diagram.
+     * @param raw_text is the unformatted text of the airport diagram.
      * @return an ArrayList of runway_number name Strings that are valid for the
-     * airport.
+     * airport, or null if there is no text.
      */
-    private ArrayList<String> makeListOfRunways(String file_name)
+    private ArrayList<String> makeListOfRunways(String raw_text)
     {
-        File file = new File(file_name);
-        try
+        if (raw_text == null)
         {
-            Scanner scanner = new Scanner(file);
-            String next_line = "";
-            ArrayList<String> runways = new ArrayList<>();
-            while (scanner.hasNextLine())
-            {
-                next_line = scanner.nextLine();
+            return null;
+        }
+        Scanner scanner = new Scanner(raw_text);
+        String next_line = "";
+        ArrayList<String> runways = new ArrayList<>();
+        Matcher runway_pairs_matcher = RUNWAY_PAIRS_PATTERN.matcher("");
+        while (scanner.hasNextLine())
+        {
+            next_line = scanner.nextLine();
+
+            //Look for a list of runway_number pairs on this line.
+            String runway_pairs_string = searchForItem(
+                    runway_pairs_matcher,
+                    next_line
+            );
 
-                /* This pattern looks for runway_number pairs.  They usually come
-                 * in single pairs, but sometimes they come in a comma
-                 * delimited list of pairs.  The first capturing group will
-                 * be the list that is wanted, so searchForItem() still
-                 * works.
+            //We found a line with at least one runway_number pair.
+            if (!runway_pairs_string.equals(""))
+            {
+                /* Remove all spaces and padding zeros from the String to
+                 * ensure proper String comparison.
                  */
-                String runway_pairs_string = searchForItem(
-                        "R *W *Y *(( *\\d\\d[RCL]*-\\d\\d[RCL]*,*)*)",
-                        next_line
-                );
+                runway_pairs_string
+                = SPACES.matcher(runway_pairs_string).replaceAll("");
 
-                //We found a line with at least one runway_number pair.
-                if (!runway_pairs_string.equals(""))
+                String runway_pairs[];
+                //We found multiple pairs of runways delimited by commas
+                if (runway_pairs_string.contains(","))
                 {
-                    /* Remove all spaces and padding zeros from the String to
-                     * ensure proper String comparison.
-                     */
-                    runway_pairs_string
-                    = runway_pairs_string.replaceAll(" ", "");
-
-                    String runway_pairs[];
-                    //We found multiple pairs of runways delimited by commas
-                    if (runway_pairs_string.contains(","))
-                    {
-                        runway_pairs = runway_pairs_string.split(",");
-                    }
-                    /* Otherwise, there is just one pair.  An array is used
-                     * so that it is possible to iterate over the list
-                     * in a more general way.
+                    runway_pairs = runway_pairs_string.split(",");
+                }
+                /* Otherwise, there is just one pair.  An array is used
+                 * so that it is possible to iterate over the list
+                 * in a more general way.
+                 */
+                else
+                {
+                    runway_pairs = new String[1];
+                    runway_pairs[0] = runway_pairs_string;
+                }
+                for (String runway_pair : runway_pairs)
+                {
+                    /* This will always be a set of two runways separated
+                     * by a minus sign, so split on the "-" character.
                      */
-                    else
+                    String[] rwy_set = runway_pair.split("-");
+                    for (String runway : rwy_set)
                     {
-                        runway_pairs = new String[1];
-                        runway_pairs[0] = runway_pairs_string;
-                    }
-                    for (String runway_pair : runway_pairs)
-                    {
-                        /* This will always be a set of two runways separated
-                         * by a minus sign, so split on the "-" character.
-                         */
-                        String[] rwy_set = runway_pair.split("-");
-                        for (String runway : rwy_set)
+                        //Add the runway_number to the list if it's not there.
+                        if (!runways.contains(runway))
                         {
-                            //Add the runway_number to the list if it's not there.
-                            if (!runways.contains(runway))
-                            {
-                                runways.add(runway);
-                            }
+                            runways.add(runway);
                         }
                     }
                 }
             }
-            scanner.close();
-            return runways;
-        }
-        catch (FileNotFoundException ex)
-        {
-            Logger.getLogger(RunwayDataParser.class.getName()).log(
-                    Level.SEVERE, null, ex
-            );
-            return null;
         }
+        scanner.close();
+        return runways;
     }
 
     /**
@@ -270,20 +303,22 @@ public class RunwayDataParser extends DataParser
      * PDFBox is used because pdftotext doesn't transfer ° characters to the
      * plain text file.
      *
-     * @param file_name is the file path of the airport diagram.
+     * @param diagram_text is the text of the airport diagram.
      * @return an ArrayList of valid heading Strings for the given airport.
      */
-    private ArrayList<String> makeListOfProperHeadings(String file_name)
+    private ArrayList<String> makeListOfProperHeadings(
+            DiagramText diagram_text)
     {
         /*Turn the PDF of the airport diagram into a String of plain text.
          *pdftotext reads the PDF more correctly in most cases, but doesn't
          *preserve the ° characters, which are the best way to find the
          *heading angles.
          */
-        String pdf_text = PDFToText.getTextPDFBox(file_name);
+        String pdf_text = diagram_text.getPDFBoxText();
 
         Scanner scanner = new Scanner(pdf_text);
         ArrayList<String> valid_headings = new ArrayList<>();
+        Matcher heading_matcher = DEGREE_HEADING_PATTERN.matcher("");
         while (scanner.hasNextLine())
         {
             String next_line = scanner.nextLine();
@@ -292,7 +327,7 @@ public class RunwayDataParser extends DataParser
              *the heading pattern except that the '°' character comes after
              *the angle that we want.  
              */
-            String heading = searchForItem(HEADING_PATTERN + "°", next_line);
+            String heading = searchForItem(heading_matcher, next_line);
 
             if (!heading.equals(""))
             {
@@ -306,15 +341,13 @@ public class RunwayDataParser extends DataParser
 
         if (valid_headings.isEmpty())
         {
-            pdf_text = PDFToText.getDiagramText(file_name);
+            pdf_text = diagram_text.getFormattedText();
             scanner = new Scanner(pdf_text);
+            heading_matcher = PLAIN_HEADING_PATTERN.matcher("");
             while (scanner.hasNextLine())
             {
                 String next_line = scanner.nextLine();
-                String heading = searchForItem(
-                        HEADING_PATTERN + "[^\\d]*",
-                        next_line
-                );
+                String heading = searchForItem(heading_matcher, next_line);
                 if (!heading.equals("") && !valid_headings.contains(heading))
                 {
                     valid_headings.add(heading);
@@ -340,7 +373,8 @@ public class RunwayDataParser extends DataParser
          * This is necessary because all one-digit runways are padded with
          * a zero in the listing, but not in the actual diagrams.
          */
-        if (runway.length() < 3 && runway.matches("\\d[LRC]*"))
+        if (runway.length() < 3
+            && ONE_DIGIT_RUNWAY_PATTERN.matcher(runway).matches())
         {
             return "0" + runway;
         }
@@ -353,18 +387,17 @@ public class RunwayDataParser extends DataParser
     /**
      * Get an ArrayList of runway_number name Strings from the given text.
      *
+     * @param matcher is the matcher for the runway_number pattern, which is
+     * reset to the text.
      * @param text is the String to search for runway_number names.
      * @return an ArrayList of runway_number Strings if present in the line of
      * text
      * or an empty ArrayList if there are none.
      */
-    private ArrayList<String> searchForRunways(String text)
+    private ArrayList<String> searchForRunways(Matcher matcher, String text)
     {
-        //Compile the pattern given.
-        Pattern matcher_pattern = Pattern.compile(RUNWAY_PATTERN);
-
-        //Set up the matcher for the pattern.
-        Matcher matcher = matcher_pattern.matcher(text);
+        //Point the matcher at the new text.
+        matcher.reset(text);
 
         ArrayList<String> runways = new ArrayList<>();
 
@@ -440,7 +473,7 @@ public class RunwayDataParser extends DataParser
         {
             String runway = runways.get(0);
             int runway_number = Integer.parseInt(
-                    runway.replaceAll("[^\\d]*", "")
+                    NON_DIGITS.matcher(runway).replaceAll("")
             );
             float heading = 0.0f;
             int heading_index = -1;
@@ -473,7 +506,11 @@ public class RunwayDataParser extends DataParser
                     )
             );
             elevations.remove(0);
-            headings.remove(heading_index);
+            //There may not have been a heading for this runway.
+            if (heading_index >= 0)
+            {
+                headings.remove(heading_index);
+            }
             runways.remove(0);
         }
     }
@@ -11,13 +11,18 @@
 package faa_ocr.xml_parser;
 
 import faa_ocr.ADTs.*;
+import faa_ocr.metrics.FlightEvents;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * The AirportToXML class takes an Airport object and takes all of the
  * information inside it to create an XML formatted representation of that
  * object. That representation is then written to a .xml file with the same
  * header as the .pdf file that was used as the initial input for the program.
+ *
+ * The XML is written straight to the file as it is made, one element at a
+ * time, so the whole document never has to be held in memory.
  */
 public class AirportToXML
 {
@@ -28,203 +33,229 @@ public class AirportToXML
 
     /**
      * @param airport
-     * @return the path of the newly created .xml file
+     * @return the path of the newly created .xml file, or null if it
+     * couldn't be written
      */
     public String convertToXml(Airport airport)
     {
-        String xml_string = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
-        xml_string += "<airport>\n"
-                      + "\t" + "<location>" 
-                      + airport.getLocation() 
-                      + "</location>\n"
-                      + "\t" + "<name>" 
-                      + airport.getName() 
-                      + "</name>\n"
-                      + "\t" + "<variation>" 
-                      + airport.getVariation() 
-                      + "</variation>\n";
-
-        for (int i = 0; i < airport.numRunways(); i++)
+        String xml_path = getXmlPath(airport.getFilePath());
+
+        //The XML file is only replaced once the new one is complete
+        try (OutputFile xml_file = new OutputFile(new File(xml_path)))
         {
-            xml_string += "\t" + "<path>\n";
-            xml_string += runwayToXml(airport.getRunway(i));
-            xml_string += "\t" + "</path>\n";
+            Writer output = new BufferedWriter(new OutputStreamWriter(
+                    xml_file.getStream(), StandardCharsets.UTF_8));
+            writeXml(airport, output);
+            output.close();
+            xml_file.commit();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            return null;
         }
-        
-        for (int i = 0; i < airport.numTaxiways(); i++)
+        return xml_path;
+    }
+
+    /**
+     * Get the path of the XML file that convertToXml writes for a PDF.
+     *
+     * @param pdf_file_path is the path to the airport diagram PDF.
+     * @return the path of the .xml file
+     */
+    public static String getXmlPath(String pdf_file_path)
+    {
+        //use the same name with a .xml extension for the new file
+        File file = new File(pdf_file_path);
+        return file.getAbsolutePath().replaceAll("(?i)\\.pdf$", ".xml");
+    }
+
+    /**
+     * Write the XML representation of an airport to a stream.  The stream is
+     * flushed but not closed.
+     *
+     * @param airport is the airport to write.
+     * @param stream is the stream to write the UTF-8 encoded XML to.
+     * @throws IOException if the stream can't be written to.
+     */
+    public void writeXml(Airport airport, OutputStream stream)
+            throws IOException
+    {
+        Writer output = new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8)
+        );
+        writeXml(airport, output);
+        output.flush();
+    }
+
+    /**
+     * Write the XML representation of an airport.
+     *
+     * @param airport is the airport to write.
+     * @param output is where the XML is written.  It isn't flushed or closed.
+     * @throws IOException if the output can't be written to.
+     */
+    public void writeXml(Airport airport, Writer output) throws IOException
+    {
+        try (FlightEvents.Span event = FlightEvents.start(
+                FlightEvents.XML, airport.getFilePath()))
         {
-            xml_string += "\t" + "<path>\n";
-            taxiwayToXml(airport.getTaxiway(i));
-            xml_string += "\t" + "</path>\n";
+            output.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            output.write("<airport>\n");
+            writeElement(output, "\t", "location", airport.getLocation());
+            writeElement(output, "\t", "name", airport.getName());
+            writeElement(output, "\t", "variation", airport.getVariation());
+
+            for (int i = 0; i < airport.numRunways(); i++)
+            {
+                output.write("\t" + "<path>\n");
+                runwayToXml(airport.getRunway(i), output);
+                output.write("\t" + "</path>\n");
+            }
+
+            for (int i = 0; i < airport.numTaxiways(); i++)
+            {
+                output.write("\t" + "<path>\n");
+                taxiwayToXml(airport.getTaxiway(i), output);
+                output.write("\t" + "</path>\n");
+            }
+            output.write("</airport>");
+            event.setCount(airport.numRunways() + airport.numTaxiways());
         }
-        xml_string += "</airport>";
-        File file = new File(airport.getFilePath());
-        String xml_path = file.getAbsolutePath().replaceAll(".pdf|.PDF", ".xml");
-        return writeToFile(xml_path, xml_string);
     }
 
     /*
      * Take all of the information stored in an instance of Runway that we pass
-     * as a parameter and add it to the String we will be writing to the .xml
-     * file we are to create.  runwayToXml(Runway runway) will be called only by 
-     * sortPaths(Airport airport) and will organize all of the information into
-     * organized and labeled XML formatted lines.
+     * as a parameter and write it to the .xml file we are creating.
+     * runwayToXml(Runway runway, Writer output) will be called only by
+     * writeXml(Airport airport, Writer output) and will organize all of the
+     * information into organized and labeled XML formatted lines.
      *
      * @param runway is the instance of Runway that we are currently converting
      * to XML format.
+     * @param output is where the XML is written.
      */
-    private String runwayToXml(Runway runway)
+    private void runwayToXml(Runway runway, Writer output) throws IOException
     {
-        String xml_string = "\t\t" + "<path_type>runway</path_type>\n";
-        
-        xml_string += "\t\t" + "<path_name>" 
-                      + runway.getName() 
-                      + "</path_name>\n";
-        
-        xml_string += "\t\t" + "<heading>" 
-                      + runway.getHeading() 
-                      + "</heading>\n";
-        
-        xml_string += "\t\t" + "<elevation>" 
-                      + runway.getElevation() 
-                      + "</elevation>\n";
-        
-        xml_string += "\t\t" + "<coordinates>\n";
-        
+        output.write("\t\t" + "<path_type>runway</path_type>\n");
+        writeElement(output, "\t\t", "path_name", runway.getName());
+        writeElement(output, "\t\t", "heading", runway.getHeading());
+        writeElement(output, "\t\t", "elevation", runway.getElevation());
+        output.write("\t\t" + "<coordinates>\n");
+
         //there will always be two nodes in a Runway, the start and the end
         for (int i = 0; i < runway.getNumPathNodes(); i++)
         {
-            Node currNode = runway.getPathNode(i);
-            xml_string += "\t\t\t" + "<node>\n";
-            
-            xml_string += "\t\t\t\t" + "<longitude>" 
-                          + currNode.getLong() 
-                          + "</longitude>\n";
-            
-            xml_string += "\t\t\t\t" + "<latitude>" 
-                          + currNode.getLat() 
-                          + "</latitude>\n";
-            
-            xml_string += "\t\t\t" + "</node>\n";
+            nodeToXml("node", runway.getPathNode(i), output);
         }
-        
+
         if (runway.hasThreshold())
         {
-            Node threshold = runway.getThreshold();
-            xml_string += "\t\t\t" + "<threshold>\n";
-            
-            xml_string += "\t\t\t\t" + "<longitude>" 
-                          + threshold.getLong() 
-                          + "</longitude>\n";
-            
-            xml_string += "\t\t\t\t" + "<latitude>" 
-                          + threshold.getLat() 
-                          + "</latitude>\n";
-            
-            xml_string += "\t\t\t" + "</threshold>\n";
+            nodeToXml("threshold", runway.getThreshold(), output);
         }
-        if (runway.getNumIntNodes() != 0)
+
+        //any given runway may have 0 or more intersection nodes
+        for (int i = 0; i < runway.getNumIntNodes(); i++)
         {
-            for (int i = 0; i < runway.getNumIntNodes(); i++)
-            {
-                //any given runway may have 0 or more intersection nodes
-                Node intersection = runway.getIntNode(i);
-                xml_string += "\t\t\t" + "<intersection>\n";
-                
-                xml_string += "\t\t\t\t" + "<longitude>" 
-                              + intersection.getLong() 
-                              + "</longitude>\n";
-                
-                xml_string += "\t\t\t\t" + "<latitude>" 
-                              + intersection.getLat() 
-                              + "</latitude>\n";
-                
-                xml_string += "\t\t\t" + "</intersection>\n";
-            }
+            nodeToXml("intersection", runway.getIntNode(i), output);
         }
-        xml_string += "\t\t" + "</coordinates>\n";
-        
-        return xml_string;
+        output.write("\t\t" + "</coordinates>\n");
     }
 
     /**
      * Take all of the information stored in an instance of Taxiway that we pass
-     * as a parameter and add it to the String we will be writing to the .xml
-     * file we are to create. taxiwayToXml(Taxiway taxiway) will be called only
-     * by
-     * sortPaths(Airport airport) and will organize all of the information into
-     * organized and labeled XML formatted lines.
+     * as a parameter and write it to the .xml file we are creating.
+     * taxiwayToXml(Taxiway taxiway, Writer output) will be called only by
+     * writeXml(Airport airport, Writer output) and will organize all of the
+     * information into organized and labeled XML formatted lines.
      *
      * @param taxiway instance of Taxiway that we are currently converting to
      * .xml format
+     * @param output is where the XML is written.
      */
-    private String taxiwayToXml(Taxiway taxiway)
+    private void taxiwayToXml(Taxiway taxiway, Writer output)
+            throws IOException
     {
-        String xml_string = "\t\t" + "<path_type>taxiway</path_type>\n";
-        
-        xml_string += "\t\t" + "<path_name>" 
-                      + taxiway.getName() 
-                      + "</path_name>\n";
-        
-        xml_string += "\t\t" + "<coordinates>\n";
-        
+        output.write("\t\t" + "<path_type>taxiway</path_type>\n");
+        writeElement(output, "\t\t", "path_name", taxiway.getName());
+        output.write("\t\t" + "<coordinates>\n");
+
         for (int i = 0; i < taxiway.getNumPathNodes(); i++)
         {
-            Node currNode = taxiway.getPathNode(i);
-            xml_string += "\t\t\t" + "<node>\n";
-            xml_string += "\t\t\t\t" + "<longitude>" 
-                          + currNode.getLong() 
-                          + "</longitude>\n";
-            
-            xml_string += "\t\t\t\t" + "<latitude>" 
-                          + currNode.getLat() 
-                          + "</latitude>\n";
-            
-            xml_string += "\t\t\t" + "</node>\n";
+            nodeToXml("node", taxiway.getPathNode(i), output);
         }
         for (int i = 0; i < taxiway.getNumIntNodes(); i++)
         {
-            Node intersection = taxiway.getIntNode(i);
-            xml_string += "\t\t\t" + "<intersection>\n";
-            
-            xml_string += "\t\t\t\t" + "<longitude>" 
-                          + intersection.getLong() 
-                          + "</longitude>\n";
-            
-            xml_string += "\t\t\t\t" + "<latitude>" 
-                          + intersection.getLat() 
-                          + "</latitude>\n";
-            
-            xml_string += "\t\t\t" + "</intersection>\n";
+            nodeToXml("intersection", taxiway.getIntNode(i), output);
         }
-        xml_string += "\t\t" + "</coordinates>\n";
-        
-        return xml_string;
+        output.write("\t\t" + "</coordinates>\n");
     }
 
     /**
-     * Writes the given XML string to a file at the given path.
-     * @param file_path is the path of the XML file.
-     * @param xml_string is the string to be written to the XML file.
-     * @return the path of the written file.
+     * Write a node as an element holding its longitude and latitude.
+     *
+     * @param tag is the name of the element, like node or intersection.
+     * @param node is the node to write.
+     * @param output is where the XML is written.
      */
-    private String writeToFile(String file_path, String xml_string)
+    private void nodeToXml(String tag, Node node, Writer output)
+            throws IOException
     {
-        //remove the extensions from the file path so that we
-        //can use the same name with a .xml extension for the new file
+        output.write("\t\t\t" + "<" + tag + ">\n");
+        writeElement(output, "\t\t\t\t", "longitude", node.getLong());
+        writeElement(output, "\t\t\t\t", "latitude", node.getLat());
+        output.write("\t\t\t" + "</" + tag + ">\n");
+    }
 
-        try
-        {
-            //create the new .xml file and write the formatted String to it
-            File file = new File(file_path);
-            BufferedWriter output = new BufferedWriter(new FileWriter(file));
-            output.write(xml_string);
-            output.close();
-        }
-        catch (IOException e)
+    /**
+     * Write an element that holds only text on its own line.
+     *
+     * @param output is where the XML is written.
+     * @param indent is the tabs that go before the element.
+     * @param tag is the name of the element.
+     * @param value is the value to write as the element's text.
+     */
+    private void writeElement(Writer output, String indent, String tag,
+                              Object value) throws IOException
+    {
+        output.write(indent);
+        output.write("<" + tag + ">");
+        writeEscaped(output, String.valueOf(value));
+        output.write("</" + tag + ">\n");
+    }
+
+    /**
+     * Write text with the characters that have a meaning in XML replaced by
+     * their entities.  AirportToKML uses this for its text too.
+     *
+     * @param output is where the XML is written.
+     * @param text is the text to write.
+     * @throws IOException if the output can't be written to.
+     */
+    public static void writeEscaped(Writer output, String text) throws IOException
+    {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++)
         {
-            e.printStackTrace();
+            String entity;
+            switch (text.charAt(i))
+            {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                default:
+                    continue;
+            }
+            output.write(text, start, i - start);
+            output.write(entity);
+            start = i + 1;
         }
-        return file_path;
+        output.write(text, start, text.length() - start);
     }
 } //end AirportToXML
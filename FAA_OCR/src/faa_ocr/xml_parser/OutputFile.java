@@ -0,0 +1,98 @@
+package faa_ocr.xml_parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * An output file that is written to a temporary file next to it and only
+ * moved into place once it is complete.  A write that fails part way leaves
+ * the file that was there before, and a file that is a hard link to an
+ * older output is replaced instead of written through.
+ *
+ * Write the file to getStream, call commit when it is done, and close the
+ * OutputFile whether or not it was committed, best with try-with-resources.
+ *
+ * @author Kevin Dittmar
+ */
+public class OutputFile implements Closeable
+{
+    private final File target;
+    private final File temporary;
+    private final OutputStream stream;
+    private boolean committed = false;
+
+    /**
+     * Start writing an output file.
+     *
+     * @param target is the file to write.
+     * @throws IOException if the temporary file can't be made.
+     */
+    public OutputFile(File target) throws IOException
+    {
+        this.target = target.getAbsoluteFile();
+        this.temporary = File.createTempFile(
+                "." + target.getName() + ".", ".tmp",
+                this.target.getParentFile()
+        );
+        this.stream = new FileOutputStream(temporary);
+    }
+
+    /**
+     * @return the stream to write the file to.
+     */
+    public OutputStream getStream()
+    {
+        return stream;
+    }
+
+    /**
+     * Close the stream and move the finished file into place, replacing
+     * the file that was there.
+     *
+     * @throws IOException if the file can't be moved.
+     */
+    public void commit() throws IOException
+    {
+        stream.close();
+        try
+        {
+            Files.move(temporary.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException ex)
+        {
+            Files.move(temporary.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    /**
+     * Close the stream, and throw the temporary file away if the file
+     * wasn't committed.
+     *
+     * @throws IOException if the stream can't be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (!committed)
+        {
+            try
+            {
+                stream.close();
+            }
+            finally
+            {
+                Files.deleteIfExists(temporary.toPath());
+            }
+        }
+    }
+}